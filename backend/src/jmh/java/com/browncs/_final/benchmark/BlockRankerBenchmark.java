@@ -0,0 +1,71 @@
+package com.browncs._final.benchmark;
+
+import com.browncs._final.model.SlotBlock;
+import com.browncs._final.service.BlockRanker;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the optimizer's scoring core on synthetic events, without Firestore. The parameters
+ * span the shapes the scheduler sees: a few to many participants, a single work week to two, short
+ * and long daily windows, short and long meetings, and the default 15-minute slots as well as fine
+ * 5-minute ones.
+ *
+ * <p>Run with {@code mvn -Pjmh verify -DskipTests}; the GC profiler is enabled by the profile, so
+ * results include allocation per operation next to the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockRankerBenchmark {
+
+  @Param({"5", "25", "100"})
+  public int participants;
+
+  @Param({"5", "14"})
+  public int days;
+
+  @Param({"8", "12"})
+  public int windowHours;
+
+  @Param({"30", "120"})
+  public int durationMinutes;
+
+  @Param({"15", "5"})
+  public int slotMinutes;
+
+  private SyntheticEvent input;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.input =
+        new SyntheticEvent(
+            this.participants,
+            this.days,
+            this.windowHours,
+            this.durationMinutes,
+            this.slotMinutes,
+            0.6,
+            42L);
+  }
+
+  @Benchmark
+  public List<SlotBlock> rankBlocks() {
+    return BlockRanker.rankBlocks(this.input.slots, this.input.event);
+  }
+}
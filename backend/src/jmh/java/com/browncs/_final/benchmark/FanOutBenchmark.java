@@ -0,0 +1,133 @@
+package com.browncs._final.benchmark;
+
+import static org.mockito.Mockito.*;
+
+import com.browncs._final.config.ExecutorConfig;
+import com.browncs._final.model.Event;
+import com.browncs._final.service.EmailService;
+import com.browncs._final.service.EventService;
+import com.browncs._final.service.FirestoreMetrics;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the platform-thread and virtual-thread execution modes on the event-creation path: a
+ * burst of concurrent requests each block a request thread until createEvent finishes, and each
+ * createEvent hands its bulk invitation send to the fan-out executor, where the SendGrid call is
+ * simulated with a fixed latency. Firestore and the email service are mocked, so only thread
+ * scheduling is measured.
+ *
+ * <p>The virtual mode needs a JDK 21+ runtime; on older ones its trial fails in setup. Run with
+ * {@code mvn -Pjmh verify -DskipTests -Djmh.include=FanOut}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FanOutBenchmark {
+
+  private static final int REQUESTS = 400;
+  private static final int PARTICIPANTS = 20;
+  private static final long SEND_LATENCY_MS = 40;
+
+  // Tomcat's default maximum thread count and the default fan-out pool size
+  private static final int REQUEST_THREADS = 200;
+  private static final int FAN_OUT_THREADS = 16;
+
+  @Param({"platform", "virtual"})
+  public String executor;
+
+  private ExecutorService requestExecutor;
+  private ExecutorService fanOutExecutor;
+  private EventService service;
+  private List<String> participants;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    if (this.executor.equals("virtual")) {
+      this.requestExecutor =
+          ExecutorConfig.newVirtualThreadPerTaskExecutor()
+              .orElseThrow(() -> new IllegalStateException("Virtual threads need JDK 21+"));
+      this.fanOutExecutor = ExecutorConfig.newVirtualThreadPerTaskExecutor().orElseThrow();
+    } else {
+      this.requestExecutor = ExecutorConfig.newPlatformExecutor(REQUEST_THREADS);
+      this.fanOutExecutor = ExecutorConfig.newPlatformExecutor(FAN_OUT_THREADS);
+    }
+
+    Firestore db = mock(Firestore.class);
+    CollectionReference events = mock(CollectionReference.class);
+    when(db.collection(anyString())).thenReturn(events);
+    DocumentReference doc = mock(DocumentReference.class);
+    when(doc.getId()).thenReturn("event");
+    when(doc.collection(anyString())).thenReturn(events);
+    when(events.document()).thenReturn(doc);
+    when(events.document(anyString())).thenReturn(doc);
+    WriteBatch batch = mock(WriteBatch.class, RETURNS_SELF);
+    when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+    when(db.batch()).thenReturn(batch);
+    EmailService email = mock(EmailService.class);
+    when(email.sendEventInvites(anyList(), anyString()))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(SEND_LATENCY_MS);
+              return invocation.<List<String>>getArgument(0).size();
+            });
+    this.service =
+        new EventService(
+            db, email, this.fanOutExecutor, new FirestoreMetrics(new SimpleMeterRegistry()));
+    this.participants =
+        IntStream.range(0, PARTICIPANTS).mapToObj(i -> "p" + i + "@example.com").toList();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.requestExecutor.shutdown();
+    this.fanOutExecutor.shutdown();
+  }
+
+  @Benchmark
+  public void createEvents() throws Exception {
+    List<CompletableFuture<?>> requests = new ArrayList<>(REQUESTS);
+    for (int i = 0; i < REQUESTS; i++) {
+      Event event = new Event();
+      event.setTitle("Benchmark " + i);
+      event.setOrganizerEmail("org@example.com");
+      event.setParticipantEmails(this.participants);
+      requests.add(CompletableFuture.runAsync(() -> createEvent(event), this.requestExecutor));
+    }
+    CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).get(10, TimeUnit.MINUTES);
+  }
+
+  private void createEvent(Event event) {
+    try {
+      this.service.createEvent(event);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.browncs._final.benchmark;
+
+import com.browncs._final.service.SlotIdCodec;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares SlotIdCodec with the java.time code it replaced on the two hot paths: expanding a
+ * submitted timespan into slot IDs, and parsing slot IDs when the optimizer checks that slots are
+ * consecutive. The {@code javaTime} benchmarks reproduce the old code as it was written, including
+ * the formatter built per timespan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlotIdCodecBenchmark {
+
+  private static final DateTimeFormatter SLOT_ID =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+  // A typical submitted span: two hours, eight slots
+  public String timespanId = "17:00-19:00@2025-04-29";
+  public String slotId = "2025-04-29T17:00";
+
+  @Benchmark
+  public void expandTimespanJavaTime(Blackhole blackhole) {
+    String[] parts = this.timespanId.split("@");
+    String[] timeRange = parts[0].split("-");
+    String date = parts[1];
+    LocalTime start = LocalTime.parse(timeRange[0]);
+    LocalTime end = LocalTime.parse(timeRange[1]);
+    DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+    while (start.isBefore(end)) {
+      blackhole.consume(date + "T" + start.format(timeFormatter));
+      start = start.plusMinutes(15);
+    }
+  }
+
+  @Benchmark
+  public void expandTimespanCodec(Blackhole blackhole) {
+    long timespan = SlotIdCodec.parseTimespan(this.timespanId);
+    long end = SlotIdCodec.timespanEnd(timespan);
+    for (long m = SlotIdCodec.timespanStart(timespan); m < end; m += 15) {
+      blackhole.consume(SlotIdCodec.formatSlotId(m));
+    }
+  }
+
+  @Benchmark
+  public LocalDateTime parseSlotIdJavaTime() {
+    return LocalDateTime.parse(this.slotId, SLOT_ID);
+  }
+
+  @Benchmark
+  public long parseSlotIdCodec() {
+    return SlotIdCodec.parseSlotId(this.slotId);
+  }
+}
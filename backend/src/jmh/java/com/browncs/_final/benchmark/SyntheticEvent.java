@@ -0,0 +1,88 @@
+package com.browncs._final.benchmark;
+
+import com.browncs._final.model.Event;
+import com.browncs._final.model.Slot;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A reproducible event and its slots, shaped like what SlotService writes: one slot per slot length
+ * of the daily window on each day, with each participant available in a random subset of slots at
+ * weight 1, 3 or 5.
+ */
+final class SyntheticEvent {
+
+  private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+  private static final int[] WEIGHTS = {1, 3, 5};
+  private static final int[] NECESSITY = {1, 3, 5};
+
+  final Event event;
+  final List<Slot> slots; // sorted chronologically, as the optimizer expects
+
+  /**
+   * @param participants Number of participants
+   * @param days Number of consecutive available days
+   * @param windowHours Length of the daily window, starting at 09:00
+   * @param durationMinutes Meeting duration
+   * @param slotMinutes Slot length
+   * @param availability Probability that a participant marks a given slot
+   * @param seed Random seed
+   */
+  SyntheticEvent(
+      int participants,
+      int days,
+      int windowHours,
+      int durationMinutes,
+      int slotMinutes,
+      double availability,
+      long seed) {
+    Random random = new Random(seed);
+    List<String> emails = new ArrayList<>();
+    Map<String, Integer> necessity = new HashMap<>();
+    for (int p = 0; p < participants; p++) {
+      String email = "participant" + p + "@example.com";
+      emails.add(email);
+      necessity.put(email, NECESSITY[random.nextInt(NECESSITY.length)]);
+    }
+
+    LocalDate firstDay = LocalDate.of(2025, 5, 5);
+    LocalTime start = LocalTime.of(9, 0);
+    List<String> availableDays = new ArrayList<>();
+    this.slots = new ArrayList<>();
+    for (int d = 0; d < days; d++) {
+      LocalDate date = firstDay.plusDays(d);
+      availableDays.add(date.toString());
+      for (int q = 0; q < windowHours * 60 / slotMinutes; q++) {
+        String time = start.plusMinutes((long) slotMinutes * q).format(TIME);
+        Map<String, Integer> weights = new HashMap<>();
+        for (String email : emails) {
+          if (random.nextDouble() < availability) {
+            weights.put(email, WEIGHTS[random.nextInt(WEIGHTS.length)]);
+          }
+        }
+        Slot slot = new Slot();
+        slot.setId(date + "T" + time);
+        slot.setDate(date.toString());
+        slot.setStartTime(time);
+        slot.setParticipantWeights(weights);
+        this.slots.add(slot);
+      }
+    }
+
+    this.event = new Event();
+    this.event.setTitle("Synthetic event");
+    this.event.setParticipantEmails(emails);
+    this.event.setParticipantNecessity(necessity);
+    this.event.setAvailableDays(availableDays);
+    this.event.setStartTime(start.format(TIME));
+    this.event.setEndTime(start.plusHours(windowHours).format(TIME));
+    this.event.setDurationMinutes(durationMinutes);
+    this.event.setSlotMinutes(slotMinutes);
+  }
+}
@@ -0,0 +1,109 @@
+package com.browncs._final.loadtest;
+
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.firestore.FirestoreOptions;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Points the default FirebaseApp at a local Firestore emulator before the application starts, so
+ * {@code FirebaseConfig} and {@code FirestoreClient.getFirestore()} pick it up instead of loading
+ * service account credentials.
+ */
+final class EmulatorFirebase {
+
+  private EmulatorFirebase() {}
+
+  /**
+   * Initializes the default FirebaseApp against the emulator.
+   *
+   * @param emulatorHost Host and port of the Firestore emulator, e.g. "localhost:8080"
+   * @param projectId Project ID to use; the emulator accepts any, "demo-" prefixes keep it offline
+   * @param latency Mean latency added to every Firestore RPC, or zero for none
+   */
+  static void initialize(String emulatorHost, String projectId, Duration latency) {
+    InstantiatingGrpcChannelProvider.Builder channel =
+        InstantiatingGrpcChannelProvider.newBuilder()
+            .setEndpoint(emulatorHost)
+            .setChannelConfigurator(ManagedChannelBuilder::usePlaintext);
+    if (!latency.isZero()) {
+      LatencyInterceptor interceptor = new LatencyInterceptor(latency);
+      channel.setInterceptorProvider(() -> List.of(interceptor));
+    }
+    FirestoreOptions firestore =
+        FirestoreOptions.newBuilder()
+            .setProjectId(projectId)
+            .setChannelProvider(channel.build())
+            .build();
+    // The emulator grants admin access to the "owner" bearer token
+    FirebaseOptions options =
+        FirebaseOptions.builder()
+            .setProjectId(projectId)
+            .setCredentials(GoogleCredentials.create(new AccessToken("owner", null)))
+            .setFirestoreOptions(firestore)
+            .build();
+    FirebaseApp.initializeApp(options);
+  }
+
+  /**
+   * Delays the completion of every call by the configured latency, with ±50% uniform jitter, to
+   * approximate the round trip to a Firestore region from the loopback emulator. Responses are
+   * delivered as they arrive; only the close that completes the client's future is held back.
+   */
+  static final class LatencyInterceptor implements ClientInterceptor {
+
+    private final long meanMicros;
+    private final ScheduledExecutorService scheduler =
+        Executors.newScheduledThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "injected-latency");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    LatencyInterceptor(Duration latency) {
+      this.meanMicros = latency.toNanos() / 1000;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      return new ForwardingClientCall.SimpleForwardingClientCall<>(
+          next.newCall(method, callOptions)) {
+        @Override
+        public void start(Listener<RespT> listener, Metadata headers) {
+          super.start(
+              new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(listener) {
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                  long delay =
+                      ThreadLocalRandom.current().nextLong(meanMicros / 2, meanMicros * 3 / 2 + 1);
+                  scheduler.schedule(
+                      () -> delegate().onClose(status, trailers), delay, TimeUnit.MICROSECONDS);
+                }
+              },
+              headers);
+        }
+      };
+    }
+  }
+}
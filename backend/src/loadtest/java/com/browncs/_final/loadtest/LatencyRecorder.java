@@ -0,0 +1,149 @@
+package com.browncs._final.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the latency of every request by endpoint and reports throughput and exact percentiles.
+ * Samples are kept in full; a run of a few hundred thousand requests needs only a few megabytes.
+ */
+final class LatencyRecorder {
+
+  private static final double[] PERCENTILES = {0.50, 0.99, 0.999};
+
+  private static final class Endpoint {
+    final ConcurrentLinkedQueue<Long> micros = new ConcurrentLinkedQueue<>();
+    final AtomicInteger errors = new AtomicInteger();
+  }
+
+  private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+  /**
+   * Records one request.
+   *
+   * @param endpoint Endpoint name, e.g. "POST /submit-preferences"
+   * @param nanos Latency in nanoseconds
+   * @param ok Whether the response was a success
+   */
+  void record(String endpoint, long nanos, boolean ok) {
+    Endpoint stats = this.endpoints.computeIfAbsent(endpoint, ignored -> new Endpoint());
+    stats.micros.add(nanos / 1000);
+    if (!ok) {
+      stats.errors.incrementAndGet();
+    }
+  }
+
+  /** One row of the report. */
+  record Summary(
+      String endpoint, int count, int errors, double perSecond, long[] percentileMicros, long max) {}
+
+  /**
+   * Summarizes every endpoint, sorted by name.
+   *
+   * @param elapsedNanos Wall time of the run, used for throughput
+   * @return One summary per endpoint
+   */
+  List<Summary> summarize(long elapsedNanos) {
+    List<Summary> rows = new ArrayList<>();
+    double seconds = elapsedNanos / 1e9;
+    this.endpoints.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .forEach(
+            entry -> {
+              long[] sorted =
+                  entry.getValue().micros.stream().mapToLong(Long::longValue).sorted().toArray();
+              long[] percentiles = new long[PERCENTILES.length];
+              for (int i = 0; i < PERCENTILES.length; i++) {
+                percentiles[i] = percentile(sorted, PERCENTILES[i]);
+              }
+              rows.add(
+                  new Summary(
+                      entry.getKey(),
+                      sorted.length,
+                      entry.getValue().errors.get(),
+                      sorted.length / seconds,
+                      percentiles,
+                      sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+            });
+    return rows;
+  }
+
+  /** Nearest-rank percentile of a sorted sample. */
+  private static long percentile(long[] sorted, double p) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(p * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  /** Formats the summaries as a fixed-width table, latencies in milliseconds. */
+  static String table(List<Summary> rows) {
+    StringBuilder out = new StringBuilder();
+    out.append(
+        String.format(
+            Locale.ROOT,
+            "%-28s %8s %7s %9s %9s %9s %9s %9s%n",
+            "endpoint",
+            "count",
+            "errors",
+            "req/s",
+            "p50 ms",
+            "p99 ms",
+            "p999 ms",
+            "max ms"));
+    for (Summary row : rows) {
+      out.append(
+          String.format(
+              Locale.ROOT,
+              "%-28s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+              row.endpoint(),
+              row.count(),
+              row.errors(),
+              row.perSecond(),
+              row.percentileMicros()[0] / 1000.0,
+              row.percentileMicros()[1] / 1000.0,
+              row.percentileMicros()[2] / 1000.0,
+              row.max() / 1000.0));
+    }
+    return out.toString();
+  }
+
+  /**
+   * Writes the summaries and the run's settings as JSON, for comparing releases.
+   *
+   * @param file File to write
+   * @param settings Settings of the run
+   * @param rows The summaries
+   */
+  static void writeJson(Path file, Map<String, Object> settings, List<Summary> rows)
+      throws IOException {
+    List<Map<String, Object>> endpoints = new ArrayList<>();
+    for (Summary row : rows) {
+      Map<String, Object> endpoint = new LinkedHashMap<>();
+      endpoint.put("endpoint", row.endpoint());
+      endpoint.put("count", row.count());
+      endpoint.put("errors", row.errors());
+      endpoint.put("perSecond", Math.round(row.perSecond() * 10) / 10.0);
+      endpoint.put("p50Micros", row.percentileMicros()[0]);
+      endpoint.put("p99Micros", row.percentileMicros()[1]);
+      endpoint.put("p999Micros", row.percentileMicros()[2]);
+      endpoint.put("maxMicros", row.max());
+      endpoints.add(endpoint);
+    }
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    new ObjectMapper()
+        .writerWithDefaultPrettyPrinter()
+        .writeValue(file.toFile(), Map.of("settings", settings, "endpoints", endpoints));
+  }
+}
@@ -0,0 +1,280 @@
+package com.browncs._final.loadtest;
+
+import com.browncs._final.Application;
+import com.browncs._final.model.Event;
+import com.browncs._final.model.PreferenceRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Load-generation harness. Boots the application in-process with the {@code loadtest} profile
+ * against a local Firestore emulator, then simulates organizers creating events and participants
+ * submitting and re-reading preferences while organizers optimize, all concurrently over HTTP.
+ * Reports throughput and p50/p99/p999 latency per endpoint and writes them to a JSON file so runs
+ * of different releases can be compared.
+ *
+ * <p>Start the emulator first, e.g. {@code firebase emulators:start --only firestore --project
+ * demo-cusoon}, which listens on localhost:8080 (see {@code loadtest.emulator-host}), then run
+ * {@code mvn -Ploadtest verify -DskipTests}. Settings are system properties, passed through by the
+ * Maven profile:
+ *
+ * <ul>
+ *   <li>{@code loadtest.participants} Total participants across all events (default 2000)
+ *   <li>{@code loadtest.events} Number of events (default 100)
+ *   <li>{@code loadtest.concurrency} Concurrent HTTP clients (default 64)
+ *   <li>{@code loadtest.days} Days per event (default 5)
+ *   <li>{@code loadtest.optimize-rounds} Optimize calls per event during the run (default 3)
+ *   <li>{@code loadtest.firestore-latency} Mean latency injected into every Firestore RPC (default
+ *       20ms)
+ *   <li>{@code loadtest.emulator-host} Firestore emulator address (default localhost:8080)
+ *   <li>{@code loadtest.seed} Random seed, so runs are repeatable (default 42)
+ *   <li>{@code loadtest.result} Result file (default target/loadtest-result.json)
+ * </ul>
+ */
+public final class LoadTest {
+
+  private static final String START_TIME = "09:00";
+  private static final String END_TIME = "17:00";
+  // The necessity levels the frontend offers: not required, preferred and required
+  private static final int[] NECESSITIES = {1, 3, 5};
+
+  private final HttpClient http =
+      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+  private final ObjectMapper json = new ObjectMapper();
+  private final LatencyRecorder recorder = new LatencyRecorder();
+  private final String baseUrl;
+  private final Random random;
+
+  private LoadTest(String baseUrl, long seed) {
+    this.baseUrl = baseUrl;
+    this.random = new Random(seed);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int participants = Integer.getInteger("loadtest.participants", 2000);
+    int events = Integer.getInteger("loadtest.events", 100);
+    int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+    int days = Integer.getInteger("loadtest.days", 5);
+    int optimizeRounds = Integer.getInteger("loadtest.optimize-rounds", 3);
+    long seed = Long.getLong("loadtest.seed", 42);
+    Duration latency =
+        DurationStyle.detectAndParse(System.getProperty("loadtest.firestore-latency", "20ms"));
+    String emulatorHost = System.getProperty("loadtest.emulator-host", "localhost:8080");
+    Path result = Path.of(System.getProperty("loadtest.result", "target/loadtest-result.json"));
+
+    // A devtools restart would rerun main in a fresh class loader and initialize Firebase twice
+    System.setProperty("spring.devtools.restart.enabled", "false");
+    EmulatorFirebase.initialize(emulatorHost, "demo-cusoon", latency);
+    ConfigurableApplicationContext context =
+        new SpringApplicationBuilder(Application.class).profiles("loadtest").run(args);
+    int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+    LoadTest test = new LoadTest("http://localhost:" + port + "/api", seed);
+    ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+    long started = System.nanoTime();
+    try {
+      List<String> eventIds = test.createEvents(clients, events, participants, days);
+      test.runMixed(clients, eventIds, participants, days, optimizeRounds);
+    } finally {
+      clients.shutdownNow();
+    }
+    long elapsed = System.nanoTime() - started;
+
+    List<LatencyRecorder.Summary> rows = test.recorder.summarize(elapsed);
+    System.out.printf(
+        "%nLoad test: %d participants, %d events, %d clients, %s injected Firestore latency,"
+            + " %.1f s%n%n",
+        participants,
+        events,
+        concurrency,
+        latency,
+        elapsed / 1e9);
+    System.out.print(LatencyRecorder.table(rows));
+
+    Map<String, Object> settings = new LinkedHashMap<>();
+    settings.put("participants", participants);
+    settings.put("events", events);
+    settings.put("concurrency", concurrency);
+    settings.put("days", days);
+    settings.put("optimizeRounds", optimizeRounds);
+    settings.put("firestoreLatency", latency.toString());
+    settings.put("seed", seed);
+    settings.put("elapsedSeconds", elapsed / 1e9);
+    LatencyRecorder.writeJson(result, settings, rows);
+    System.out.println("\nResults written to " + result.toAbsolutePath());
+
+    context.close();
+    System.exit(0);
+  }
+
+  /** Creates the events concurrently, each organized by its own user, and returns their IDs. */
+  private List<String> createEvents(ExecutorService clients, int events, int participants, int days)
+      throws Exception {
+    List<Future<String>> created = new ArrayList<>();
+    for (int e = 0; e < events; e++) {
+      Event event = new Event();
+      event.setTitle("Load test event " + e);
+      event.setParticipantEmails(participantsOf(e, events, participants));
+      event.setAvailableDays(daysOf(days));
+      event.setStartTime(START_TIME);
+      event.setEndTime(END_TIME);
+      event.setDurationMinutes(60);
+      Map<String, Integer> necessity = new HashMap<>();
+      for (String participant : event.getParticipantEmails()) {
+        necessity.put(participant, NECESSITIES[this.random.nextInt(NECESSITIES.length)]);
+      }
+      event.setParticipantNecessity(necessity);
+      String organizer = "organizer" + e + "@loadtest.invalid";
+      created.add(
+          clients.submit(
+              () -> {
+                String body =
+                    send(
+                        "POST /users/{email}/events",
+                        post("/users/" + organizer + "/events", event));
+                return body == null ? null : body.substring(body.lastIndexOf(' ') + 1);
+              }));
+    }
+    List<String> ids = new ArrayList<>();
+    for (Future<String> id : created) {
+      if (id.get() != null) {
+        ids.add(id.get());
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Runs the concurrent phase: every participant submits preferences and reads them back, while
+   * each event is optimized and fetched several times, in a shuffled order.
+   */
+  private void runMixed(
+      ExecutorService clients,
+      List<String> eventIds,
+      int participants,
+      int days,
+      int optimizeRounds)
+      throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    for (int e = 0; e < eventIds.size(); e++) {
+      String eventId = eventIds.get(e);
+      for (String participant : participantsOf(e, eventIds.size(), participants)) {
+        PreferenceRequest preferences = randomPreferences(participant, days);
+        tasks.add(
+            () -> {
+              send(
+                  "POST /submit-preferences",
+                  post("/events/" + eventId + "/submit-preferences", preferences));
+              send("GET /get-preferences", get("/events/" + eventId + "/get-preferences"));
+            });
+      }
+      for (int round = 0; round < optimizeRounds; round++) {
+        tasks.add(() -> send("GET /optimize", get("/events/" + eventId + "/optimize")));
+        tasks.add(() -> send("GET /events/{eventId}", get("/events/" + eventId)));
+      }
+    }
+    Collections.shuffle(tasks, this.random);
+    List<Future<?>> running = new ArrayList<>();
+    for (Runnable task : tasks) {
+      running.add(clients.submit(task));
+    }
+    for (Future<?> task : running) {
+      task.get();
+    }
+  }
+
+  /** Participants are split evenly across events, round robin. */
+  private static List<String> participantsOf(int event, int events, int participants) {
+    List<String> emails = new ArrayList<>();
+    for (int p = event; p < participants; p += events) {
+      emails.add("participant" + p + "@loadtest.invalid");
+    }
+    return emails;
+  }
+
+  private static List<String> daysOf(int days) {
+    LocalDate first = LocalDate.now().plusWeeks(1);
+    List<String> result = new ArrayList<>();
+    for (int d = 0; d < days; d++) {
+      result.add(first.plusDays(d).toString());
+    }
+    return result;
+  }
+
+  /** Ranks two to four random spans of 30 minutes to 2 hours on each day. */
+  private PreferenceRequest randomPreferences(String email, int days) {
+    Map<String, Integer> rankings = new HashMap<>();
+    LocalTime open = LocalTime.parse(START_TIME);
+    int windowQuarters = (int) Duration.between(open, LocalTime.parse(END_TIME)).toMinutes() / 15;
+    int[] levels = {1, 3, 5};
+    for (String day : daysOf(days)) {
+      int spans = 2 + this.random.nextInt(3);
+      for (int s = 0; s < spans; s++) {
+        int length = 2 + this.random.nextInt(7);
+        int start = this.random.nextInt(windowQuarters - length + 1);
+        LocalTime from = open.plusMinutes(15L * start);
+        LocalTime to = from.plusMinutes(15L * length);
+        rankings.put(from + "-" + to + "@" + day, levels[this.random.nextInt(levels.length)]);
+      }
+    }
+    PreferenceRequest request = new PreferenceRequest();
+    request.setUserEmail(email);
+    request.setRankings(rankings);
+    return request;
+  }
+
+  private HttpRequest get(String path) {
+    return HttpRequest.newBuilder(URI.create(this.baseUrl + path)).GET().build();
+  }
+
+  private HttpRequest post(String path, Object body) {
+    try {
+      return HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+          .header("Content-Type", "application/json")
+          .POST(HttpRequest.BodyPublishers.ofByteArray(this.json.writeValueAsBytes(body)))
+          .build();
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Sends a request and records its latency under the endpoint name.
+   *
+   * @return The response body, or null if the request failed
+   */
+  private String send(String endpoint, HttpRequest request) {
+    long start = System.nanoTime();
+    try {
+      HttpResponse<String> response =
+          this.http.send(request, HttpResponse.BodyHandlers.ofString());
+      boolean ok = response.statusCode() / 100 == 2;
+      this.recorder.record(endpoint, System.nanoTime() - start, ok);
+      return ok ? response.body() : null;
+    } catch (Exception e) {
+      this.recorder.record(endpoint, System.nanoTime() - start, false);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.browncs._final.config;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Executors for blocking work that the asynchronous service layer must keep off both servlet
+ * threads and Firestore's callback threads, such as SendGrid calls.
+ *
+ * <p>Setting {@code spring.threads.virtual.enabled=true} opts into virtual threads. On a JDK that
+ * supports them (21+), Spring Boot then runs Tomcat request handling on virtual threads and the
+ * fan-out executor starts one virtual thread per task. The build still targets Java 17, so the
+ * virtual-thread factory is looked up reflectively and the platform pool is used when it is
+ * missing.
+ */
+@Configuration
+public class ExecutorConfig {
+
+  private static final Logger logger = LoggerFactory.getLogger(ExecutorConfig.class);
+
+  /**
+   * The fan-out executor. Tasks run in the context of the code that submitted them, so spans they
+   * create (such as SendGrid calls) are children of the submitting request's spans.
+   */
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService fanOutExecutor(
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+      @Value("${app.fan-out.threads:16}") int threads) {
+    ContextSnapshotFactory context = ContextSnapshotFactory.builder().build();
+    if (virtualThreads) {
+      Optional<ExecutorService> virtual = newVirtualThreadPerTaskExecutor();
+      if (virtual.isPresent()) {
+        logger.info("Fan-out executor running on virtual threads");
+        return ContextExecutorService.wrap(virtual.get(), context);
+      }
+      logger.warn(
+          "spring.threads.virtual.enabled is set but Java {} has no virtual threads; "
+              + "falling back to {} platform threads",
+          Runtime.version().feature(),
+          threads);
+    }
+    return ContextExecutorService.wrap(newPlatformExecutor(threads), context);
+  }
+
+  /**
+   * Creates a fixed pool of daemon platform threads.
+   *
+   * @param threads Number of threads in the pool
+   * @return The executor
+   */
+  public static ExecutorService newPlatformExecutor(int threads) {
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory factory =
+        runnable -> {
+          Thread thread = new Thread(runnable, "fan-out-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        };
+    return Executors.newFixedThreadPool(threads, factory);
+  }
+
+  /**
+   * Creates an executor that starts a new virtual thread for each task, if the running JDK has
+   * virtual threads.
+   *
+   * @return The executor, or empty on JDKs before 21
+   */
+  public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+    try {
+      MethodHandle factory =
+          MethodHandles.publicLookup()
+              .findStatic(
+                  Executors.class,
+                  "newVirtualThreadPerTaskExecutor",
+                  MethodType.methodType(ExecutorService.class));
+      return Optional.of((ExecutorService) factory.invoke());
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      return Optional.empty();
+    } catch (Throwable t) {
+      throw new IllegalStateException("Could not create virtual-thread executor", t);
+    }
+  }
+}
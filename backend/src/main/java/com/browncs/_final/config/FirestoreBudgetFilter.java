@@ -0,0 +1,58 @@
+package com.browncs._final.config;
+
+import com.browncs._final.service.RpcBudget;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Charges the Firestore calls made while serving each request to an {@link RpcBudget} and reports
+ * the totals.
+ *
+ * <p>Most endpoints return a CompletableFuture, so the Firestore calls finish after the first
+ * dispatch returns. Spring then dispatches the request again to write the result; the filter adds
+ * the {@code X-Firestore-Reads}, {@code X-Firestore-Writes} and {@code X-Firestore-Round-Trips}
+ * headers at that point, before the body is written. Every request's totals are logged at debug
+ * level.
+ */
+@Component
+public class FirestoreBudgetFilter extends OncePerRequestFilter {
+
+  private static final Logger logger = LoggerFactory.getLogger(FirestoreBudgetFilter.class);
+
+  private static final String BUDGET_ATTRIBUTE = RpcBudget.class.getName();
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    RpcBudget budget = (RpcBudget) request.getAttribute(BUDGET_ATTRIBUTE);
+    if (budget == null) {
+      budget = new RpcBudget();
+      request.setAttribute(BUDGET_ATTRIBUTE, budget);
+    } else {
+      // Async dispatch: the result is ready, so the counts are final
+      response.setIntHeader("X-Firestore-Reads", budget.reads());
+      response.setIntHeader("X-Firestore-Writes", budget.writes());
+      response.setIntHeader("X-Firestore-Round-Trips", budget.roundTrips());
+    }
+    try (RpcBudget.Scope scope = RpcBudget.bind(budget)) {
+      chain.doFilter(request, response);
+    } finally {
+      if (!isAsyncStarted(request)) {
+        logger.debug("{} {} Firestore {}", request.getMethod(), request.getRequestURI(), budget);
+      }
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.browncs._final.config;
+
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Trace export. Spring Boot creates a span for every HTTP request, and the services add spans for
+ * their own operations, Firestore calls and SendGrid requests. Sampled spans go to an OTLP
+ * collector when {@code management.otlp.tracing.endpoint} is set, and to a local file of JSON lines
+ * when {@code tracing.file.path} is set; both may be on at once.
+ */
+@Configuration
+public class TracingConfig {
+
+  @Bean(destroyMethod = "")
+  @ConditionalOnProperty("tracing.file.path")
+  public SpanExporter fileSpanExporter(@Value("${tracing.file.path}") Path file)
+      throws IOException {
+    // The tracer provider shuts the exporter down after flushing the last spans
+    return new JsonLinesSpanExporter(file);
+  }
+}
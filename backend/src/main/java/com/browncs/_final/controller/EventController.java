@@ -1,17 +1,28 @@
 package com.browncs._final.controller;
 
 import com.browncs._final.model.Event;
+import com.browncs._final.model.EventPage;
+import com.browncs._final.model.ImportProgress;
 import com.browncs._final.service.EventService;
+import com.browncs._final.service.FirestoreFutures;
+import com.browncs._final.service.ParticipantImportService;
 import com.browncs._final.service.SlotService;
+import jakarta.servlet.http.HttpServletRequest;
+import java.time.LocalDate;
+import java.util.ConcurrentModificationException;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 /**
  * REST controller for managing event-related operations. Handles event creation, retrieval,
- * deletion, and invitation responses.
+ * deletion, and invitation responses. Handlers return CompletableFutures so Spring MVC releases the
+ * servlet thread while Firestore calls are in flight.
  */
 @RestController
 @RequestMapping("/api")
@@ -20,15 +31,38 @@ public class EventController {
 
   @Autowired private EventService eventService;
   @Autowired private SlotService slotService;
+  @Autowired private ParticipantImportService participantImportService;
 
   /**
    * GET /events?email=... Retrieves all events associated with the given email (organizer or
    * participant).
    */
   @GetMapping("/events")
-  public List<Event> getUserEvents(@RequestParam String email)
-      throws ExecutionException, InterruptedException {
-    return this.eventService.getEventsForEmail(email);
+  public CompletableFuture<List<Event>> getUserEvents(@RequestParam String email) {
+    return this.eventService.getEventsForEmailAsync(email);
+  }
+
+  /**
+   * GET /events?email=...&limit=...[&cursor=...][&upcoming=true] Retrieves one page of the user's
+   * events, most recent first, with a cursor for the next page. With upcoming=true only events
+   * whose last available day is today or later are listed, soonest first. A bad limit or cursor
+   * returns 400.
+   */
+  @GetMapping(value = "/events", params = "limit")
+  public CompletableFuture<ResponseEntity<EventPage>> getUserEventsPage(
+      @RequestParam String email,
+      @RequestParam int limit,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "false") boolean upcoming) {
+    LocalDate notBefore = upcoming ? LocalDate.now() : null;
+    CompletableFuture<EventPage> page;
+    try {
+      page = this.eventService.listEventsForEmailAsync(email, limit, cursor, notBefore);
+    } catch (IllegalArgumentException e) {
+      return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(null));
+    }
+    return page.thenApply(ResponseEntity::ok)
+        .exceptionally(ex -> ResponseEntity.status(500).body(null));
   }
 
   /**
@@ -36,71 +70,174 @@ public class EventController {
    * corresponding slot data.
    */
   @PostMapping("/users/{email}/events")
-  public ResponseEntity<String> createEventForUser(
+  public CompletableFuture<ResponseEntity<String>> createEventForUser(
       @PathVariable String email, @RequestBody Event newEvent) {
-    try {
-      newEvent.setOrganizerEmail(email); // enforce backend trust
-      String id = this.eventService.createEvent(newEvent);
-      this.slotService.generateSlots(id, newEvent);
-      return ResponseEntity.ok("Created event with ID: " + id);
-    } catch (IllegalArgumentException e) {
-      e.printStackTrace();
-      return ResponseEntity.ok("Invalid event body: " + e.getMessage());
-    } catch (ExecutionException | InterruptedException e) {
-      e.printStackTrace();
-      return ResponseEntity.status(500)
-          .body("Server error while processing the request: " + e.getMessage());
-    } catch (Exception e) {
-      e.printStackTrace();
-      return ResponseEntity.status(500).body("Unexpected error: " + e.getMessage());
-    }
+    newEvent.setOrganizerEmail(email); // enforce backend trust
+    return this.eventService
+        .createEventAsync(newEvent)
+        .thenCompose(
+            id -> this.slotService.generateSlotsAsync(id, newEvent).thenApply(ignored -> id))
+        .thenApply(id -> ResponseEntity.ok("Created event with ID: " + id))
+        .exceptionally(
+            ex -> {
+              Throwable cause = FirestoreFutures.unwrap(ex);
+              cause.printStackTrace();
+              if (cause instanceof IllegalArgumentException) {
+                return ResponseEntity.ok("Invalid event body: " + cause.getMessage());
+              }
+              return ResponseEntity.status(500)
+                  .body("Server error while processing the request: " + cause.getMessage());
+            });
   }
 
   /** DELETE /delete/{eventId} Deletes the event with the given ID. */
   @DeleteMapping("/delete/{eventId}")
-  public ResponseEntity<String> deleteEvent(@PathVariable String eventId) {
-    try {
-      this.eventService.deleteEventById(eventId);
-      return ResponseEntity.ok("Event deleted successfully.");
-    } catch (IllegalArgumentException e) {
-      return ResponseEntity.status(404).body("Could not find event: " + e.getMessage());
-    } catch (ExecutionException | InterruptedException e) {
-      return ResponseEntity.status(500)
-          .body("Server error while processing the request: " + e.getMessage());
-    } catch (Exception e) {
-      return ResponseEntity.status(500).body("Error deleting event: " + e.getMessage());
-    }
+  public CompletableFuture<ResponseEntity<String>> deleteEvent(@PathVariable String eventId) {
+    return this.eventService
+        .deleteEventByIdAsync(eventId)
+        .thenApply(ignored -> ResponseEntity.ok("Event deleted successfully."))
+        .exceptionally(
+            ex -> {
+              Throwable cause = FirestoreFutures.unwrap(ex);
+              if (cause instanceof IllegalArgumentException) {
+                return ResponseEntity.status(404)
+                    .body("Could not find event: " + cause.getMessage());
+              }
+              return ResponseEntity.status(500)
+                  .body("Server error while processing the request: " + cause.getMessage());
+            });
   }
 
   /**
    * POST /events/{eventId}/respond?userEmail=...&status=accept|reject Records a participant's
-   * response to an event invitation.
+   * response to an event invitation. Responds 404 if the event does not exist or the user is not
+   * invited to it.
    */
   @PostMapping("/events/{eventId}/respond")
-  public ResponseEntity<String> respondToInvitation(
+  public CompletableFuture<ResponseEntity<String>> respondToInvitation(
       @PathVariable String eventId,
       @RequestParam String userEmail,
       @RequestParam String status) { // "accept" or "reject"
+    boolean isAccept = "accept".equalsIgnoreCase(status);
+    return this.eventService
+        .recordInvitationResponseAsync(eventId, userEmail, isAccept)
+        .thenApply(ignored -> ResponseEntity.ok("Invitation " + status + "ed successfully."))
+        .exceptionally(
+            ex -> {
+              Throwable cause = FirestoreFutures.unwrap(ex);
+              if (cause instanceof IllegalArgumentException) {
+                return ResponseEntity.status(404).body(cause.getMessage());
+              }
+              return ResponseEntity.status(500)
+                  .body("Error processing invitation response: " + cause.getMessage());
+            });
+  }
+
+  /**
+   * GET /events/{eventId} Retrieves the full Event object by its ID. Responses carry a strong ETag
+   * from the event's update time; a matching If-None-Match gets 304 with no body.
+   */
+  @GetMapping("/events/{eventId}")
+  public CompletableFuture<ResponseEntity<Event>> getEventById(
+      @PathVariable String eventId,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    return eventService
+        .loadEventIfModifiedAsync(eventId, ifNoneMatch)
+        .thenApply(
+            versioned ->
+                versioned.notModified()
+                    ? ResponseEntity.status(304).eTag(versioned.etag()).<Event>build()
+                    : ResponseEntity.ok().eTag(versioned.etag()).body(versioned.value()))
+        .exceptionally(
+            ex -> {
+              if (FirestoreFutures.unwrap(ex) instanceof IllegalArgumentException) {
+                return ResponseEntity.status(404).body(null);
+              }
+              return ResponseEntity.status(500).body(null);
+            });
+  }
+
+  /**
+   * PATCH /events/{eventId} Applies a JSON Merge Patch (RFC 7386) to the event, e.g. {"title":
+   * "New", "participantNecessity": {"a@x.com": 5, "b@x.com": null}}. Only changed fields are
+   * written. Invalid patches return 400, a missing event 404, and 409 if the event kept changing
+   * underneath the patch.
+   */
+  @PatchMapping(
+      value = "/events/{eventId}",
+      consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+  public CompletableFuture<ResponseEntity<String>> patchEvent(
+      @PathVariable String eventId, @RequestBody Map<String, Object> patch) {
+    CompletableFuture<Void> result;
     try {
-      boolean isAccept = "accept".equalsIgnoreCase(status);
-      this.eventService.recordInvitationResponse(eventId, userEmail, isAccept);
-      return ResponseEntity.ok("Invitation " + status + "ed successfully.");
-    } catch (Exception e) {
-      return ResponseEntity.status(500)
-          .body("Error processing invitation response: " + e.getMessage());
+      result = this.eventService.patchEventAsync(eventId, patch);
+    } catch (IllegalArgumentException e) {
+      return CompletableFuture.completedFuture(
+          ResponseEntity.badRequest().body("Invalid patch: " + e.getMessage()));
     }
+    return result
+        .thenApply(ignored -> ResponseEntity.ok("Event updated."))
+        .exceptionally(
+            ex -> {
+              Throwable cause = FirestoreFutures.unwrap(ex);
+              if (cause instanceof IllegalArgumentException) {
+                return ResponseEntity.status(404)
+                    .body("Could not find event: " + cause.getMessage());
+              }
+              if (cause instanceof ConcurrentModificationException) {
+                return ResponseEntity.status(409).body(cause.getMessage());
+              }
+              return ResponseEntity.status(500)
+                  .body("Server error while processing the request: " + cause.getMessage());
+            });
   }
 
-  /** GET /events/{eventId} Retrieves the full Event object by its ID. */
-  @GetMapping("/events/{eventId}")
-  public ResponseEntity<Event> getEventById(@PathVariable String eventId) {
+  /**
+   * POST /events/{eventId}/participants/import[?importId=...] Invites a list of participants to an
+   * existing event, as CSV (text/csv, "email[,necessity]" per line) or a JSON array of emails or
+   * {"email", "necessity"} objects. The list is read as it is uploaded, so this handler keeps its
+   * servlet thread until the import is done. Sending the same list again with the returned importId
+   * resumes an import that failed part way. Responds 400 if the event does not accept imports or
+   * the list is malformed.
+   */
+  @PostMapping(
+      value = "/events/{eventId}/participants/import",
+      consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity<ImportProgress> importParticipants(
+      @PathVariable String eventId,
+      @RequestParam(required = false) String importId,
+      HttpServletRequest request) {
     try {
-      Event event = eventService.loadEventById(eventId);
-      return ResponseEntity.ok(event);
+      return ResponseEntity.ok(
+          this.participantImportService.importParticipants(
+              eventId, importId, request.getInputStream(), request.getContentType()));
     } catch (IllegalArgumentException e) {
-      return ResponseEntity.status(404).body(null);
+      return ResponseEntity.badRequest().body(null);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return ResponseEntity.status(500).body(null);
     } catch (Exception e) {
+      e.printStackTrace();
       return ResponseEntity.status(500).body(null);
     }
   }
+
+  /**
+   * GET /events/{eventId}/participants/import/{importId} Reports how far an import has got, for
+   * polling while it runs. Responds 404 if there is no such import.
+   */
+  @GetMapping("/events/{eventId}/participants/import/{importId}")
+  public CompletableFuture<ResponseEntity<ImportProgress>> getImportProgress(
+      @PathVariable String eventId, @PathVariable String importId) {
+    return this.participantImportService
+        .getImportProgressAsync(eventId, importId)
+        .thenApply(ResponseEntity::ok)
+        .exceptionally(
+            ex -> {
+              if (FirestoreFutures.unwrap(ex) instanceof IllegalArgumentException) {
+                return ResponseEntity.status(404).body(null);
+              }
+              return ResponseEntity.status(500).body(null);
+            });
+  }
 }
@@ -0,0 +1,48 @@
+package com.browncs._final.controller;
+
+import com.browncs._final.service.EventStreamService;
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * REST controller for live event updates over Server-Sent Events. Replaces polling {@code
+ * get-preferences} and the event document with one push stream per viewer.
+ */
+@RestController
+@RequestMapping("/api/events")
+@CrossOrigin(origins = "*")
+public class EventStreamController {
+
+  @Autowired private EventStreamService eventStreamService;
+
+  @Value("${events.stream.timeout:30m}")
+  private Duration timeout;
+
+  /**
+   * GET /api/events/{eventId}/stream Opens a Server-Sent Events stream of slot and optimal slot
+   * changes for the event. Browsers resend the last received event ID in {@code Last-Event-ID} when
+   * they reconnect; it may also be passed as the {@code lastEventId} query parameter. Responds 503
+   * when the connection limit is reached.
+   */
+  @GetMapping(value = "/{eventId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamEvent(
+      @PathVariable String eventId,
+      @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+      @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+    String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+    SseEmitter emitter = new SseEmitter(this.timeout.toMillis());
+    try {
+      this.eventStreamService.subscribe(eventId, lastEventId, emitter);
+    } catch (RejectedExecutionException e) {
+      return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "5").build();
+    }
+    return ResponseEntity.ok(emitter);
+  }
+}
@@ -1,11 +1,18 @@
 package com.browncs._final.controller;
 
+import com.browncs._final.model.OptimizationResult;
 import com.browncs._final.model.SlotBlock;
 import com.browncs._final.service.OptimizationService;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * REST controller for handling optimization requests. Exposes an endpoint to compute and return
@@ -18,18 +25,84 @@ public class OptimizationController {
 
   @Autowired private OptimizationService optimizationService;
 
+  @Value("${optimization.budget.max:60s}")
+  private Duration maxBudget;
+
+  @Value("${optimization.stream.timeout:2m}")
+  private Duration streamTimeout;
+
   /**
    * GET /api/events/{eventId}/optimize Runs the optimization algorithm for a given event and
    * returns a ranked list of SlotBlocks. The algorithm considers participant availability and
    * necessity weights.
    */
   @GetMapping("/{eventId}/optimize")
-  public ResponseEntity<List<SlotBlock>> optimizeEvent(@PathVariable String eventId) {
+  public CompletableFuture<ResponseEntity<List<SlotBlock>>> optimizeEvent(
+      @PathVariable String eventId) {
+    return this.optimizationService
+        .optimizeAndSaveAsync(eventId)
+        .thenApply(ResponseEntity::ok)
+        .exceptionally(ex -> ResponseEntity.status(500).body(null));
+  }
+
+  /**
+   * GET /api/events/{eventId}/optimize?budgetMs=... Like the above, but stops scoring after about
+   * {@code budgetMs} milliseconds and returns the best blocks found so far, with whether they are
+   * exact. Responds 400 if the budget is not positive or exceeds {@code optimization.budget.max}.
+   */
+  @GetMapping(value = "/{eventId}/optimize", params = "budgetMs")
+  public CompletableFuture<ResponseEntity<OptimizationResult>> optimizeEventWithinBudget(
+      @PathVariable String eventId, @RequestParam long budgetMs) {
+    if (!isValidBudget(budgetMs)) {
+      return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+    }
+    return this.optimizationService
+        .optimizeAndSaveAsync(eventId, Duration.ofMillis(budgetMs))
+        .thenApply(ResponseEntity::ok)
+        .exceptionally(ex -> ResponseEntity.status(500).body(null));
+  }
+
+  /**
+   * GET /api/events/{eventId}/optimize/stream?budgetMs=... Server-Sent Events variant of the
+   * budgeted optimize. Sends a {@code progress} event each time the best blocks so far improve,
+   * then a {@code result} event once they are saved, or once they are found if the budget has run
+   * out, and closes the stream. A stream for an event and budget already being optimized joins that
+   * run.
+   */
+  @GetMapping(value = "/{eventId}/optimize/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamOptimization(
+      @PathVariable String eventId, @RequestParam long budgetMs) {
+    if (!isValidBudget(budgetMs)) {
+      return ResponseEntity.badRequest().build();
+    }
+    SseEmitter emitter = new SseEmitter(this.streamTimeout.toMillis());
+    this.optimizationService
+        .optimizeAndSaveAsync(
+            eventId,
+            Duration.ofMillis(budgetMs),
+            blocks -> send(emitter, "progress", new OptimizationResult(blocks, false)))
+        .whenComplete(
+            (result, ex) -> {
+              if (ex != null) {
+                emitter.completeWithError(ex);
+                return;
+              }
+              send(emitter, "result", result);
+              emitter.complete();
+            });
+    return ResponseEntity.ok(emitter);
+  }
+
+  private boolean isValidBudget(long budgetMs) {
+    return budgetMs > 0 && budgetMs <= this.maxBudget.toMillis();
+  }
+
+  /** Sends one event; a viewer that has gone away is ignored, since the run still saves. */
+  private static void send(SseEmitter emitter, String name, Object data) {
     try {
-      List<SlotBlock> optimizedBlocks = this.optimizationService.optimizeAndSave(eventId);
-      return ResponseEntity.ok(optimizedBlocks);
-    } catch (Exception e) {
-      return ResponseEntity.status(500).body(null);
+      emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+    } catch (IOException | IllegalStateException e) {
+      // Nothing to clean up: the emitter is completed by its own error handling
     }
   }
 }
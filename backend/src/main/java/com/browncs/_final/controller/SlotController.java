@@ -1,13 +1,24 @@
 package com.browncs._final.controller;
 
+import com.browncs._final.model.HeatmapCell;
 import com.browncs._final.model.PreferenceRequest;
 import com.browncs._final.model.Slot;
+import com.browncs._final.service.FirestoreFutures;
 import com.browncs._final.service.SlotService;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 /**
  * REST controller for handling availability slot submissions and retrievals. Delegates logic to the
@@ -25,23 +36,155 @@ public class SlotController {
    * it under the given event. The request body must contain rankings and deleted slot IDs.
    */
   @PostMapping("/{eventId}/submit-preferences")
-  public ResponseEntity<String> submitPreferences(
+  public CompletableFuture<ResponseEntity<String>> submitPreferences(
       @PathVariable String eventId, @RequestBody PreferenceRequest request) {
-    try {
-      this.slotService.submitPreferences(eventId, request);
-      return ResponseEntity.ok("Preferences submitted.");
-    } catch (Exception e) {
-      throw new RuntimeException("Hmmm");
-    }
+    return this.slotService
+        .submitPreferencesAsync(eventId, request)
+        .thenApply(ignored -> ResponseEntity.ok("Preferences submitted."))
+        .exceptionally(
+            ex -> {
+              Throwable cause = FirestoreFutures.unwrap(ex);
+              if (cause instanceof IllegalArgumentException) {
+                return ResponseEntity.badRequest()
+                    .body("Invalid preferences: " + cause.getMessage());
+              }
+              return ResponseEntity.status(500)
+                  .body("Error submitting preferences: " + cause.getMessage());
+            });
   }
 
   /**
    * GET /api/events/{eventId}/get-preferences Returns all availability slots associated with the
-   * given event ID.
+   * given event ID. Responses carry a strong ETag that changes whenever any slot is written; a
+   * matching If-None-Match gets 304 without the slots being read.
    */
   @GetMapping("/{eventId}/get-preferences")
-  public ResponseEntity<List<Slot>> getPreferences(@PathVariable String eventId)
-      throws ExecutionException, InterruptedException {
-    return ResponseEntity.ok(this.slotService.getPreferences(eventId));
+  public CompletableFuture<ResponseEntity<List<Slot>>> getPreferences(
+      @PathVariable String eventId,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    return this.slotService
+        .getPreferencesIfModifiedAsync(eventId, ifNoneMatch)
+        .thenApply(
+            versioned -> {
+              ResponseEntity.BodyBuilder response =
+                  ResponseEntity.status(versioned.notModified() ? 304 : 200);
+              if (versioned.etag() != null) {
+                response.eTag(versioned.etag());
+              }
+              return response.body(versioned.value());
+            });
+  }
+
+  /**
+   * GET /api/events/{eventId}/get-preferences?occurrence=N Returns the slots of one occurrence of a
+   * recurring event, expanded from its weekly template, with participants' weekly preferences.
+   * Responds 404 if the event or the occurrence does not exist.
+   */
+  @GetMapping(value = "/{eventId}/get-preferences", params = "occurrence")
+  public CompletableFuture<ResponseEntity<List<Slot>>> getOccurrence(
+      @PathVariable String eventId, @RequestParam int occurrence) {
+    return this.slotService
+        .getOccurrenceAsync(eventId, occurrence)
+        .thenApply(ResponseEntity::ok)
+        .exceptionally(
+            ex -> {
+              if (FirestoreFutures.unwrap(ex) instanceof IllegalArgumentException) {
+                return ResponseEntity.status(404).body(null);
+              }
+              return ResponseEntity.status(500).body(null);
+            });
+  }
+
+  /**
+   * GET /api/events/{eventId}/heatmap Returns, for every slot anyone has marked, how many
+   * participants marked it, the sum of their weights and how many of them are required. Much
+   * smaller than get-preferences for viewers that only draw the heatmap. Responds 404 if the event
+   * does not exist.
+   */
+  @GetMapping("/{eventId}/heatmap")
+  public CompletableFuture<ResponseEntity<List<HeatmapCell>>> getHeatmap(
+      @PathVariable String eventId) {
+    return this.slotService
+        .getHeatmapAsync(eventId)
+        .thenApply(ResponseEntity::ok)
+        .exceptionally(
+            ex -> {
+              if (FirestoreFutures.unwrap(ex) instanceof IllegalArgumentException) {
+                return ResponseEntity.status(404).body(null);
+              }
+              return ResponseEntity.status(500).body(null);
+            });
+  }
+
+  /**
+   * GET /api/events/{eventId}/submissions/{email} Returns a participant's own rankings as they last
+   * submitted them, timespan ID to weight, empty if they have not submitted. Responds 404 if the
+   * event does not exist.
+   */
+  @GetMapping("/{eventId}/submissions/{email}")
+  public CompletableFuture<ResponseEntity<Map<String, Integer>>> getSubmission(
+      @PathVariable String eventId, @PathVariable String email) {
+    return this.slotService
+        .getSubmissionAsync(eventId, email)
+        .thenApply(ResponseEntity::ok)
+        .exceptionally(
+            ex -> {
+              if (FirestoreFutures.unwrap(ex) instanceof IllegalArgumentException) {
+                return ResponseEntity.status(404).body(null);
+              }
+              return ResponseEntity.status(500).body(null);
+            });
+  }
+
+  /**
+   * POST /api/events/{eventId}/submissions/{email}/calendar?timeZone=... Submits a participant's
+   * availability from an uploaded iCalendar (.ics) file, sent as the body (text/calendar) or as the
+   * "file" part of a form. Slots their calendar shows them free in are ranked available, and the
+   * rest cleared. Times in the calendar are moved into timeZone, the zone of the event's grid,
+   * which must be given since the grid's times carry no zone of their own. Returns the submitted
+   * rankings, or 400 if the event does not exist, the zone is missing or unknown or the body is not
+   * a calendar.
+   */
+  @PostMapping(
+      value = "/{eventId}/submissions/{email}/calendar",
+      consumes = {"text/calendar", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+  public ResponseEntity<Map<String, Integer>> importCalendar(
+      @PathVariable String eventId,
+      @PathVariable String email,
+      @RequestParam String timeZone,
+      HttpServletRequest request)
+      throws IOException {
+    return importCalendar(eventId, email, timeZone, request.getInputStream());
+  }
+
+  /**
+   * The form upload variant of {@link #importCalendar(String, String, String, HttpServletRequest)}.
+   */
+  @PostMapping(
+      value = "/{eventId}/submissions/{email}/calendar",
+      consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public ResponseEntity<Map<String, Integer>> importCalendarFile(
+      @PathVariable String eventId,
+      @PathVariable String email,
+      @RequestParam String timeZone,
+      @RequestParam("file") MultipartFile file)
+      throws IOException {
+    return importCalendar(eventId, email, timeZone, file.getInputStream());
+  }
+
+  private ResponseEntity<Map<String, Integer>> importCalendar(
+      String eventId, String email, String timeZone, InputStream ics) {
+    try {
+      return ResponseEntity.ok(
+          this.slotService.importCalendar(eventId, email, ics, ZoneId.of(timeZone)));
+    } catch (IllegalArgumentException | DateTimeException e) {
+      return ResponseEntity.badRequest().body(null);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return ResponseEntity.status(500).body(null);
+    } catch (Exception e) {
+      e.printStackTrace();
+      return ResponseEntity.status(500).body(null);
+    }
   }
 }
@@ -1,5 +1,6 @@
 package com.browncs._final.model;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import lombok.Data;
@@ -7,6 +8,9 @@ import lombok.Data;
 /**
  * Represents a scheduling event, including all metadata for participants, availability,
  * preferences, and computed optimal time slots.
+ *
+ * <p>Events with {@code membersTracked} set do not store the participant fields themselves; they
+ * are filled in from the event's members subcollection when it is loaded.
  */
 @Data
 public class Event {
@@ -24,6 +28,16 @@ public class Event {
   private String endTime;
   private int durationMinutes;
 
+  // Length of each slot in minutes (a divisor of 60); absent on older events, which use 15
+  private Integer slotMinutes;
+
+  // Repeats the available days as a weekly template; absent on one-off events
+  private Recurrence recurrence;
+
+  // Latest of availableDays (of the last occurrence, for recurring events), kept in sync by the
+  // backend so listings can order and filter by it
+  private String lastAvailableDay;
+
   // Importance of each participant's attendance (e.g., 1 = preferred, 5 = required)
   private Map<String, Integer> participantNecessity; // "email" → 0, 1, 2
 
@@ -32,16 +46,37 @@ public class Event {
 
   /**
    * Participant-submitted availability preferences. Structure: email → (timespanId →
-   * preferenceValue) Example: "alice@example.com" → { "10:00-10:30@2025-05-01": 3 }
+   * preferenceValue) Example: "alice@example.com" → { "10:00-10:30@2025-05-01": 3 }. Absent on
+   * events with {@code submissionsTracked} set, which keep each participant's rankings in the
+   * submissions subcollection and list who has submitted in {@code respondedParticipants}.
    */
   private Map<String, Map<String, Integer>> submittedPreferences;
 
+  // Participants who have submitted preferences, for events that keep them in the submissions
+  // subcollection; filled in from the members subcollection when the event is loaded
+  private List<String> respondedParticipants;
+
   // Explicitly rejected invitations
   private List<String> rejectedParticipants;
 
   // Explicitly accepted invitations
   private List<String> confirmedParticipants;
 
+  // Server time of the last change to the slot subcollection; versions get-preferences responses
+  private Date preferencesUpdatedAt;
+
+  // Whether the heatmap subcollection has been kept up to date since the event was created
+  private Boolean heatmapTracked;
+
+  // Whether membership is kept in the members subcollection rather than in the fields above
+  private Boolean membersTracked;
+
+  // Server time of the last necessity change made to the members subcollection
+  private Date membersUpdatedAt;
+
+  // Whether submitted preferences are kept in the submissions subcollection
+  private Boolean submissionsTracked;
+
   // Lombok creates setters and getters
   public Event() {}
 }
@@ -0,0 +1,21 @@
+package com.browncs._final.model;
+
+import java.util.List;
+import lombok.Data;
+
+/**
+ * One page of a user's events. {@code nextCursor} is an opaque token for the following page, or
+ * null on the last page.
+ */
+@Data
+public class EventPage {
+  private List<Event> events;
+  private String nextCursor;
+
+  public EventPage() {}
+
+  public EventPage(List<Event> events, String nextCursor) {
+    this.events = events;
+    this.nextCursor = nextCursor;
+  }
+}
@@ -0,0 +1,27 @@
+package com.browncs._final.model;
+
+import lombok.Data;
+
+/**
+ * Aggregate availability of one slot, for drawing an event's heatmap without downloading every
+ * participant's weights.
+ */
+@Data
+public class HeatmapCell {
+  private String slotId; // "2025-04-28T09:00"
+  // Participants who marked the slot
+  private int participants;
+  // Sum of their weights
+  private long weightedSum;
+  // How many of them are required
+  private int required;
+
+  public HeatmapCell() {}
+
+  public HeatmapCell(String slotId, int participants, long weightedSum, int required) {
+    this.slotId = slotId;
+    this.participants = participants;
+    this.weightedSum = weightedSum;
+    this.required = required;
+  }
+}
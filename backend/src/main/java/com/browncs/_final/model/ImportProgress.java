@@ -0,0 +1,33 @@
+package com.browncs._final.model;
+
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * Progress of a bulk import of invitees into an event, stored as {@code
+ * events/{eventId}/imports/{importId}} and updated in the same batch as each chunk of members, so
+ * it never runs ahead of what has been written. Resending the same list with the import's ID
+ * resumes after the last committed chunk.
+ */
+@Data
+public class ImportProgress {
+  private String importId;
+  private String eventId;
+
+  // "running" while chunks are being committed, "done" once the whole list has been
+  private String status;
+
+  // Invitees read from the list and committed, including skipped ones; a resumed import skips them
+  private long committed;
+
+  // Invitees who became members of the event
+  private long added;
+
+  // Invitees who were already members, appeared twice, or had no valid email address
+  private long skipped;
+
+  // Server time of the last committed chunk
+  private Date updatedAt;
+
+  public ImportProgress() {}
+}
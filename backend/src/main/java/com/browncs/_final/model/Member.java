@@ -0,0 +1,29 @@
+package com.browncs._final.model;
+
+import lombok.Data;
+
+/**
+ * One participant's membership of an event, stored as {@code events/{eventId}/members/{email}} so
+ * that each participant's necessity and response can change without rewriting the event document.
+ */
+@Data
+public class Member {
+  private String email;
+
+  // Parent event, so collection-group queries over members can order by and return it
+  private String eventId;
+
+  // Importance of the participant's attendance (e.g., 1 = preferred, 5 = required), if set
+  private Integer necessity;
+
+  // "invited", "accepted" or "rejected"
+  private String status;
+
+  // Copy of the event's lastAvailableDay, so a participant's events can be listed in order
+  private String lastAvailableDay;
+
+  // Whether the participant has submitted rankings that they have not since cleared
+  private Boolean responded;
+
+  public Member() {}
+}
@@ -0,0 +1,21 @@
+package com.browncs._final.model;
+
+import java.util.List;
+import lombok.Data;
+
+/**
+ * Outcome of an optimization run under a time budget. {@code exact} is true if {@code blocks} are
+ * the top blocks of the event, and false if they are the best found before the budget ran out.
+ */
+@Data
+public class OptimizationResult {
+  private List<SlotBlock> blocks;
+  private boolean exact;
+
+  public OptimizationResult() {}
+
+  public OptimizationResult(List<SlotBlock> blocks, boolean exact) {
+    this.blocks = blocks;
+    this.exact = exact;
+  }
+}
@@ -0,0 +1,23 @@
+package com.browncs._final.model;
+
+import lombok.Data;
+
+/**
+ * Weekly recurrence of an event. The event's available days, which must fall within one week, are
+ * the template of every occurrence; occurrence N is the template moved forward by N times {@code
+ * intervalWeeks} weeks. The recurrence ends after {@code count} occurrences or with the last one
+ * starting on or before {@code until}, whichever is given.
+ */
+@Data
+public class Recurrence {
+  // Weeks between occurrences; absent means every week
+  private Integer intervalWeeks;
+
+  // Number of occurrences, including the first
+  private Integer count;
+
+  // Last date an occurrence may start on (e.g., "2025-12-19")
+  private String until;
+
+  public Recurrence() {}
+}
@@ -4,8 +4,9 @@ import java.util.Map;
 import lombok.Data;
 
 /**
- * Represents a 15-minute availability time slot for an event on a specific day. Each slot tracks
- * which participants are available and how strongly they prefer it.
+ * Represents an availability time slot for an event on a specific day, as long as the event's slot
+ * length (15 minutes unless chosen otherwise). Each slot tracks which participants are available
+ * and how strongly they prefer it.
  */
 @Data
 public class Slot {
@@ -0,0 +1,59 @@
+package com.browncs._final.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/** Commits more writes than fit in one Firestore batch. */
+final class Batches {
+
+  // Firestore's limit on the number of writes in one batch commit
+  static final int MAX_WRITES = 500;
+
+  private Batches() {}
+
+  /**
+   * Commits writes in as few batches as Firestore allows. All batches but the last are committed
+   * together; the last one, which ends with all of {@code last}, is committed once they have
+   * landed, so the effect of {@code last} is never visible before the writes queued ahead of it.
+   *
+   * @param db Firestore instance
+   * @param metrics Metrics to track the commits with
+   * @param operation Operation name for metrics
+   * @param writes Writes to queue, in order
+   * @param last Writes that must land together, and not before the others
+   * @return Future that completes once every batch has been committed
+   */
+  static CompletableFuture<Void> commit(
+      Firestore db,
+      FirestoreMetrics metrics,
+      String operation,
+      List<Consumer<WriteBatch>> writes,
+      List<Consumer<WriteBatch>> last) {
+    List<Consumer<WriteBatch>> all = new ArrayList<>(writes);
+    all.addAll(last);
+    // Start the last batch early if a full one would split last across two
+    int lastBatchStart = Math.min((all.size() - 1) / MAX_WRITES * MAX_WRITES, writes.size());
+    List<ApiFuture<List<WriteResult>>> leading = new ArrayList<>();
+    for (int from = 0; from < lastBatchStart; from += MAX_WRITES) {
+      leading.add(
+          newBatch(db, all.subList(from, Math.min(from + MAX_WRITES, lastBatchStart))).commit());
+    }
+    List<Consumer<WriteBatch>> trailing = all.subList(lastBatchStart, all.size());
+    return metrics
+        .trackAll(operation, leading)
+        .thenCompose(ignored -> metrics.track(operation, newBatch(db, trailing).commit()))
+        .thenApply(ignored -> null);
+  }
+
+  private static WriteBatch newBatch(Firestore db, List<Consumer<WriteBatch>> writes) {
+    WriteBatch batch = db.batch();
+    writes.forEach(write -> write.accept(batch));
+    return batch;
+  }
+}
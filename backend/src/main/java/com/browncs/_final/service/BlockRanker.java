@@ -0,0 +1,315 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.Event;
+import com.browncs._final.model.OptimizationResult;
+import com.browncs._final.model.Slot;
+import com.browncs._final.model.SlotBlock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Scoring core of the optimizer: ranks blocks of consecutive slots by participant weights and
+ * necessity. Works on slots already loaded from Firestore, so it can be benchmarked and tested
+ * without any Firestore access.
+ *
+ * <p>Ranking is coarse to fine. Each slot is scored once, and the slots are grouped into hourly
+ * cells. For every cell, the total score of all the slots that any block starting in the cell can
+ * reach is an upper bound on those blocks' scores. Cells are refined at full resolution in
+ * descending order of that bound, and refinement stops once no remaining cell can beat the top 5
+ * found so far, so the result is exactly what scoring every block would give.
+ *
+ * <p>Ranking can also be cut short by a deadline. Slots are scored a day at a time, the days with
+ * the most responses first, and once the deadline passes the remaining days are left out; blocks
+ * are then only found among the days already scored. Refinement stops at the deadline as well. The
+ * result is then the best found in the most promising days and cells, which is only approximate,
+ * but since those are scored and refined first it usually already holds most or all of the exact
+ * top 5.
+ *
+ * <p>Participants committed to another event at the time of a slot do not count towards its score,
+ * and a slot at which a required participant is committed elsewhere cannot be part of any block.
+ */
+public final class BlockRanker {
+
+  // Number of blocks returned
+  static final int TOP_BLOCKS = 5;
+
+  // Length of the coarse cells whose bounds decide which blocks are scored at full resolution
+  private static final int CELL_MINUTES = 60;
+
+  /** Deadline that never passes, so ranking always runs to the exact result. */
+  public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+  private BlockRanker() {}
+
+  /**
+   * Scores every block of consecutive slots and keeps the top 5. Ties go to the earlier block.
+   *
+   * @param slots All slots of the event, sorted chronologically
+   * @param event The event object containing duration, slot length and necessity mappings
+   * @return List of optimal SlotBlock objects
+   */
+  public static List<SlotBlock> rankBlocks(List<Slot> slots, Event event) {
+    return rankBlocks(slots, event, Commitments.NONE);
+  }
+
+  /**
+   * Variant of {@link #rankBlocks(List, Event)} that avoids participants' commitments to other
+   * events.
+   *
+   * @param slots All slots of the event, sorted chronologically
+   * @param event The event object containing duration, slot length and necessity mappings
+   * @param busy Participants' commitments to other events
+   * @return List of optimal SlotBlock objects
+   */
+  public static List<SlotBlock> rankBlocks(List<Slot> slots, Event event, Commitments busy) {
+    return rankBlocks(slots, event, busy, NO_DEADLINE, null).getBlocks();
+  }
+
+  /**
+   * Anytime variant of {@link #rankBlocks(List, Event, Commitments)}: stops scoring and refining
+   * once {@code deadline} passes and returns the best blocks found so far. Scoring goes on past the
+   * deadline until a day holding a block has been scored, so at least one block is found if the
+   * event has one within a day.
+   *
+   * @param slots All slots of the event, sorted chronologically
+   * @param event The event object containing duration, slot length and necessity mappings
+   * @param busy Participants' commitments to other events
+   * @param deadline {@link System#nanoTime()} at which to stop, or {@link #NO_DEADLINE}
+   * @param progress Receives the best blocks so far each time a refined cell improves them, or null
+   * @return The best blocks found, and whether they are exact
+   */
+  public static OptimizationResult rankBlocks(
+      List<Slot> slots,
+      Event event,
+      Commitments busy,
+      long deadline,
+      Consumer<List<SlotBlock>> progress) {
+    int slotMinutes = SlotGranularity.of(event);
+    // e.g., 60 min event = 4 slots of 15 minutes
+    int blockSize = SlotGranularity.slotsPerBlock(event.getDurationMinutes(), slotMinutes);
+    // Events created without necessity levels treat every participant as preferred
+    Map<String, Integer> necessity =
+        event.getParticipantNecessity() != null ? event.getParticipantNecessity() : Map.of();
+    int n = slots.size();
+    if (blockSize < 1 || n < blockSize) {
+      return new OptimizationResult(List.of(), true);
+    }
+
+    // 1. Score each slot once, a day at a time in order of responses, until time runs out; slots
+    // of days left out count as blocked. A block's score is a difference of prefix sums
+    List<String> busyRequired =
+        busy.users().stream().filter(user -> necessity.getOrDefault(user, 1) == 5).toList();
+    long[] starts = new long[n];
+    for (int i = 0; i < n; i++) {
+      starts[i] = SlotIdCodec.parseSlotId(slots.get(i).getId());
+    }
+    boolean[] blocked = new boolean[n];
+    Arrays.fill(blocked, true);
+    double[] scores = new double[n];
+    boolean nonNegative = true;
+    boolean exact = true;
+    boolean found = false;
+    for (int[] day : daysByResponses(slots, starts)) {
+      if (found && deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0) {
+        exact = false;
+        break;
+      }
+      int length = 0; // consecutive usable slots up to the current one
+      for (int i = day[0]; i < day[1]; i++) {
+        long start = starts[i];
+        long end = start + slotMinutes;
+        boolean unusable = false;
+        for (String user : busyRequired) {
+          unusable |= busy.overlaps(user, start, end);
+        }
+        blocked[i] = unusable;
+        scores[i] = computeSlotScore(slots.get(i), necessity, busy, start, end);
+        nonNegative &= scores[i] >= 0;
+        boolean follows = i > day[0] && start - starts[i - 1] == slotMinutes;
+        length = unusable ? 0 : follows ? length + 1 : 1;
+        found |= length >= blockSize;
+      }
+    }
+    double[] prefix = new double[n + 1];
+    for (int i = 0; i < n; i++) {
+      prefix[i + 1] = prefix[i] + scores[i];
+    }
+    int[] run = consecutiveRuns(starts, blocked, slotMinutes);
+
+    // 2. Group block starts into hourly cells and bound the best block starting in each
+    List<int[]> cells = new ArrayList<>(); // {first slot, last slot + 1}
+    for (int i = 0; i < n; ) {
+      long hour = Math.floorDiv(starts[i], CELL_MINUTES);
+      int from = i;
+      while (i < n && Math.floorDiv(starts[i], CELL_MINUTES) == hour) i++;
+      cells.add(new int[] {from, i});
+    }
+    double[] bounds = new double[cells.size()];
+    Integer[] order = new Integer[cells.size()];
+    for (int c = 0; c < cells.size(); c++) {
+      int[] cell = cells.get(c);
+      bounds[c] = prefix[Math.min(n, cell[1] - 1 + blockSize)] - prefix[cell[0]];
+      order[c] = c;
+    }
+    // Negative weights would make the bounds unsound, so then every cell is refined
+    if (nonNegative) {
+      Arrays.sort(order, Comparator.comparingDouble((Integer c) -> -bounds[c]));
+    }
+
+    // 3. Refine cells at full resolution until none can enter the top 5, or time runs out
+    TopBlocks top = new TopBlocks(TOP_BLOCKS);
+    for (int c : order) {
+      if (nonNegative && top.excludes(bounds[c])) break;
+      if (deadline != NO_DEADLINE && top.size > 0 && System.nanoTime() - deadline >= 0) {
+        exact = false;
+        break;
+      }
+      int[] cell = cells.get(c);
+      int changes = top.changes;
+      for (int i = cell[0]; i < cell[1]; i++) {
+        if (run[i] >= blockSize) {
+          top.offer(i, prefix[i + blockSize] - prefix[i]);
+        }
+      }
+      if (progress != null && top.changes != changes) {
+        progress.accept(toSlotBlocks(slots, top, blockSize));
+      }
+    }
+
+    // 4. Return the top 5, best first
+    return new OptimizationResult(toSlotBlocks(slots, top, blockSize), exact);
+  }
+
+  /** Converts the best blocks found so far to SlotBlocks, best first. */
+  private static List<SlotBlock> toSlotBlocks(List<Slot> slots, TopBlocks top, int blockSize) {
+    List<SlotBlock> results = new ArrayList<>();
+    for (int k = 0; k < top.size; k++) {
+      int start = top.starts[k];
+      SlotBlock slotBlock = new SlotBlock();
+      slotBlock.setSlotIds(
+          slots.subList(start, start + blockSize).stream().map(Slot::getId).toList());
+      slotBlock.setTotalScore(top.scores[k]);
+      results.add(slotBlock);
+    }
+    return results;
+  }
+
+  /**
+   * Splits the slots into days, ordered by the number of responses in their slots, most first, and
+   * otherwise chronologically. Responses are counted without scoring, so ordering is cheap.
+   *
+   * @param slots All slots of the event, sorted chronologically
+   * @param starts Epoch minute each slot starts at
+   * @return For each day, its first slot, last slot + 1 and number of responses
+   */
+  private static List<int[]> daysByResponses(List<Slot> slots, long[] starts) {
+    List<int[]> days = new ArrayList<>();
+    for (int i = 0; i < starts.length; ) {
+      long day = Math.floorDiv(starts[i], SlotIdCodec.MINUTES_PER_DAY);
+      int from = i;
+      int count = 0;
+      while (i < starts.length && Math.floorDiv(starts[i], SlotIdCodec.MINUTES_PER_DAY) == day) {
+        Map<String, Integer> weights = slots.get(i++).getParticipantWeights();
+        count += weights == null ? 0 : weights.size();
+      }
+      days.add(new int[] {from, i, count});
+    }
+    days.sort(Comparator.comparingInt((int[] day) -> -day[2]));
+    return days;
+  }
+
+  /**
+   * Counts, for each slot, how many consecutive usable slots start with it, so a block of N slots
+   * starting at i is valid exactly when the count at i is at least N.
+   *
+   * @param starts Epoch minute each slot starts at, in chronological order
+   * @param blocked Slots no block may include
+   * @param slotMinutes Length of each slot
+   * @return Length of the run of consecutive slots starting at each index
+   */
+  private static int[] consecutiveRuns(long[] starts, boolean[] blocked, int slotMinutes) {
+    int n = starts.length;
+    int[] run = new int[n];
+    for (int i = n - 1; i >= 0; i--) {
+      if (blocked[i]) continue;
+      run[i] = i + 1 < n && starts[i + 1] - starts[i] == slotMinutes ? run[i + 1] + 1 : 1;
+    }
+    return run;
+  }
+
+  /**
+   * Computes a weighted score for a slot based on participant preferences and their assigned
+   * necessity levels, leaving out participants committed elsewhere during the slot. A block's score
+   * is the sum of its slots' scores.
+   *
+   * @param slot The slot to score
+   * @param necessity Map from participant email to importance level (3 = optional, 5 = required)
+   * @param busy Participants' commitments to other events
+   * @param start Epoch minute the slot starts at
+   * @param end Epoch minute the slot ends at
+   * @return The score of the slot
+   */
+  private static double computeSlotScore(
+      Slot slot, Map<String, Integer> necessity, Commitments busy, long start, long end) {
+    double total = 0.0;
+    Map<String, Integer> weights = slot.getParticipantWeights();
+    if (weights == null) return total;
+
+    for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+      String email = entry.getKey();
+      if (busy.overlaps(email, start, end)) continue;
+      int weight = entry.getValue();
+      int importance = necessity.getOrDefault(email, 1); // default "preferred"
+
+      double factor =
+          switch (importance) {
+            case 5 -> 1.5; // required
+            case 3 -> 0.5; // optional
+            default -> 1.0; // preferred
+          };
+
+      total += weight * factor;
+    }
+    return total;
+  }
+
+  /** The best blocks seen so far, best first; ties keep the earlier block. */
+  private static final class TopBlocks {
+    final int[] starts;
+    final double[] scores;
+    int size;
+    // Number of blocks added so far, to tell whether the top blocks changed
+    int changes;
+
+    TopBlocks(int capacity) {
+      this.starts = new int[capacity];
+      this.scores = new double[capacity];
+    }
+
+    /** Whether no block scoring at most {@code bound} can be added. */
+    boolean excludes(double bound) {
+      return this.size == this.scores.length && bound < this.scores[this.size - 1];
+    }
+
+    void offer(int start, double score) {
+      int at = this.size;
+      while (at > 0 && beats(start, score, at - 1)) at--;
+      if (at == this.scores.length) return;
+      int moved = Math.min(this.size, this.scores.length - 1) - at;
+      System.arraycopy(this.starts, at, this.starts, at + 1, moved);
+      System.arraycopy(this.scores, at, this.scores, at + 1, moved);
+      this.starts[at] = start;
+      this.scores[at] = score;
+      this.size = Math.min(this.size + 1, this.scores.length);
+      this.changes++;
+    }
+
+    private boolean beats(int start, double score, int k) {
+      return score > this.scores[k] || (score == this.scores[k] && start < this.starts[k]);
+    }
+  }
+}
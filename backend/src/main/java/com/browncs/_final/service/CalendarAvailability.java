@@ -0,0 +1,642 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.Event;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A participant's availability on an event's grid, read from an iCalendar (.ics) file of their busy
+ * time.
+ *
+ * <p>The calendar is read one line at a time, and each of its events is dropped once it has been
+ * marked on the grid, so only the grid itself and the event being read are held in memory however
+ * large the calendar is. A grid slot is busy if any opaque, non-cancelled {@code VEVENT} or busy
+ * {@code FREEBUSY} period overlaps it, even in part; every other slot of the grid is free. Times
+ * with a {@code TZID} or in UTC are moved into the zone the grid is read in, and floating times and
+ * dates are taken as they are.
+ *
+ * <p>Recurring events are expanded over the grid's days only. {@code RRULE}s with a {@code FREQ} of
+ * {@code DAILY} or {@code WEEKLY} (with {@code BYDAY}), {@code MONTHLY} or {@code YEARLY}, with
+ * {@code INTERVAL}, {@code COUNT} or {@code UNTIL}, and {@code EXDATE}s are followed. A rule with
+ * any other {@code BY...} part, such as {@code BYDAY=2TU} on a monthly rule, is skipped like a
+ * malformed event rather than expanded on the wrong days. An occurrence moved with a {@code
+ * RECURRENCE-ID} is marked at its new time without freeing its original one.
+ *
+ * <p>For a recurring event, the grid is the event's weekly template (see {@link Occurrences}).
+ */
+final class CalendarAvailability {
+
+  // Weight of a free slot: "available", between "if necessary" and "preferred"
+  static final int AVAILABLE = 3;
+
+  // Bound on the occurrences of one recurring event looked at, past which it is not expanded
+  private static final int MAX_EXPANSION = 10_000;
+
+  private static final int MINUTES_PER_DAY = SlotIdCodec.MINUTES_PER_DAY;
+
+  // Epoch day of each of the grid's days → its row
+  private final TreeMap<Long, Integer> days = new TreeMap<>();
+  private final List<Long> rows = new ArrayList<>();
+  private final int start;
+  private final int slotMinutes;
+  private final int slotsPerDay;
+  private final ZoneId zone;
+  private final BitSet busy = new BitSet();
+
+  private CalendarAvailability(Event event, ZoneId zone) {
+    this.start = SlotIdCodec.parseTime(event.getStartTime());
+    this.slotMinutes = SlotGranularity.of(event);
+    this.slotsPerDay = (SlotIdCodec.parseTime(event.getEndTime()) - this.start) / this.slotMinutes;
+    this.zone = zone;
+    for (String day : event.getAvailableDays()) {
+      long epochDay = SlotIdCodec.parseDate(day);
+      if (!this.days.containsKey(epochDay)) {
+        this.days.put(epochDay, this.rows.size());
+        this.rows.add(epochDay);
+      }
+    }
+  }
+
+  /**
+   * @param event The event, with at least its available days, time window and slot length
+   * @param zone Zone of the event's times
+   * @return The event's grid, all free
+   */
+  static CalendarAvailability of(Event event, ZoneId zone) {
+    if (event.getAvailableDays() == null || event.getStartTime() == null) {
+      throw new IllegalArgumentException("Event has no availability grid");
+    }
+    return new CalendarAvailability(event, zone);
+  }
+
+  /**
+   * Marks the busy time of a calendar on the grid.
+   *
+   * @param ics The calendar, read as it arrives
+   * @return This grid
+   * @throws IllegalArgumentException if the body is not an iCalendar file
+   * @throws IOException if the body cannot be read
+   */
+  CalendarAvailability read(InputStream ics) throws IOException {
+    new Reader().read(new BufferedReader(new InputStreamReader(ics, StandardCharsets.UTF_8)));
+    return this;
+  }
+
+  /**
+   * @return The free time of the grid as submitted preferences: timespan ID of each run of free
+   *     slots, e.g. "09:00-10:30@2025-05-01", to {@link #AVAILABLE}
+   */
+  Map<String, Integer> rankings() {
+    Map<String, Integer> rankings = new LinkedHashMap<>();
+    for (int row = 0; row < this.rows.size(); row++) {
+      String date = SlotIdCodec.formatDate(this.rows.get(row));
+      int base = row * this.slotsPerDay;
+      int slot = this.busy.nextClearBit(base);
+      while (slot < base + this.slotsPerDay) {
+        int next = this.busy.nextSetBit(slot);
+        int end = next < 0 ? base + this.slotsPerDay : Math.min(next, base + this.slotsPerDay);
+        rankings.put(
+            SlotIdCodec.formatTime(this.start + (slot - base) * this.slotMinutes)
+                + "-"
+                + SlotIdCodec.formatTime(this.start + (end - base) * this.slotMinutes)
+                + "@"
+                + date,
+            AVAILABLE);
+        slot = this.busy.nextClearBit(end);
+      }
+    }
+    return rankings;
+  }
+
+  /** Marks the slots overlapping {@code [from, to)}, in epoch minutes of the grid's zone. */
+  void markBusy(long from, long to) {
+    if (to <= from) return;
+    Map<Long, Integer> overlapping =
+        this.days.subMap(
+            Math.floorDiv(from, MINUTES_PER_DAY),
+            true,
+            Math.floorDiv(to - 1, MINUTES_PER_DAY),
+            true);
+    int end = this.start + this.slotsPerDay * this.slotMinutes;
+    overlapping.forEach(
+        (epochDay, row) -> {
+          long dayStart = epochDay * MINUTES_PER_DAY;
+          long first = Math.max(from - dayStart, this.start);
+          long last = Math.min(to - dayStart, end);
+          if (first >= last) return;
+          int base = row * this.slotsPerDay;
+          int firstSlot = (int) (first - this.start) / this.slotMinutes;
+          int lastSlot = (int) ((last - this.start + this.slotMinutes - 1) / this.slotMinutes);
+          this.busy.set(base + firstSlot, base + lastSlot);
+        });
+  }
+
+  /** First epoch day of the grid. */
+  private long firstDay() {
+    return this.days.isEmpty() ? 0 : this.days.firstKey();
+  }
+
+  /** Last epoch day of the grid. */
+  private long lastDay() {
+    return this.days.isEmpty() ? -1 : this.days.lastKey();
+  }
+
+  private static long epochMinute(LocalDateTime time) {
+    return time.toEpochSecond(ZoneOffset.UTC) / 60;
+  }
+
+  /** Reads the calendar's content lines, holding only the component being read. */
+  private final class Reader {
+    private boolean calendar;
+    // Nesting inside the current VEVENT, e.g. 1 inside one of its VALARMs; -1 outside any VEVENT
+    private int depth = -1;
+    private boolean freeBusy;
+    private CalendarEvent event;
+
+    void read(BufferedReader in) throws IOException {
+      String line = null;
+      // The line being unfolded, only once it has a continuation, so most lines are not copied
+      StringBuilder folded = null;
+      String next;
+      while ((next = in.readLine()) != null) {
+        // A line starting with a space or tab continues the one before it
+        if (line != null && !next.isEmpty() && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+          if (folded == null) {
+            folded = new StringBuilder(line);
+          }
+          folded.append(next, 1, next.length());
+          continue;
+        }
+        if (line != null) {
+          property(folded == null ? line : folded.toString());
+        }
+        line = next;
+        folded = null;
+      }
+      if (line != null) {
+        property(folded == null ? line : folded.toString());
+      }
+      if (!this.calendar) {
+        throw new IllegalArgumentException("Not an iCalendar file");
+      }
+    }
+
+    private void property(String line) {
+      int colon = valueStart(line);
+      if (colon < 0) return;
+      int semicolon = line.indexOf(';');
+      String name = line.substring(0, semicolon < 0 || semicolon > colon ? colon : semicolon);
+      String params = semicolon < 0 || semicolon > colon ? "" : line.substring(semicolon, colon);
+      String value = line.substring(colon + 1).trim();
+
+      if (name.equalsIgnoreCase("BEGIN")) {
+        begin(value);
+      } else if (name.equalsIgnoreCase("END")) {
+        end(value);
+      } else if (this.depth == 0) {
+        this.event.property(name.toUpperCase(), params, value);
+      } else if (this.freeBusy && name.equalsIgnoreCase("FREEBUSY")) {
+        freeBusy(params, value);
+      }
+    }
+
+    private void begin(String component) {
+      if (component.equalsIgnoreCase("VCALENDAR")) {
+        this.calendar = true;
+      } else if (this.depth >= 0) {
+        this.depth++;
+      } else if (component.equalsIgnoreCase("VEVENT")) {
+        this.depth = 0;
+        this.event = new CalendarEvent();
+      } else if (component.equalsIgnoreCase("VFREEBUSY")) {
+        this.freeBusy = true;
+      }
+    }
+
+    private void end(String component) {
+      if (this.depth > 0) {
+        this.depth--;
+      } else if (this.depth == 0 && component.equalsIgnoreCase("VEVENT")) {
+        this.depth = -1;
+        this.event.mark();
+        this.event = null;
+      } else if (component.equalsIgnoreCase("VFREEBUSY")) {
+        this.freeBusy = false;
+      }
+    }
+
+    /** Marks each busy period of a FREEBUSY property, e.g. 20250501T090000Z/PT1H. */
+    private void freeBusy(String params, String value) {
+      String type = param(params, "FBTYPE");
+      if (type != null && type.equalsIgnoreCase("FREE")) return;
+      for (String period : value.split(",")) {
+        int slash = period.indexOf('/');
+        if (slash < 0) continue;
+        try {
+          ZonedDateTime from = dateTime(period.substring(0, slash), null);
+          String until = period.substring(slash + 1);
+          ZonedDateTime to =
+              until.startsWith("P") ? from.plus(duration(until)) : dateTime(until, null);
+          markBusy(local(from), local(to));
+        } catch (DateTimeException | IllegalArgumentException e) {
+          // Skip a malformed period, as calendar clients do
+        }
+      }
+    }
+  }
+
+  /**
+   * The properties of the {@code VEVENT} being read, and then its occurrences. Floating times are
+   * kept in the grid's zone, so moving them into it leaves them unchanged.
+   */
+  private final class CalendarEvent {
+    private String startValue;
+    private String startParams = "";
+    private String endValue;
+    private String endParams = "";
+    private String durationValue;
+    private String rule;
+    private final List<String[]> exceptions = new ArrayList<>();
+    private boolean free;
+
+    void property(String name, String params, String value) {
+      switch (name) {
+        case "DTSTART" -> {
+          this.startValue = value;
+          this.startParams = params;
+        }
+        case "DTEND" -> {
+          this.endValue = value;
+          this.endParams = params;
+        }
+        case "DURATION" -> this.durationValue = value;
+        case "RRULE" -> this.rule = value;
+        case "EXDATE" -> this.exceptions.add(new String[] {params, value});
+        case "TRANSP" -> this.free |= value.equalsIgnoreCase("TRANSPARENT");
+        case "STATUS" -> this.free |= value.equalsIgnoreCase("CANCELLED");
+        default -> {}
+      }
+    }
+
+    /** Marks the time of each occurrence that falls on the grid. */
+    void mark() {
+      if (this.free || this.startValue == null) return;
+      try {
+        if (this.rule == null && isOffGrid()) return;
+        ZonedDateTime first = dateTime(this.startValue, this.startParams);
+        boolean allDay = isDate(this.startValue, this.startParams);
+        Duration length;
+        if (this.endValue != null) {
+          length = Duration.between(first, dateTime(this.endValue, this.endParams));
+        } else if (this.durationValue != null) {
+          length = duration(this.durationValue);
+        } else {
+          length = allDay ? Duration.ofDays(1) : Duration.ZERO;
+        }
+        if (length.isNegative() || length.isZero()) return;
+        if (this.rule == null) {
+          markOccurrence(first, length);
+        } else {
+          expand(first, length, Rule.parse(this.rule, zone));
+        }
+      } catch (DateTimeException | IllegalArgumentException e) {
+        // Skip a malformed event, as calendar clients do
+      }
+    }
+
+    /**
+     * Whether a one-off event is more than a day from the grid by its dates alone, so no zone can
+     * move it onto the grid. Most events of a large calendar are, and are skipped without working
+     * out their times.
+     */
+    private boolean isOffGrid() {
+      long startDay = date(this.startValue).toEpochDay();
+      if (startDay > lastDay() + 1) return true;
+      long endDay;
+      if (this.endValue != null) {
+        endDay = date(this.endValue).toEpochDay();
+      } else if (this.durationValue != null) {
+        endDay = startDay + duration(this.durationValue).toDays() + 1;
+      } else {
+        endDay = startDay + 1;
+      }
+      return endDay < firstDay() - 1;
+    }
+
+    private void markOccurrence(ZonedDateTime start, Duration length) {
+      markBusy(local(start), local(start.plus(length)));
+    }
+
+    /**
+     * Marks the occurrences of a recurring event. Without a COUNT, occurrences that end before the
+     * grid's first day are skipped over arithmetically rather than one by one, so a long-running
+     * daily event costs no more than a one-off one.
+     */
+    private void expand(ZonedDateTime first, Duration length, Rule rule) {
+      Set<Long> excluded = excludedStarts();
+      LocalDate firstDate = first.toLocalDate();
+      long gridEnd = (lastDay() + 1) * MINUTES_PER_DAY;
+      long period = rule.periodDays();
+      long skipped = 0;
+      if (period > 0 && rule.count == null) {
+        // A margin of a week and a day covers BYDAY offsets and zone differences
+        long lead = firstDay() - firstDate.toEpochDay() - length.toDays() - 8;
+        skipped = Math.max(0, lead / period);
+      }
+      int seen = 0;
+      for (long k = skipped; seen < MAX_EXPANSION; k++) {
+        LocalDate periodStart = rule.periodStart(firstDate, k);
+        if (periodStart == null) break;
+        boolean past = false;
+        for (int offset : rule.offsets(firstDate)) {
+          seen++;
+          LocalDate date = periodStart.plusDays(offset);
+          if (date.isBefore(firstDate) || !rule.matches(date, firstDate)) continue;
+          ZonedDateTime start = ZonedDateTime.of(date, first.toLocalTime(), first.getZone());
+          if (rule.isAfterUntil(start)) {
+            return;
+          }
+          if (rule.count != null && rule.counted++ >= rule.count) {
+            return;
+          }
+          if (local(start) >= gridEnd) {
+            past = true;
+            break;
+          }
+          if (!excluded.contains(start.toEpochSecond())) {
+            markOccurrence(start, length);
+          }
+        }
+        if (past) return;
+      }
+    }
+
+    private Set<Long> excludedStarts() {
+      Set<Long> starts = new HashSet<>();
+      for (String[] exception : this.exceptions) {
+        for (String value : exception[1].split(",")) {
+          try {
+            starts.add(dateTime(value.trim(), exception[0]).toEpochSecond());
+          } catch (DateTimeException | IllegalArgumentException e) {
+            // Ignore a malformed exception date
+          }
+        }
+      }
+      return starts;
+    }
+  }
+
+  /**
+   * The parts of an RRULE that are followed; {@link #parse} rejects a rule with any other BY part.
+   */
+  private static final class Rule {
+    private final String frequency;
+    private final int interval;
+    private final Integer count;
+    private final ZonedDateTime until;
+    private final LocalDate untilDate;
+    private final Set<DayOfWeek> byDay = new HashSet<>();
+    private int counted;
+
+    private Rule(
+        String frequency, int interval, Integer count, ZonedDateTime until, LocalDate untilDate) {
+      this.frequency = frequency;
+      this.interval = interval;
+      this.count = count;
+      this.until = until;
+      this.untilDate = untilDate;
+    }
+
+    static Rule parse(String value, ZoneId floating) {
+      String frequency = null;
+      int interval = 1;
+      Integer count = null;
+      ZonedDateTime until = null;
+      LocalDate untilDate = null;
+      String byDay = null;
+      for (String part : value.split(";")) {
+        int equals = part.indexOf('=');
+        if (equals < 0) continue;
+        String key = part.substring(0, equals).toUpperCase();
+        String v = part.substring(equals + 1);
+        switch (key) {
+          case "FREQ" -> frequency = v.toUpperCase();
+          case "INTERVAL" -> interval = Math.max(1, Integer.parseInt(v));
+          case "COUNT" -> count = Integer.parseInt(v);
+          case "UNTIL" -> {
+            if (isDate(v, "")) {
+              untilDate = date(v);
+            } else {
+              until = dateTime(v, null, floating);
+            }
+          }
+          case "BYDAY" -> byDay = v;
+          default -> {
+            if (key.startsWith("BY")) {
+              throw new IllegalArgumentException("Unsupported RRULE part " + key);
+            }
+          }
+        }
+      }
+      if (frequency == null) {
+        throw new IllegalArgumentException("RRULE without FREQ");
+      }
+      Rule rule = new Rule(frequency, interval, count, until, untilDate);
+      if (byDay != null) {
+        if (!frequency.equals("WEEKLY") && !frequency.equals("DAILY")) {
+          throw new IllegalArgumentException("Unsupported BYDAY on a " + frequency + " RRULE");
+        }
+        for (String day : byDay.split(",")) {
+          // Plain weekdays only; an ordinal such as 2TU has no meaning in a week or a day
+          rule.byDay.add(weekday(day.trim().toUpperCase()));
+        }
+      }
+      return rule;
+    }
+
+    /** Days between the starts of consecutive periods, or 0 for calendar months and years. */
+    long periodDays() {
+      return switch (this.frequency) {
+        case "DAILY" -> this.interval;
+        case "WEEKLY" -> 7L * this.interval;
+        default -> 0;
+      };
+    }
+
+    /** Start of the k-th period; for weeks with BYDAY, the Monday of the week. */
+    LocalDate periodStart(LocalDate first, long k) {
+      return switch (this.frequency) {
+        case "DAILY" -> first.plusDays(k * this.interval);
+        case "WEEKLY" ->
+            (this.byDay.isEmpty() ? first : first.with(DayOfWeek.MONDAY))
+                .plusWeeks(k * this.interval);
+        case "MONTHLY" -> first.plusMonths(k * this.interval);
+        case "YEARLY" -> first.plusYears(k * this.interval);
+        default -> k == 0 ? first : null;
+      };
+    }
+
+    /** Days after each period's start that occurrences fall on. */
+    int[] offsets(LocalDate first) {
+      if (!this.frequency.equals("WEEKLY") || this.byDay.isEmpty()) {
+        return new int[] {0};
+      }
+      return this.byDay.stream().mapToInt(day -> day.getValue() - 1).sorted().toArray();
+    }
+
+    /** Whether an occurrence falls on a date; months and years skip dates they cannot fall on. */
+    boolean matches(LocalDate date, LocalDate first) {
+      if (this.frequency.equals("DAILY") && !this.byDay.isEmpty()) {
+        return this.byDay.contains(date.getDayOfWeek());
+      }
+      if (this.frequency.equals("MONTHLY") || this.frequency.equals("YEARLY")) {
+        return date.getDayOfMonth() == first.getDayOfMonth();
+      }
+      return true;
+    }
+
+    boolean isAfterUntil(ZonedDateTime start) {
+      if (this.untilDate != null) {
+        return start.toLocalDate().isAfter(this.untilDate);
+      }
+      return this.until != null && start.isAfter(this.until);
+    }
+
+    private static DayOfWeek weekday(String code) {
+      return switch (code) {
+        case "MO" -> DayOfWeek.MONDAY;
+        case "TU" -> DayOfWeek.TUESDAY;
+        case "WE" -> DayOfWeek.WEDNESDAY;
+        case "TH" -> DayOfWeek.THURSDAY;
+        case "FR" -> DayOfWeek.FRIDAY;
+        case "SA" -> DayOfWeek.SATURDAY;
+        case "SU" -> DayOfWeek.SUNDAY;
+        default -> throw new IllegalArgumentException("Unknown weekday " + code);
+      };
+    }
+  }
+
+  /** A time in the grid's zone, as an epoch minute. */
+  private long local(ZonedDateTime time) {
+    return epochMinute(time.withZoneSameInstant(this.zone).toLocalDateTime());
+  }
+
+  /**
+   * Parses a DATE or DATE-TIME value: {@code 20250501}, {@code 20250501T090000Z} in UTC, or {@code
+   * 20250501T090000} in its TZID's zone or, floating, in the grid's.
+   */
+  private ZonedDateTime dateTime(String value, String params) {
+    return dateTime(value, params, this.zone);
+  }
+
+  private static ZonedDateTime dateTime(String value, String params, ZoneId floating) {
+    if (isDate(value, params)) {
+      return date(value).atStartOfDay(floating);
+    }
+    if (value.length() < 15 || value.charAt(8) != 'T') {
+      throw new DateTimeException("Invalid date-time " + value);
+    }
+    LocalDateTime time =
+        LocalDateTime.of(
+            date(value),
+            LocalTime.of(
+                digits(value, 9, 2), digits(value, 11, 2), Math.min(59, digits(value, 13, 2))));
+    if (value.endsWith("Z")) {
+      return time.atZone(ZoneOffset.UTC);
+    }
+    String tzid = param(params, "TZID");
+    if (tzid != null) {
+      try {
+        return time.atZone(ZoneId.of(tzid));
+      } catch (DateTimeException e) {
+        // A zone Java does not know, such as a Windows name, is taken as the grid's
+      }
+    }
+    return time.atZone(floating);
+  }
+
+  private static boolean isDate(String value, String params) {
+    return value.length() == 8 || "DATE".equalsIgnoreCase(param(params, "VALUE"));
+  }
+
+  private static LocalDate date(String value) {
+    return LocalDate.of(digits(value, 0, 4), digits(value, 4, 2), digits(value, 6, 2));
+  }
+
+  private static int digits(String value, int from, int count) {
+    if (value.length() < from + count) {
+      throw new DateTimeException("Invalid date-time " + value);
+    }
+    int result = 0;
+    for (int i = from; i < from + count; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        throw new DateTimeException("Invalid date-time " + value);
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  /** Parses a DURATION value, e.g. PT1H30M, P1D or P2W. */
+  private static Duration duration(String value) {
+    if (value.startsWith("-")) {
+      return Duration.ZERO;
+    }
+    String v = value.startsWith("+") ? value.substring(1) : value;
+    int weeks = v.indexOf('W');
+    if (weeks > 0) {
+      return Duration.ofDays(7L * Integer.parseInt(v.substring(1, weeks)));
+    }
+    return Duration.parse(v);
+  }
+
+  /** Index of the colon that starts a content line's value, skipping quoted parameter values. */
+  private static int valueStart(String line) {
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ':' && !quoted) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Value of a parameter in a content line's {@code ;NAME=value} parameters, unquoted. */
+  private static String param(String params, String name) {
+    if (params == null) return null;
+    for (String param : params.split(";")) {
+      int equals = param.indexOf('=');
+      if (equals > 0 && param.substring(0, equals).equalsIgnoreCase(name)) {
+        String value = param.substring(equals + 1);
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+            ? value.substring(1, value.length() - 1)
+            : value;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,214 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.SlotBlock;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Times at which users are already committed to other events, for the optimizer to avoid.
+ *
+ * <p>The index lives on each user document as a {@code commitments} map keyed by event ID. An entry
+ * holds the {@code start} and {@code end} slot IDs of the event's top optimal block and whether the
+ * user has {@code confirmed} attending. The two halves are written independently, so neither writer
+ * has to read the other's: optimizing an event writes the block to every participant's entry, and
+ * accepting an invitation sets the flag with a blind merge. Rejecting an invitation or deleting the
+ * event removes the entry. Only entries with both a block and the flag count as commitments.
+ *
+ * <p>Entries whose block ended before the day before they are read are left out and listed as
+ * expired, so the optimizer's next write to the user's entries removes them and the map does not
+ * keep every event the user has ever been part of.
+ *
+ * <p>Loaded commitments are held per user as merged, sorted intervals of epoch minutes, so an
+ * overlap check is a binary search.
+ */
+public final class Commitments {
+
+  static final String FIELD = "commitments";
+  static final String START = "start";
+  static final String END = "end";
+  static final String CONFIRMED = "confirmed";
+
+  /** No commitments at all. */
+  public static final Commitments NONE = new Commitments(Map.of(), Map.of(), Map.of());
+
+  // Per user: start and end of each committed interval, alternating, merged and sorted
+  private final Map<String, long[]> intervals;
+  // Per user: events whose entries have expired
+  private final Map<String, List<String>> expired;
+  // Per user: the stored entry for the excluded event
+  private final Map<String, Map<?, ?>> own;
+
+  private Commitments(
+      Map<String, long[]> intervals,
+      Map<String, List<String>> expired,
+      Map<String, Map<?, ?>> own) {
+    this.intervals = intervals;
+    this.expired = expired;
+    this.own = own;
+  }
+
+  /**
+   * Builds commitments from intervals given in any order; overlapping intervals are merged.
+   *
+   * @param intervals Per user, {start, end} pairs of epoch minutes
+   * @return The commitments
+   */
+  public static Commitments of(Map<String, List<long[]>> intervals) {
+    Map<String, long[]> merged = new HashMap<>();
+    intervals.forEach(
+        (user, list) -> {
+          if (list.isEmpty()) return;
+          List<long[]> sorted = new ArrayList<>(list);
+          sorted.sort(Comparator.comparingLong(interval -> interval[0]));
+          long[] flat = new long[sorted.size() * 2];
+          int size = 0;
+          for (long[] interval : sorted) {
+            if (size > 0 && interval[0] <= flat[size - 1]) {
+              flat[size - 1] = Math.max(flat[size - 1], interval[1]);
+            } else {
+              flat[size++] = interval[0];
+              flat[size++] = interval[1];
+            }
+          }
+          merged.put(user, Arrays.copyOf(flat, size));
+        });
+    return new Commitments(merged, Map.of(), Map.of());
+  }
+
+  /**
+   * Reads the commitments recorded on user documents, ignoring those for one event.
+   *
+   * @param users User documents, read with at least the {@code commitments} field
+   * @param excludeEventId Event whose own commitments should not count, usually the one being
+   *     optimized
+   * @param expiredBefore Epoch minute; entries whose block ends by then are expired
+   * @return The users' confirmed commitments to other events, their expired entries, and their
+   *     entries for the excluded event
+   */
+  static Commitments fromUsers(
+      List<DocumentSnapshot> users, String excludeEventId, long expiredBefore) {
+    Map<String, List<long[]>> intervals = new HashMap<>();
+    Map<String, List<String>> expired = new HashMap<>();
+    Map<String, Map<?, ?>> own = new HashMap<>();
+    for (DocumentSnapshot user : users) {
+      if (!user.exists() || !(user.get(FIELD) instanceof Map<?, ?> entries)) continue;
+      for (Map.Entry<?, ?> entry : entries.entrySet()) {
+        if (entry.getKey().equals(excludeEventId) && entry.getValue() instanceof Map<?, ?> stored) {
+          own.put(user.getId(), stored);
+        }
+        if (entry.getKey().equals(excludeEventId)
+            || !(entry.getValue() instanceof Map<?, ?> commitment)
+            || !(commitment.get(START) instanceof String start)
+            || !(commitment.get(END) instanceof String end)) {
+          continue;
+        }
+        long[] interval;
+        try {
+          interval = new long[] {SlotIdCodec.parseSlotId(start), SlotIdCodec.parseSlotId(end)};
+        } catch (IllegalArgumentException e) {
+          continue; // a corrupt entry must not block optimizing unrelated events
+        }
+        if (interval[1] <= expiredBefore) {
+          expired
+              .computeIfAbsent(user.getId(), id -> new ArrayList<>())
+              .add(entry.getKey().toString());
+        } else if (Boolean.TRUE.equals(commitment.get(CONFIRMED))) {
+          intervals.computeIfAbsent(user.getId(), id -> new ArrayList<>()).add(interval);
+        }
+      }
+    }
+    return new Commitments(of(intervals).intervals, expired, own);
+  }
+
+  /**
+   * The value to merge into a participant's entry after an event is optimized: the span of the top
+   * block, or deletes of both ends if no block was found.
+   *
+   * @param blocks Optimal blocks of the event, best first
+   * @param slotMinutes Slot length of the event
+   * @return Entry fields for a set with merge
+   */
+  static Map<String, Object> entryFor(List<SlotBlock> blocks, int slotMinutes) {
+    if (blocks.isEmpty() || blocks.get(0).getSlotIds().isEmpty()) {
+      return Map.of(START, FieldValue.delete(), END, FieldValue.delete());
+    }
+    List<String> slotIds = blocks.get(0).getSlotIds();
+    long end = SlotIdCodec.parseSlotId(slotIds.get(slotIds.size() - 1)) + slotMinutes;
+    return Map.of(START, slotIds.get(0), END, SlotIdCodec.formatSlotId(end));
+  }
+
+  /**
+   * Events whose entries on a user's document had expired when they were read.
+   *
+   * @param user User email
+   * @return Event IDs of the entries to remove
+   */
+  List<String> expired(String user) {
+    return this.expired.getOrDefault(user, List.of());
+  }
+
+  /**
+   * Whether a user's stored entry for the excluded event already matches an entry that would be
+   * merged into it, so writing it would change nothing.
+   *
+   * @param user User email
+   * @param entry Entry fields for a set with merge, as from {@link #entryFor}
+   * @return true if every field is already stored, and every deleted field already absent
+   */
+  boolean hasEntry(String user, Map<String, Object> entry) {
+    Map<?, ?> stored = this.own.getOrDefault(user, Map.of());
+    for (Map.Entry<String, Object> field : entry.entrySet()) {
+      Object value = stored.get(field.getKey());
+      boolean matches =
+          field.getValue().equals(FieldValue.delete())
+              ? value == null
+              : field.getValue().equals(value);
+      if (!matches) return false;
+    }
+    return true;
+  }
+
+  /** Whether no user has any commitment. */
+  public boolean isEmpty() {
+    return this.intervals.isEmpty();
+  }
+
+  /** Users with at least one commitment. */
+  public Set<String> users() {
+    return this.intervals.keySet();
+  }
+
+  /**
+   * Whether a user is committed elsewhere at any time in {@code [start, end)}.
+   *
+   * @param user User email
+   * @param start Epoch minute the range starts at
+   * @param end Epoch minute the range ends at, exclusive
+   * @return true if any of the user's commitments overlaps the range
+   */
+  public boolean overlaps(String user, long start, long end) {
+    long[] flat = this.intervals.get(user);
+    if (flat == null) return false;
+    // Find the last interval starting before the range ends; only it can overlap
+    int lo = 0;
+    int hi = flat.length / 2 - 1;
+    int last = -1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (flat[2 * mid] < end) {
+        last = mid;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return last >= 0 && flat[2 * last + 1] > start;
+  }
+}
@@ -0,0 +1,164 @@
+package com.browncs._final.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Client-side token bucket placed in front of every SendGrid call. The bucket refills at a fixed
+ * rate up to a burst capacity; callers that find it empty reserve a future token and wait for it,
+ * and once too many callers are already waiting (or the wait would exceed the configured maximum)
+ * new callers are shed with a {@link RejectedExecutionException} instead of retrying.
+ */
+@Component
+public class EmailRateLimiter {
+
+  /** Blocks the calling thread for the given number of nanoseconds. */
+  interface Sleeper {
+    void sleep(long nanos) throws InterruptedException;
+  }
+
+  private final double permitsPerNano;
+  private final double burst;
+  private final int maxQueued;
+  private final long maxWaitNanos;
+  private final LongSupplier clock;
+  private final Sleeper sleeper;
+
+  private final Counter throttled;
+  private final Counter shed;
+  private final Timer queueWait;
+
+  // Guarded by this. Tokens go negative while callers hold reservations on future tokens.
+  private double tokens;
+  private long lastRefillNanos;
+  private int waiting;
+
+  @Autowired
+  public EmailRateLimiter(
+      @Value("${email.rate-limit.permits-per-second:10}") double permitsPerSecond,
+      @Value("${email.rate-limit.burst:20}") int burst,
+      @Value("${email.rate-limit.max-queued:100}") int maxQueued,
+      @Value("${email.rate-limit.max-wait:30s}") Duration maxWait,
+      MeterRegistry registry) {
+    this(
+        permitsPerSecond,
+        burst,
+        maxQueued,
+        maxWait,
+        registry,
+        System::nanoTime,
+        nanos -> TimeUnit.NANOSECONDS.sleep(nanos));
+  }
+
+  EmailRateLimiter(
+      double permitsPerSecond,
+      int burst,
+      int maxQueued,
+      Duration maxWait,
+      MeterRegistry registry,
+      LongSupplier clock,
+      Sleeper sleeper) {
+    if (permitsPerSecond <= 0 || burst < 1 || maxQueued < 0) {
+      throw new IllegalArgumentException(
+          "Invalid email rate limit: rate="
+              + permitsPerSecond
+              + ", burst="
+              + burst
+              + ", maxQueued="
+              + maxQueued);
+    }
+    this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.burst = burst;
+    this.maxQueued = maxQueued;
+    this.maxWaitNanos = maxWait.toNanos();
+    this.clock = clock;
+    this.sleeper = sleeper;
+    this.tokens = burst;
+    this.lastRefillNanos = clock.getAsLong();
+
+    this.throttled =
+        Counter.builder("email.ratelimit.throttled")
+            .description("Email sends that had to wait for a token")
+            .register(registry);
+    this.shed =
+        Counter.builder("email.ratelimit.shed")
+            .description("Email sends rejected because the wait queue was full")
+            .register(registry);
+    this.queueWait =
+        Timer.builder("email.ratelimit.queue.wait")
+            .description("Time email sends spent waiting for a token")
+            .register(registry);
+    Gauge.builder("email.ratelimit.queue.depth", this, EmailRateLimiter::queueDepth)
+        .description("Email sends currently waiting for a token")
+        .register(registry);
+  }
+
+  /**
+   * Takes one token, waiting for the bucket to refill if it is empty.
+   *
+   * @throws RejectedExecutionException if the wait queue is full, the wait would exceed the
+   *     configured maximum, or the caller is interrupted while waiting
+   */
+  public void acquire() {
+    long waitNanos;
+    synchronized (this) {
+      long now = this.clock.getAsLong();
+      refill(now);
+      if (this.tokens >= 1) {
+        this.tokens -= 1;
+        return;
+      }
+
+      waitNanos = (long) Math.ceil((1 - this.tokens) / this.permitsPerNano);
+      if (this.waiting >= this.maxQueued || waitNanos > this.maxWaitNanos) {
+        this.shed.increment();
+        throw new RejectedExecutionException(
+            "Email rate limit exceeded: "
+                + this.waiting
+                + " sends already queued, next token in "
+                + TimeUnit.NANOSECONDS.toMillis(waitNanos)
+                + " ms");
+      }
+
+      // Reserve the next token; later callers queue up behind this reservation.
+      this.tokens -= 1;
+      this.waiting++;
+      this.throttled.increment();
+    }
+
+    try {
+      this.sleeper.sleep(waitNanos);
+      this.queueWait.record(waitNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      synchronized (this) {
+        this.tokens += 1; // hand the reservation back
+      }
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted while waiting for an email token", e);
+    } finally {
+      synchronized (this) {
+        this.waiting--;
+      }
+    }
+  }
+
+  /** Number of callers currently waiting for a token. */
+  public synchronized int queueDepth() {
+    return this.waiting;
+  }
+
+  private void refill(long now) {
+    double refilled = this.tokens + (now - this.lastRefillNanos) * this.permitsPerNano;
+    this.tokens = Math.min(this.burst, refilled);
+    this.lastRefillNanos = now;
+  }
+}
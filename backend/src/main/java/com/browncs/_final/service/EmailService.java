@@ -4,72 +4,194 @@ import com.sendgrid.*;
 import com.sendgrid.helpers.mail.Mail;
 import com.sendgrid.helpers.mail.objects.Content;
 import com.sendgrid.helpers.mail.objects.Email;
+import com.sendgrid.helpers.mail.objects.Personalization;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
  * Service responsible for sending transactional emails via SendGrid. Currently used to notify
- * participants when they are invited to an event.
+ * participants when they are invited to an event. Every send first takes a token from the {@link
+ * EmailRateLimiter} so bursts of invitations stay under SendGrid's rate limits.
  */
 @Service
 public class EmailService {
 
+  private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
+
   @Value("${SENDGRID_API_KEY}")
   private String sendGridApiKey;
 
+  // Off for load tests and local runs, so no invitation reaches SendGrid
+  @Value("${email.enabled:true}")
+  private boolean enabled;
+
+  // SendGrid's limit on the personalizations, and so recipients, of one mail/send request
+  static final int MAX_RECIPIENTS = 1000;
+
+  private final EmailRateLimiter rateLimiter;
+  private final MeterRegistry registry;
+  private final ObservationRegistry observations;
+
+  public EmailService(
+      EmailRateLimiter rateLimiter, MeterRegistry registry, ObservationRegistry observations) {
+    this.rateLimiter = rateLimiter;
+    this.registry = registry;
+    this.observations = observations;
+  }
+
   /**
    * Sends an invitation email to the specified address informing them they've been added to an
    * event.
    *
    * @param toEmail The recipient's email address
    * @param eventName The name of the event to include in the invitation
+   * @return true if SendGrid accepted the email, false if it was shed by the rate limiter, failed,
+   *     or email is disabled
+   */
+  public boolean sendEventInvite(String toEmail, String eventName) {
+    return sendEventInvites(List.of(toEmail), eventName) == 1;
+  }
+
+  /**
+   * Sends the invitation email to many addresses at once, with one SendGrid request per {@value
+   * #MAX_RECIPIENTS} of them rather than one per address. Each recipient gets their own
+   * personalization, so no one sees the others' addresses, and each request takes one token from
+   * the rate limiter.
+   *
+   * @param toEmails The recipients' email addresses
+   * @param eventName The name of the event to include in the invitation
+   * @return Number of recipients whose invitation SendGrid accepted
    */
-  public void sendEventInvite(String toEmail, String eventName) {
-    Email from = new Email("CUSoon.notifications@gmail.com");
-    String subject = "You've been added to the event: " + eventName;
-    Email to = new Email(toEmail);
-    Content content =
-        new Content(
-            "text/html",
-            "<!DOCTYPE html>"
-                + "<html>"
-                + "<head>"
-                + "  <style>"
-                + "    @import url('https://fonts.googleapis.com/css2?family=Poppins:wght@400;600&display=swap');"
-                + "    body { font-family: 'Poppins', sans-serif; background-color: #f9f9f9; padding: 20px; color: #333; }"
-                + "    .container { background: #fff; padding: 20px; border-radius: 8px; box-shadow: 0 2px 8px rgba(0,0,0,0.05); }"
-                + "    h2 { color: #0044cc; }"
-                + "    .footer { margin-top: 30px; font-size: 0.9em; color: #666; }"
-                + "  </style>"
-                + "</head>"
-                + "<body>"
-                + "  <div class='container'>"
-                + "    <h2>You’ve Been Invited!</h2>"
-                + "    <p>Hello,</p>"
-                + "    <p>You’ve been invited to join the event: <strong>\""
-                + eventName
-                + "\"</strong>.</p>"
-                + "    <p>Please log in to your CUSoon account to view details, RSVP, and coordinate with other attendees.</p>"
-                + "    <p>Thanks for using <strong>CUSoon</strong> — a Beacon product proudly built by CognitivEdge to help you stay connected and organized.</p>"
-                + "    <p>If you have any questions, feel free to contact our support team.</p>"
-                + "    <p class='footer'>Best regards,<br>The CUSoon Team<br><a href='https://www.cusoon.app'>www.cusoon.app</a></p>"
-                + "  </div>"
-                + "</body>"
-                + "</html>");
-    Mail mail = new Mail(from, subject, to, content);
+  public int sendEventInvites(List<String> toEmails, String eventName) {
+    int accepted = 0;
+    for (int from = 0; from < toEmails.size(); from += MAX_RECIPIENTS) {
+      List<String> recipients =
+          toEmails.subList(from, Math.min(from + MAX_RECIPIENTS, toEmails.size()));
+      if (send(recipients, eventName)) {
+        accepted += recipients.size();
+      }
+    }
+    return accepted;
+  }
+
+  /**
+   * Sends one invitation request to up to {@value #MAX_RECIPIENTS} recipients.
+   *
+   * @return true if SendGrid accepted it
+   */
+  private boolean send(List<String> recipients, String eventName) {
+    if (!this.enabled) {
+      countSend("disabled", recipients.size());
+      return false;
+    }
+    Mail mail = new Mail();
+    mail.setFrom(new Email("CUSoon.notifications@gmail.com"));
+    mail.setSubject("You've been added to the event: " + eventName);
+    mail.addContent(inviteContent(eventName));
+    for (String recipient : recipients) {
+      Personalization personalization = new Personalization();
+      personalization.addTo(new Email(recipient));
+      mail.addPersonalization(personalization);
+    }
+
+    try {
+      rateLimiter.acquire();
+    } catch (RejectedExecutionException ex) {
+      logger.warn("Email to {} shed by rate limiter", describe(recipients), ex);
+      countSend("shed", recipients.size());
+      return false;
+    }
 
     SendGrid sg = new SendGrid(sendGridApiKey);
     Request request = new Request();
 
+    Observation observation =
+        Observation.createNotStarted("sendgrid.request", this.observations)
+            .contextualName("sendgrid mail/send")
+            .start();
     try {
       request.setMethod(Method.POST);
       request.setEndpoint("mail/send");
       request.setBody(mail.build());
       Response response = sg.api(request);
-      System.out.println("Email sent: Status Code = " + response.getStatusCode());
+      boolean accepted = response.getStatusCode() / 100 == 2;
+      if (accepted) {
+        logger.debug("Email to {} sent: status {}", describe(recipients), response.getStatusCode());
+      } else {
+        logger.warn(
+            "Email to {} rejected: status {}, body {}",
+            describe(recipients),
+            response.getStatusCode(),
+            response.getBody());
+      }
+      recordRequest(observation, (response.getStatusCode() / 100) + "xx");
+      countSend(accepted ? "sent" : "rejected", recipients.size());
+      return accepted;
     } catch (IOException ex) {
-      System.err.println("Failed to send email: " + ex.getMessage());
+      logger.warn("Failed to send email to {}", describe(recipients), ex);
+      observation.error(ex);
+      recordRequest(observation, "io_error");
+      countSend("error", recipients.size());
+      return false;
     }
   }
+
+  /** The recipient for log messages, or how many there are. */
+  private static String describe(List<String> recipients) {
+    return recipients.size() == 1 ? recipients.get(0) : recipients.size() + " recipients";
+  }
+
+  /** The HTML body of the invitation to an event. */
+  private static Content inviteContent(String eventName) {
+    return new Content(
+        "text/html",
+        "<!DOCTYPE html>"
+            + "<html>"
+            + "<head>"
+            + "  <style>"
+            + "    @import url('https://fonts.googleapis.com/css2?family=Poppins:wght@400;600&display=swap');"
+            + "    body { font-family: 'Poppins', sans-serif; background-color: #f9f9f9; padding: 20px; color: #333; }"
+            + "    .container { background: #fff; padding: 20px; border-radius: 8px; box-shadow: 0 2px 8px rgba(0,0,0,0.05); }"
+            + "    h2 { color: #0044cc; }"
+            + "    .footer { margin-top: 30px; font-size: 0.9em; color: #666; }"
+            + "  </style>"
+            + "</head>"
+            + "<body>"
+            + "  <div class='container'>"
+            + "    <h2>You’ve Been Invited!</h2>"
+            + "    <p>Hello,</p>"
+            + "    <p>You’ve been invited to join the event: <strong>\""
+            + eventName
+            + "\"</strong>.</p>"
+            + "    <p>Please log in to your CUSoon account to view details, RSVP, and coordinate with other attendees.</p>"
+            + "    <p>Thanks for using <strong>CUSoon</strong> — a Beacon product proudly built by CognitivEdge to help you stay connected and organized.</p>"
+            + "    <p>If you have any questions, feel free to contact our support team.</p>"
+            + "    <p class='footer'>Best regards,<br>The CUSoon Team<br><a href='https://www.cusoon.app'>www.cusoon.app</a></p>"
+            + "  </div>"
+            + "</body>"
+            + "</html>");
+  }
+
+  /** Ends the observation of one SendGrid API call, tagged with its status class. */
+  private void recordRequest(Observation observation, String status) {
+    observation.lowCardinalityKeyValue("status", status).stop();
+  }
+
+  /** Counts invitations by outcome: sent, rejected by SendGrid, error, shed, or disabled. */
+  private void countSend(String outcome, int invitations) {
+    Counter.builder("email.sends")
+        .description("Invitation emails by outcome")
+        .tag("outcome", outcome)
+        .register(this.registry)
+        .increment(invitations);
+  }
 }
@@ -1,32 +1,70 @@
 package com.browncs._final.service;
 
 import com.browncs._final.model.Event;
+import com.browncs._final.model.EventPage;
+import com.browncs._final.model.Member;
 import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.Counter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 /**
  * Service responsible for managing event creation, retrieval, updates, deletion, and user
  * invitation responses. Interacts with Firestore and handles participant organization and state
  * tracking.
+ *
+ * <p>Each operation has an {@code ...Async} variant that composes the Firestore futures without
+ * blocking; the synchronous methods simply wait on those.
  */
 @Service
 public class EventService {
 
+  /** Top-level fields a merge patch may touch; the rest are derived or have dedicated flows. */
+  private static final Set<String> PATCHABLE_FIELDS =
+      Set.of("title", "durationMinutes", "participantNecessity");
+
+  private static final int MAX_PAGE_SIZE = 100;
+
+  private static final int PATCH_ATTEMPTS = 5;
+  private static final Duration PATCH_BACKOFF = Duration.ofMillis(20);
+
   private final Firestore db;
   private final EmailService emailService;
+  private final Executor fanOutExecutor;
+  private final FirestoreMetrics metrics;
 
-  public EventService(Firestore db, EmailService emailService) {
+  public EventService(
+      Firestore db,
+      EmailService emailService,
+      @Qualifier("fanOutExecutor") Executor fanOutExecutor,
+      FirestoreMetrics metrics) {
     this.db = db;
     this.emailService = emailService;
+    this.fanOutExecutor = fanOutExecutor;
+    this.metrics = metrics;
   }
 
   /**
@@ -37,23 +75,229 @@ public class EventService {
    */
   public List<Event> getEventsForEmail(String email)
       throws ExecutionException, InterruptedException {
-    Query query =
-        this.db
-            .collection("events")
-            .where(
-                Filter.or(
-                    Filter.equalTo("organizerEmail", email),
-                    Filter.arrayContains("participantEmails", email)));
+    return FirestoreFutures.await(getEventsForEmailAsync(email));
+  }
+
+  /**
+   * Asynchronous variant of {@link #getEventsForEmail(String)}.
+   *
+   * <p>Events the user organizes, and older events that list them as a participant, are found by
+   * one query of the events; the events they are a {@link Members member} of by a collection-group
+   * query alongside it, whose events are then read in one batch get. Events that keep their
+   * membership in members documents carry only the user's own membership; load the event for all of
+   * it.
+   *
+   * @param email The user email to query
+   * @return Future list of events associated with the email
+   */
+  public CompletableFuture<List<Event>> getEventsForEmailAsync(String email) {
+    Query query = this.db.collection("events").where(involving(email));
 
     ApiFuture<QuerySnapshot> future = query.get();
-    return future.get().getDocuments().stream()
-        .map(
-            doc -> {
-              Event event = doc.toObject(Event.class);
+    CompletableFuture<QuerySnapshot> memberships =
+        this.metrics.track(
+            "members.list", Members.forUser(db, email, null, Query.Direction.DESCENDING).get());
+    return this.metrics
+        .track("events.list", future)
+        .thenCombine(
+            memberships,
+            (snapshot, members) -> {
+              List<Listed> listed = new ArrayList<>();
+              for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+                Event event = doc.toObject(Event.class);
+                event.setId(doc.getId());
+                listed.add(new Listed(event.getLastAvailableDay(), event.getId(), event, null));
+              }
+              return merge(listed, members.getDocuments());
+            })
+        .thenCompose(this::loadListed);
+  }
+
+  /**
+   * An event in a listing, found either by a query of the events or through a membership whose
+   * event has not been read yet.
+   */
+  private record Listed(String day, String id, Event event, DocumentSnapshot membership) {}
+
+  /**
+   * Adds the events of memberships to those found by a query of the events. A membership of an
+   * event that is already listed is attached to it instead.
+   *
+   * @param listed Events found by a query of the events
+   * @param memberships Member documents of the user
+   * @return Every listed event, once
+   */
+  private static List<Listed> merge(
+      List<Listed> listed, List<? extends DocumentSnapshot> memberships) {
+    Map<String, Listed> byId = new HashMap<>();
+    listed.forEach(entry -> byId.put(entry.id(), entry));
+    List<Listed> merged = new ArrayList<>(listed);
+    for (DocumentSnapshot membership : memberships) {
+      String eventId = membership.getString(Members.EVENT_ID);
+      Listed known = byId.get(eventId);
+      if (known != null) {
+        Members.attach(known.event(), List.of(membership));
+      } else {
+        merged.add(
+            new Listed(
+                membership.getString(Members.LAST_AVAILABLE_DAY), eventId, null, membership));
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Reads the events of listed memberships in one batch get, keeping the listing's order. Events
+   * that do not exist, because their creation failed part way, are left out.
+   *
+   * @param listed Listed events
+   * @return Future events, each with at least the user's own membership
+   */
+  private CompletableFuture<List<Event>> loadListed(List<Listed> listed) {
+    DocumentReference[] pending =
+        listed.stream()
+            .filter(entry -> entry.event() == null)
+            .map(entry -> this.db.collection("events").document(entry.id()))
+            .toArray(DocumentReference[]::new);
+    CompletableFuture<List<DocumentSnapshot>> loaded =
+        pending.length == 0
+            ? CompletableFuture.completedFuture(List.of())
+            : this.metrics.track("events.get", this.db.getAll(pending));
+    return loaded.thenApply(
+        docs -> {
+          Map<String, DocumentSnapshot> byId = new HashMap<>();
+          docs.forEach(doc -> byId.put(doc.getId(), doc));
+          List<Event> events = new ArrayList<>();
+          for (Listed entry : listed) {
+            Event event = entry.event();
+            if (event == null) {
+              DocumentSnapshot doc = byId.get(entry.id());
+              if (doc == null || !doc.exists()) continue;
+              event = doc.toObject(Event.class);
               event.setId(doc.getId());
-              return event;
+              Members.attach(event, List.of(entry.membership()));
+            }
+            events.add(event);
+          }
+          return events;
+        });
+  }
+
+  /**
+   * Retrieves one page of the events the given email is organizing or participating in, ordered by
+   * their last available day (most recent first, or soonest first when only upcoming events are
+   * requested) and then by ID. Each page is one ordered query of the events and one of the user's
+   * {@link Members memberships}, both resuming after the cursor and run in parallel, then a batch
+   * get of the events of the memberships on the page, so its cost depends on the page size rather
+   * than on how many events the user has. As with {@link #getEventsForEmailAsync(String)}, events
+   * that keep their membership in members documents carry only the user's own membership. Events
+   * stored before {@code lastAvailableDay} was kept are listed once {@link
+   * LastAvailableDayMigration} has run.
+   *
+   * @param email The user email to query
+   * @param limit Maximum number of events on the page (1 to {@value #MAX_PAGE_SIZE})
+   * @param cursor Cursor from the previous page, or null for the first page
+   * @param notBefore If set, only events whose last available day is on or after it
+   * @return Future page of events with the cursor for the next page
+   * @throws IllegalArgumentException if the limit is out of range or the cursor is malformed
+   */
+  public CompletableFuture<EventPage> listEventsForEmailAsync(
+      String email, int limit, String cursor, LocalDate notBefore) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    Filter filter = involving(email);
+    Query.Direction direction = Query.Direction.DESCENDING;
+    String from = notBefore == null ? null : notBefore.toString();
+    if (from != null) {
+      filter = Filter.and(filter, Filter.greaterThanOrEqualTo("lastAvailableDay", from));
+      direction = Query.Direction.ASCENDING;
+    }
+
+    CollectionReference events = this.db.collection("events");
+    Query query =
+        events
+            .where(filter)
+            .orderBy("lastAvailableDay", direction)
+            .orderBy(FieldPath.documentId(), direction)
+            .limit(limit + 1); // one extra to tell whether another page follows
+    Query memberships = Members.forUser(this.db, email, from, direction).limit(limit + 1);
+    if (cursor != null) {
+      String[] position = decodeCursor(cursor);
+      query = query.startAfter(position[0], events.document(position[1]));
+      memberships = memberships.startAfter(position[0], position[1]);
+    }
+
+    Comparator<Listed> order = Comparator.comparing(Listed::day).thenComparing(Listed::id);
+    Comparator<Listed> pageOrder = notBefore == null ? order.reversed() : order;
+    CompletableFuture<QuerySnapshot> members =
+        this.metrics.track("members.page", memberships.get());
+    return this.metrics
+        .track("events.page", query.get())
+        .thenCombine(
+            members,
+            (snapshot, memberSnapshot) -> {
+              List<Listed> listed = new ArrayList<>();
+              for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+                Event event = doc.toObject(Event.class);
+                event.setId(doc.getId());
+                listed.add(new Listed(event.getLastAvailableDay(), event.getId(), event, null));
+              }
+              // Each query holds its own first limit + 1, so the first limit of both are among them
+              List<Listed> merged = merge(listed, memberSnapshot.getDocuments());
+              merged.sort(pageOrder);
+              boolean more = merged.size() > limit || memberSnapshot.size() > limit;
+              return new PageOfListed(merged.subList(0, Math.min(limit, merged.size())), more);
             })
-        .toList();
+        .thenCompose(
+            page ->
+                loadListed(page.listed())
+                    .thenApply(
+                        loaded -> {
+                          String next = null;
+                          if (page.more() && !page.listed().isEmpty()) {
+                            Listed last = page.listed().get(page.listed().size() - 1);
+                            next = encodeCursor(last.day(), last.id());
+                          }
+                          return new EventPage(loaded, next);
+                        }));
+  }
+
+  /** A page of a listing before the events of its memberships are read. */
+  private record PageOfListed(List<Listed> listed, boolean more) {}
+
+  /** Events the email organizes or participates in. */
+  private static Filter involving(String email) {
+    return Filter.or(
+        Filter.equalTo("organizerEmail", email), Filter.arrayContains("participantEmails", email));
+  }
+
+  /** The latest of the given ISO dates, or null if there are none. */
+  static String lastDay(List<String> days) {
+    if (days == null || days.isEmpty()) {
+      return null;
+    }
+    return Collections.max(days); // ISO-8601 dates sort lexicographically
+  }
+
+  private static String encodeCursor(String lastAvailableDay, String eventId) {
+    String position = lastAvailableDay + "|" + eventId;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String[] decodeCursor(String cursor) {
+    try {
+      String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = position.split("\\|", 2);
+      if (parts.length != 2 || parts[1].isEmpty()) {
+        throw new IllegalArgumentException("Invalid cursor");
+      }
+      return parts;
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor", e);
+    }
   }
 
   /**
@@ -64,42 +308,114 @@ public class EventService {
    * @return ID of the newly created event
    */
   public String createEvent(Event event) throws ExecutionException, InterruptedException {
+    return FirestoreFutures.await(createEventAsync(event));
+  }
+
+  /**
+   * Asynchronous variant of {@link #createEvent(Event)}. The participants become {@link Members
+   * members} of the event rather than fields of its document. Invitation emails are sent in
+   * parallel on the fan-out executor once everything is written, so neither servlet nor Firestore
+   * threads wait on SendGrid.
+   *
+   * @param event Event object to be saved
+   * @return Future ID of the newly created event
+   */
+  public CompletableFuture<String> createEventAsync(Event event) {
+    String lastDay;
+    try {
+      SlotGranularity.validate(event);
+      // A recurring event is listed until its last occurrence
+      lastDay =
+          event.getRecurrence() == null
+              ? lastDay(event.getAvailableDays())
+              : Occurrences.of(event).lastDay();
+    } catch (IllegalArgumentException e) {
+      return CompletableFuture.failedFuture(e);
+    }
     DocumentReference eventRef = this.db.collection("events").document(); // Auto-ID
     event.setId(eventRef.getId());
+    event.setLastAvailableDay(lastDay);
+    event.setHeatmapTracked(true);
+    event.setSubmissionsTracked(true);
+    List<String> participants = event.getParticipantEmails();
+    List<Member> members = Members.detach(event);
 
-    db.runTransaction(
-            transaction -> {
-              // 1. Create the event document
-              transaction.set(eventRef, event);
-
-              // 2. Update organizer's eventsOrganized
-              DocumentReference organizerRef =
-                  this.db.collection("users").document(event.getOrganizerEmail());
-              transaction.set(
-                  organizerRef,
-                  Map.of("eventsOrganized", FieldValue.arrayUnion(event.getId())),
-                  SetOptions.merge());
-
-              // 3. Update each participant's eventsParticipating
-              for (String participant : event.getParticipantEmails()) {
-                DocumentReference participantRef =
-                    this.db.collection("users").document(participant);
-                transaction.set(
-                    participantRef,
-                    Map.of("eventsParticipating", FieldValue.arrayUnion(event.getId())),
-                    SetOptions.merge());
-              }
-
-              return null;
-            })
-        .get();
+    return this.metrics.observe(
+        "events.create",
+        KeyValues.of(
+            "event.id", event.getId(), "participant.count", String.valueOf(participants.size())),
+        () -> insertEvent(eventRef, event, participants, members));
+  }
 
-    // Send emails
-    for (String participant : event.getParticipantEmails()) {
-      emailService.sendEventInvite(participant, event.getTitle());
+  /**
+   * Writes the members and the participants' user references, then the event and the organizer's
+   * reference, then sends the invitations. There are no reads, so the writes go in plain batches,
+   * as many as the participants need. The event document comes last, so the event never exists
+   * without all of its members; members left behind by a creation that failed part way are ignored,
+   * as their event does not exist.
+   */
+  private CompletableFuture<String> insertEvent(
+      DocumentReference eventRef, Event event, List<String> participants, List<Member> members) {
+    List<Consumer<WriteBatch>> writes = new ArrayList<>();
+    for (Member member : members) {
+      // 1. Create the member and update the participant's eventsParticipating
+      DocumentReference memberRef = Members.ref(eventRef, member.getEmail());
+      DocumentReference participantRef = this.db.collection("users").document(member.getEmail());
+      writes.add(batch -> batch.set(memberRef, member));
+      writes.add(
+          batch ->
+              batch.set(
+                  participantRef,
+                  Map.of("eventsParticipating", FieldValue.arrayUnion(event.getId())),
+                  SetOptions.merge()));
     }
 
-    return event.getId();
+    // 2. Create the event document and update organizer's eventsOrganized
+    DocumentReference organizerRef =
+        this.db.collection("users").document(event.getOrganizerEmail());
+    List<Consumer<WriteBatch>> last =
+        List.of(
+            batch -> batch.set(eventRef, event),
+            batch ->
+                batch.set(
+                    organizerRef,
+                    Map.of("eventsOrganized", FieldValue.arrayUnion(event.getId())),
+                    SetOptions.merge()));
+
+    return Batches.commit(this.db, this.metrics, "event.create", writes, last)
+        .thenCompose(ignored -> sendInvites(participants, event.getTitle()))
+        .thenApply(ignored -> event.getId());
+  }
+
+  /**
+   * Sends the invitations as one bulk send on the fan-out executor, so neither servlet nor
+   * Firestore threads wait on SendGrid. The send takes one rate-limiter token per {@value
+   * EmailService#MAX_RECIPIENTS} participants rather than one per participant, so a large event is
+   * not shed by the limiter's queue. Invitations that were not accepted, because they were shed,
+   * rejected or failed, are counted in {@code invites.unsent}.
+   *
+   * @param participants Emails to invite
+   * @param title Event title to include in the invitation
+   * @return Future number of participants whose invitation was not accepted
+   */
+  private CompletableFuture<Integer> sendInvites(List<String> participants, String title) {
+    return this.metrics.observe(
+        "invites.send",
+        KeyValues.of("participant.count", String.valueOf(participants.size())),
+        () ->
+            CompletableFuture.supplyAsync(
+                    () -> emailService.sendEventInvites(participants, title), fanOutExecutor)
+                .thenApply(
+                    accepted -> {
+                      int unsent = participants.size() - accepted;
+                      if (unsent > 0) {
+                        Counter.builder("invites.unsent")
+                            .description("Invitations of new events that were not accepted")
+                            .register(this.metrics.registry())
+                            .increment(unsent);
+                      }
+                      return unsent;
+                    }));
   }
 
   /**
@@ -109,44 +425,110 @@ public class EventService {
    * @param eventId The ID of the event to delete
    */
   public void deleteEventById(String eventId) throws ExecutionException, InterruptedException {
+    FirestoreFutures.await(deleteEventByIdAsync(eventId));
+  }
+
+  /**
+   * Asynchronous variant of {@link #deleteEventById(String)}. The event document is deleted in a
+   * transaction first, so a failure part way never leaves an event without its members. All of its
+   * subcollections and the participants' references are cleaned up once that has committed, in
+   * batches that each stay within Firestore's write limit however many members the event has.
+   *
+   * @param eventId The ID of the event to delete
+   * @return Future that completes once the event and everything under it has been deleted
+   */
+  public CompletableFuture<Void> deleteEventByIdAsync(String eventId) {
     DocumentReference eventRef = this.db.collection("events").document(eventId);
+    return this.metrics
+        .track("event.delete", deleteEventTransaction(eventRef, eventId))
+        .thenCompose(snapshot -> deleteEventContents(eventRef, eventId, snapshot));
+  }
 
-    // 0. Delete all slots BEFORE the transaction
-    ApiFuture<QuerySnapshot> slotsFuture = eventRef.collection("slots").get();
-    List<QueryDocumentSnapshot> slots = slotsFuture.get().getDocuments();
-    for (QueryDocumentSnapshot slot : slots) {
-      slot.getReference().delete();
-    }
+  /**
+   * Deletes the event document and removes it from the organizer's {@code eventsOrganized}.
+   *
+   * @return Future snapshot of the event as it was before the delete
+   * @throws IllegalArgumentException (in the future) if the event does not exist
+   */
+  private ApiFuture<DocumentSnapshot> deleteEventTransaction(
+      DocumentReference eventRef, String eventId) {
+    return db.runTransaction(
+        transaction -> {
+          DocumentSnapshot snapshot = transaction.get(eventRef).get();
+          if (!snapshot.exists()) {
+            throw new IllegalArgumentException("Event not found: " + eventId);
+          }
 
-    // 1. Transaction to delete event and update user references
-    db.runTransaction(
-            transaction -> {
-              DocumentSnapshot snapshot = transaction.get(eventRef).get();
-              if (!snapshot.exists()) {
-                throw new IllegalArgumentException("Event not found: " + eventId);
-              }
+          // Delete the event document
+          transaction.delete(eventRef);
 
-              Event event = snapshot.toObject(Event.class);
+          // Remove from organizer's eventsOrganized
+          DocumentReference organizerRef =
+              this.db.collection("users").document(snapshot.getString("organizerEmail"));
+          transaction.update(organizerRef, "eventsOrganized", FieldValue.arrayRemove(eventId));
 
-              // Delete the event document
-              transaction.delete(eventRef);
+          return snapshot;
+        });
+  }
 
-              // Remove from organizer's eventsOrganized
-              DocumentReference organizerRef =
-                  this.db.collection("users").document(event.getOrganizerEmail());
-              transaction.update(organizerRef, "eventsOrganized", FieldValue.arrayRemove(eventId));
+  /**
+   * Deletes the slots, submissions, imports, members and {@link Heatmap} days of a deleted event,
+   * and removes it from each participant's {@code eventsParticipating} and commitments.
+   *
+   * @param snapshot The event as it was before the delete
+   */
+  private CompletableFuture<Void> deleteEventContents(
+      DocumentReference eventRef, String eventId, DocumentSnapshot snapshot) {
+    boolean membersTracked = Members.isTracked(snapshot);
+    List<CompletableFuture<QuerySnapshot>> lists =
+        List.of(
+            this.metrics.track("slots.list", eventRef.collection("slots").get()),
+            this.metrics.track(
+                "submissions.list", eventRef.collection(Submissions.COLLECTION).get()),
+            this.metrics.track(
+                "imports.list", eventRef.collection(ParticipantImportService.COLLECTION).get()),
+            this.metrics.track("members.list", eventRef.collection(Members.COLLECTION).get()),
+            this.metrics.track("heatmap.list", eventRef.collection(Heatmap.COLLECTION).get()));
+    return CompletableFuture.allOf(lists.toArray(CompletableFuture[]::new))
+        .thenCompose(
+            ignored -> {
+              List<Consumer<WriteBatch>> writes = new ArrayList<>();
+              for (CompletableFuture<QuerySnapshot> list : lists) {
+                for (QueryDocumentSnapshot doc : list.join().getDocuments()) {
+                  writes.add(batch -> batch.delete(doc.getReference()));
+                }
+              }
 
-              // Remove from each participant's eventsParticipating
-              for (String participant : event.getParticipantEmails()) {
+              // Remove from each participant's eventsParticipating and commitments
+              List<String> participants = new ArrayList<>();
+              if (membersTracked) {
+                for (QueryDocumentSnapshot member : lists.get(3).join().getDocuments()) {
+                  if (!Members.REJECTED.equals(member.getString(Members.STATUS))) {
+                    participants.add(member.getId());
+                  }
+                }
+              } else {
+                List<String> emails = snapshot.toObject(Event.class).getParticipantEmails();
+                participants.addAll(emails == null ? List.of() : emails);
+              }
+              for (String participant : participants) {
                 DocumentReference participantRef =
                     this.db.collection("users").document(participant);
-                transaction.update(
-                    participantRef, "eventsParticipating", FieldValue.arrayRemove(eventId));
+                writes.add(
+                    batch ->
+                        batch.update(
+                            participantRef,
+                            FieldPath.of("eventsParticipating"),
+                            FieldValue.arrayRemove(eventId),
+                            FieldPath.of(Commitments.FIELD, eventId),
+                            FieldValue.delete()));
               }
 
-              return null;
-            })
-        .get();
+              if (writes.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+              }
+              return Batches.commit(this.db, this.metrics, "event.cleanup", writes, List.of());
+            });
   }
 
   /**
@@ -159,67 +541,152 @@ public class EventService {
    */
   public void recordInvitationResponse(String eventId, String userEmail, boolean isAccept)
       throws ExecutionException, InterruptedException {
-    DocumentReference eventRef = db.collection("events").document(eventId);
-    DocumentReference userRef = db.collection("users").document(userEmail);
+    FirestoreFutures.await(recordInvitationResponseAsync(eventId, userEmail, isAccept));
+  }
 
-    db.runTransaction(
-            transaction -> {
-              // Read all documents first
-              DocumentSnapshot eventSnapshot = transaction.get(eventRef).get();
-              DocumentSnapshot userSnapshot = transaction.get(userRef).get();
+  /**
+   * Asynchronous variant of {@link #recordInvitationResponse(String, String, boolean)}.
+   *
+   * <p>The response is written in a single batch, without reading the event in a transaction. For
+   * an event that keeps its membership in {@link Members members} documents, it only updates the
+   * participant's own member document; for older events it is written as field transforms (array
+   * union/remove and a field-path delete) of the event document. Responses from different invitees
+   * therefore never conflict, no matter how many arrive at once. One masked batch get of the event
+   * and the member document comes first, to tell which kind of event it is and, for a rejection, to
+   * take the participant out of the heatmap's required counts; a rejection also reads their {@link
+   * Submissions submission} document for the slots they marked. Completes exceptionally with an
+   * {@link IllegalArgumentException} if the event does not exist, or if the user is not a member of
+   * an event that keeps members documents.
+   *
+   * @param eventId The event the user is responding to
+   * @param userEmail The user's email address
+   * @param isAccept Whether the invitation is accepted (true) or rejected (false)
+   * @return Future that completes once the response has been recorded
+   */
+  public CompletableFuture<Void> recordInvitationResponseAsync(
+      String eventId, String userEmail, boolean isAccept) {
+    DocumentReference eventRef = db.collection("events").document(eventId);
+    DocumentReference memberRef = Members.ref(eventRef, userEmail);
 
-              if (!eventSnapshot.exists()) {
+    // A rejecting participant's necessity is dropped, so if they were required the heatmap needs
+    // their submitted slots; accepting changes nothing the heatmap counts
+    FieldMask mask =
+        isAccept
+            ? FieldMask.of(Members.TRACKED)
+            : FieldMask.of(
+                FieldPath.of(Members.TRACKED),
+                FieldPath.of(Members.NECESSITY),
+                FieldPath.of("slotMinutes"),
+                FieldPath.of(Heatmap.TRACKED),
+                FieldPath.of(Submissions.TRACKED),
+                FieldPath.of(Submissions.RANKINGS),
+                Submissions.legacy(userEmail),
+                Members.legacyNecessity(userEmail));
+    DocumentReference[] refs =
+        isAccept
+            ? new DocumentReference[] {eventRef, memberRef}
+            : new DocumentReference[] {eventRef, memberRef, Submissions.ref(eventRef, userEmail)};
+    return this.metrics
+        .track("event.respondent", this.db.getAll(refs, mask))
+        .thenCompose(
+            docs -> {
+              DocumentSnapshot event = docs.get(0);
+              DocumentSnapshot member = docs.get(1);
+              if (!event.exists()) {
                 throw new IllegalArgumentException("Event not found: " + eventId);
               }
-
-              Event event = eventSnapshot.toObject(Event.class);
-
-              // Defensive handling in case fields are null
-              Set<String> rejected =
-                  new HashSet<>(
-                      Optional.ofNullable(event.getRejectedParticipants())
-                          .orElse(new ArrayList<>()));
-              Set<String> confirmed =
-                  new HashSet<>(
-                      Optional.ofNullable(event.getConfirmedParticipants())
-                          .orElse(new ArrayList<>()));
-              List<String> participants =
-                  Optional.ofNullable(event.getParticipantEmails()).orElse(new ArrayList<>());
-              Map<String, Integer> necessity =
-                  Optional.ofNullable(event.getParticipantNecessity()).orElse(new HashMap<>());
-
-              if (isAccept) {
-                rejected.remove(userEmail); // Clear any previous rejection
-                confirmed.add(userEmail); // Mark as confirmed
-              } else {
-                participants.remove(userEmail); // Remove from participant list
-                necessity.remove(userEmail); // Remove from necessity map
-                rejected.add(userEmail); // Mark as rejected
-                confirmed.remove(userEmail); // Clear any previous acceptance
+              boolean tracked = Members.isTracked(event);
+              if (tracked && !member.exists()) {
+                throw new IllegalArgumentException(userEmail + " is not invited to " + eventId);
               }
+              Object necessity =
+                  tracked
+                      ? member.get(Members.NECESSITY)
+                      : event.get(Members.legacyNecessity(userEmail));
+              List<Consumer<WriteBatch>> heatmap =
+                  !isAccept && Heatmap.isRequired(necessity)
+                      ? Heatmap.requiredChange(
+                          eventRef, event, Submissions.stored(event, docs.get(2), userEmail), -1)
+                      : List.of();
+              return commitResponse(eventId, userEmail, isAccept, tracked, heatmap);
+            });
+  }
 
-              // Update event with modified lists
-              event.setRejectedParticipants(new ArrayList<>(rejected));
-              event.setConfirmedParticipants(new ArrayList<>(confirmed));
-              event.setParticipantEmails(participants);
-              event.setParticipantNecessity(necessity);
-
-              // Write event updates
-              transaction.set(eventRef, event);
-
-              // Write user updates if rejecting
-              if (!isAccept && userSnapshot.exists()) {
-                List<String> participatingEvents =
-                    (List<String>) userSnapshot.get("eventParticipating");
-                if (participatingEvents != null) {
-                  participatingEvents.remove(eventId);
-                  transaction.update(userRef, "eventParticipating", participatingEvents);
-                }
-              }
+  /**
+   * Commits an invitation response, with any heatmap writes it needs, as one batch.
+   *
+   * @param tracked Whether the event keeps its membership in members documents
+   */
+  private CompletableFuture<Void> commitResponse(
+      String eventId,
+      String userEmail,
+      boolean isAccept,
+      boolean tracked,
+      List<Consumer<WriteBatch>> heatmap) {
+    DocumentReference eventRef = db.collection("events").document(eventId);
+    DocumentReference userRef = db.collection("users").document(userEmail);
 
-              return null;
-            })
-        .get();
+    WriteBatch batch = db.batch();
+    heatmap.forEach(write -> write.accept(batch));
+    if (tracked) {
+      // Rejected members are no longer participants and drop their necessity
+      DocumentReference memberRef = Members.ref(eventRef, userEmail);
+      if (isAccept) {
+        batch.update(memberRef, Members.STATUS, Members.ACCEPTED);
+      } else {
+        batch.update(
+            memberRef, Members.STATUS, Members.REJECTED, Members.NECESSITY, FieldValue.delete());
+      }
+    } else if (isAccept) {
+      batch.update(
+          eventRef,
+          FieldPath.of("confirmedParticipants"), // Mark as confirmed
+          FieldValue.arrayUnion(userEmail),
+          FieldPath.of("rejectedParticipants"), // Clear any previous rejection
+          FieldValue.arrayRemove(userEmail));
+    } else {
+      batch.update(
+          eventRef,
+          FieldPath.of("participantEmails"), // Remove from participant list
+          FieldValue.arrayRemove(userEmail),
+          FieldPath.of("participantNecessity", userEmail), // Remove from necessity map
+          FieldValue.delete(),
+          FieldPath.of("rejectedParticipants"), // Mark as rejected
+          FieldValue.arrayUnion(userEmail),
+          FieldPath.of("confirmedParticipants"), // Clear any previous acceptance
+          FieldValue.arrayRemove(userEmail));
+    }
+
+    if (isAccept) {
+      // Count the event's top block as a commitment; merge leaves the block itself alone
+      batch.set(
+          userRef,
+          Map.of(Commitments.FIELD, Map.of(eventId, Map.of(Commitments.CONFIRMED, true))),
+          SetOptions.merge());
+    } else {
+      // Drop the event from the user's indexes; merge so a missing user doc is not an error
+      batch.set(
+          userRef,
+          Map.of(
+              "eventsParticipating",
+              FieldValue.arrayRemove(eventId),
+              Commitments.FIELD,
+              Map.of(eventId, FieldValue.delete())),
+          SetOptions.merge());
+    }
+
+    return this.metrics
+        .track("event.respond", batch.commit())
+        .handle(
+            (result, ex) -> {
+              if (ex == null) {
+                return null;
+              }
+              if (FirestoreFutures.hasStatus(ex, StatusCode.Code.NOT_FOUND)) {
+                throw new IllegalArgumentException("Event not found: " + eventId);
+              }
+              throw new CompletionException(FirestoreFutures.unwrap(ex));
+            });
   }
 
   /**
@@ -229,39 +696,358 @@ public class EventService {
    * @return Event object with ID populated
    */
   public Event loadEventById(String eventId) throws ExecutionException, InterruptedException {
-    DocumentSnapshot doc = this.db.collection("events").document(eventId).get().get();
-    if (!doc.exists()) {
-      throw new IllegalArgumentException("Event not found: " + eventId);
+    return FirestoreFutures.await(loadEventByIdAsync(eventId));
+  }
+
+  /**
+   * Asynchronous variant of {@link #loadEventById(String)}. Completes exceptionally with an {@link
+   * IllegalArgumentException} if the event does not exist.
+   *
+   * @param eventId ID of the event to retrieve
+   * @return Future Event object with ID populated
+   */
+  public CompletableFuture<Event> loadEventByIdAsync(String eventId) {
+    return readEventAsync(eventId).thenApply(stored -> stored.toEvent());
+  }
+
+  /**
+   * Conditional variant of {@link #loadEventByIdAsync(String)}. The entity tag is the event
+   * document's update time, or for an event that keeps its membership in {@link Members members}
+   * documents the latest update time of it and them, so any write to the event changes it. If
+   * {@code ifNoneMatch} already names it, nothing is deserialized and the result carries no value.
+   *
+   * @param eventId ID of the event to retrieve
+   * @param ifNoneMatch The client's If-None-Match header, or null
+   * @return Future tagged Event, empty if the client's copy is current
+   */
+  public CompletableFuture<Versioned<Event>> loadEventIfModifiedAsync(
+      String eventId, String ifNoneMatch) {
+    return readEventAsync(eventId)
+        .thenApply(
+            stored -> {
+              String etag = stored.etag();
+              if (Versioned.matches(ifNoneMatch, etag)) {
+                return new Versioned<>(etag, null);
+              }
+              return new Versioned<>(etag, stored.toEvent());
+            });
+  }
+
+  /**
+   * Reads an event document and, in parallel, its members documents, which events created before
+   * they existed do not have.
+   *
+   * @param eventId ID of the event to retrieve
+   * @return Future documents; fails with {@link IllegalArgumentException} if the event does not
+   *     exist
+   */
+  private CompletableFuture<StoredEvent> readEventAsync(String eventId) {
+    DocumentReference eventRef = this.db.collection("events").document(eventId);
+    CompletableFuture<QuerySnapshot> members =
+        this.metrics.track("members.list", eventRef.collection(Members.COLLECTION).get());
+    return this.metrics
+        .track("event.get", eventRef.get())
+        .thenCombine(
+            members,
+            (doc, memberSnapshot) -> {
+              if (!doc.exists()) {
+                throw new IllegalArgumentException("Event not found: " + eventId);
+              }
+              return new StoredEvent(doc, memberSnapshot.getDocuments());
+            });
+  }
+
+  /** An event document and its members documents. */
+  private record StoredEvent(DocumentSnapshot doc, List<QueryDocumentSnapshot> members) {
+
+    Event toEvent() {
+      Event event = this.doc.toObject(Event.class);
+      assert event != null;
+      event.setId(this.doc.getId());
+      if (Members.isTracked(this.doc)) {
+        Members.attach(event, this.members);
+      }
+      return event;
+    }
+
+    String etag() {
+      if (!Members.isTracked(this.doc)) {
+        return Versioned.etag("", this.doc.getUpdateTime());
+      }
+      Timestamp latest = this.doc.getUpdateTime();
+      for (QueryDocumentSnapshot member : this.members) {
+        if (member.getUpdateTime().compareTo(latest) > 0) {
+          latest = member.getUpdateTime();
+        }
+      }
+      return Versioned.etag("m" + this.members.size() + "-", latest);
     }
-    Event event = doc.toObject(Event.class);
-    assert event != null;
-    event.setId(doc.getId());
-    return event;
   }
 
   /**
-   * Updates an existing event document by replacing it entirely with a new version.
+   * Applies a JSON Merge Patch to an event, writing only the fields that change.
    *
-   * @param eventId ID of the event to update
-   * @param updatedEvent The new Event object to replace the old one
+   * @param eventId ID of the event to patch
+   * @param patch Merge patch object
    */
-  public void updateEvent(String eventId, Event updatedEvent)
+  public void patchEvent(String eventId, Map<String, Object> patch)
       throws ExecutionException, InterruptedException {
+    FirestoreFutures.await(patchEventAsync(eventId, patch));
+  }
+
+  /**
+   * Asynchronous variant of {@link #patchEvent(String, Map)}.
+   *
+   * <p>Reads the event, diffs the patch against it, and issues a single {@code update()} of just
+   * the changed field paths, guarded by the update time of the snapshot it read. If another write
+   * lands in between, the precondition fails and the read and diff are redone against the new
+   * state, so concurrent writes to other fields (such as submitted preferences) are never
+   * overwritten. A necessity change that makes a participant required or no longer required also
+   * adjusts the {@link Heatmap}, in one batch with the update. Only {@code title}, {@code
+   * durationMinutes} and {@code participantNecessity} can be patched: the schedule window and
+   * membership drive slot documents and user indexes that a plain field write would leave stale.
+   *
+   * <p>For an event that keeps its membership in {@link Members members} documents, necessity
+   * changes are written to the members instead, after reading them with one batch get, and only
+   * participants who have not rejected the invitation can be given one. The event document's {@code
+   * membersUpdatedAt} is bumped in the same batch, so an optimization that read the old necessity
+   * fails its precondition and rescores.
+   *
+   * @param eventId ID of the event to patch
+   * @param patch Merge patch object
+   * @return Future that completes once the patch is applied; fails with {@link
+   *     IllegalArgumentException} if the event does not exist
+   * @throws IllegalArgumentException if the patch touches unpatchable fields or has bad values
+   */
+  public CompletableFuture<Void> patchEventAsync(String eventId, Map<String, Object> patch) {
+    validatePatch(patch);
     DocumentReference eventRef = db.collection("events").document(eventId);
 
-    db.runTransaction(
-            transaction -> {
-              // Step 1: Validate existence
-              DocumentSnapshot snapshot = transaction.get(eventRef).get();
-              if (!snapshot.exists()) {
-                throw new IllegalArgumentException("Event not found: " + eventId);
+    return FirestoreFutures.retryOnConflict(
+        PATCH_ATTEMPTS,
+        PATCH_BACKOFF,
+        () ->
+            this.metrics
+                .track("event.get", eventRef.get())
+                .thenCompose(
+                    snapshot -> {
+                      if (!snapshot.exists()) {
+                        throw new IllegalArgumentException("Event not found: " + eventId);
+                      }
+                      if (Members.isTracked(snapshot)
+                          && patch.get("participantNecessity") instanceof Map<?, ?> necessity) {
+                        return patchMembersAsync(eventRef, snapshot, patch, necessity);
+                      }
+                      Map<FieldPath, Object> changes = MergePatch.diff(snapshot.getData(), patch);
+                      if (changes.isEmpty()) {
+                        return CompletableFuture.completedFuture(null);
+                      }
+                      Precondition unchanged = Precondition.updatedAt(snapshot.getUpdateTime());
+                      List<Consumer<WriteBatch>> heatmap =
+                          requiredChanges(eventRef, snapshot, patch);
+                      if (heatmap.isEmpty()) {
+                        return this.metrics
+                            .track("event.patch", updateFields(eventRef, unchanged, changes))
+                            .thenApply(ignored -> null);
+                      }
+                      WriteBatch batch = db.batch();
+                      updateFields(batch, eventRef, unchanged, changes);
+                      heatmap.forEach(write -> write.accept(batch));
+                      return this.metrics
+                          .track("event.patch", batch.commit())
+                          .thenApply(ignored -> null);
+                    }));
+  }
+
+  /**
+   * Applies a patch with necessity changes to an event that keeps its membership in members
+   * documents: reads the patched members, and their submissions if the event keeps submission
+   * documents, in one batch get, then writes the changed necessity levels, the rest of the patch,
+   * the heatmap changes and a new {@code membersUpdatedAt} in one batch, guarded by the update time
+   * of the event snapshot.
+   *
+   * @param eventRef The event
+   * @param snapshot The event as read
+   * @param patch Merge patch object
+   * @param necessity The patch's participantNecessity
+   * @return Future that completes once the batch has committed; fails with {@link
+   *     IllegalArgumentException} if a patched participant is not a member
+   */
+  private CompletableFuture<Void> patchMembersAsync(
+      DocumentReference eventRef,
+      DocumentSnapshot snapshot,
+      Map<String, Object> patch,
+      Map<?, ?> necessity) {
+    Map<String, Object> eventPatch = new HashMap<>(patch);
+    eventPatch.remove("participantNecessity");
+    Map<FieldPath, Object> changes =
+        new HashMap<>(
+            eventPatch.isEmpty() ? Map.of() : MergePatch.diff(snapshot.getData(), eventPatch));
+
+    List<String> emails = necessity.keySet().stream().map(String.class::cast).toList();
+    DocumentReference[] memberRefs =
+        emails.stream()
+            .map(email -> Members.ref(eventRef, email))
+            .toArray(DocumentReference[]::new);
+    // The heatmap needs the submissions of participants who become or stop being required
+    boolean submissions = Submissions.isTracked(snapshot);
+    DocumentReference[] refs =
+        Stream.concat(
+                Arrays.stream(memberRefs),
+                submissions
+                    ? emails.stream().map(email -> Submissions.ref(eventRef, email))
+                    : Stream.empty())
+            .toArray(DocumentReference[]::new);
+    return this.metrics
+        .track("members.get", this.db.getAll(refs))
+        .thenCompose(
+            members -> {
+              WriteBatch batch = this.db.batch();
+              boolean membersChanged = false;
+              for (int i = 0; i < emails.size(); i++) {
+                DocumentSnapshot member = members.get(i);
+                if (!member.exists() || Members.REJECTED.equals(member.getString(Members.STATUS))) {
+                  throw new IllegalArgumentException(
+                      emails.get(i) + " is not a participant of " + eventRef.getId());
+                }
+                Object before = member.get(Members.NECESSITY);
+                Object after = necessity.get(emails.get(i));
+                Long level = before instanceof Number number ? number.longValue() : null;
+                Long patched = after instanceof Number number ? number.longValue() : null;
+                if (Objects.equals(level, patched)) continue;
+                membersChanged = true;
+                batch.update(
+                    memberRefs[i], Members.NECESSITY, after == null ? FieldValue.delete() : after);
+                if (Heatmap.isRequired(before) != Heatmap.isRequired(after)) {
+                  DocumentSnapshot submission = submissions ? members.get(emails.size() + i) : null;
+                  Heatmap.requiredChange(
+                          eventRef,
+                          snapshot,
+                          Submissions.stored(snapshot, submission, emails.get(i)),
+                          Heatmap.isRequired(after) ? 1 : -1)
+                      .forEach(write -> write.accept(batch));
+                }
               }
+              if (!membersChanged && changes.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+              }
+              if (membersChanged) {
+                changes.put(FieldPath.of("membersUpdatedAt"), FieldValue.serverTimestamp());
+              }
+              updateFields(
+                  batch, eventRef, Precondition.updatedAt(snapshot.getUpdateTime()), changes);
+              return this.metrics.track("event.patch", batch.commit()).thenApply(ignored -> null);
+            });
+  }
 
-              // Step 2: Overwrite the document with the updated event object
-              transaction.set(eventRef, updatedEvent);
+  /**
+   * Rejects patches that touch fields outside {@link #PATCHABLE_FIELDS} or carry values of the
+   * wrong type.
+   *
+   * @param patch Merge patch object
+   */
+  private static void validatePatch(Map<String, Object> patch) {
+    if (patch == null || patch.isEmpty()) {
+      throw new IllegalArgumentException("Patch must be a non-empty JSON object");
+    }
+    for (Map.Entry<String, Object> entry : patch.entrySet()) {
+      String field = entry.getKey();
+      Object value = entry.getValue();
+      if (!PATCHABLE_FIELDS.contains(field)) {
+        throw new IllegalArgumentException("Field cannot be patched: " + field);
+      }
+      switch (field) {
+        case "title" -> {
+          if (!(value instanceof String)) {
+            throw new IllegalArgumentException("title must be a string");
+          }
+        }
+        case "durationMinutes" -> {
+          // Blocks round up to whole slots, so any multiple of the finest slot length fits
+          if (!(value instanceof Integer minutes)
+              || minutes <= 0
+              || minutes % SlotGranularity.MIN_MINUTES != 0) {
+            throw new IllegalArgumentException(
+                "durationMinutes must be a positive multiple of " + SlotGranularity.MIN_MINUTES);
+          }
+        }
+        case "participantNecessity" -> {
+          if (!(value instanceof Map<?, ?> necessity)) {
+            throw new IllegalArgumentException("participantNecessity must be an object");
+          }
+          for (Object level : necessity.values()) {
+            if (level != null && !(level instanceof Integer)) {
+              throw new IllegalArgumentException("participantNecessity values must be integers");
+            }
+          }
+        }
+        default -> {}
+      }
+    }
+  }
 
-              return null;
-            })
-        .get();
+  /**
+   * The heatmap writes for participants a patch makes required or no longer required.
+   *
+   * @param eventRef The event
+   * @param snapshot The event as the patch was diffed against
+   * @param patch Merge patch object
+   * @return Writes to commit with the patch
+   */
+  private static List<Consumer<WriteBatch>> requiredChanges(
+      DocumentReference eventRef, DocumentSnapshot snapshot, Map<String, Object> patch) {
+    if (!(patch.get("participantNecessity") instanceof Map<?, ?> necessity)) {
+      return List.of();
+    }
+    List<Consumer<WriteBatch>> writes = new ArrayList<>();
+    necessity.forEach(
+        (email, level) -> {
+          boolean wasRequired =
+              Heatmap.isRequired(
+                  snapshot.get(FieldPath.of("participantNecessity", (String) email)));
+          if (wasRequired != Heatmap.isRequired(level)) {
+            writes.addAll(
+                Heatmap.requiredChange(
+                    eventRef,
+                    snapshot,
+                    Submissions.stored(snapshot, null, (String) email),
+                    wasRequired ? -1 : 1));
+          }
+        });
+    return writes;
+  }
+
+  /** Queues one {@code update()} of a set of field paths, like {@link #updateFields}. */
+  private static void updateFields(
+      WriteBatch batch,
+      DocumentReference ref,
+      Precondition precondition,
+      Map<FieldPath, Object> changes) {
+    List<Map.Entry<FieldPath, Object>> entries = new ArrayList<>(changes.entrySet());
+    Object[] more = new Object[(entries.size() - 1) * 2];
+    for (int i = 1; i < entries.size(); i++) {
+      more[(i - 1) * 2] = entries.get(i).getKey();
+      more[(i - 1) * 2 + 1] = entries.get(i).getValue();
+    }
+    batch.update(ref, precondition, entries.get(0).getKey(), entries.get(0).getValue(), more);
+  }
+
+  /**
+   * Issues one {@code update()} for a set of field paths, which Firestore only accepts as varargs.
+   *
+   * @param ref Document to update
+   * @param precondition Precondition guarding the write
+   * @param changes Field paths mapped to their new values
+   * @return Future of the write
+   */
+  private static ApiFuture<WriteResult> updateFields(
+      DocumentReference ref, Precondition precondition, Map<FieldPath, Object> changes) {
+    List<Map.Entry<FieldPath, Object>> entries = new ArrayList<>(changes.entrySet());
+    Object[] more = new Object[(entries.size() - 1) * 2];
+    for (int i = 1; i < entries.size(); i++) {
+      more[(i - 1) * 2] = entries.get(i).getKey();
+      more[(i - 1) * 2 + 1] = entries.get(i).getValue();
+    }
+    return ref.update(precondition, entries.get(0).getKey(), entries.get(0).getValue(), more);
   }
 }
@@ -0,0 +1,413 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.Event;
+import com.browncs._final.model.Slot;
+import com.browncs._final.model.SlotBlock;
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes live availability and optimal slot updates for an event to Server-Sent Events viewers.
+ *
+ * <p>Each event that has at least one viewer gets one channel holding one Firestore snapshot
+ * listener on its slots collection and one on the event document. Those listeners are shared by
+ * every viewer and removed when the last one leaves, so Firestore load is one listener pair per
+ * active event however many viewers there are.
+ *
+ * <p>A viewer first receives a {@code snapshot} event with every slot and the current optimal
+ * slots. After that it receives {@code slots} events carrying only the cells that changed, {@code
+ * optimalSlots} events when the ranking changes, and {@code deleted} when the event goes away.
+ * Heartbeat comments keep idle connections open. Each event's id is a resume token; a client that
+ * reconnects with it in {@code Last-Event-ID} is sent the events it missed from a bounded replay
+ * buffer, or a fresh snapshot if they are no longer there.
+ */
+@Service
+public class EventStreamService {
+
+  private static final Logger logger = LoggerFactory.getLogger(EventStreamService.class);
+
+  private final Firestore db;
+  private final int maxConnections;
+  private final int maxConnectionsPerEvent;
+  private final int replayBufferSize;
+  private final ScheduledExecutorService heartbeats;
+
+  private final ConcurrentHashMap<String, Channel> channels = new ConcurrentHashMap<>();
+  private final AtomicInteger connections = new AtomicInteger();
+
+  public EventStreamService(
+      Firestore db,
+      MeterRegistry registry,
+      @Value("${events.stream.max-connections:1000}") int maxConnections,
+      @Value("${events.stream.max-connections-per-event:200}") int maxConnectionsPerEvent,
+      @Value("${events.stream.replay-buffer:256}") int replayBufferSize,
+      @Value("${events.stream.heartbeat:15s}") Duration heartbeat) {
+    this.db = db;
+    this.maxConnections = maxConnections;
+    this.maxConnectionsPerEvent = maxConnectionsPerEvent;
+    this.replayBufferSize = replayBufferSize;
+    this.heartbeats =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "event-stream-heartbeat");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.heartbeats.scheduleAtFixedRate(
+        this::sendHeartbeats, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+
+    Gauge.builder("events.stream.connections", this.connections, AtomicInteger::get)
+        .description("Open Server-Sent Events connections")
+        .register(registry);
+    Gauge.builder("events.stream.listeners", this.channels, Map::size)
+        .description("Events with a shared Firestore snapshot listener")
+        .register(registry);
+  }
+
+  /**
+   * Attaches a viewer to an event's stream, starting the event's shared listeners if it is the
+   * first viewer.
+   *
+   * @param eventId ID of the event to watch
+   * @param lastEventId Resume token from the client's last received event, or null
+   * @param emitter The viewer's connection
+   * @throws RejectedExecutionException if the global or per-event connection limit is reached
+   */
+  public void subscribe(String eventId, String lastEventId, SseEmitter emitter) {
+    if (this.connections.incrementAndGet() > this.maxConnections) {
+      this.connections.decrementAndGet();
+      throw new RejectedExecutionException(
+          "Too many live connections (limit " + this.maxConnections + ")");
+    }
+
+    Viewer viewer = new Viewer(emitter);
+    try {
+      this.channels.compute(
+          eventId,
+          (id, channel) -> {
+            Channel target = channel != null ? channel : new Channel(id);
+            target.attach(viewer, lastEventId);
+            if (channel == null) {
+              target.listen();
+            }
+            return target;
+          });
+    } catch (RejectedExecutionException e) {
+      this.connections.decrementAndGet();
+      throw e;
+    }
+
+    emitter.onCompletion(() -> detach(eventId, viewer));
+    emitter.onTimeout(() -> detach(eventId, viewer));
+    emitter.onError(ex -> detach(eventId, viewer));
+  }
+
+  /** Number of events that currently have a shared listener. */
+  public int activeChannels() {
+    return this.channels.size();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    this.heartbeats.shutdownNow();
+    this.channels.values().forEach(channel -> channel.close(null));
+    this.channels.clear();
+  }
+
+  /** Removes a viewer, tearing its channel down once nobody is left watching. */
+  private void detach(String eventId, Viewer viewer) {
+    if (!viewer.release()) {
+      return;
+    }
+    this.connections.decrementAndGet();
+    this.channels.computeIfPresent(
+        eventId,
+        (id, channel) -> {
+          if (channel.remove(viewer)) {
+            channel.stopListening();
+            return null;
+          }
+          return channel;
+        });
+  }
+
+  /** Drops a channel whose listener failed or whose event was deleted. */
+  private void discard(Channel channel) {
+    if (this.channels.remove(channel.eventId, channel)) {
+      channel.stopListening();
+    }
+  }
+
+  private void sendHeartbeats() {
+    for (Channel channel : this.channels.values()) {
+      channel.heartbeat();
+    }
+  }
+
+  /** One viewer's connection. */
+  private static final class Viewer {
+    final SseEmitter emitter;
+    private boolean released;
+
+    Viewer(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    /** Returns true the first time it is called, so a viewer is only counted out once. */
+    synchronized boolean release() {
+      boolean first = !this.released;
+      this.released = true;
+      return first;
+    }
+  }
+
+  /** A message kept for replay to reconnecting viewers. */
+  private record Message(long sequence, String name, Object data) {}
+
+  /** Shared listener state for one event. All fields are guarded by the channel's monitor. */
+  private final class Channel {
+    final String eventId;
+
+    // Resume tokens are "<generation>:<sequence>"; a new channel gets a new generation so tokens
+    // from an earlier channel for the same event fall back to a snapshot
+    private final String generation = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final List<Viewer> viewers = new ArrayList<>();
+    private final ArrayDeque<Message> replay = new ArrayDeque<>();
+    private final SortedMap<String, Slot> cells = new TreeMap<>();
+    private List<SlotBlock> optimalSlots;
+    private long sequence;
+    private boolean slotsLoaded;
+    private boolean eventLoaded;
+
+    private ListenerRegistration slotListener;
+    private ListenerRegistration eventListener;
+
+    Channel(String eventId) {
+      this.eventId = eventId;
+    }
+
+    synchronized void listen() {
+      DocumentReference eventRef = db.collection("events").document(this.eventId);
+      this.slotListener = eventRef.collection("slots").addSnapshotListener(this::onSlots);
+      this.eventListener = eventRef.addSnapshotListener(this::onEvent);
+    }
+
+    synchronized void stopListening() {
+      if (this.slotListener != null) {
+        this.slotListener.remove();
+      }
+      if (this.eventListener != null) {
+        this.eventListener.remove();
+      }
+    }
+
+    synchronized void attach(Viewer viewer, String lastEventId) {
+      if (this.viewers.size() >= maxConnectionsPerEvent) {
+        throw new RejectedExecutionException(
+            "Too many live connections for event "
+                + this.eventId
+                + " (limit "
+                + maxConnectionsPerEvent
+                + ")");
+      }
+      this.viewers.add(viewer);
+      if (!ready()) {
+        return; // the viewer gets the snapshot once both listeners have reported
+      }
+      List<Message> missed = missedSince(lastEventId);
+      if (missed == null) {
+        send(viewer, "snapshot", currentState());
+      } else {
+        for (Message message : missed) {
+          send(viewer, message.sequence(), message.name(), message.data());
+        }
+      }
+    }
+
+    /** Removes a viewer and reports whether the channel is now empty. */
+    synchronized boolean remove(Viewer viewer) {
+      this.viewers.remove(viewer);
+      return this.viewers.isEmpty();
+    }
+
+    synchronized void heartbeat() {
+      for (Viewer viewer : List.copyOf(this.viewers)) {
+        try {
+          viewer.emitter.send(SseEmitter.event().comment("heartbeat"));
+        } catch (IOException | IllegalStateException e) {
+          drop(viewer, e);
+        }
+      }
+    }
+
+    /** Completes every viewer, with an error if one is given. */
+    synchronized void close(Throwable error) {
+      for (Viewer viewer : this.viewers) {
+        if (error == null) {
+          viewer.emitter.complete();
+        } else {
+          viewer.emitter.completeWithError(error);
+        }
+      }
+    }
+
+    private void onSlots(QuerySnapshot snapshot, FirestoreException error) {
+      if (error != null) {
+        logger.warn("Slot listener for event {} failed", this.eventId, error);
+        close(error);
+        discard(this);
+        return;
+      }
+      synchronized (this) {
+        List<Slot> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+          QueryDocumentSnapshot doc = change.getDocument();
+          if (change.getType() == DocumentChange.Type.REMOVED) {
+            if (this.cells.remove(doc.getId()) != null) {
+              removed.add(doc.getId());
+            }
+            continue;
+          }
+          Slot slot = doc.toObject(Slot.class);
+          slot.setId(doc.getId());
+          if (!slot.equals(this.cells.put(slot.getId(), slot))) {
+            changed.add(slot);
+          }
+        }
+
+        boolean wasReady = ready();
+        this.slotsLoaded = true;
+        if (!wasReady) {
+          broadcastSnapshotIfReady();
+        } else if (!changed.isEmpty() || !removed.isEmpty()) {
+          broadcast("slots", Map.of("changed", changed, "removed", removed));
+        }
+      }
+    }
+
+    private void onEvent(DocumentSnapshot snapshot, FirestoreException error) {
+      if (error != null) {
+        logger.warn("Event listener for event {} failed", this.eventId, error);
+        close(error);
+        discard(this);
+        return;
+      }
+      if (!snapshot.exists()) {
+        synchronized (this) {
+          broadcast("deleted", Map.of("eventId", this.eventId));
+        }
+        close(null);
+        discard(this);
+        return;
+      }
+      synchronized (this) {
+        Event event = snapshot.toObject(Event.class);
+        List<SlotBlock> latest = event == null ? null : event.getOptimalSlots();
+        boolean wasReady = ready();
+        boolean changed = !this.eventLoaded || !Objects.equals(latest, this.optimalSlots);
+        this.optimalSlots = latest;
+        this.eventLoaded = true;
+        if (!wasReady) {
+          broadcastSnapshotIfReady();
+        } else if (changed) {
+          broadcast("optimalSlots", latest == null ? List.of() : latest);
+        }
+      }
+    }
+
+    private boolean ready() {
+      return this.slotsLoaded && this.eventLoaded;
+    }
+
+    private void broadcastSnapshotIfReady() {
+      if (ready()) {
+        Map<String, Object> state = currentState();
+        for (Viewer viewer : List.copyOf(this.viewers)) {
+          send(viewer, "snapshot", state);
+        }
+      }
+    }
+
+    private Map<String, Object> currentState() {
+      return Map.of(
+          "slots",
+          List.copyOf(this.cells.values()),
+          "optimalSlots",
+          this.optimalSlots == null ? List.of() : this.optimalSlots);
+    }
+
+    /** Records a message for replay and sends it to every viewer. */
+    private void broadcast(String name, Object data) {
+      Message message = new Message(++this.sequence, name, data);
+      this.replay.addLast(message);
+      if (this.replay.size() > replayBufferSize) {
+        this.replay.removeFirst();
+      }
+      for (Viewer viewer : List.copyOf(this.viewers)) {
+        send(viewer, message.sequence(), name, data);
+      }
+    }
+
+    /**
+     * Messages after the one named by a resume token, or null if the token is missing, from another
+     * channel, or older than the replay buffer.
+     */
+    private List<Message> missedSince(String lastEventId) {
+      if (lastEventId == null || !lastEventId.startsWith(this.generation + ":")) {
+        return null;
+      }
+      long last;
+      try {
+        last = Long.parseLong(lastEventId.substring(this.generation.length() + 1));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      long oldest = this.replay.isEmpty() ? this.sequence + 1 : this.replay.peekFirst().sequence();
+      if (last > this.sequence || last < oldest - 1) {
+        return null;
+      }
+      return this.replay.stream().filter(message -> message.sequence() > last).toList();
+    }
+
+    private void send(Viewer viewer, String name, Object data) {
+      send(viewer, this.sequence, name, data);
+    }
+
+    private void send(Viewer viewer, long sequence, String name, Object data) {
+      try {
+        viewer.emitter.send(
+            SseEmitter.event()
+                .id(this.generation + ":" + sequence)
+                .name(name)
+                .data(data, MediaType.APPLICATION_JSON));
+      } catch (IOException | IllegalStateException e) {
+        drop(viewer, e);
+      }
+    }
+
+    /** Ends a viewer whose connection failed; its completion callback detaches it. */
+    private void drop(Viewer viewer, Exception e) {
+      this.viewers.remove(viewer);
+      viewer.emitter.completeWithError(e);
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package com.browncs._final.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import java.time.Duration;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for composing Firestore {@link ApiFuture}s as {@link CompletableFuture}s without parking
+ * a thread on {@code ApiFuture.get()}.
+ */
+public final class FirestoreFutures {
+
+  // Captures the thread-local context (observations, RPC budget) to carry across threads
+  static final ContextSnapshotFactory CONTEXT = ContextSnapshotFactory.builder().build();
+
+  private FirestoreFutures() {}
+
+  /**
+   * Adapts a Firestore future into a CompletableFuture that completes on the thread that completes
+   * the Firestore call. Cancelling the returned future cancels the underlying call.
+   *
+   * <p>The caller's context (the current observation and the request's {@link RpcBudget}) is
+   * captured now and restored while the returned future completes, so work chained onto it with
+   * {@code thenApply} or {@code thenCompose} runs in the same context as the code that issued the
+   * call.
+   *
+   * @param future The Firestore future to adapt
+   * @return A CompletableFuture mirroring the outcome of the Firestore call
+   */
+  public static <T> CompletableFuture<T> toCompletable(ApiFuture<T> future) {
+    return toCompletable(future, (value, ex) -> {});
+  }
+
+  /**
+   * Adapts a Firestore future like {@link #toCompletable(ApiFuture)}, first handing the outcome to
+   * {@code onComplete}, which therefore runs before any stage chained onto the returned future.
+   *
+   * @param future The Firestore future to adapt
+   * @param onComplete Receives the value, or the failure, of the Firestore call
+   * @return A CompletableFuture mirroring the outcome of the Firestore call
+   */
+  static <T> CompletableFuture<T> toCompletable(
+      ApiFuture<T> future, BiConsumer<? super T, Throwable> onComplete) {
+    ContextSnapshot context = CONTEXT.captureAll();
+    CompletableFuture<T> result =
+        new CompletableFuture<>() {
+          @Override
+          public boolean cancel(boolean mayInterruptIfRunning) {
+            future.cancel(mayInterruptIfRunning);
+            return super.cancel(mayInterruptIfRunning);
+          }
+        };
+    ApiFutures.addCallback(
+        future,
+        new ApiFutureCallback<T>() {
+          @Override
+          public void onSuccess(T value) {
+            onComplete.accept(value, null);
+            try (ContextSnapshot.Scope scope = context.setThreadLocals()) {
+              result.complete(value);
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            onComplete.accept(null, t);
+            try (ContextSnapshot.Scope scope = context.setThreadLocals()) {
+              result.completeExceptionally(t);
+            }
+          }
+        },
+        MoreExecutors.directExecutor());
+    return result;
+  }
+
+  /**
+   * Completes once every given Firestore write has completed, failing if any of them fails.
+   *
+   * @param futures The Firestore futures to wait for
+   * @return A CompletableFuture that completes when all futures complete
+   */
+  public static CompletableFuture<Void> allOf(List<? extends ApiFuture<?>> futures) {
+    return toCompletable(ApiFutures.allAsList(futures)).thenApply(ignored -> null);
+  }
+
+  /**
+   * Blocks until the future completes, for the synchronous service APIs. Unchecked failures (such
+   * as {@link IllegalArgumentException} for a missing event) are rethrown as-is so callers see the
+   * same exceptions they would from a direct call; anything else surfaces as an {@link
+   * ExecutionException}.
+   *
+   * @param future The future to wait for
+   * @return The future's value
+   */
+  public static <T> T await(CompletableFuture<T> future)
+      throws ExecutionException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Strips the {@link CompletionException} and {@link ExecutionException} wrappers that
+   * CompletableFuture stages add around the original failure.
+   *
+   * @param t The failure observed by a stage
+   * @return The underlying cause
+   */
+  public static Throwable unwrap(Throwable t) {
+    while ((t instanceof CompletionException || t instanceof ExecutionException)
+        && t.getCause() != null) {
+      t = t.getCause();
+    }
+    return t;
+  }
+
+  /**
+   * Checks whether a failure, or any of its causes, is a Firestore RPC error with the given status
+   * code (for example NOT_FOUND when updating a missing document).
+   *
+   * @param t The failure to inspect
+   * @param code The gRPC status code to look for
+   * @return true if the failure carries the status code
+   */
+  public static boolean hasStatus(Throwable t, StatusCode.Code code) {
+    for (Throwable current = t; current != null; current = current.getCause()) {
+      if (current instanceof ApiException api && api.getStatusCode().getCode() == code) {
+        return true;
+      }
+      if (current instanceof FirestoreException firestore
+          && firestore.getStatus() != null
+          && firestore.getStatus().getCode().name().equals(code.name())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Runs an optimistic read-compute-write attempt, starting it over while it fails with
+   * FAILED_PRECONDITION because a concurrent write invalidated its update-time precondition, or
+   * with ALREADY_EXISTS because a concurrent write created a document it expected to create.
+   * Retries back off exponentially with full jitter. Once {@code maxAttempts} have all lost the
+   * race, the future fails with a {@link ConcurrentModificationException}; any other failure is
+   * passed through unchanged.
+   *
+   * @param maxAttempts Total number of attempts, including the first
+   * @param initialBackoff Upper bound of the delay before the first retry; doubles each retry
+   * @param attempt Starts one attempt; called again for every retry
+   * @return Future holding the result of the first attempt that commits
+   */
+  public static <T> CompletableFuture<T> retryOnConflict(
+      int maxAttempts, Duration initialBackoff, Supplier<CompletableFuture<T>> attempt) {
+    return retryOnConflict(1, maxAttempts, initialBackoff.toMillis(), attempt);
+  }
+
+  private static <T> CompletableFuture<T> retryOnConflict(
+      int attemptNumber,
+      int maxAttempts,
+      long backoffMillis,
+      Supplier<CompletableFuture<T>> attempt) {
+    CompletableFuture<T> current;
+    try {
+      current = attempt.get();
+    } catch (RuntimeException e) {
+      current = CompletableFuture.failedFuture(e);
+    }
+    return current
+        .handle(
+            (value, ex) -> {
+              if (ex == null) {
+                return CompletableFuture.completedFuture(value);
+              }
+              Throwable cause = unwrap(ex);
+              if (!hasStatus(cause, StatusCode.Code.FAILED_PRECONDITION)
+                  && !hasStatus(cause, StatusCode.Code.ALREADY_EXISTS)) {
+                return CompletableFuture.<T>failedFuture(cause);
+              }
+              if (attemptNumber >= maxAttempts) {
+                return CompletableFuture.<T>failedFuture(
+                    new ConcurrentModificationException(
+                        "Document kept changing; gave up after " + maxAttempts + " attempts",
+                        cause));
+              }
+              long delay = ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+              Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+              ContextSnapshot context = CONTEXT.captureAll();
+              return CompletableFuture.runAsync(() -> {}, delayed)
+                  .thenCompose(
+                      ignored -> {
+                        try (ContextSnapshot.Scope scope = context.setThreadLocals()) {
+                          return retryOnConflict(
+                              attemptNumber + 1, maxAttempts, backoffMillis * 2, attempt);
+                        }
+                      });
+            })
+        .thenCompose(next -> next);
+  }
+}
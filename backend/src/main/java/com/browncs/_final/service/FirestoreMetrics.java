@@ -0,0 +1,145 @@
+package com.browncs._final.service;
+
+import com.google.api.core.ApiFuture;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times and traces Firestore calls. Every Firestore future the services wait on passes through
+ * {@link #track}, which observes it as {@code firestore.operation} tagged with the operation name
+ * and whether it succeeded, and charges it to the calling request's {@link RpcBudget}. Spring Boot
+ * turns each observation into a timer and, when tracing is enabled, a span; service operations
+ * wrapped in {@link #observe} become the parent spans of the calls they make.
+ */
+@Component
+public class FirestoreMetrics {
+
+  private final MeterRegistry registry;
+  private final ObservationRegistry observations;
+
+  @Autowired
+  public FirestoreMetrics(MeterRegistry registry, ObservationRegistry observations) {
+    this.registry = registry;
+    this.observations = observations;
+  }
+
+  /**
+   * Creates an instance that records observations as meters only, without tracing.
+   *
+   * @param registry Registry the timers are published to
+   */
+  public FirestoreMetrics(MeterRegistry registry) {
+    this(registry, ObservationRegistry.create());
+    this.observations
+        .observationConfig()
+        .observationHandler(new DefaultMeterObservationHandler(registry));
+  }
+
+  /** The registry the services publish their own meters to. */
+  public MeterRegistry registry() {
+    return this.registry;
+  }
+
+  /** The registry the services create their own observations in. */
+  public ObservationRegistry observations() {
+    return this.observations;
+  }
+
+  /**
+   * Adapts a Firestore future like {@link FirestoreFutures#toCompletable}, observing it from now
+   * until it completes. The observation is stopped before the returned future completes, so it does
+   * not include the stages chained onto the result.
+   *
+   * @param operation Operation name used as the {@code operation} tag, e.g. "event.get"
+   * @param future The Firestore call that was just issued
+   * @return A CompletableFuture mirroring the outcome of the call
+   */
+  public <T> CompletableFuture<T> track(String operation, ApiFuture<T> future) {
+    RpcBudget budget = RpcBudget.current();
+    Observation observation =
+        Observation.createNotStarted("firestore.operation", this.observations)
+            .contextualName("firestore " + operation)
+            .lowCardinalityKeyValue("operation", operation)
+            .start();
+    return FirestoreFutures.toCompletable(
+        future,
+        (value, ex) -> {
+          if (budget != null) {
+            budget.record(value);
+          }
+          observation.lowCardinalityKeyValue("outcome", ex == null ? "success" : "error");
+          if (ex != null) {
+            observation.error(ex);
+          }
+          observation.stop();
+        });
+  }
+
+  /**
+   * Tracks each of a set of Firestore calls individually and completes once all have completed,
+   * failing if any of them fails.
+   *
+   * @param operation Operation name shared by the calls
+   * @param futures The Firestore calls that were just issued
+   * @return A CompletableFuture that completes when all calls complete
+   */
+  public CompletableFuture<Void> trackAll(String operation, List<? extends ApiFuture<?>> futures) {
+    return CompletableFuture.allOf(
+        futures.stream().map(future -> track(operation, future)).toArray(CompletableFuture[]::new));
+  }
+
+  /**
+   * Observes an asynchronous service operation. Firestore calls started by {@code work}, including
+   * those chained onto earlier calls, are recorded as its children. Attributes such as event IDs
+   * and counts are high-cardinality: they go on the span only, never on the timer.
+   *
+   * @param name Observation name, e.g. "slots.generate"
+   * @param attributes Span attributes known up front
+   * @param work Starts the operation
+   * @return The operation's future, completing after the observation has stopped
+   */
+  public <T> CompletableFuture<T> observe(
+      String name, KeyValues attributes, Supplier<CompletableFuture<T>> work) {
+    Observation observation =
+        Observation.createNotStarted(name, this.observations)
+            .highCardinalityKeyValues(attributes)
+            .start();
+    CompletableFuture<T> result;
+    try (Observation.Scope scope = observation.openScope()) {
+      result = work.get();
+    } catch (RuntimeException e) {
+      observation.error(e);
+      observation.stop();
+      throw e;
+    }
+    return result.whenComplete(
+        (value, ex) -> {
+          if (ex != null) {
+            observation.error(FirestoreFutures.unwrap(ex));
+          }
+          observation.stop();
+        });
+  }
+
+  /**
+   * Adds an attribute to the span of the operation currently being observed on this thread, for
+   * values such as slot counts that are only known partway through.
+   *
+   * @param key Attribute name, e.g. "slot.count"
+   * @param value Attribute value
+   */
+  public void annotate(String key, Object value) {
+    Observation current = this.observations.getCurrentObservation();
+    if (current != null) {
+      current.highCardinalityKeyValue(key, String.valueOf(value));
+    }
+  }
+}
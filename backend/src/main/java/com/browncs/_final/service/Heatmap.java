@@ -0,0 +1,248 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.HeatmapCell;
+import com.browncs._final.model.Slot;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-slot aggregates of an event's preferences, so its availability heatmap can be drawn without
+ * reading every slot: how many participants marked each slot, the sum of their weights, and how
+ * many of them are required.
+ *
+ * <p>The aggregates live in {@code events/{eventId}/heatmap/{date}} documents with one field per
+ * slot start time, and are maintained with increments queued in the same batch as the writes they
+ * summarize. That batch is guarded by the update time of the submission the increments were diffed
+ * from, so of two submissions that race, the later one is diffed again instead of applying
+ * increments against a submission that is no longer there. Firestore applies at most 500 field
+ * transforms to a document per commit, so each slot's three counts are packed into one integer
+ * ({@link #PARTICIPANT}, {@link #REQUIRED} and {@link #WEIGHT} units), and a day holds at most 288
+ * slots. Increments of packed values add up exactly as long as every count stays within its bits.
+ *
+ * <p>Only events with {@link #TRACKED} set have maintained aggregates, since they were created with
+ * them; older events have theirs computed from the slots when requested.
+ */
+public final class Heatmap {
+
+  private static final Logger logger = LoggerFactory.getLogger(Heatmap.class);
+
+  static final String COLLECTION = "heatmap";
+  static final String TRACKED = "heatmapTracked";
+
+  // Units of the packed counts: participants in bits 0-15, required in 16-31, weights above
+  static final long PARTICIPANT = 1;
+  static final long REQUIRED = 1L << 16;
+  static final long WEIGHT = 1L << 32;
+
+  private Heatmap() {}
+
+  /**
+   * Expands a participant's rankings into the slots they cover. Timespans are applied in ID order,
+   * so where two overlap the later one's weight wins, the same every time.
+   *
+   * @param rankings Timespan ID mapped to weight
+   * @param slotMinutes Slot length of the event
+   * @return Start minute of each covered slot mapped to its weight
+   * @throws IllegalArgumentException if a timespan ID is malformed or does not start and end on the
+   *     event's slot grid
+   */
+  static NavigableMap<Long, Integer> slotWeights(
+      Map<String, ? extends Number> rankings, int slotMinutes) {
+    NavigableMap<Long, Integer> weights = new TreeMap<>();
+    for (String timespanId : new TreeSet<>(rankings.keySet())) {
+      int weight = rankings.get(timespanId).intValue();
+      long timespan = SlotIdCodec.parseTimespan(timespanId);
+      long end = SlotIdCodec.timespanEnd(timespan);
+      if (!SlotGranularity.isAligned(SlotIdCodec.timespanStart(timespan), slotMinutes)
+          || !SlotGranularity.isAligned(end, slotMinutes)) {
+        throw new IllegalArgumentException(
+            "Timespan " + timespanId + " is not on the " + slotMinutes + "-minute slot grid");
+      }
+      for (long m = SlotIdCodec.timespanStart(timespan); m < end; m += slotMinutes) {
+        weights.put(m, weight);
+      }
+    }
+    return weights;
+  }
+
+  /**
+   * @param necessity A participant's necessity as stored, or null if they have none
+   * @return Whether the participant is required
+   */
+  static boolean isRequired(Object necessity) {
+    return necessity instanceof Number level && level.intValue() == 5;
+  }
+
+  /**
+   * Packed changes to the aggregates when one participant's weights change.
+   *
+   * @param before Slot weights before the change
+   * @param after Slot weights after the change
+   * @param required Whether the participant is required
+   * @return Nonzero packed deltas by slot start minute
+   */
+  static Map<Long, Long> diff(
+      Map<Long, Integer> before, Map<Long, Integer> after, boolean required) {
+    long presence = PARTICIPANT + (required ? REQUIRED : 0);
+    Map<Long, Long> deltas = new TreeMap<>();
+    before.forEach(
+        (slot, weight) -> {
+          if (!after.containsKey(slot)) {
+            deltas.put(slot, -presence - weight * WEIGHT);
+          }
+        });
+    after.forEach(
+        (slot, weight) -> {
+          Integer old = before.get(slot);
+          long delta = old == null ? presence + weight * WEIGHT : (weight - old) * WEIGHT;
+          if (delta != 0) {
+            deltas.put(slot, delta);
+          }
+        });
+    return deltas;
+  }
+
+  /**
+   * Expands a participant's submission as stored, on the event or in their submission document.
+   *
+   * @param stored The stored rankings, or null if they have not submitted
+   * @param slotMinutes Slot length of the event
+   * @return Start minute of each slot they marked mapped to its weight
+   */
+  static Map<Long, Integer> storedWeights(Object stored, int slotMinutes) {
+    if (!(stored instanceof Map<?, ?> rankings)) {
+      return Map.of();
+    }
+    Map<String, Number> valid = new HashMap<>();
+    rankings.forEach(
+        (timespanId, weight) -> {
+          if (timespanId instanceof String id && weight instanceof Number number) {
+            valid.put(id, number);
+          }
+        });
+    try {
+      return slotWeights(valid, slotMinutes);
+    } catch (IllegalArgumentException e) {
+      // Submissions are validated when they are made, so this only happens to corrupted data
+      logger.warn("Ignoring unparseable stored preferences: {}", e.getMessage());
+      return Map.of();
+    }
+  }
+
+  /**
+   * The writes for a participant becoming required ({@code sign} 1) or no longer being required
+   * ({@code sign} -1): the required count of every slot they marked changes by one.
+   *
+   * @param eventRef The event
+   * @param event Snapshot of the event with at least its slot length and {@link #TRACKED}
+   * @param submitted The participant's stored rankings (see {@link Submissions#stored}), or null
+   * @param sign 1 or -1
+   * @return Writes to queue with the necessity change; none if the event's aggregates are not
+   *     maintained or the participant has not submitted
+   */
+  static List<Consumer<WriteBatch>> requiredChange(
+      DocumentReference eventRef, DocumentSnapshot event, Object submitted, int sign) {
+    if (!event.exists() || !Boolean.TRUE.equals(event.getBoolean(TRACKED))) {
+      return List.of();
+    }
+    Long stored = event.getLong("slotMinutes");
+    int slotMinutes = SlotGranularity.orDefault(stored == null ? null : stored.intValue());
+    Map<Long, Long> deltas = new TreeMap<>();
+    for (long slot : storedWeights(submitted, slotMinutes).keySet()) {
+      deltas.put(slot, sign * REQUIRED);
+    }
+    return increments(eventRef, deltas);
+  }
+
+  /**
+   * The writes applying packed deltas: one merge of increments per day document.
+   *
+   * @param eventRef The event
+   * @param deltas Packed deltas by slot start minute
+   * @return Writes to queue in the batch that makes the summarized change
+   */
+  static List<Consumer<WriteBatch>> increments(DocumentReference eventRef, Map<Long, Long> deltas) {
+    Map<Long, Map<String, Object>> days = new TreeMap<>();
+    deltas.forEach(
+        (slot, delta) ->
+            days.computeIfAbsent(
+                    Math.floorDiv(slot, SlotIdCodec.MINUTES_PER_DAY), day -> new HashMap<>())
+                .put(
+                    SlotIdCodec.formatTime((int) Math.floorMod(slot, SlotIdCodec.MINUTES_PER_DAY)),
+                    FieldValue.increment(delta)));
+    List<Consumer<WriteBatch>> writes = new ArrayList<>();
+    days.forEach(
+        (day, increments) -> {
+          DocumentReference dayRef =
+              eventRef.collection(COLLECTION).document(SlotIdCodec.formatDate(day));
+          writes.add(batch -> batch.set(dayRef, increments, SetOptions.merge()));
+        });
+    return writes;
+  }
+
+  /**
+   * Unpacks the aggregates from the day documents.
+   *
+   * @param days Documents of the heatmap collection
+   * @return Cells of the slots anyone has marked, in chronological order
+   */
+  static List<HeatmapCell> fromDays(List<? extends DocumentSnapshot> days) {
+    List<HeatmapCell> cells = new ArrayList<>();
+    for (DocumentSnapshot day : days) {
+      Map<String, Object> data = day.getData();
+      if (data == null) continue;
+      data.forEach(
+          (time, value) -> {
+            if (!(value instanceof Number packed)) return;
+            long v = packed.longValue();
+            int participants = (int) (v & 0xFFFF);
+            if (participants > 0) {
+              cells.add(
+                  new HeatmapCell(
+                      day.getId() + "T" + time, participants, v >> 32, (int) ((v >> 16) & 0xFFFF)));
+            }
+          });
+    }
+    cells.sort(Comparator.comparing(HeatmapCell::getSlotId));
+    return cells;
+  }
+
+  /**
+   * Computes the aggregates directly from the slots, for events created without them.
+   *
+   * @param slots All slots of the event, sorted chronologically
+   * @param necessity Importance of each participant as stored; 5 is required
+   * @return Cells of the slots anyone has marked, in chronological order
+   */
+  static List<HeatmapCell> fromSlots(List<Slot> slots, Map<?, ?> necessity) {
+    List<HeatmapCell> cells = new ArrayList<>();
+    for (Slot slot : slots) {
+      Map<String, Integer> weights = slot.getParticipantWeights();
+      if (weights == null || weights.isEmpty()) continue;
+      long sum = 0;
+      int required = 0;
+      for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+        sum += entry.getValue();
+        if (isRequired(necessity == null ? null : necessity.get(entry.getKey()))) {
+          required++;
+        }
+      }
+      cells.add(new HeatmapCell(slot.getId(), weights.size(), sum, required));
+    }
+    return cells;
+  }
+}
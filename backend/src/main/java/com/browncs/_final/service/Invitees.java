@@ -0,0 +1,171 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.Member;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a list of invitees one at a time from a request body, so a list of any length is imported
+ * without holding it in memory. Each invitee is a {@link Member} with an email and, optionally, a
+ * necessity; an entry without a valid email address is returned with a null email, so it still
+ * counts towards the position a resumed import skips to.
+ *
+ * <p>Two formats are read:
+ *
+ * <ul>
+ *   <li>CSV ({@code text/csv}): one invitee per line, {@code email[,necessity]}, with an optional
+ *       header line starting with {@code email}.
+ *   <li>JSON: an array whose elements are email strings or {@code {"email": ..., "necessity": ...}}
+ *       objects.
+ * </ul>
+ */
+abstract class Invitees implements Iterator<Member> {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private Member next;
+  private boolean done;
+
+  /**
+   * @param body The request body
+   * @param contentType The request's content type; JSON unless it names CSV
+   * @return The invitees in the body, in order
+   */
+  static Invitees of(InputStream body, String contentType) {
+    if (contentType != null && contentType.toLowerCase().contains("csv")) {
+      return new Csv(body);
+    }
+    return new Json(body);
+  }
+
+  /**
+   * Reads the next invitee.
+   *
+   * @return The invitee, or null at the end of the list
+   * @throws IOException if the body cannot be read
+   */
+  abstract Member read() throws IOException;
+
+  @Override
+  public boolean hasNext() {
+    if (this.next == null && !this.done) {
+      try {
+        this.next = read();
+      } catch (JsonProcessingException e) {
+        throw new IllegalArgumentException("Malformed invitee list: " + e.getOriginalMessage());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      this.done = this.next == null;
+    }
+    return this.next != null;
+  }
+
+  @Override
+  public Member next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Member member = this.next;
+    this.next = null;
+    return member;
+  }
+
+  /** An invitee, with a null email if {@code email} is not a plausible address. */
+  static Member invitee(String email, Integer necessity) {
+    Member member = new Member();
+    String trimmed = email == null ? "" : email.trim();
+    member.setEmail(trimmed.indexOf('@') > 0 && !trimmed.contains(" ") ? trimmed : null);
+    member.setNecessity(necessity);
+    return member;
+  }
+
+  /** Invitees of a CSV body. */
+  private static final class Csv extends Invitees {
+    private final BufferedReader reader;
+    private boolean first = true;
+
+    Csv(InputStream body) {
+      this.reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    Member read() throws IOException {
+      String line;
+      while ((line = this.reader.readLine()) != null) {
+        boolean header = this.first;
+        this.first = false;
+        if (line.isBlank()) continue;
+        String[] fields = line.split(",", -1);
+        String email = unquote(fields[0]);
+        if (header && email.equalsIgnoreCase("email")) continue;
+        String level = fields.length > 1 ? unquote(fields[1]) : "";
+        if (level.isEmpty()) {
+          return invitee(email, null);
+        }
+        try {
+          return invitee(email, Integer.parseInt(level));
+        } catch (NumberFormatException e) {
+          return invitee(null, null);
+        }
+      }
+      return null;
+    }
+
+    private static String unquote(String field) {
+      String trimmed = field.trim();
+      if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+        return trimmed.substring(1, trimmed.length() - 1).trim();
+      }
+      return trimmed;
+    }
+  }
+
+  /** Invitees of a JSON array body. */
+  private static final class Json extends Invitees {
+    private final InputStream body;
+    private JsonParser parser;
+
+    Json(InputStream body) {
+      this.body = body;
+    }
+
+    @Override
+    Member read() throws IOException {
+      if (this.parser == null) {
+        this.parser = MAPPER.getFactory().createParser(this.body);
+        if (this.parser.nextToken() != JsonToken.START_ARRAY) {
+          throw new IllegalArgumentException("Invitee list must be a JSON array");
+        }
+      }
+      JsonToken token = this.parser.nextToken();
+      if (token == null || token == JsonToken.END_ARRAY) {
+        return null;
+      }
+      if (token == JsonToken.VALUE_STRING) {
+        return invitee(this.parser.getText(), null);
+      }
+      JsonNode node = this.parser.readValueAsTree();
+      if (!node.isObject()) {
+        return invitee(null, null);
+      }
+      JsonNode necessity = node.path("necessity");
+      if (!necessity.isMissingNode() && !necessity.isNull() && !necessity.isInt()) {
+        return invitee(null, null);
+      }
+      return invitee(
+          node.path("email").asText(null), necessity.isInt() ? necessity.intValue() : null);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.Event;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off migration that stores {@code lastAvailableDay} on events created before it was kept,
+ * since ordered listings skip documents that lack it. Runs at startup when {@code
+ * migrations.last-available-day} is set; set it for one deployment and remove it once the migration
+ * has run.
+ *
+ * <p>The events are scanned in pages ordered by ID, and the missing fields of each page are written
+ * before the next one is read, so memory does not grow with the number of events. Events that
+ * already have the field are left alone, so running it again is harmless.
+ */
+@Component
+@ConditionalOnProperty("migrations.last-available-day")
+public class LastAvailableDayMigration implements ApplicationRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(LastAvailableDayMigration.class);
+
+  // Events read per page; a page's writes fit in one batch
+  static final int PAGE_SIZE = Batches.MAX_WRITES;
+
+  private final Firestore db;
+  private final FirestoreMetrics metrics;
+
+  public LastAvailableDayMigration(Firestore db, FirestoreMetrics metrics) {
+    this.db = db;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) throws ExecutionException, InterruptedException {
+    logger.info("Stored lastAvailableDay on {} events", migrate());
+  }
+
+  /**
+   * Stores the latest available day on every event that has available days but no {@code
+   * lastAvailableDay}.
+   *
+   * @return Number of events updated
+   * @throws ExecutionException If Firestore access fails
+   * @throws InterruptedException If Firestore access is interrupted
+   */
+  int migrate() throws ExecutionException, InterruptedException {
+    Query page =
+        this.db
+            .collection("events")
+            .select("availableDays", "lastAvailableDay")
+            .orderBy(FieldPath.documentId())
+            .limit(PAGE_SIZE);
+    int updated = 0;
+    while (true) {
+      List<QueryDocumentSnapshot> docs =
+          FirestoreFutures.await(this.metrics.track("events.scan", page.get())).getDocuments();
+      List<Consumer<WriteBatch>> writes = new ArrayList<>();
+      for (QueryDocumentSnapshot doc : docs) {
+        Event event = doc.toObject(Event.class);
+        String lastDay = EventService.lastDay(event.getAvailableDays());
+        if (event.getLastAvailableDay() == null && lastDay != null) {
+          writes.add(batch -> batch.update(doc.getReference(), "lastAvailableDay", lastDay));
+        }
+      }
+      if (!writes.isEmpty()) {
+        FirestoreFutures.await(
+            Batches.commit(this.db, this.metrics, "event.backfill", writes, List.of()));
+        updated += writes.size();
+      }
+      if (docs.size() < PAGE_SIZE) {
+        return updated;
+      }
+      page = page.startAfter(docs.get(docs.size() - 1));
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.Event;
+import com.browncs._final.model.Member;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Filter;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event membership kept in an {@code events/{eventId}/members} subcollection, one {@link Member}
+ * document per participant, instead of in the event document's participant lists.
+ *
+ * <p>A response to an invitation then writes only the participant's own small document, however
+ * many participants the event has, and the event document's size no longer grows with them. The
+ * events a user participates in are found with a collection-group query over every event's members.
+ * The event's {@code participantEmails}, {@code participantNecessity}, {@code
+ * confirmedParticipants} and {@code rejectedParticipants} are rebuilt from the members when it is
+ * loaded, with the same meaning as before: rejected participants are neither participants nor have
+ * a necessity. For events that keep their {@link Submissions}, so is {@code respondedParticipants}.
+ *
+ * <p>Only events with {@link #TRACKED} set keep their membership here, since they were created with
+ * it; older events keep it in the event document.
+ */
+public final class Members {
+
+  static final String COLLECTION = "members";
+  static final String TRACKED = "membersTracked";
+
+  static final String EMAIL = "email";
+  static final String EVENT_ID = "eventId";
+  static final String NECESSITY = "necessity";
+  static final String STATUS = "status";
+  static final String LAST_AVAILABLE_DAY = "lastAvailableDay";
+  static final String RESPONDED = "responded";
+
+  static final String INVITED = "invited";
+  static final String ACCEPTED = "accepted";
+  static final String REJECTED = "rejected";
+
+  private Members() {}
+
+  /**
+   * @param eventRef The event
+   * @param email A participant
+   * @return The participant's member document
+   */
+  static DocumentReference ref(DocumentReference eventRef, String email) {
+    return eventRef.collection(COLLECTION).document(email);
+  }
+
+  /**
+   * @param event A loaded event
+   * @return Whether its membership is kept in members documents
+   */
+  static boolean isTracked(DocumentSnapshot event) {
+    return Boolean.TRUE.equals(event.getBoolean(TRACKED));
+  }
+
+  /**
+   * Moves a new event's membership out of it: builds a member per participant, and clears the
+   * membership fields so they are not stored on the event document.
+   *
+   * @param event The event about to be created, with its ID and lastAvailableDay set
+   * @return Its members, all invited
+   */
+  static List<Member> detach(Event event) {
+    Map<String, Integer> necessity =
+        event.getParticipantNecessity() == null ? Map.of() : event.getParticipantNecessity();
+    List<Member> members = new ArrayList<>();
+    for (String email : event.getParticipantEmails()) {
+      Member member = new Member();
+      member.setEmail(email);
+      member.setEventId(event.getId());
+      member.setNecessity(necessity.get(email));
+      member.setStatus(INVITED);
+      member.setLastAvailableDay(event.getLastAvailableDay());
+      members.add(member);
+    }
+    event.setParticipantEmails(null);
+    event.setParticipantNecessity(null);
+    event.setConfirmedParticipants(null);
+    event.setRejectedParticipants(null);
+    event.setMembersTracked(true);
+    return members;
+  }
+
+  /**
+   * Rebuilds an event's membership fields from member documents.
+   *
+   * @param event The event, loaded without them
+   * @param members All of its member documents, or only some to show just their membership
+   */
+  static void attach(Event event, List<? extends DocumentSnapshot> members) {
+    List<String> participants = new ArrayList<>();
+    Map<String, Integer> necessity = new HashMap<>();
+    List<String> confirmed = new ArrayList<>();
+    List<String> rejected = new ArrayList<>();
+    List<String> responded = new ArrayList<>();
+    for (DocumentSnapshot doc : members) {
+      Member member = doc.toObject(Member.class);
+      if (member == null) continue;
+      String email = doc.getId();
+      if (REJECTED.equals(member.getStatus())) {
+        rejected.add(email);
+        continue;
+      }
+      participants.add(email);
+      if (member.getNecessity() != null) {
+        necessity.put(email, member.getNecessity());
+      }
+      if (ACCEPTED.equals(member.getStatus())) {
+        confirmed.add(email);
+      }
+      if (Boolean.TRUE.equals(member.getResponded())) {
+        responded.add(email);
+      }
+    }
+    event.setParticipantEmails(participants);
+    event.setParticipantNecessity(necessity);
+    event.setConfirmedParticipants(confirmed);
+    event.setRejectedParticipants(rejected);
+    if (Boolean.TRUE.equals(event.getSubmissionsTracked())) {
+      event.setRespondedParticipants(responded);
+    }
+  }
+
+  /**
+   * The memberships of a user, across all events, whose invitation they have not rejected, in the
+   * order {@link EventService} lists events.
+   *
+   * @param db Firestore instance
+   * @param email The user
+   * @param notBefore If set, only events whose last available day is on or after it
+   * @param direction Order of the events' last available days, and then of their IDs
+   * @return The query
+   */
+  static Query forUser(Firestore db, String email, String notBefore, Query.Direction direction) {
+    Filter filter =
+        Filter.and(
+            Filter.equalTo(EMAIL, email), Filter.inArray(STATUS, List.of(INVITED, ACCEPTED)));
+    if (notBefore != null) {
+      filter = Filter.and(filter, Filter.greaterThanOrEqualTo(LAST_AVAILABLE_DAY, notBefore));
+    }
+    return db.collectionGroup(COLLECTION)
+        .where(filter)
+        .orderBy(LAST_AVAILABLE_DAY, direction)
+        .orderBy(EVENT_ID, direction);
+  }
+
+  /** The field path of a participant's necessity on an event that keeps it in the document. */
+  static FieldPath legacyNecessity(String email) {
+    return FieldPath.of("participantNecessity", email);
+  }
+}
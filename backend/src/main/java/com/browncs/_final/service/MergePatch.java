@@ -0,0 +1,97 @@
+package com.browncs._final.service;
+
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Turns a JSON Merge Patch (RFC 7386) into the minimal set of Firestore field-path updates against
+ * a document's current data. Members set to {@code null} become field deletes, nested objects are
+ * merged member by member, and anything else (including arrays) replaces the current value. Values
+ * equal to what is already stored are left out, so an edit only writes what actually changed.
+ */
+public final class MergePatch {
+
+  private MergePatch() {}
+
+  /**
+   * Computes the field-path updates that apply {@code patch} to {@code current}.
+   *
+   * @param current The document's current data (may be null for a missing document)
+   * @param patch The merge patch object
+   * @return Changed field paths mapped to their new values or {@link FieldValue#delete()}
+   */
+  public static Map<FieldPath, Object> diff(
+      Map<String, Object> current, Map<String, Object> patch) {
+    Map<FieldPath, Object> updates = new LinkedHashMap<>();
+    diff(List.of(), current, patch, updates);
+    return updates;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void diff(
+      List<String> prefix,
+      Map<String, Object> current,
+      Map<String, Object> patch,
+      Map<FieldPath, Object> updates) {
+    for (Map.Entry<String, Object> entry : patch.entrySet()) {
+      List<String> path = new ArrayList<>(prefix);
+      path.add(entry.getKey());
+      FieldPath fieldPath = FieldPath.of(path.toArray(String[]::new));
+      Object currentValue = current == null ? null : current.get(entry.getKey());
+      Object patchValue = entry.getValue();
+
+      if (patchValue == null) {
+        if (current != null && current.containsKey(entry.getKey())) {
+          updates.put(fieldPath, FieldValue.delete());
+        }
+      } else if (patchValue instanceof Map<?, ?> patchMap && currentValue instanceof Map<?, ?>) {
+        diff(path, (Map<String, Object>) currentValue, (Map<String, Object>) patchMap, updates);
+      } else if (patchValue instanceof Map<?, ?> patchMap) {
+        updates.put(fieldPath, withoutNulls((Map<String, Object>) patchMap));
+      } else if (!sameValue(currentValue, patchValue)) {
+        updates.put(fieldPath, patchValue);
+      }
+    }
+  }
+
+  /** A patch object applied to a non-object target is the patch with its null members removed. */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> withoutNulls(Map<String, Object> patch) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : patch.entrySet()) {
+      if (entry.getValue() instanceof Map<?, ?> nested) {
+        result.put(entry.getKey(), withoutNulls((Map<String, Object>) nested));
+      } else if (entry.getValue() != null) {
+        result.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return result;
+  }
+
+  /** Compares values the way Firestore stores them: JSON integers and Firestore longs are equal. */
+  private static boolean sameValue(Object current, Object patch) {
+    if (current instanceof Number a && patch instanceof Number b) {
+      boolean integral =
+          (a instanceof Long || a instanceof Integer)
+              && (b instanceof Long || b instanceof Integer);
+      return integral ? a.longValue() == b.longValue() : a.doubleValue() == b.doubleValue();
+    }
+    if (current instanceof List<?> a && patch instanceof List<?> b) {
+      if (a.size() != b.size()) {
+        return false;
+      }
+      for (int i = 0; i < a.size(); i++) {
+        if (!sameValue(a.get(i), b.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return Objects.equals(current, patch);
+  }
+}
@@ -0,0 +1,204 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.Event;
+import com.browncs._final.model.PreferenceRequest;
+import com.browncs._final.model.Recurrence;
+import com.browncs._final.model.Slot;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Occurrences of a recurring event (see {@link Recurrence}), expanded on demand from its weekly
+ * template.
+ *
+ * <p>Only the template is stored: slot documents exist for the event's available days alone, and
+ * preferences submitted for any occurrence are moved onto the matching template slot, so a
+ * participant's weekly availability carries over to every occurrence. Reading or optimizing an
+ * occurrence moves the template slots forward to its dates. Creating a recurring event therefore
+ * costs the same as creating a one-off event of its first week, however many occurrences it has.
+ */
+public final class Occurrences {
+
+  // Upper bound on the occurrences of one event, about ten years of weekly meetings
+  static final int MAX_OCCURRENCES = 520;
+
+  private static final int DAYS_PER_WEEK = 7;
+
+  // Epoch day of the template's first day
+  private final long anchor;
+  // Days from the template's first to its last day
+  private final long span;
+  // Days between the starts of consecutive occurrences
+  private final long period;
+  private final int count;
+
+  private Occurrences(long anchor, long span, long period, int count) {
+    this.anchor = anchor;
+    this.span = span;
+    this.period = period;
+    this.count = count;
+  }
+
+  /**
+   * @param event A recurring event
+   * @return Its occurrences
+   * @throws IllegalArgumentException if the recurrence or the template is invalid
+   */
+  public static Occurrences of(Event event) {
+    return of(event.getRecurrence(), event.getAvailableDays());
+  }
+
+  /**
+   * @param recurrence The event's recurrence
+   * @param availableDays The event's available days, its weekly template
+   * @return The event's occurrences
+   * @throws IllegalArgumentException if the recurrence or the template is invalid
+   */
+  public static Occurrences of(Recurrence recurrence, List<String> availableDays) {
+    if (availableDays == null || availableDays.isEmpty()) {
+      throw new IllegalArgumentException("A recurring event needs available days");
+    }
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    for (String day : availableDays) {
+      long epochDay = SlotIdCodec.parseDate(day);
+      first = Math.min(first, epochDay);
+      last = Math.max(last, epochDay);
+    }
+    if (last - first >= DAYS_PER_WEEK) {
+      throw new IllegalArgumentException("The available days of a recurring event must fit a week");
+    }
+
+    Integer interval = recurrence.getIntervalWeeks();
+    if (interval != null && (interval < 1 || interval > MAX_OCCURRENCES)) {
+      throw new IllegalArgumentException(
+          "intervalWeeks must be between 1 and " + MAX_OCCURRENCES + ", was " + interval);
+    }
+    long period = (long) (interval == null ? 1 : interval) * DAYS_PER_WEEK;
+
+    long count;
+    if (recurrence.getCount() != null && recurrence.getUntil() != null) {
+      throw new IllegalArgumentException("A recurrence takes either count or until, not both");
+    } else if (recurrence.getCount() != null) {
+      count = recurrence.getCount();
+    } else if (recurrence.getUntil() != null) {
+      long until = SlotIdCodec.parseDate(recurrence.getUntil());
+      count = until < first ? 0 : (until - first) / period + 1;
+    } else {
+      throw new IllegalArgumentException("A recurrence needs a count or an until date");
+    }
+    if (count < 1 || count > MAX_OCCURRENCES) {
+      throw new IllegalArgumentException(
+          "A recurrence must have between 1 and " + MAX_OCCURRENCES + " occurrences");
+    }
+    return new Occurrences(first, last - first, period, (int) count);
+  }
+
+  /** Number of occurrences, including the first. */
+  public int count() {
+    return this.count;
+  }
+
+  /** Last day of the last occurrence, the recurring event's {@code lastAvailableDay}. */
+  public String lastDay() {
+    return SlotIdCodec.formatDate(this.anchor + (this.count - 1) * this.period + this.span);
+  }
+
+  /**
+   * @param today Epoch day of today
+   * @return The first occurrence that has not ended by {@code today}, or the last one if all have
+   */
+  public int next(long today) {
+    long pending = today - this.anchor - this.span;
+    long next = pending <= 0 ? 0 : (pending + this.period - 1) / this.period;
+    return (int) Math.min(next, this.count - 1);
+  }
+
+  /**
+   * Moves the template slots to the dates of one occurrence. The copies share the template's
+   * participant weights.
+   *
+   * @param template Slots of the event's available days, sorted chronologically
+   * @param occurrence Index of the occurrence, from 0
+   * @return The occurrence's slots, sorted chronologically
+   * @throws IllegalArgumentException if there is no such occurrence
+   */
+  public List<Slot> expand(List<Slot> template, int occurrence) {
+    if (occurrence < 0 || occurrence >= this.count) {
+      throw new IllegalArgumentException("No occurrence " + occurrence);
+    }
+    long shift = occurrence * this.period;
+    List<Slot> slots = new ArrayList<>(template.size());
+    for (Slot source : template) {
+      long start = SlotIdCodec.parseSlotId(source.getId()) + shift * SlotIdCodec.MINUTES_PER_DAY;
+      Slot slot = new Slot();
+      slot.setId(SlotIdCodec.formatSlotId(start));
+      slot.setDate(SlotIdCodec.formatDate(Math.floorDiv(start, SlotIdCodec.MINUTES_PER_DAY)));
+      slot.setStartTime(source.getStartTime());
+      slot.setParticipantWeights(source.getParticipantWeights());
+      slots.add(slot);
+    }
+    return slots;
+  }
+
+  /**
+   * Moves a timespan of any occurrence onto the template.
+   *
+   * @param timespanId Timespan ID, e.g. "17:00-18:30@2025-05-06"
+   * @return The same times on the matching template day
+   * @throws IllegalArgumentException if the ID is malformed or the day is in no occurrence
+   */
+  public String toTemplate(String timespanId) {
+    long start = SlotIdCodec.timespanStart(SlotIdCodec.parseTimespan(timespanId));
+    long offset = Math.floorDiv(start, SlotIdCodec.MINUTES_PER_DAY) - this.anchor;
+    long occurrence = Math.floorDiv(offset, this.period);
+    long day = offset - occurrence * this.period;
+    if (occurrence < 0 || occurrence >= this.count || day > this.span) {
+      throw new IllegalArgumentException("Timespan is in no occurrence: " + timespanId);
+    }
+    if (occurrence == 0) {
+      return timespanId;
+    }
+    // Keep the "17:00-18:30@" prefix and replace the date that follows it
+    int at = timespanId.indexOf('@') + 1;
+    return timespanId.substring(0, at) + SlotIdCodec.formatDate(this.anchor + day);
+  }
+
+  /**
+   * Moves a submission for any occurrences onto the template. Where rankings of several occurrences
+   * land on the same template timespan, the one of the latest occurrence wins. Deletions outside
+   * every occurrence are dropped, as there is nothing to delete.
+   *
+   * @param request The submission as sent
+   * @return An equivalent submission for the template
+   * @throws IllegalArgumentException if a ranked timespan is malformed or in no occurrence
+   */
+  public PreferenceRequest toTemplate(PreferenceRequest request) {
+    Map<String, Integer> rankings = new LinkedHashMap<>();
+    request.getRankings().entrySet().stream()
+        .sorted(Map.Entry.comparingByKey(Occurrences::byStart))
+        .forEach(entry -> rankings.put(toTemplate(entry.getKey()), entry.getValue()));
+    List<String> deleted = new ArrayList<>();
+    for (String timespanId : request.getDeletedTimespanIds()) {
+      try {
+        deleted.add(toTemplate(timespanId));
+      } catch (IllegalArgumentException e) {
+        // nothing was ever stored there
+      }
+    }
+    PreferenceRequest template = new PreferenceRequest();
+    template.setUserEmail(request.getUserEmail());
+    template.setRankings(rankings);
+    template.setDeletedTimespanIds(deleted);
+    return template;
+  }
+
+  /** Orders timespan IDs by start. */
+  private static int byStart(String a, String b) {
+    return Long.compare(
+        SlotIdCodec.timespanStart(SlotIdCodec.parseTimespan(a)),
+        SlotIdCodec.timespanStart(SlotIdCodec.parseTimespan(b)));
+  }
+}
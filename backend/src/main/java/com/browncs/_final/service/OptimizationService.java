@@ -1,26 +1,86 @@
 package com.browncs._final.service;
 
 import com.browncs._final.model.Event;
+import com.browncs._final.model.OptimizationResult;
 import com.browncs._final.model.Slot;
 import com.browncs._final.model.SlotBlock;
 import com.google.cloud.firestore.*;
 import com.google.firebase.cloud.FirestoreClient;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import java.time.Clock;
 import java.time.Duration;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
  * Service responsible for computing and saving optimal time blocks for an event based on
  * participant availability, preferences, and necessity levels.
+ *
+ * <p>Each operation has an {@code ...Async} variant that composes the Firestore futures without
+ * blocking; the synchronous methods wait on those.
  */
 @Service
 public class OptimizationService {
 
-  private static final DateTimeFormatter formatter =
-      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+  @Value("${optimization.commit.max-attempts:5}")
+  private int commitAttempts = 5;
+
+  @Value("${optimization.commit.initial-backoff:25ms}")
+  private Duration commitBackoff = Duration.ofMillis(25);
+
+  // Tells which occurrence is next and which commitments have expired
+  private Clock clock = Clock.systemDefaultZone();
+
+  // Concurrent optimize calls for the same event share one computation and commit
+  private final SingleFlight<String, OptimizationResult> optimizeFlight;
+  // Per flight key: callers receiving the progress of the run in flight
+  private final Map<String, List<Consumer<List<SlotBlock>>>> watchers = new ConcurrentHashMap<>();
+  private final FirestoreMetrics metrics;
+  private final Counter deferredFailures;
+
+  // Shape of each scored event, for sizing the optimizer against real workloads
+  private final DistributionSummary slotCount;
+  private final DistributionSummary participantCount;
+  private final DistributionSummary windowCount;
+
+  public OptimizationService(FirestoreMetrics metrics) {
+    MeterRegistry registry = metrics.registry();
+    this.metrics = metrics;
+    this.optimizeFlight = new SingleFlight<>("optimize", registry);
+    this.slotCount =
+        DistributionSummary.builder("optimize.slots")
+            .description("Slots loaded per optimization")
+            .register(registry);
+    this.participantCount =
+        DistributionSummary.builder("optimize.participants")
+            .description("Participants with a necessity level per optimization")
+            .register(registry);
+    this.windowCount =
+        DistributionSummary.builder("optimize.windows")
+            .description("Candidate windows scored per optimization")
+            .register(registry);
+    this.deferredFailures =
+        Counter.builder("optimize.deferred.failed")
+            .description("Commits left to finish after the budget ran out that failed")
+            .register(registry);
+  }
+
+  /** Replaces the clock the current date is read from. */
+  void setClock(Clock clock) {
+    this.clock = clock;
+  }
 
   /**
    * Runs the optimization algorithm and saves the top 5 scoring time blocks to the given event's
@@ -33,28 +93,265 @@ public class OptimizationService {
    */
   public List<SlotBlock> optimizeAndSave(String eventId)
       throws ExecutionException, InterruptedException {
+    return FirestoreFutures.await(optimizeAndSaveAsync(eventId));
+  }
+
+  /**
+   * Asynchronous variant of {@link #optimizeAndSave(String)}.
+   *
+   * <p>Nothing runs inside a transaction. The event is read and the slots are loaded and scored
+   * first; then only the {@code optimalSlots} field is written, guarded by the update time of the
+   * event snapshot that was scored. If the event changed in between, the precondition fails and the
+   * event is re-read. Blocks are only recomputed if the inputs to scoring changed, and the commit
+   * is retried under a bounded backoff policy.
+   *
+   * <p>Calls for an event that is already being optimized join that run and receive its result
+   * rather than reloading the slots and rewriting the event themselves. A run that started before a
+   * concurrent preference write cannot commit stale blocks, since its precondition fails and it
+   * rescores.
+   *
+   * <p>A recurring event is optimized for its next occurrence that has not ended yet, expanded from
+   * its weekly template (see {@link Occurrences}), so that participants' commitments are checked
+   * against the dates it will actually take place on.
+   *
+   * @param eventId ID of the event to optimize
+   * @return Future list of the top 5 optimal SlotBlocks
+   */
+  public CompletableFuture<List<SlotBlock>> optimizeAndSaveAsync(String eventId) {
+    return optimizeAndSaveAsync(eventId, null).thenApply(OptimizationResult::getBlocks);
+  }
+
+  /**
+   * Variant of {@link #optimizeAndSaveAsync(String)} that stops scoring once {@code budget} has
+   * elapsed since the call and saves the best blocks found by then. The days and cells of the event
+   * that can hold the best blocks are scored first (see {@link BlockRanker}), so a cut-short result
+   * is usually close to exact. If loading the slots used up the budget, only the most promising day
+   * is scored.
+   *
+   * <p>If the budget has run out once scoring is done, the result is returned without waiting for
+   * the commit, which finishes on its own. Such a commit is not retried: if the event changed in
+   * the meantime it is dropped, counted in {@code optimize.deferred.failed}, and the next
+   * optimization saves instead. The call can still overrun the budget by the slot load and the
+   * scoring of one day.
+   *
+   * <p>Calls join a run already in flight for the same event and budget.
+   *
+   * @param eventId ID of the event to optimize
+   * @param budget Time to spend before settling for the best blocks so far, or null for no limit
+   * @return Future best blocks, and whether they are exact
+   */
+  public CompletableFuture<OptimizationResult> optimizeAndSaveAsync(
+      String eventId, Duration budget) {
+    String key = flightKey(eventId, budget);
+    return this.optimizeFlight.execute(key, () -> observeRun(eventId, budget, key));
+  }
+
+  /**
+   * Variant of {@link #optimizeAndSaveAsync(String, Duration)} that reports the best blocks so far
+   * each time they improve while scoring. Calls join a run already in flight for the same event and
+   * budget like any other, and receive its progress from the time they join.
+   *
+   * @param eventId ID of the event to optimize
+   * @param budget Time to spend before settling for the best blocks so far
+   * @param progress Receives the best blocks so far, on the thread that scores them
+   * @return Future best blocks, and whether they are exact
+   */
+  public CompletableFuture<OptimizationResult> optimizeAndSaveAsync(
+      String eventId, Duration budget, Consumer<List<SlotBlock>> progress) {
+    String key = flightKey(eventId, budget);
+    this.watchers.compute(
+        key,
+        (k, list) -> {
+          List<Consumer<List<SlotBlock>>> watching =
+              list == null ? new CopyOnWriteArrayList<>() : list;
+          watching.add(progress);
+          return watching;
+        });
+    return this.optimizeFlight
+        .execute(key, () -> observeRun(eventId, budget, key))
+        .whenComplete(
+            (result, ex) ->
+                this.watchers.computeIfPresent(
+                    key,
+                    (k, list) -> {
+                      list.remove(progress);
+                      return list.isEmpty() ? null : list;
+                    }));
+  }
+
+  private static String flightKey(String eventId, Duration budget) {
+    return budget == null ? eventId : eventId + "@" + budget.toMillis();
+  }
+
+  /** Hands the best blocks so far to every caller watching the run of {@code key}. */
+  private void publish(String key, List<SlotBlock> blocks) {
+    List<Consumer<List<SlotBlock>>> watching = this.watchers.get(key);
+    if (watching != null) {
+      watching.forEach(progress -> progress.accept(blocks));
+    }
+  }
+
+  private CompletableFuture<OptimizationResult> observeRun(
+      String eventId, Duration budget, String key) {
+    long deadline = budget == null ? BlockRanker.NO_DEADLINE : System.nanoTime() + budget.toNanos();
+    Consumer<List<SlotBlock>> progress = budget == null ? null : blocks -> publish(key, blocks);
+    return this.metrics.observe(
+        "optimize.run",
+        KeyValues.of("event.id", eventId),
+        () -> optimizeAndCommit(eventId, deadline, progress));
+  }
+
+  /** Scores the event and commits the result; the body of one run. */
+  private CompletableFuture<OptimizationResult> optimizeAndCommit(
+      String eventId, long deadline, Consumer<List<SlotBlock>> progress) {
     Firestore db = FirestoreClient.getFirestore();
+    DocumentReference eventRef = db.collection("events").document(eventId);
+    AtomicReference<Scored> lastScored = new AtomicReference<>();
 
-    return db.runTransaction(
-            transaction -> {
-              DocumentReference eventRef = db.collection("events").document(eventId);
-              DocumentSnapshot snapshot = transaction.get(eventRef).get();
-              if (!snapshot.exists()) {
-                throw new IllegalArgumentException("Event not found: " + eventId);
-              }
+    return FirestoreFutures.retryOnConflict(
+        commitAttempts,
+        commitBackoff,
+        () -> {
+          // Members are listed alongside, for events that keep their membership there
+          CompletableFuture<QuerySnapshot> members =
+              this.metrics.track("members.list", eventRef.collection(Members.COLLECTION).get());
+          return this.metrics
+              .track("event.get", eventRef.get())
+              .thenCombine(members, StoredEvent::new)
+              .thenCompose(
+                  stored -> {
+                    DocumentSnapshot snapshot = stored.doc();
+                    if (!snapshot.exists()) {
+                      throw new IllegalArgumentException("Event not found: " + eventId);
+                    }
+                    Event event = snapshot.toObject(Event.class);
+                    if (Members.isTracked(snapshot)) {
+                      Members.attach(event, stored.members().getDocuments());
+                    }
 
-              Event event = snapshot.toObject(Event.class);
+                    // Compute optimal slots, reusing the previous attempt's blocks if the
+                    // concurrent write did not touch anything they depend on
+                    Scored previous = lastScored.get();
+                    CompletableFuture<Scored> result =
+                        previous != null && previous.sameInputs(event)
+                            ? CompletableFuture.completedFuture(previous)
+                            : scoreAsync(db, eventId, event, deadline, progress);
 
-              // Compute optimal slots
-              List<SlotBlock> computedBlocks = computeOptimalSlots(eventId, event);
+                    // Update only the optimalSlots field and the participants' commitments
+                    return result.thenCompose(
+                        scored -> {
+                          lastScored.set(scored);
+                          OptimizationResult computed = scored.result();
+                          this.metrics.annotate("result.exact", computed.isExact());
+                          CompletableFuture<Void> commit =
+                              commitOptimalSlots(
+                                  db,
+                                  eventRef,
+                                  snapshot,
+                                  event,
+                                  computed.getBlocks(),
+                                  scored.commitments());
+                          if (deadline != BlockRanker.NO_DEADLINE
+                              && System.nanoTime() - deadline >= 0) {
+                            // Out of budget: answer now and let the commit finish on its own
+                            commit.whenComplete(
+                                (ignored, ex) -> {
+                                  if (ex != null) this.deferredFailures.increment();
+                                });
+                            return CompletableFuture.completedFuture(computed);
+                          }
+                          return commit.thenApply(ignored -> computed);
+                        });
+                  });
+        });
+  }
+
+  /** An event document and its members documents, read together. */
+  private record StoredEvent(DocumentSnapshot doc, QuerySnapshot members) {}
+
+  /**
+   * Writes the optimal blocks to the event in one write, guarded by the update time of the snapshot
+   * that was scored, so an invitation response that lands after the snapshot fails it rather than
+   * being overwritten. Once it has committed, the top block is merged into the commitment entry
+   * (see {@link Commitments}) of each participant whose entry does not hold it yet, along with
+   * deletes of their expired entries. A run that changes neither writes nothing more, so repeating
+   * an optimization costs one write however many participants the event has.
+   *
+   * <p>The entries of events that keep their membership in {@link Members members} documents never
+   * set the confirmed flag, which their acceptances always write themselves, so a rejection racing
+   * the optimization is never overwritten with it. Events listing their participants mark the
+   * confirmed ones, whose acceptances may predate the index; a rejection landing between the two
+   * commits can leave such an entry behind until it expires.
+   *
+   * @param db Firestore instance
+   * @param eventRef The event document
+   * @param snapshot The event snapshot that was scored
+   * @param event The event as scored
+   * @param blocks The blocks computed for it
+   * @param commitments The participants' commitments read while scoring
+   * @return Future that completes once every batch has committed
+   */
+  private CompletableFuture<Void> commitOptimalSlots(
+      Firestore db,
+      DocumentReference eventRef,
+      DocumentSnapshot snapshot,
+      Event event,
+      List<SlotBlock> blocks,
+      Commitments commitments) {
+    String eventId = eventRef.getId();
+    Map<String, Object> entry = Commitments.entryFor(blocks, SlotGranularity.of(event));
+    Map<String, Object> confirmedEntry = new HashMap<>(entry);
+    if (!Boolean.TRUE.equals(event.getMembersTracked())) {
+      confirmedEntry.put(Commitments.CONFIRMED, true);
+    }
+
+    List<String> participants =
+        Objects.requireNonNullElse(event.getParticipantEmails(), List.<String>of());
+    List<String> confirmed =
+        Objects.requireNonNullElse(event.getConfirmedParticipants(), List.<String>of());
+    List<Consumer<WriteBatch>> writes = new ArrayList<>();
+    for (String participant : participants) {
+      Map<String, Object> wanted = confirmed.contains(participant) ? confirmedEntry : entry;
+      List<String> expired = commitments.expired(participant);
+      if (expired.isEmpty() && commitments.hasEntry(participant, wanted)) continue;
+      Map<String, Object> userEntries = new HashMap<>();
+      for (String expiredId : expired) {
+        userEntries.put(expiredId, FieldValue.delete());
+      }
+      userEntries.put(eventId, wanted);
+      DocumentReference userRef = db.collection("users").document(participant);
+      writes.add(
+          batch -> batch.set(userRef, Map.of(Commitments.FIELD, userEntries), SetOptions.merge()));
+    }
+
+    WriteBatch batch = db.batch();
+    batch.update(
+        eventRef, Precondition.updatedAt(snapshot.getUpdateTime()), "optimalSlots", blocks);
+    return this.metrics
+        .track("event.optimal.commit", batch.commit())
+        .thenCompose(
+            ignored ->
+                writes.isEmpty()
+                    ? CompletableFuture.<Void>completedFuture(null)
+                    : Batches.commit(db, this.metrics, "commitments.update", writes, List.of()));
+  }
 
-              // Update optimalSlots field
-              event.setOptimalSlots(computedBlocks);
-              transaction.set(eventRef, event);
+  /**
+   * Blocks computed for an event snapshot, and the commitments they avoid, kept so a lost commit
+   * race can skip rescoring.
+   */
+  private record Scored(Event event, OptimizationResult result, Commitments commitments) {
 
-              return computedBlocks;
-            })
-        .get();
+    /**
+     * Whether {@code other} has the same duration, necessity levels and submitted preferences. The
+     * preferences version tells whether submissions kept outside the event document changed.
+     */
+    boolean sameInputs(Event other) {
+      return event.getDurationMinutes() == other.getDurationMinutes()
+          && Objects.equals(event.getParticipantNecessity(), other.getParticipantNecessity())
+          && Objects.equals(event.getSubmittedPreferences(), other.getSubmittedPreferences())
+          && Objects.equals(event.getPreferencesUpdatedAt(), other.getPreferencesUpdatedAt());
+    }
   }
 
   /**
@@ -69,103 +366,112 @@ public class OptimizationService {
    */
   public List<SlotBlock> computeOptimalSlots(String eventId, Event event)
       throws ExecutionException, InterruptedException {
-
-    Firestore db = FirestoreClient.getFirestore();
-
-    // 1. Load all slots
-    CollectionReference slotCol = db.collection("events").document(eventId).collection("slots");
-    List<Slot> slots =
-        slotCol.get().get().getDocuments().stream()
-            .map(
-                doc -> {
-                  Slot slot = doc.toObject(Slot.class);
-                  slot.setId(doc.getId()); // explicitly set the ID from Firestore
-                  return slot;
-                })
-            .sorted(Comparator.comparing(Slot::getId))
-            .toList();
-
-    int blockSize = event.getDurationMinutes() / 15; // e.g., 60 min event = 4 slots
-    Map<String, Integer> necessity = event.getParticipantNecessity();
-
-    List<SlotBlock> results = new ArrayList<>();
-
-    // 2. Try every valid block of N consecutive slots
-    for (int i = 0; i <= slots.size() - blockSize; i++) {
-      List<Slot> block = slots.subList(i, i + blockSize);
-      if (!isValidBlock(block)) continue;
-
-      double score = computeBlockScore(block, necessity);
-      SlotBlock slotBlock = new SlotBlock();
-      slotBlock.setSlotIds(block.stream().map(Slot::getId).toList());
-      slotBlock.setTotalScore(score);
-      results.add(slotBlock);
-    }
-
-    // 3. Sort and return top 5
-    return results.stream()
-        .sorted((a, b) -> Double.compare(b.getTotalScore(), a.getTotalScore()))
-        .limit(5)
-        .toList();
+    return FirestoreFutures.await(computeOptimalSlotsAsync(eventId, event));
   }
 
   /**
-   * Validates whether a block of slots are consecutive 15-minute intervals.
+   * Asynchronous variant of {@link #computeOptimalSlots(String, Event)}.
    *
-   * @param block List of Slot objects to validate
-   * @return true if the slots form a valid block, false otherwise
+   * @param eventId The ID of the event
+   * @param event The event object containing duration and necessity mappings
+   * @return Future list of optimal SlotBlock objects
    */
-  private boolean isValidBlock(List<Slot> block) {
-    for (int j = 0; j < block.size() - 1; j++) {
-      LocalDateTime t1 = parse(block.get(j).getId());
-      LocalDateTime t2 = parse(block.get(j + 1).getId());
-      if (!Duration.between(t1, t2).equals(Duration.ofMinutes(15))) {
-        return false;
-      }
-    }
-    return true;
+  public CompletableFuture<List<SlotBlock>> computeOptimalSlotsAsync(String eventId, Event event) {
+    return scoreAsync(FirestoreClient.getFirestore(), eventId, event, BlockRanker.NO_DEADLINE, null)
+        .thenApply(scored -> scored.result().getBlocks());
   }
 
   /**
-   * Parses a slot ID (formatted as ISO datetime) into a LocalDateTime.
+   * Loads the event's slots and scores them until {@code deadline}.
    *
-   * @param slotId ID of the slot (e.g., "2025-04-29T17:00")
-   * @return LocalDateTime object
+   * @param db Firestore instance
+   * @param eventId The ID of the event
+   * @param event The event object containing duration and necessity mappings
+   * @param deadline {@link System#nanoTime()} at which to stop scoring, or {@link
+   *     BlockRanker#NO_DEADLINE}
+   * @param progress Receives the best blocks so far as they improve, or null
+   * @return Future best blocks, whether they are exact, and the commitments they avoid
    */
-  private LocalDateTime parse(String slotId) {
-    return LocalDateTime.parse(slotId, formatter);
+  private CompletableFuture<Scored> scoreAsync(
+      Firestore db,
+      String eventId,
+      Event event,
+      long deadline,
+      Consumer<List<SlotBlock>> progress) {
+    // 1. Load all slots, and the participants' commitments to other events alongside
+    CollectionReference slotCol = db.collection("events").document(eventId).collection("slots");
+    CompletableFuture<Commitments> busy = loadCommitmentsAsync(db, eventId, event);
+    return this.metrics
+        .track("slots.list", slotCol.get())
+        .thenCombine(
+            busy,
+            (snapshot, commitments) -> {
+              List<Slot> loaded =
+                  snapshot.getDocuments().stream()
+                      .map(
+                          doc -> {
+                            Slot slot = doc.toObject(Slot.class);
+                            slot.setId(doc.getId()); // explicitly set the ID from Firestore
+                            return slot;
+                          })
+                      .sorted(Comparator.comparing(Slot::getId))
+                      .toList();
+              List<Slot> slots =
+                  event.getRecurrence() == null ? loaded : nextOccurrence(event, loaded);
+              recordShape(slots, event);
+              // Time spent ranking blocks, excluding Firestore
+              OptimizationResult result =
+                  Observation.createNotStarted("optimize.scoring", this.metrics.observations())
+                      .observe(
+                          () ->
+                              BlockRanker.rankBlocks(
+                                  slots, event, commitments, deadline, progress));
+              return new Scored(event, result, commitments);
+            });
+  }
+
+  /** Expands the slots of a recurring event's next occurrence that has not ended yet. */
+  private List<Slot> nextOccurrence(Event event, List<Slot> template) {
+    Occurrences occurrences = Occurrences.of(event);
+    return occurrences.expand(template, occurrences.next(LocalDate.now(this.clock).toEpochDay()));
   }
 
   /**
-   * Computes a weighted score for a block of slots based on participant preferences for each slot
-   * and their assigned necessity levels.
+   * Reads the commitments of the event's participants with one masked batch get of their user
+   * documents, rather than looking at the other events themselves. Entries that ended before
+   * yesterday are expired; the day's margin covers slot IDs being in each event's own zone.
    *
-   * @param block The list of slots forming a valid block
-   * @param necessity Map from participant email to importance level (3 = optional, 5 = required)
-   * @return The total score of the block
+   * @param db Firestore instance
+   * @param eventId The event being optimized, whose own commitments are ignored
+   * @param event The event
+   * @return Future commitments of the participants to other events
    */
-  private double computeBlockScore(List<Slot> block, Map<String, Integer> necessity) {
-    double total = 0.0;
-
-    for (Slot slot : block) {
-      Map<String, Integer> weights = slot.getParticipantWeights();
-      if (weights == null) continue;
-
-      for (Map.Entry<String, Integer> entry : weights.entrySet()) {
-        String email = entry.getKey();
-        int weight = entry.getValue();
-        int importance = necessity.getOrDefault(email, 1); // default "preferred"
-
-        double factor =
-            switch (importance) {
-              case 5 -> 1.5; // required
-              case 3 -> 0.5; // optional
-              default -> 1.0; // preferred
-            };
-
-        total += weight * factor;
-      }
+  private CompletableFuture<Commitments> loadCommitmentsAsync(
+      Firestore db, String eventId, Event event) {
+    List<String> participants = event.getParticipantEmails();
+    if (participants == null || participants.isEmpty()) {
+      return CompletableFuture.completedFuture(Commitments.NONE);
     }
-    return total;
+    DocumentReference[] users =
+        participants.stream()
+            .map(email -> db.collection("users").document(email))
+            .toArray(DocumentReference[]::new);
+    long expiredBefore = (LocalDate.now(this.clock).toEpochDay() - 1) * SlotIdCodec.MINUTES_PER_DAY;
+    return this.metrics
+        .track("commitments.get", db.getAll(users, FieldMask.of(Commitments.FIELD)))
+        .thenApply(snapshots -> Commitments.fromUsers(snapshots, eventId, expiredBefore));
+  }
+
+  /** Records the size of the problem about to be scored, and tags the current span with it. */
+  private void recordShape(List<Slot> slots, Event event) {
+    int blockSize =
+        SlotGranularity.slotsPerBlock(event.getDurationMinutes(), SlotGranularity.of(event));
+    Map<String, Integer> necessity = event.getParticipantNecessity();
+    int participants = necessity == null ? 0 : necessity.size();
+    this.slotCount.record(slots.size());
+    this.participantCount.record(participants);
+    this.metrics.annotate("slot.count", slots.size());
+    this.metrics.annotate("participant.count", participants);
+    this.windowCount.record(blockSize < 1 ? 0 : Math.max(0, slots.size() - blockSize + 1));
   }
 }
@@ -0,0 +1,266 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.ImportProgress;
+import com.browncs._final.model.Member;
+import com.google.cloud.firestore.*;
+import io.micrometer.common.KeyValues;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+/**
+ * Imports a list of invitees into an existing event, for lists too long to send with the event
+ * itself. The list is read as it arrives and written in chunks, each of them one batch that adds
+ * its new {@link Members members}, their users' {@code eventsParticipating}, and the import's
+ * {@link ImportProgress progress}, and bumps the event's {@code membersUpdatedAt}. Each chunk's new
+ * members are invited as soon as it commits. An import that fails part way resumes after its last
+ * committed chunk when the same list is sent again with its ID, and invitees who are already
+ * members are skipped, so nobody is added or invited twice.
+ */
+@Service
+public class ParticipantImportService {
+
+  static final String COLLECTION = "imports";
+
+  static final String RUNNING = "running";
+  static final String DONE = "done";
+
+  // Each new member takes two writes, and the progress and event documents one more each
+  static final int CHUNK_SIZE = (Batches.MAX_WRITES - 2) / 2;
+
+  private final Firestore db;
+  private final EmailService emailService;
+  private final Executor fanOutExecutor;
+  private final FirestoreMetrics metrics;
+
+  public ParticipantImportService(
+      Firestore db,
+      EmailService emailService,
+      @Qualifier("fanOutExecutor") Executor fanOutExecutor,
+      FirestoreMetrics metrics) {
+    this.db = db;
+    this.emailService = emailService;
+    this.fanOutExecutor = fanOutExecutor;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Imports invitees into an event that keeps its membership in members documents. The list is read
+   * on the calling thread, which waits for each chunk to commit before reading the next, so at most
+   * one chunk is held at a time. Each chunk's invitations are sent in bulk on the fan-out executor
+   * once it has committed, so a later failure cannot lose them, and the import returns once every
+   * chunk is committed, without waiting for the sends.
+   *
+   * @param eventId The event to invite them to
+   * @param importId The ID of an import to resume, or null to start a new one
+   * @param body The invitee list, read as it is written; see {@link Invitees}
+   * @param contentType The list's content type
+   * @return The import's progress once it is done
+   * @throws IllegalArgumentException if the event does not exist or keeps its membership in the
+   *     event document, or the list is malformed
+   */
+  public ImportProgress importParticipants(
+      String eventId, String importId, InputStream body, String contentType)
+      throws ExecutionException, InterruptedException {
+    String id = importId == null || importId.isBlank() ? UUID.randomUUID().toString() : importId;
+    DocumentReference eventRef = this.db.collection("events").document(eventId);
+    DocumentReference progressRef = eventRef.collection(COLLECTION).document(id);
+    return FirestoreFutures.await(
+        this.metrics.observe(
+            "participants.import",
+            KeyValues.of("event.id", eventId, "import.id", id),
+            () -> {
+              try {
+                return CompletableFuture.completedFuture(
+                    run(eventRef, progressRef, Invitees.of(body, contentType)));
+              } catch (CompletionException e) {
+                return CompletableFuture.failedFuture(FirestoreFutures.unwrap(e));
+              }
+            }));
+  }
+
+  private ImportProgress run(
+      DocumentReference eventRef, DocumentReference progressRef, Invitees invitees) {
+    List<DocumentSnapshot> docs =
+        join(
+            this.metrics.track(
+                "import.start",
+                this.db.getAll(
+                    new DocumentReference[] {eventRef, progressRef},
+                    FieldMask.of("title", "lastAvailableDay", Members.TRACKED))));
+    DocumentSnapshot event = docs.get(0);
+    if (!event.exists() || !Members.isTracked(event)) {
+      throw new IllegalArgumentException("Event " + eventRef.getId() + " does not accept imports");
+    }
+    ImportProgress progress = resume(docs.get(1), eventRef.getId(), progressRef.getId());
+    if (DONE.equals(progress.getStatus())) {
+      return progress;
+    }
+    return new Import(eventRef, progressRef, event, progress).run(invitees);
+  }
+
+  /**
+   * @param eventId The event
+   * @param importId The import
+   * @return Future progress of the import
+   * @throws IllegalArgumentException (in the future) if there is no such import
+   */
+  public CompletableFuture<ImportProgress> getImportProgressAsync(String eventId, String importId) {
+    DocumentReference progressRef =
+        this.db.collection("events").document(eventId).collection(COLLECTION).document(importId);
+    return this.metrics
+        .track("import.get", progressRef.get())
+        .thenApply(
+            doc -> {
+              if (!doc.exists()) {
+                throw new IllegalArgumentException("Import not found: " + importId);
+              }
+              return doc.toObject(ImportProgress.class);
+            });
+  }
+
+  private static ImportProgress resume(DocumentSnapshot doc, String eventId, String importId) {
+    ImportProgress progress = doc.exists() ? doc.toObject(ImportProgress.class) : null;
+    if (progress == null) {
+      progress = new ImportProgress();
+      progress.setImportId(importId);
+      progress.setEventId(eventId);
+      progress.setStatus(RUNNING);
+    }
+    return progress;
+  }
+
+  /** One run of an import, from where an earlier run of it stopped. */
+  private final class Import {
+    private final DocumentReference eventRef;
+    private final DocumentReference progressRef;
+    private final DocumentSnapshot event;
+    private final ImportProgress progress;
+
+    Import(
+        DocumentReference eventRef,
+        DocumentReference progressRef,
+        DocumentSnapshot event,
+        ImportProgress progress) {
+      this.eventRef = eventRef;
+      this.progressRef = progressRef;
+      this.event = event;
+      this.progress = progress;
+    }
+
+    ImportProgress run(Invitees invitees) {
+      // Skip what an earlier run committed
+      for (long i = 0; i < this.progress.getCommitted() && invitees.hasNext(); i++) {
+        invitees.next();
+      }
+      List<Member> chunk = new ArrayList<>(CHUNK_SIZE);
+      while (invitees.hasNext()) {
+        chunk.add(invitees.next());
+        if (chunk.size() == CHUNK_SIZE) {
+          commitChunk(chunk);
+          chunk.clear();
+        }
+      }
+      if (!chunk.isEmpty()) {
+        commitChunk(chunk);
+      }
+
+      this.progress.setStatus(DONE);
+      WriteBatch batch = db.batch();
+      batch.set(this.progressRef, document(), SetOptions.merge());
+      join(metrics.track("import.finish", batch.commit()));
+      metrics.annotate("participant.added", this.progress.getAdded());
+      return this.progress;
+    }
+
+    /**
+     * Adds the chunk's new members and records it as committed, in one batch that also makes
+     * optimizations that read the old membership recompute, then invites them.
+     */
+    private void commitChunk(List<Member> chunk) {
+      Map<String, Member> unique = new LinkedHashMap<>();
+      for (Member invitee : chunk) {
+        if (invitee.getEmail() != null) {
+          unique.putIfAbsent(invitee.getEmail(), invitee);
+        }
+      }
+      DocumentReference[] refs =
+          unique.keySet().stream()
+              .map(email -> Members.ref(this.eventRef, email))
+              .toArray(DocumentReference[]::new);
+      List<DocumentSnapshot> existing =
+          refs.length == 0
+              ? List.of()
+              : join(metrics.track("members.get", db.getAll(refs, FieldMask.of(Members.STATUS))));
+      for (DocumentSnapshot doc : existing) {
+        if (doc.exists()) {
+          unique.remove(doc.getId());
+        }
+      }
+
+      WriteBatch batch = db.batch();
+      for (Member invitee : unique.values()) {
+        Member member = new Member();
+        member.setEmail(invitee.getEmail());
+        member.setEventId(this.eventRef.getId());
+        member.setNecessity(invitee.getNecessity());
+        member.setStatus(Members.INVITED);
+        member.setLastAvailableDay(this.event.getString("lastAvailableDay"));
+        batch.set(Members.ref(this.eventRef, member.getEmail()), member);
+        batch.set(
+            db.collection("users").document(member.getEmail()),
+            Map.of("eventsParticipating", FieldValue.arrayUnion(this.eventRef.getId())),
+            SetOptions.merge());
+      }
+      this.progress.setCommitted(this.progress.getCommitted() + chunk.size());
+      this.progress.setAdded(this.progress.getAdded() + unique.size());
+      this.progress.setSkipped(this.progress.getSkipped() + chunk.size() - unique.size());
+      batch.set(this.progressRef, document(), SetOptions.merge());
+      batch.update(this.eventRef, "membersUpdatedAt", FieldValue.serverTimestamp());
+      join(metrics.track("import.chunk", batch.commit()));
+
+      invite(List.copyOf(unique.keySet()));
+    }
+
+    /**
+     * Sends the invitations of a committed chunk's new members, as one bulk send. A resumed import
+     * skips the chunk, so it is sent as soon as the chunk commits rather than with later ones.
+     */
+    private void invite(List<String> recipients) {
+      if (recipients.isEmpty()) return;
+      String title = this.event.getString("title");
+      CompletableFuture.runAsync(
+          () -> emailService.sendEventInvites(recipients, title), fanOutExecutor);
+    }
+
+    private Map<String, Object> document() {
+      Map<String, Object> doc = new HashMap<>();
+      doc.put("importId", this.progress.getImportId());
+      doc.put("eventId", this.progress.getEventId());
+      doc.put("status", this.progress.getStatus());
+      doc.put("committed", this.progress.getCommitted());
+      doc.put("added", this.progress.getAdded());
+      doc.put("skipped", this.progress.getSkipped());
+      doc.put("updatedAt", FieldValue.serverTimestamp());
+      return doc;
+    }
+  }
+
+  /**
+   * Waits for a Firestore call on the importing thread; a failure surfaces as a {@link
+   * CompletionException} around it.
+   */
+  private static <T> T join(CompletableFuture<T> future) {
+    return future.join();
+  }
+}
@@ -0,0 +1,110 @@
+package com.browncs._final.service;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteResult;
+import io.micrometer.context.ContextRegistry;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the Firestore reads, writes and round trips made on behalf of one HTTP request, so that an
+ * endpoint whose RPC count grows with event size shows up in response headers, logs and tests.
+ *
+ * <p>The budget being charged is bound to the current thread. It is registered with Micrometer's
+ * context propagation, so {@link FirestoreFutures#toCompletable} rebinds it on the thread that
+ * completes a call and the fan-out executor carries it into its tasks; calls chained with {@code
+ * thenCompose} are therefore charged to the same request.
+ */
+public final class RpcBudget {
+
+  private static final ThreadLocal<RpcBudget> CURRENT = new ThreadLocal<>();
+
+  static {
+    // Lets context snapshots carry the budget across threads along with the current observation
+    ContextRegistry.getInstance()
+        .registerThreadLocalAccessor(
+            RpcBudget.class.getName(), CURRENT::get, CURRENT::set, CURRENT::remove);
+  }
+
+  private final AtomicInteger reads = new AtomicInteger();
+  private final AtomicInteger writes = new AtomicInteger();
+  private final AtomicInteger roundTrips = new AtomicInteger();
+
+  /** Restores the previously bound budget when closed. */
+  public interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  /**
+   * The budget bound to the current thread.
+   *
+   * @return The budget, or null if Firestore calls on this thread are not being counted
+   */
+  public static RpcBudget current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Binds a budget to the current thread until the returned scope is closed.
+   *
+   * @param budget The budget to charge, or null to stop counting
+   * @return Scope that restores the previous binding
+   */
+  public static Scope bind(RpcBudget budget) {
+    RpcBudget previous = CURRENT.get();
+    CURRENT.set(budget);
+    return () -> {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    };
+  }
+
+  /**
+   * Charges one completed round trip, plus the documents it read or wrote. Query results and {@code
+   * getAll} count one read per document returned (at least one, as Firestore bills empty queries);
+   * batch commits count one write per mutation.
+   *
+   * @param result The value the call completed with, or null if it failed
+   */
+  void record(Object result) {
+    this.roundTrips.incrementAndGet();
+    if (result instanceof DocumentSnapshot) {
+      this.reads.incrementAndGet();
+    } else if (result instanceof QuerySnapshot query) {
+      this.reads.addAndGet(Math.max(1, query.size()));
+    } else if (result instanceof WriteResult) {
+      this.writes.incrementAndGet();
+    } else if (result instanceof List<?> list && !list.isEmpty()) {
+      if (list.get(0) instanceof WriteResult) {
+        this.writes.addAndGet(list.size());
+      } else if (list.get(0) instanceof DocumentSnapshot) {
+        this.reads.addAndGet(list.size());
+      }
+    }
+  }
+
+  /** Documents read so far. */
+  public int reads() {
+    return this.reads.get();
+  }
+
+  /** Documents written so far. */
+  public int writes() {
+    return this.writes.get();
+  }
+
+  /** Firestore calls completed so far; a batch commit or transaction counts once. */
+  public int roundTrips() {
+    return this.roundTrips.get();
+  }
+
+  @Override
+  public String toString() {
+    return "reads=" + reads() + " writes=" + writes() + " roundTrips=" + roundTrips();
+  }
+}
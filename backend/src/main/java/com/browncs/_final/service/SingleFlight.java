@@ -0,0 +1,87 @@
+package com.browncs._final.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * In-process request coalescing. While a call for a key is in flight, further calls for the same
+ * key join it and receive its result instead of starting their own. Once the call completes the key
+ * is released, so the next caller starts a fresh call and sees any writes made since.
+ *
+ * <p>Publishes {@code singleflight.calls} counters tagged with the flight name and whether each
+ * call was {@code executed} or {@code coalesced}.
+ *
+ * @param <K> Key identifying calls that may share a result
+ * @param <V> Result type
+ */
+public final class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final Counter executed;
+  private final Counter coalesced;
+
+  /**
+   * @param name Name used to tag this flight's metrics
+   * @param registry Registry the metrics are published to
+   */
+  public SingleFlight(String name, MeterRegistry registry) {
+    this.executed =
+        Counter.builder("singleflight.calls")
+            .description("Calls that started their own computation or joined one in flight")
+            .tag("name", name)
+            .tag("result", "executed")
+            .register(registry);
+    this.coalesced =
+        Counter.builder("singleflight.calls")
+            .description("Calls that started their own computation or joined one in flight")
+            .tag("name", name)
+            .tag("result", "coalesced")
+            .register(registry);
+  }
+
+  /**
+   * Runs {@code call} for {@code key}, or joins the call already in flight for it.
+   *
+   * <p>Each caller gets its own copy of the shared future, so one caller cancelling does not cancel
+   * the computation for the others. Failures are delivered with their stage wrappers stripped.
+   *
+   * @param key Key of the call
+   * @param call Starts the computation; only invoked if no call for the key is in flight
+   * @return Future holding the shared result
+   */
+  public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+    CompletableFuture<V> shared = new CompletableFuture<>();
+    CompletableFuture<V> existing = this.inFlight.putIfAbsent(key, shared);
+    if (existing != null) {
+      this.coalesced.increment();
+      return existing.copy();
+    }
+
+    this.executed.increment();
+    CompletableFuture<V> result;
+    try {
+      result = call.get();
+    } catch (RuntimeException e) {
+      result = CompletableFuture.failedFuture(e);
+    }
+    result.whenComplete(
+        (value, ex) -> {
+          // Release the key first so callers arriving after completion start a fresh call
+          this.inFlight.remove(key, shared);
+          if (ex != null) {
+            shared.completeExceptionally(FirestoreFutures.unwrap(ex));
+          } else {
+            shared.complete(value);
+          }
+        });
+    return shared.copy();
+  }
+
+  /** Number of keys with a call currently in flight. */
+  public int inFlight() {
+    return this.inFlight.size();
+  }
+}
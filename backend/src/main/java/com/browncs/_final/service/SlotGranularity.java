@@ -0,0 +1,77 @@
+package com.browncs._final.service;
+
+import com.browncs._final.model.Event;
+
+/**
+ * Length of an event's slots. Each event picks its own when it is created, from the divisors of an
+ * hour no shorter than {@value #MIN_MINUTES} minutes, so slots always tile the hourly cells the
+ * optimizer aggregates over. Events created before the choice existed have no {@code slotMinutes}
+ * and use {@value #DEFAULT_MINUTES}.
+ */
+public final class SlotGranularity {
+
+  public static final int DEFAULT_MINUTES = 15;
+  public static final int MIN_MINUTES = 5;
+
+  private SlotGranularity() {}
+
+  /**
+   * @param event The event
+   * @return Length of the event's slots in minutes
+   */
+  public static int of(Event event) {
+    return orDefault(event.getSlotMinutes());
+  }
+
+  /**
+   * @param slotMinutes Stored slot length, or null for events that predate it
+   * @return Length of the slots in minutes; the default if none or an unusable length is stored
+   */
+  static int orDefault(Integer slotMinutes) {
+    return slotMinutes == null || slotMinutes <= 0 ? DEFAULT_MINUTES : slotMinutes;
+  }
+
+  /**
+   * Rejects slot lengths that do not divide an hour or are finer than {@value #MIN_MINUTES}
+   * minutes, and daily windows that do not start on a slot boundary. Since the length divides an
+   * hour, every slot of the event then starts at a multiple of it from midnight, which is how
+   * submitted timespans are checked against the grid (see {@link #isAligned}).
+   *
+   * @param event The event to be created, with its requested slot length, or null for the default
+   * @throws IllegalArgumentException if the length or the window's start is not allowed
+   */
+  public static void validate(Event event) {
+    Integer slotMinutes = event.getSlotMinutes();
+    if (slotMinutes != null && (slotMinutes < MIN_MINUTES || 60 % slotMinutes != 0)) {
+      throw new IllegalArgumentException(
+          "slotMinutes must divide 60 and be at least " + MIN_MINUTES + ", was " + slotMinutes);
+    }
+    int minutes = orDefault(slotMinutes);
+    if (event.getStartTime() != null
+        && !isAligned(SlotIdCodec.parseTime(event.getStartTime()), minutes)) {
+      throw new IllegalArgumentException(
+          "startTime must be on the " + minutes + "-minute slot grid, was " + event.getStartTime());
+    }
+  }
+
+  /**
+   * @param minute Epoch minute or minute of the day
+   * @param slotMinutes Slot length of the event
+   * @return Whether a slot of the event's grid starts at the minute
+   */
+  static boolean isAligned(long minute, int slotMinutes) {
+    return Math.floorMod(minute, slotMinutes) == 0;
+  }
+
+  /**
+   * Number of consecutive slots a meeting occupies, rounding up so the block always covers the
+   * whole meeting.
+   *
+   * @param durationMinutes Meeting duration
+   * @param slotMinutes Slot length
+   * @return Slots per block
+   */
+  public static int slotsPerBlock(int durationMinutes, int slotMinutes) {
+    return Math.max(0, (durationMinutes + slotMinutes - 1) / slotMinutes);
+  }
+}
@@ -0,0 +1,245 @@
+package com.browncs._final.service;
+
+/**
+ * Converts slot IDs ({@code "yyyy-MM-dd'T'HH:mm"}), timespan IDs ({@code "HH:mm-HH:mm@yyyy-MM-dd"})
+ * and their date and time parts to and from plain integers, with arithmetic on the characters
+ * rather than {@code java.time} parsing and formatting. Instants are epoch minutes: minutes since
+ * 1970-01-01T00:00 on the event's wall clock, with no time zone, so consecutive 15-minute slots are
+ * exactly 15 apart. Parsing allocates nothing; formatting allocates only the resulting string.
+ *
+ * <p>Input is validated strictly: every field must have exactly the digits shown, dates must exist
+ * in the proleptic Gregorian calendar, hours run 00-23 and a timespan must end after it starts on
+ * the same day. Anything else is rejected with an {@link IllegalArgumentException}.
+ */
+public final class SlotIdCodec {
+
+  public static final int MINUTES_PER_DAY = 24 * 60;
+
+  private static final int SLOT_ID_LENGTH = 16; // 2025-04-29T17:00
+  private static final int DATE_LENGTH = 10; // 2025-04-29
+  private static final int TIME_LENGTH = 5; // 17:00
+  private static final int TIMESPAN_LENGTH = 22; // 17:00-18:30@2025-04-29
+
+  // A parsed timespan packs its start instant above its length in minutes, which is under a day
+  private static final int LENGTH_BITS = 11;
+  private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+
+  // Days from 0000-03-01 to 1970-01-01, for the civil calendar conversions below
+  private static final long DAYS_0000_TO_1970 = 719_468;
+
+  private SlotIdCodec() {}
+
+  /**
+   * Parses a slot ID.
+   *
+   * @param slotId Slot ID, e.g. "2025-04-29T17:00"
+   * @return Epoch minute the slot starts at
+   */
+  public static long parseSlotId(CharSequence slotId) {
+    if (slotId.length() != SLOT_ID_LENGTH || slotId.charAt(DATE_LENGTH) != 'T') {
+      throw invalid("slot ID", slotId);
+    }
+    long day = parseDate(slotId, 0, "slot ID");
+    int time = parseTime(slotId, DATE_LENGTH + 1, "slot ID");
+    return day * MINUTES_PER_DAY + time;
+  }
+
+  /**
+   * Formats an epoch minute as a slot ID.
+   *
+   * @param epochMinute Epoch minute the slot starts at
+   * @return Slot ID, e.g. "2025-04-29T17:00"
+   */
+  public static String formatSlotId(long epochMinute) {
+    char[] out = new char[SLOT_ID_LENGTH];
+    writeDate(out, 0, Math.floorDiv(epochMinute, MINUTES_PER_DAY));
+    out[DATE_LENGTH] = 'T';
+    writeTime(out, DATE_LENGTH + 1, (int) Math.floorMod(epochMinute, MINUTES_PER_DAY));
+    return new String(out);
+  }
+
+  /**
+   * Parses a date as stored in an event's available days.
+   *
+   * @param date Date, e.g. "2025-04-29"
+   * @return Epoch day
+   */
+  public static long parseDate(CharSequence date) {
+    if (date.length() != DATE_LENGTH) {
+      throw invalid("date", date);
+    }
+    return parseDate(date, 0, "date");
+  }
+
+  /**
+   * Formats an epoch day as a date.
+   *
+   * @param epochDay Epoch day
+   * @return Date, e.g. "2025-04-29"
+   */
+  public static String formatDate(long epochDay) {
+    char[] out = new char[DATE_LENGTH];
+    writeDate(out, 0, epochDay);
+    return new String(out);
+  }
+
+  /**
+   * Parses a time of day as stored in an event's start and end times.
+   *
+   * @param time Time, e.g. "09:00"
+   * @return Minute of the day
+   */
+  public static int parseTime(CharSequence time) {
+    if (time.length() != TIME_LENGTH) {
+      throw invalid("time", time);
+    }
+    return parseTime(time, 0, "time");
+  }
+
+  /**
+   * Formats a minute of the day as a slot start time.
+   *
+   * @param minuteOfDay Minute of the day, from 0 to 1439
+   * @return Time, e.g. "09:00"
+   */
+  public static String formatTime(int minuteOfDay) {
+    if (minuteOfDay < 0 || minuteOfDay >= MINUTES_PER_DAY) {
+      throw new IllegalArgumentException("Minute of day out of range: " + minuteOfDay);
+    }
+    char[] out = new char[TIME_LENGTH];
+    writeTime(out, 0, minuteOfDay);
+    return new String(out);
+  }
+
+  /**
+   * Parses a timespan ID submitted with a participant's preferences. Read the result with {@link
+   * #timespanStart} and {@link #timespanEnd}.
+   *
+   * @param timespanId Timespan ID, e.g. "17:00-18:30@2025-04-29"
+   * @return The timespan's start and end, packed into one value
+   */
+  public static long parseTimespan(CharSequence timespanId) {
+    if (timespanId.length() != TIMESPAN_LENGTH
+        || timespanId.charAt(TIME_LENGTH) != '-'
+        || timespanId.charAt(2 * TIME_LENGTH + 1) != '@') {
+      throw invalid("timespan ID", timespanId);
+    }
+    int start = parseTime(timespanId, 0, "timespan ID");
+    int end = parseTime(timespanId, TIME_LENGTH + 1, "timespan ID");
+    long day = parseDate(timespanId, 2 * TIME_LENGTH + 2, "timespan ID");
+    if (end <= start) {
+      throw new IllegalArgumentException("Timespan ends before it starts: " + timespanId);
+    }
+    return ((day * MINUTES_PER_DAY + start) << LENGTH_BITS) | (end - start);
+  }
+
+  /**
+   * @param timespan Value returned by {@link #parseTimespan}
+   * @return Epoch minute the timespan starts at
+   */
+  public static long timespanStart(long timespan) {
+    return timespan >> LENGTH_BITS;
+  }
+
+  /**
+   * @param timespan Value returned by {@link #parseTimespan}
+   * @return Epoch minute the timespan ends at, exclusive
+   */
+  public static long timespanEnd(long timespan) {
+    return timespanStart(timespan) + (timespan & LENGTH_MASK);
+  }
+
+  /** Parses {@code yyyy-MM-dd} at {@code from}, whose length the caller has already checked. */
+  private static long parseDate(CharSequence s, int from, String what) {
+    int year = digits(s, from, 4, what);
+    int month = digits(s, from + 5, 2, what);
+    int day = digits(s, from + 8, 2, what);
+    if (s.charAt(from + 4) != '-'
+        || s.charAt(from + 7) != '-'
+        || month < 1
+        || month > 12
+        || day < 1
+        || day > lengthOfMonth(year, month)) {
+      throw invalid(what, s);
+    }
+    return epochDay(year, month, day);
+  }
+
+  /** Parses {@code HH:mm} at {@code from}, whose length the caller has already checked. */
+  private static int parseTime(CharSequence s, int from, String what) {
+    int hour = digits(s, from, 2, what);
+    int minute = digits(s, from + 3, 2, what);
+    if (s.charAt(from + 2) != ':' || hour > 23 || minute > 59) {
+      throw invalid(what, s);
+    }
+    return hour * 60 + minute;
+  }
+
+  private static int digits(CharSequence s, int from, int count, String what) {
+    int value = 0;
+    for (int i = from; i < from + count; i++) {
+      int digit = s.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw invalid(what, s);
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  private static int lengthOfMonth(int year, int month) {
+    return switch (month) {
+      case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+      case 4, 6, 9, 11 -> 30;
+      default -> 31;
+    };
+  }
+
+  /** Days since 1970-01-01 of a civil date, counting years from March so leap days come last. */
+  private static long epochDay(int year, int month, int day) {
+    int y = month <= 2 ? year - 1 : year;
+    int era = Math.floorDiv(y, 400);
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146_097L + dayOfEra - DAYS_0000_TO_1970;
+  }
+
+  /** Writes the civil date of an epoch day as {@code yyyy-MM-dd}; the inverse of epochDay. */
+  private static void writeDate(char[] out, int at, long epochDay) {
+    long shifted = epochDay + DAYS_0000_TO_1970;
+    long era = Math.floorDiv(shifted, 146_097);
+    int dayOfEra = (int) (shifted - era * 146_097);
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int shiftedMonth = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+    if (year < 0 || year > 9999) {
+      throw new IllegalArgumentException("Epoch day out of range: " + epochDay);
+    }
+    writeDigits(out, at, (int) year, 4);
+    out[at + 4] = '-';
+    writeDigits(out, at + 5, month, 2);
+    out[at + 7] = '-';
+    writeDigits(out, at + 8, day, 2);
+  }
+
+  private static void writeTime(char[] out, int at, int minuteOfDay) {
+    writeDigits(out, at, minuteOfDay / 60, 2);
+    out[at + 2] = ':';
+    writeDigits(out, at + 3, minuteOfDay % 60, 2);
+  }
+
+  private static void writeDigits(char[] out, int at, int value, int count) {
+    for (int i = at + count - 1; i >= at; i--) {
+      out[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+  }
+
+  private static IllegalArgumentException invalid(String what, CharSequence value) {
+    return new IllegalArgumentException("Invalid " + what + ": " + value);
+  }
+}
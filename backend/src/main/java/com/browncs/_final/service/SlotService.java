@@ -1,15 +1,22 @@
 package com.browncs._final.service;
 
 import com.browncs._final.model.Event;
+import com.browncs._final.model.HeatmapCell;
 import com.browncs._final.model.PreferenceRequest;
+import com.browncs._final.model.Recurrence;
 import com.browncs._final.model.Slot;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import com.google.firebase.cloud.FirestoreClient;
-import java.time.LocalDate;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import io.micrometer.common.KeyValues;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -17,6 +24,9 @@ import org.springframework.stereotype.Service;
 /**
  * Service responsible for managing event slot creation and participant preferences for the CU Soon
  * scheduling platform.
+ *
+ * <p>Each operation has an {@code ...Async} variant that completes once Firestore has acknowledged
+ * the writes or returned the reads; the synchronous methods wait on those.
  */
 @Service
 public class SlotService {
@@ -24,111 +34,338 @@ public class SlotService {
   private final Firestore db = FirestoreClient.getFirestore();
   private static final Logger logger = LoggerFactory.getLogger(SlotService.class);
 
+  // Event field bumped after every change to the slot subcollection; versions get-preferences
+  private static final String PREFERENCES_UPDATED_AT = "preferencesUpdatedAt";
+
+  // Firestore's limit on the number of writes in one batch commit
+  static final int MAX_BATCH_WRITES = Batches.MAX_WRITES;
+
+  private static final int SUBMIT_ATTEMPTS = 5;
+  private static final Duration SUBMIT_BACKOFF = Duration.ofMillis(20);
+
+  private final FirestoreMetrics metrics;
+
+  public SlotService(FirestoreMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   /**
    * Submits user preferences for available time slots within an event. Updates or deletes
-   * participant weights on slot documents and updates the event record.
+   * participant weights on slot documents and updates the event record, in batches of up to {@value
+   * #MAX_BATCH_WRITES} writes rather than one call per slot.
+   *
+   * @param eventId ID of the event
+   * @param request Request containing user's rankings and deleted time ranges
+   */
+  public void submitPreferences(String eventId, PreferenceRequest request)
+      throws ExecutionException, InterruptedException {
+    FirestoreFutures.await(submitPreferencesAsync(eventId, request));
+  }
+
+  /**
+   * Asynchronous variant of {@link #submitPreferences(String, PreferenceRequest)}.
+   *
+   * <p>The rankings are the participant's full availability, as the UI sends them: slots covered by
+   * their previous submission but not by this one are cleared as well as those of the deleted
+   * timespans, and slots whose weight is unchanged are not written. The previous submission, the
+   * event's slot length and the participant's necessity are read first with one masked batch get of
+   * the event and the participant's {@link Members member} and {@link Submissions submission}
+   * documents. The event's {@link Heatmap} aggregates are updated by increments in the same batch
+   * as the new submission, so they always match it. That batch is guarded by the update time of the
+   * submission it diffed against, so if the participant submits twice at once, the submission that
+   * loses the race is read and diffed again rather than applying increments computed from a stale
+   * one. Events that keep submission documents store the rankings there, and mark the member as
+   * having responded, rather than in the event document.
+   *
+   * <p>For a recurring event, timespans of any occurrence are moved onto its weekly template (see
+   * {@link Occurrences}), so the submission applies to every occurrence.
    *
    * @param eventId ID of the event
    * @param request Request containing user's rankings and deleted time ranges
+   * @return Future that completes once every slot and event write has been applied; fails with
+   *     {@link IllegalArgumentException} if a ranked timespan is in no occurrence of the event or
+   *     does not start and end on the event's slot grid
    */
-  public void submitPreferences(String eventId, PreferenceRequest request) {
+  public CompletableFuture<Void> submitPreferencesAsync(String eventId, PreferenceRequest request) {
+    return this.metrics.observe(
+        "preferences.submit",
+        KeyValues.of("event.id", eventId),
+        () -> {
+          String userEmail = request.getUserEmail();
+          DocumentReference eventRef = this.db.collection("events").document(eventId);
+          FieldMask mask =
+              FieldMask.of(
+                  FieldPath.of("slotMinutes"),
+                  FieldPath.of("recurrence"),
+                  FieldPath.of("availableDays"),
+                  FieldPath.of(Heatmap.TRACKED),
+                  FieldPath.of(Members.TRACKED),
+                  FieldPath.of(Members.NECESSITY),
+                  FieldPath.of(Members.RESPONDED),
+                  FieldPath.of(Submissions.TRACKED),
+                  FieldPath.of(Submissions.RANKINGS),
+                  Submissions.legacy(userEmail),
+                  Members.legacyNecessity(userEmail));
+          DocumentReference[] refs = {
+            eventRef, Members.ref(eventRef, userEmail), Submissions.ref(eventRef, userEmail)
+          };
+          return FirestoreFutures.retryOnConflict(
+              SUBMIT_ATTEMPTS,
+              SUBMIT_BACKOFF,
+              () ->
+                  this.metrics
+                      .track("event.submitter", this.db.getAll(refs, mask))
+                      .thenCompose(
+                          docs -> {
+                            Submitter submitter =
+                                new Submitter(docs.get(0), docs.get(1), docs.get(2));
+                            return writePreferences(
+                                eventId, onTemplate(request, submitter.event()), submitter);
+                          }));
+        });
+  }
 
+  /** The request, moved onto the event's weekly template if it recurs. */
+  private static PreferenceRequest onTemplate(PreferenceRequest request, DocumentSnapshot event) {
+    if (!event.exists() || event.get("recurrence", Recurrence.class) == null) {
+      return request;
+    }
+    return Occurrences.of(event.toObject(Event.class)).toTemplate(request);
+  }
+
+  /** The masked reads of a submission: the event, and the participant's member and submission. */
+  private record Submitter(
+      DocumentSnapshot event, DocumentSnapshot member, DocumentSnapshot submission) {
+
+    /** Whether the participant's attendance is required. */
+    boolean required(String email) {
+      return Heatmap.isRequired(
+          Members.isTracked(this.event)
+              ? this.member.get(Members.NECESSITY)
+              : this.event.get(Members.legacyNecessity(email)));
+    }
+  }
+
+  private CompletableFuture<Void> writePreferences(
+      String eventId, PreferenceRequest request, Submitter submitter) {
     CollectionReference slots = db.collection("events").document(eventId).collection("slots");
     String userEmail = request.getUserEmail();
     DocumentReference eventRef = db.collection("events").document(eventId);
+    DocumentSnapshot event = submitter.event();
+    List<Consumer<WriteBatch>> writes = new ArrayList<>();
+
+    // The event's slot length decides how timespans are split, e.g. "17:00-18:30@2025-04-29" into
+    // "2025-04-29T17:00", "2025-04-29T17:15", ... for 15-minute slots
+    Long stored = event.exists() ? event.getLong("slotMinutes") : null;
+    int slotMinutes = SlotGranularity.orDefault(stored == null ? null : stored.intValue());
+    Map<Long, Integer> before =
+        Heatmap.storedWeights(
+            Submissions.stored(event, submitter.submission(), userEmail), slotMinutes);
+    Map<Long, Integer> after = Heatmap.slotWeights(request.getRankings(), slotMinutes);
 
-    // 1. Handle deletions
+    // 1. Handle deletions, of deleted timespans and of slots the new rankings no longer cover
+    Set<Long> cleared = new TreeSet<>(before.keySet());
     for (String timespanId : request.getDeletedTimespanIds()) {
+      long timespan;
       try {
-        String[] parts = timespanId.split("@");
-        String[] timeRange = parts[0].split("-");
-        String date = parts[1];
-
-        LocalTime start = LocalTime.parse(timeRange[0]);
-        LocalTime end = LocalTime.parse(timeRange[1]);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
-
-        while (start.isBefore(end)) {
-          String slotTime = start.format(formatter);
-          String slotId = date + "T" + slotTime;
-          DocumentReference slotRef = slots.document(slotId);
-          slotRef.update(FieldPath.of("participantWeights", userEmail), FieldValue.delete());
-          start = start.plusMinutes(15);
-        }
-
-      } catch (Exception e) {
-        System.err.println("Failed to parse/delete: " + timespanId);
-        e.printStackTrace();
+        timespan = SlotIdCodec.parseTimespan(timespanId);
+      } catch (IllegalArgumentException e) {
+        logger.warn("Skipping deletion of unparseable timespan {}", timespanId);
+        continue;
+      }
+      long end = SlotIdCodec.timespanEnd(timespan);
+      if (!SlotGranularity.isAligned(SlotIdCodec.timespanStart(timespan), slotMinutes)) {
+        logger.warn("Skipping deletion of timespan {} off the slot grid", timespanId);
+        continue;
       }
+      for (long m = SlotIdCodec.timespanStart(timespan); m < end; m += slotMinutes) {
+        cleared.add(m);
+      }
+    }
+    cleared.removeAll(after.keySet());
+    for (long m : cleared) {
+      DocumentReference slotRef = slots.document(SlotIdCodec.formatSlotId(m));
+      writes.add(
+          batch ->
+              batch.update(
+                  slotRef, FieldPath.of("participantWeights", userEmail), FieldValue.delete()));
     }
 
     // 2. Handle new or updated rankings
-    for (Map.Entry<String, Integer> entry : request.getRankings().entrySet()) {
-      String timespanId = entry.getKey(); // e.g., "17:00-18:30@2025-04-29"
-      Integer preference = entry.getValue();
-
-      // Parse the timespan string
-      String[] parts = timespanId.split("@");
-      String[] timeRange = parts[0].split("-");
-      String date = parts[1]; // e.g., "2025-04-29"
-      LocalTime start = LocalTime.parse(timeRange[0]); // e.g., "17:00"
-      LocalTime end = LocalTime.parse(timeRange[1]); // e.g., "18:30"
-
-      DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-
-      // Expand into 15-minute intervals
-      while (start.isBefore(end)) {
-        String slotTime = start.format(timeFormatter); // e.g., "17:00"
-        String slotId = date + "T" + slotTime; // e.g., "2025-04-29T17:00"
-
-        DocumentReference slotRef = slots.document(slotId);
-        slotRef.update(FieldPath.of("participantWeights", request.getUserEmail()), preference);
-        start = start.plusMinutes(15);
+    after.forEach(
+        (m, preference) -> {
+          if (preference.equals(before.get(m))) return;
+          DocumentReference slotRef = slots.document(SlotIdCodec.formatSlotId(m));
+          writes.add(
+              batch ->
+                  batch.update(slotRef, FieldPath.of("participantWeights", userEmail), preference));
+        });
+
+    this.metrics.annotate("slot.count", writes.size());
+
+    // 3. Record the submission, bump the preferences version and update the heatmap in the last
+    // batch, so a reader never caches a partial update under the new version. The submission is
+    // written only if it is still the one diffed against, so the heatmap increments stay exact
+    boolean responded = !request.getRankings().isEmpty();
+    boolean heatmapTracked = Boolean.TRUE.equals(event.getBoolean(Heatmap.TRACKED));
+    List<Consumer<WriteBatch>> last = new ArrayList<>();
+    if (Submissions.isTracked(event)) {
+      DocumentReference submissionRef = Submissions.ref(eventRef, userEmail);
+      DocumentSnapshot submission = submitter.submission();
+      Map<String, Object> document = Submissions.document(request.getRankings());
+      if (submission.exists()) {
+        Precondition unchanged = Precondition.updatedAt(submission.getUpdateTime());
+        last.add(
+            responded
+                ? batch -> batch.update(submissionRef, document, unchanged)
+                : batch -> batch.delete(submissionRef, unchanged));
+      } else if (responded) {
+        last.add(batch -> batch.create(submissionRef, document));
+      }
+      last.add(
+          batch -> batch.update(eventRef, PREFERENCES_UPDATED_AT, FieldValue.serverTimestamp()));
+      DocumentSnapshot member = submitter.member();
+      if (member.exists()
+          && responded != Boolean.TRUE.equals(member.getBoolean(Members.RESPONDED))) {
+        DocumentReference memberRef = Members.ref(eventRef, userEmail);
+        last.add(batch -> batch.update(memberRef, Members.RESPONDED, responded));
       }
+    } else {
+      Object submitted = responded ? request.getRankings() : FieldValue.delete();
+      // The rankings are in the event document, so guard on it when the heatmap depends on them
+      if (heatmapTracked) {
+        Precondition unchanged = Precondition.updatedAt(event.getUpdateTime());
+        last.add(
+            batch ->
+                batch.update(
+                    eventRef,
+                    unchanged,
+                    Submissions.legacy(userEmail),
+                    submitted,
+                    PREFERENCES_UPDATED_AT,
+                    FieldValue.serverTimestamp()));
+      } else {
+        last.add(
+            batch ->
+                batch.update(
+                    eventRef,
+                    Submissions.legacy(userEmail),
+                    submitted,
+                    PREFERENCES_UPDATED_AT,
+                    FieldValue.serverTimestamp()));
+      }
+    }
+    if (heatmapTracked) {
+      last.addAll(
+          Heatmap.increments(eventRef, Heatmap.diff(before, after, submitter.required(userEmail))));
     }
+    return commitInBatches("slot.update", writes, last);
+  }
 
-    if (request.getRankings().isEmpty()) {
-      eventRef.update(
-          FieldPath.of("submittedPreferences", request.getUserEmail()), FieldValue.delete());
-    } else {
-      eventRef.update(
-          FieldPath.of("submittedPreferences", request.getUserEmail()), request.getRankings());
+  /**
+   * Submits a participant's availability read from their calendar: every slot of the event's grid
+   * that no busy time of the calendar overlaps is ranked {@value CalendarAvailability#AVAILABLE},
+   * and the rest are cleared, exactly as if they had painted the grid and submitted it. The
+   * calendar is read on the calling thread as it arrives (see {@link CalendarAvailability}), and
+   * the rankings are then written by {@link #submitPreferencesAsync} in as few batches as it takes.
+   *
+   * @param eventId ID of the event
+   * @param email The participant
+   * @param ics The participant's calendar, in iCalendar format
+   * @param zone Zone of the event's times, which the calendar's times are moved into
+   * @return The submitted rankings, timespan ID to weight
+   * @throws IllegalArgumentException if the event does not exist or the body is not a calendar
+   * @throws IOException if the calendar cannot be read
+   */
+  public Map<String, Integer> importCalendar(
+      String eventId, String email, InputStream ics, ZoneId zone)
+      throws ExecutionException, InterruptedException, IOException {
+    DocumentReference eventRef = this.db.collection("events").document(eventId);
+    DocumentSnapshot doc =
+        FirestoreFutures.await(
+            this.metrics.track(
+                "event.grid",
+                eventRef.get(
+                    FieldMask.of(
+                        "availableDays", "startTime", "endTime", "slotMinutes", "recurrence"))));
+    if (!doc.exists()) {
+      throw new IllegalArgumentException("Event not found: " + eventId);
     }
+    Map<String, Integer> rankings =
+        CalendarAvailability.of(doc.toObject(Event.class), zone).read(ics).rankings();
+
+    PreferenceRequest request = new PreferenceRequest();
+    request.setUserEmail(email);
+    request.setRankings(rankings);
+    submitPreferences(eventId, request);
+    return rankings;
   }
 
   /**
-   * Generates 15-minute slot documents for the specified days and time range of an event.
+   * Generates slot documents of the event's slot length (15 minutes unless the event chose
+   * otherwise) for the specified days and time range of an event, in batches of up to {@value
+   * #MAX_BATCH_WRITES} writes. For a recurring event these are the slots of its weekly template
+   * only; occurrences are expanded from them when read.
    *
    * @param eventId ID of the event
    * @param event Event object containing time window and available days
    */
-  public void generateSlots(String eventId, Event event) {
+  public void generateSlots(String eventId, Event event)
+      throws ExecutionException, InterruptedException {
+    FirestoreFutures.await(generateSlotsAsync(eventId, event));
+  }
+
+  /**
+   * Asynchronous variant of {@link #generateSlots(String, Event)}.
+   *
+   * @param eventId ID of the event
+   * @param event Event object containing time window and available days
+   * @return Future that completes once every slot document has been written
+   */
+  public CompletableFuture<Void> generateSlotsAsync(String eventId, Event event) {
+    return this.metrics.observe(
+        "slots.generate", KeyValues.of("event.id", eventId), () -> writeSlots(eventId, event));
+  }
+
+  private CompletableFuture<Void> writeSlots(String eventId, Event event) {
     List<String> days = event.getAvailableDays();
-    LocalTime start = LocalTime.parse(event.getStartTime()); // e.g., "09:00"
-    LocalTime end = LocalTime.parse(event.getEndTime()); // e.g., "21:00"
-    int slotLength = 15; // fixed interval
+    int slotMinutes = SlotGranularity.of(event);
+    int start = SlotIdCodec.parseTime(event.getStartTime()); // e.g., "09:00"
+    int end = SlotIdCodec.parseTime(event.getEndTime()); // e.g., "21:00"
 
-    DateTimeFormatter timeFmt = DateTimeFormatter.ofPattern("HH:mm");
     CollectionReference slotCol =
         this.db.collection("events").document(eventId).collection("slots");
+    List<Consumer<WriteBatch>> writes = new ArrayList<>();
 
     for (String dayStr : days) {
-      LocalDate date = LocalDate.parse(dayStr);
-      LocalTime current = start;
+      long dayStart = SlotIdCodec.parseDate(dayStr) * SlotIdCodec.MINUTES_PER_DAY;
 
-      while (!current.isAfter(end.minusMinutes(slotLength))) {
-        String slotId = date + "T" + current.format(timeFmt);
+      for (int current = start; current <= end - slotMinutes; current += slotMinutes) {
+        String slotId = SlotIdCodec.formatSlotId(dayStart + current);
 
         Slot slot = new Slot();
         slot.setId(slotId);
-        slot.setDate(date.toString());
-        slot.setStartTime(current.format(timeFmt));
+        slot.setDate(dayStr);
+        slot.setStartTime(SlotIdCodec.formatTime(current));
         slot.setParticipantWeights(new HashMap<>());
 
-        slotCol.document(slotId).set(slot);
-        current = current.plusMinutes(slotLength);
+        DocumentReference slotRef = slotCol.document(slotId);
+        writes.add(batch -> batch.set(slotRef, slot));
       }
     }
+    this.metrics.annotate("slot.count", writes.size());
+    DocumentReference eventRef = this.db.collection("events").document(eventId);
+    return commitInBatches(
+        "slot.create",
+        writes,
+        List.of(
+            batch -> batch.update(eventRef, PREFERENCES_UPDATED_AT, FieldValue.serverTimestamp())));
+  }
+
+  /** Commits the writes as {@link Batches#commit} does. */
+  private CompletableFuture<Void> commitInBatches(
+      String operation, List<Consumer<WriteBatch>> writes, List<Consumer<WriteBatch>> last) {
+    return Batches.commit(this.db, this.metrics, operation, writes, last);
   }
 
   /**
@@ -140,17 +377,173 @@ public class SlotService {
    * @throws InterruptedException If Firestore access is interrupted
    */
   public List<Slot> getPreferences(String eventId) throws ExecutionException, InterruptedException {
+    return FirestoreFutures.await(getPreferencesAsync(eventId));
+  }
+
+  /**
+   * Conditional variant of {@link #getPreferencesAsync(String)}. The entity tag comes from the
+   * event's {@code preferencesUpdatedAt} field, which every slot write path bumps after its writes
+   * land, so checking it costs one masked read of the event document instead of reading every slot.
+   * Events written before that field existed fall back to the event document's update time.
+   *
+   * @param eventId ID of the event
+   * @param ifNoneMatch The client's If-None-Match header, or null
+   * @return Future tagged slot list, empty if the client's copy is current
+   */
+  public CompletableFuture<Versioned<List<Slot>>> getPreferencesIfModifiedAsync(
+      String eventId, String ifNoneMatch) {
+    DocumentReference eventRef = db.collection("events").document(eventId);
+    return this.metrics
+        .track("event.version", eventRef.get(FieldMask.of(PREFERENCES_UPDATED_AT)))
+        .thenCompose(
+            doc -> {
+              String etag = null;
+              if (doc.exists()) {
+                Timestamp version = doc.getTimestamp(PREFERENCES_UPDATED_AT);
+                etag =
+                    version != null
+                        ? Versioned.etag("p", version)
+                        : Versioned.etag("e", doc.getUpdateTime());
+              }
+              if (Versioned.matches(ifNoneMatch, etag)) {
+                return CompletableFuture.completedFuture(new Versioned<List<Slot>>(etag, null));
+              }
+              String currentEtag = etag;
+              return getPreferencesAsync(eventId)
+                  .thenApply(slots -> new Versioned<>(currentEtag, slots));
+            });
+  }
+
+  /**
+   * Asynchronous variant of {@link #getPreferences(String)}.
+   *
+   * @param eventId ID of the event
+   * @return Future list of Slot objects sorted chronologically
+   */
+  public CompletableFuture<List<Slot>> getPreferencesAsync(String eventId) {
     CollectionReference slotCol = db.collection("events").document(eventId).collection("slots");
-    List<Slot> slots =
-        slotCol.get().get().getDocuments().stream()
-            .map(
-                doc -> {
-                  Slot slot = doc.toObject(Slot.class);
-                  slot.setId(doc.getId()); // explicitly set the ID from Firestore
-                  return slot;
-                })
-            .sorted(Comparator.comparing(Slot::getId))
-            .toList();
-    return slots;
+    return this.metrics
+        .track("slots.list", slotCol.get())
+        .thenApply(
+            snapshot ->
+                snapshot.getDocuments().stream()
+                    .map(
+                        doc -> {
+                          Slot slot = doc.toObject(Slot.class);
+                          slot.setId(doc.getId()); // explicitly set the ID from Firestore
+                          return slot;
+                        })
+                    .sorted(Comparator.comparing(Slot::getId))
+                    .toList());
+  }
+
+  /**
+   * Retrieves the slots of one occurrence of a recurring event, expanded from the template slots
+   * (see {@link Occurrences}) with one masked read of the event alongside the slot listing. A
+   * one-off event has only occurrence 0, its own slots.
+   *
+   * @param eventId ID of the event
+   * @param occurrence Index of the occurrence, from 0
+   * @return Future list of the occurrence's slots sorted chronologically; fails with {@link
+   *     IllegalArgumentException} if there is no such event or occurrence
+   */
+  public CompletableFuture<List<Slot>> getOccurrenceAsync(String eventId, int occurrence) {
+    DocumentReference eventRef = db.collection("events").document(eventId);
+    CompletableFuture<List<Slot>> template = getPreferencesAsync(eventId);
+    return this.metrics
+        .track("event.recurrence", eventRef.get(FieldMask.of("recurrence", "availableDays")))
+        .thenCombine(
+            template,
+            (doc, slots) -> {
+              if (!doc.exists()) {
+                throw new IllegalArgumentException("Event not found: " + eventId);
+              }
+              Event event = doc.toObject(Event.class);
+              if (event.getRecurrence() != null) {
+                return Occurrences.of(event).expand(slots, occurrence);
+              }
+              if (occurrence != 0) {
+                throw new IllegalArgumentException("No occurrence " + occurrence);
+              }
+              return slots;
+            });
+  }
+
+  /**
+   * Returns the event's {@link Heatmap}: the aggregate availability of every slot anyone has
+   * marked, without the participants' individual weights. The aggregates are one small document per
+   * day, listed in parallel with a masked read of the event that checks they are maintained; events
+   * created before they were have them computed from the slots instead.
+   *
+   * @param eventId ID of the event
+   * @return Future cells in chronological order; fails with {@link IllegalArgumentException} if the
+   *     event does not exist
+   */
+  public CompletableFuture<List<HeatmapCell>> getHeatmapAsync(String eventId) {
+    DocumentReference eventRef = db.collection("events").document(eventId);
+    CompletableFuture<QuerySnapshot> days =
+        this.metrics.track("heatmap.list", eventRef.collection(Heatmap.COLLECTION).get());
+    return this.metrics
+        .track("event.heatmap-tracked", eventRef.get(FieldMask.of(Heatmap.TRACKED)))
+        .thenCompose(
+            event -> {
+              if (!event.exists()) {
+                throw new IllegalArgumentException("Event not found: " + eventId);
+              }
+              if (Boolean.TRUE.equals(event.getBoolean(Heatmap.TRACKED))) {
+                return days.thenApply(snapshot -> Heatmap.fromDays(snapshot.getDocuments()));
+              }
+              CompletableFuture<DocumentSnapshot> necessity =
+                  this.metrics.track(
+                      "event.necessity", eventRef.get(FieldMask.of("participantNecessity")));
+              return getPreferencesAsync(eventId)
+                  .thenCombine(
+                      necessity,
+                      (slots, doc) ->
+                          Heatmap.fromSlots(
+                              slots,
+                              doc.get("participantNecessity") instanceof Map<?, ?> levels
+                                  ? levels
+                                  : Map.of()));
+            });
+  }
+
+  /**
+   * Returns a participant's own rankings as they last submitted them, to fill their grid when they
+   * reopen it. The event and the participant's {@link Submissions submission} are read with one
+   * masked batch get, so neither the event's other fields nor anyone else's rankings are read.
+   *
+   * @param eventId ID of the event
+   * @param email The participant
+   * @return Future rankings, timespan ID to weight, empty if they have not submitted; fails with
+   *     {@link IllegalArgumentException} if the event does not exist
+   */
+  public CompletableFuture<Map<String, Integer>> getSubmissionAsync(String eventId, String email) {
+    DocumentReference eventRef = db.collection("events").document(eventId);
+    FieldMask mask =
+        FieldMask.of(
+            FieldPath.of(Submissions.TRACKED),
+            FieldPath.of(Submissions.RANKINGS),
+            Submissions.legacy(email));
+    DocumentReference[] refs = {eventRef, Submissions.ref(eventRef, email)};
+    return this.metrics
+        .track("event.submission", this.db.getAll(refs, mask))
+        .thenApply(
+            docs -> {
+              DocumentSnapshot event = docs.get(0);
+              if (!event.exists()) {
+                throw new IllegalArgumentException("Event not found: " + eventId);
+              }
+              Map<String, Integer> rankings = new LinkedHashMap<>();
+              if (Submissions.stored(event, docs.get(1), email) instanceof Map<?, ?> stored) {
+                stored.forEach(
+                    (timespanId, weight) -> {
+                      if (timespanId instanceof String id && weight instanceof Number number) {
+                        rankings.put(id, number.intValue());
+                      }
+                    });
+              }
+              return rankings;
+            });
   }
 }
@@ -0,0 +1,78 @@
+package com.browncs._final.service;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
+import java.util.Map;
+
+/**
+ * Participants' submitted rankings kept in an {@code events/{eventId}/submissions} subcollection,
+ * one document per participant holding the timespan rankings of their last submission, instead of
+ * in the event document's {@code submittedPreferences} map.
+ *
+ * <p>The event document then stays the same size however many participants have responded, and
+ * loading, listing or optimizing an event no longer reads every participant's rankings. A
+ * participant's rankings are read only when they reopen their own grid, or when a submission or a
+ * necessity change needs them to update the slots and the {@link Heatmap}. Whether a member has
+ * responded is kept on their {@link Members member} document instead.
+ *
+ * <p>Only events with {@link #TRACKED} set keep their submissions here, since they were created
+ * with it; older events keep them in the event document.
+ */
+public final class Submissions {
+
+  static final String COLLECTION = "submissions";
+  static final String TRACKED = "submissionsTracked";
+
+  static final String RANKINGS = "rankings";
+  static final String UPDATED_AT = "updatedAt";
+
+  private Submissions() {}
+
+  /**
+   * @param eventRef The event
+   * @param email A participant
+   * @return The participant's submission document
+   */
+  static DocumentReference ref(DocumentReference eventRef, String email) {
+    return eventRef.collection(COLLECTION).document(email);
+  }
+
+  /**
+   * @param event A loaded event
+   * @return Whether its submissions are kept in submission documents
+   */
+  static boolean isTracked(DocumentSnapshot event) {
+    return Boolean.TRUE.equals(event.getBoolean(TRACKED));
+  }
+
+  /** The field path of a participant's rankings on an event that keeps them in the document. */
+  static FieldPath legacy(String email) {
+    return FieldPath.of("submittedPreferences", email);
+  }
+
+  /**
+   * A participant's stored rankings, wherever the event keeps them.
+   *
+   * @param event The event, read with at least {@link #TRACKED} and {@link #legacy} of the
+   *     participant
+   * @param submission The participant's submission document, read with at least {@link #RANKINGS};
+   *     only consulted if the event keeps submission documents
+   * @return The rankings as stored, timespan ID to weight, or null if they have not submitted
+   */
+  static Object stored(DocumentSnapshot event, DocumentSnapshot submission, String email) {
+    if (!isTracked(event)) {
+      return event.get(legacy(email));
+    }
+    return submission != null && submission.exists() ? submission.get(RANKINGS) : null;
+  }
+
+  /**
+   * @param rankings The rankings of a submission, timespan ID to weight
+   * @return The participant's submission document
+   */
+  static Map<String, Object> document(Map<String, Integer> rankings) {
+    return Map.of(RANKINGS, rankings, UPDATED_AT, FieldValue.serverTimestamp());
+  }
+}
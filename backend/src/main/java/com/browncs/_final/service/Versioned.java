@@ -0,0 +1,58 @@
+package com.browncs._final.service;
+
+import com.google.cloud.Timestamp;
+
+/**
+ * A read result tagged with a strong entity tag for conditional GETs. When the client's {@code
+ * If-None-Match} already names the current version, {@code value} is null and the caller answers
+ * 304 without loading or serializing the payload.
+ *
+ * @param etag Quoted strong entity tag of the current version, or null if it has none
+ * @param value The payload, or null if the client's copy is current
+ * @param <T> Payload type
+ */
+public record Versioned<T>(String etag, T value) {
+
+  /** Whether the client's cached copy is current and no payload was loaded. */
+  public boolean notModified() {
+    return this.value == null;
+  }
+
+  /**
+   * Builds a strong entity tag from a Firestore timestamp.
+   *
+   * @param prefix Distinguishes tags derived from different timestamps
+   * @param time The timestamp
+   * @return The quoted entity tag
+   */
+  static String etag(String prefix, Timestamp time) {
+    return "\"" + prefix + time.getSeconds() + "." + time.getNanos() + "\"";
+  }
+
+  /**
+   * Checks an {@code If-None-Match} header against the current entity tag, using the weak
+   * comparison RFC 9110 prescribes for it.
+   *
+   * @param ifNoneMatch The header value, or null if absent
+   * @param etag The current entity tag, or null if the resource has none
+   * @return true if the client's copy is current
+   */
+  static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null || etag == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.equals("*")) {
+        return true;
+      }
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
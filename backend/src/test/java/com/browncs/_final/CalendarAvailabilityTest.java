@@ -0,0 +1,210 @@
+package com.browncs._final.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.browncs._final.model.Event;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for CalendarAvailability, on a grid of Monday 2025-05-05 and Tuesday 2025-05-06 from
+ * 09:00 to 12:00 in 30-minute slots, in New York time.
+ */
+public class CalendarAvailabilityTest {
+
+  private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+  private static Map<String, Integer> rankings(String... lines) throws IOException {
+    Event event = new Event();
+    event.setAvailableDays(List.of("2025-05-05", "2025-05-06"));
+    event.setStartTime("09:00");
+    event.setEndTime("12:00");
+    event.setSlotMinutes(30);
+    String ics = String.join("\r\n", lines);
+    return CalendarAvailability.of(event, NEW_YORK)
+        .read(new ByteArrayInputStream(ics.getBytes(StandardCharsets.UTF_8)))
+        .rankings();
+  }
+
+  /**
+   * Tests that UTC and TZID times are moved into the grid's zone, that a slot an event only partly
+   * overlaps is busy, and that folded lines, alarms and transparent events do not get in the way.
+   */
+  @Test
+  void testRankings_marksEventsInGridZone() throws IOException {
+    Map<String, Integer> rankings =
+        rankings(
+            "BEGIN:VCALENDAR",
+            "BEGIN:VEVENT",
+            "DTSTART:20250505T140000Z", // 10:00 in New York
+            "DTEND:20250505T144500Z",
+            "BEGIN:VALARM",
+            "TRIGGER:-PT15M",
+            "DURATION:PT5H",
+            "END:VALARM",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "DTSTART;TZID=Europe/London:20250506T160000", // 11:00 in New York
+            "DURATION:PT30M",
+            "SUMMARY:A summary folded",
+            "  over two lines",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "TRANSP:TRANSPARENT",
+            "DTSTART:20250506T090000",
+            "DTEND:20250506T100000",
+            "END:VEVENT",
+            "END:VCALENDAR");
+
+    assertEquals(
+        Map.of(
+            "09:00-10:00@2025-05-05", 3,
+            "11:00-12:00@2025-05-05", 3,
+            "09:00-11:00@2025-05-06", 3,
+            "11:30-12:00@2025-05-06", 3),
+        rankings);
+  }
+
+  /**
+   * Tests that recurring events are expanded onto the grid with their BYDAY, EXDATE, COUNT and
+   * UNTIL, and that an all-day event makes its whole day busy.
+   */
+  @Test
+  void testRankings_expandsRecurringEvents() throws IOException {
+    Map<String, Integer> rankings =
+        rankings(
+            "BEGIN:VCALENDAR",
+            // Every day since 2015 until the Monday: busy 09:00-09:30 on Monday only
+            "BEGIN:VEVENT",
+            "DTSTART:20150101T090000",
+            "DTEND:20150101T093000",
+            "RRULE:FREQ=DAILY;UNTIL=20250505T235959",
+            "END:VEVENT",
+            // Mondays and Wednesdays since 2020, except this Monday
+            "BEGIN:VEVENT",
+            "DTSTART;TZID=America/New_York:20200106T100000",
+            "DTEND;TZID=America/New_York:20200106T110000",
+            "RRULE:FREQ=WEEKLY;BYDAY=MO,WE",
+            "EXDATE;TZID=America/New_York:20250505T100000",
+            "END:VEVENT",
+            // Two Mondays, the second of them this one
+            "BEGIN:VEVENT",
+            "DTSTART:20250428T110000",
+            "DURATION:PT30M",
+            "RRULE:FREQ=WEEKLY;COUNT=2",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "DTSTART;VALUE=DATE:20250506",
+            "DTEND;VALUE=DATE:20250507",
+            "END:VEVENT",
+            "END:VCALENDAR");
+
+    assertEquals(Map.of("09:30-11:00@2025-05-05", 3, "11:30-12:00@2025-05-05", 3), rankings);
+  }
+
+  /**
+   * Tests that busy FREEBUSY periods are marked, free ones are not, and cancelled events skipped.
+   */
+  @Test
+  void testRankings_readsFreeBusyPeriods() throws IOException {
+    Map<String, Integer> rankings =
+        rankings(
+            "BEGIN:VCALENDAR",
+            "BEGIN:VFREEBUSY",
+            "FREEBUSY;FBTYPE=BUSY:20250505T130000Z/PT1H,20250506T150000Z/20250506T160000Z",
+            "FREEBUSY;FBTYPE=FREE:20250505T150000Z/PT1H",
+            "END:VFREEBUSY",
+            "BEGIN:VEVENT",
+            "STATUS:CANCELLED",
+            "DTSTART:20250505T100000",
+            "DTEND:20250505T120000",
+            "END:VEVENT",
+            "END:VCALENDAR");
+
+    assertEquals(Map.of("10:00-12:00@2025-05-05", 3, "09:00-11:00@2025-05-06", 3), rankings);
+  }
+
+  /**
+   * Tests that recurring events whose rules have BY parts that are not followed, such as the second
+   * Tuesday of each month, are skipped rather than expanded onto every day or week.
+   */
+  @Test
+  void testRankings_skipsUnsupportedRules() throws IOException {
+    Map<String, Integer> rankings =
+        rankings(
+            "BEGIN:VCALENDAR",
+            "BEGIN:VEVENT",
+            "DTSTART:20250114T090000",
+            "DTEND:20250114T100000",
+            "RRULE:FREQ=MONTHLY;BYDAY=2TU",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "DTSTART:20250101T100000",
+            "DTEND:20250101T110000",
+            "RRULE:FREQ=DAILY;BYHOUR=10,15",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "DTSTART:20250105T110000",
+            "DTEND:20250105T120000",
+            "RRULE:FREQ=MONTHLY;BYMONTHDAY=5",
+            "END:VEVENT",
+            "BEGIN:VEVENT",
+            "DTSTART:20250106T110000",
+            "DTEND:20250106T113000",
+            "RRULE:FREQ=WEEKLY;BYDAY=MO",
+            "END:VEVENT",
+            "END:VCALENDAR");
+
+    assertEquals(
+        Map.of(
+            "09:00-11:00@2025-05-05", 3,
+            "11:30-12:00@2025-05-05", 3,
+            "09:00-12:00@2025-05-06", 3),
+        rankings);
+  }
+
+  /** Tests that a body that is not a calendar is rejected rather than read as all free. */
+  @Test
+  void testRead_rejectsNonCalendar() {
+    assertThrows(IllegalArgumentException.class, () -> rankings("email,necessity", "a@x.com,5"));
+  }
+
+  /**
+   * Tests a large calendar: thousands of one-off events outside the grid and hundreds of daily
+   * events running for decades are read in well under a second, as long-running events are not
+   * expanded one day at a time up to the grid.
+   */
+  @Test
+  void testRead_largeCalendar() throws IOException {
+    StringBuilder ics = new StringBuilder("BEGIN:VCALENDAR\r\n");
+    for (int i = 0; i < 5000; i++) {
+      ics.append("BEGIN:VEVENT\r\nUID:")
+          .append(i)
+          .append("\r\nDTSTART:2024")
+          .append(String.format("%02d%02d", 1 + i % 12, 1 + i % 28))
+          .append("T100000Z\r\nDURATION:PT1H\r\nEND:VEVENT\r\n");
+    }
+    for (int i = 0; i < 500; i++) {
+      ics.append("BEGIN:VEVENT\r\nDTSTART:20000101T113000\r\nDURATION:PT15M\r\n")
+          .append("RRULE:FREQ=DAILY\r\nEND:VEVENT\r\n");
+    }
+    ics.append("END:VCALENDAR");
+    // Read it once first, so the timed read is not the one that loads and compiles the reader
+    rankings(ics.toString());
+
+    Map<String, Integer> rankings =
+        assertTimeout(Duration.ofMillis(500), () -> rankings(ics.toString()));
+
+    assertEquals(
+        Map.of(
+            "09:00-11:30@2025-05-05", 3,
+            "09:00-11:30@2025-05-06", 3),
+        rankings);
+  }
+}
@@ -0,0 +1,139 @@
+package com.browncs._final.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the EmailRateLimiter token bucket, driven by a fake clock so waits can be checked
+ * without sleeping.
+ */
+public class EmailRateLimiterTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final List<Long> sleeps = new ArrayList<>();
+  private SimpleMeterRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+  }
+
+  /** Builds a limiter whose sleeper records the wait and advances the fake clock past it. */
+  private EmailRateLimiter limiter(double rate, int burst, int maxQueued, Duration maxWait) {
+    return new EmailRateLimiter(
+        rate,
+        burst,
+        maxQueued,
+        maxWait,
+        registry,
+        now::get,
+        nanos -> {
+          sleeps.add(nanos);
+          now.addAndGet(nanos);
+        });
+  }
+
+  /** Tests that a full bucket lets a burst through immediately without any throttling. */
+  @Test
+  void testAcquire_burstPassesWithoutWaiting() {
+    EmailRateLimiter limiter = limiter(1, 3, 10, Duration.ofSeconds(30));
+
+    limiter.acquire();
+    limiter.acquire();
+    limiter.acquire();
+
+    assertTrue(sleeps.isEmpty());
+    assertEquals(0, registry.get("email.ratelimit.throttled").counter().count());
+  }
+
+  /**
+   * Tests that once the burst is spent, the next caller waits exactly one refill interval and is
+   * counted as throttled, with its wait recorded in the queue wait timer.
+   */
+  @Test
+  void testAcquire_emptyBucketWaitsForRefill() {
+    EmailRateLimiter limiter = limiter(2, 1, 10, Duration.ofSeconds(30));
+
+    limiter.acquire();
+    limiter.acquire();
+
+    assertEquals(List.of(TimeUnit.MILLISECONDS.toNanos(500)), sleeps);
+    assertEquals(1, registry.get("email.ratelimit.throttled").counter().count());
+    assertEquals(1, registry.get("email.ratelimit.queue.wait").timer().count());
+    assertEquals(
+        500, registry.get("email.ratelimit.queue.wait").timer().totalTime(TimeUnit.MILLISECONDS));
+  }
+
+  /** Tests that tokens refill over time and never accumulate beyond the burst capacity. */
+  @Test
+  void testAcquire_refillIsCappedAtBurst() {
+    EmailRateLimiter limiter = limiter(1, 2, 10, Duration.ofSeconds(30));
+
+    limiter.acquire();
+    limiter.acquire();
+    now.addAndGet(TimeUnit.SECONDS.toNanos(60)); // far more than enough to refill
+
+    limiter.acquire();
+    limiter.acquire();
+    assertTrue(sleeps.isEmpty());
+
+    limiter.acquire();
+    assertEquals(List.of(TimeUnit.SECONDS.toNanos(1)), sleeps);
+  }
+
+  /** Tests that a caller whose wait would exceed the maximum wait is shed instead of queued. */
+  @Test
+  void testAcquire_shedsWhenWaitExceedsMaximum() {
+    EmailRateLimiter limiter =
+        new EmailRateLimiter(
+            1, 1, 10, Duration.ofMillis(1500), registry, now::get, nanos -> sleeps.add(nanos));
+
+    limiter.acquire(); // burst token
+    limiter.acquire(); // reserves the token due in 1s (clock does not advance)
+
+    assertThrows(RejectedExecutionException.class, limiter::acquire); // would wait 2s
+    assertEquals(1, registry.get("email.ratelimit.shed").counter().count());
+  }
+
+  /** Tests that callers are shed once the bounded wait queue is full. */
+  @Test
+  void testAcquire_shedsWhenQueueIsFull() throws Exception {
+    CountDownLatch waiting = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    EmailRateLimiter limiter =
+        new EmailRateLimiter(
+            1,
+            1,
+            1,
+            Duration.ofSeconds(30),
+            registry,
+            now::get,
+            nanos -> {
+              waiting.countDown();
+              release.await();
+            });
+
+    limiter.acquire();
+    Thread queued = new Thread(limiter::acquire);
+    queued.start();
+    assertTrue(waiting.await(5, TimeUnit.SECONDS));
+
+    assertEquals(1, limiter.queueDepth());
+    assertThrows(RejectedExecutionException.class, limiter::acquire);
+
+    release.countDown();
+    queued.join(5000);
+    assertEquals(0, limiter.queueDepth());
+    assertEquals(1, registry.get("email.ratelimit.shed").counter().count());
+  }
+}
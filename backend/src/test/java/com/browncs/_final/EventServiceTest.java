@@ -4,10 +4,33 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import com.browncs._final.model.Event;
+import com.browncs._final.model.EventPage;
+import com.browncs._final.model.Member;
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.FailedPreconditionException;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -43,15 +66,40 @@ class EventServiceTest {
     lenient().when(mockEventsCollection.document()).thenReturn(mockEventDoc);
     lenient().when(mockEventDoc.getId()).thenReturn("test-event-id");
 
-    eventService = new EventService(mockDb, mockEmailService);
+    eventService =
+        new EventService(
+            mockDb,
+            mockEmailService,
+            Runnable::run,
+            new FirestoreMetrics(new SimpleMeterRegistry()));
   }
 
   /**
-   * Tests that an event is successfully created using a Firestore transaction, and that all
-   * participants receive email invitations. Verifies the generated event ID and that both email
-   * sends are triggered.
+   * Stubs the writes of an event creation: the event's members subcollection, the users collection
+   * and batches that all answer their commit with {@code commit}.
    *
-   * @throws Exception if the mocked transaction fails
+   * @return The batch mock shared by every batch
+   */
+  private WriteBatch stubCreateWrites(ApiFuture<List<WriteResult>> commit) {
+    CollectionReference mockMembers = mock(CollectionReference.class);
+    CollectionReference mockUsers = mock(CollectionReference.class);
+    WriteBatch batch = mock(WriteBatch.class, RETURNS_SELF);
+    when(mockEventDoc.collection("members")).thenReturn(mockMembers);
+    when(mockMembers.document(anyString())).thenAnswer(inv -> mock(DocumentReference.class));
+    when(mockDb.collection("users")).thenReturn(mockUsers);
+    when(mockUsers.document(anyString())).thenReturn(mockUserDoc);
+    when(mockDb.batch()).thenReturn(batch);
+    when(batch.commit()).thenReturn(commit);
+    return batch;
+  }
+
+  /**
+   * Tests that an event is successfully created with its members in batched writes, and that all
+   * participants receive email invitations. Verifies the generated event ID, that the event
+   * document is stored without its membership fields, that the invitations go out as one bulk send,
+   * and that an invitation the send did not accept is counted.
+   *
+   * @throws Exception if the mocked commit fails
    */
   @Test
   void testCreateEvent_success() throws Exception {
@@ -64,28 +112,57 @@ class EventServiceTest {
     when(mockEventsCollection.document()).thenReturn(mockEventDoc);
     when(mockEventDoc.getId()).thenReturn("test-event-id");
 
-    @SuppressWarnings("unchecked")
-    ApiFuture<Void> mockFuture = (ApiFuture<Void>) mock(ApiFuture.class);
-    when(mockFuture.get()).thenReturn(null);
-
-    @SuppressWarnings("unchecked")
-    ApiFuture<?> castedFuture = (ApiFuture<?>) mockFuture;
-    when(mockDb.runTransaction(any())).thenReturn((ApiFuture<Object>) castedFuture);
+    WriteBatch batch = stubCreateWrites(ApiFutures.immediateFuture(List.of()));
+    // SendGrid accepts one of the two invitations; the other is shed
+    when(mockEmailService.sendEventInvites(List.of("a@example.com", "b@example.com"), "Mock Event"))
+        .thenReturn(1);
 
-    eventService = new EventService(mockDb, mockEmailService);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    eventService =
+        new EventService(mockDb, mockEmailService, Runnable::run, new FirestoreMetrics(registry));
 
     String resultId = eventService.createEvent(event);
 
     assertEquals("test-event-id", resultId);
-    verify(mockEmailService).sendEventInvite("a@example.com", "Mock Event");
-    verify(mockEmailService).sendEventInvite("b@example.com", "Mock Event");
+    ArgumentCaptor<Object> stored = ArgumentCaptor.forClass(Object.class);
+    verify(batch, times(3)).set(any(DocumentReference.class), any(Object.class));
+    verify(batch).set(eq(mockEventDoc), stored.capture());
+    verify(batch).commit();
+    Event storedEvent = (Event) stored.getValue();
+    assertNull(storedEvent.getParticipantEmails());
+    assertEquals(Boolean.TRUE, storedEvent.getMembersTracked());
+    assertEquals(Boolean.TRUE, storedEvent.getSubmissionsTracked());
+    verify(mockDb, never()).runTransaction(any());
+    assertEquals(1.0, registry.get("invites.unsent").counter().count());
+  }
+
+  /**
+   * Tests that an event whose window does not start on its slot grid, or whose slot length does not
+   * divide an hour, is rejected before anything is written.
+   */
+  @Test
+  void testCreateEvent_rejectsWindowOffSlotGrid() {
+    Event event = new Event();
+    event.setTitle("Off Grid");
+    event.setOrganizerEmail("org@example.com");
+    event.setParticipantEmails(List.of("a@example.com"));
+    event.setAvailableDays(List.of("2025-05-05"));
+    event.setStartTime("09:10");
+    event.setEndTime("12:00");
+    event.setSlotMinutes(15);
+
+    assertThrows(IllegalArgumentException.class, () -> eventService.createEvent(event));
+    event.setStartTime("09:00");
+    event.setSlotMinutes(25);
+    assertThrows(IllegalArgumentException.class, () -> eventService.createEvent(event));
+    verify(mockDb, never()).batch();
   }
 
   /**
-   * Tests that when the Firestore transaction fails during event creation, an exception is thrown
-   * and no invitation emails are sent.
+   * Tests that when the Firestore commit fails during event creation, an exception is thrown and no
+   * invitation emails are sent.
    *
-   * @throws Exception when transaction fails
+   * @throws Exception when the commit fails
    */
   @Test
   void testCreateEvent_throwsException() throws Exception {
@@ -99,20 +176,43 @@ class EventServiceTest {
     when(mockEventsCollection.document()).thenReturn(mockEventDoc);
     when(mockEventDoc.getId()).thenReturn("fail-id");
 
-    @SuppressWarnings("unchecked")
-    ApiFuture<Object> failedFuture = (ApiFuture<Object>) mock(ApiFuture.class);
-    when(failedFuture.get()).thenThrow(new ExecutionException("fail", null));
-    when(mockDb.runTransaction(any())).thenReturn(failedFuture);
+    stubCreateWrites(ApiFutures.immediateFailedFuture(new Exception("fail")));
 
     // Act & Assert
     assertThrows(ExecutionException.class, () -> eventService.createEvent(event));
-    verify(mockEmailService, never()).sendEventInvite(any(), any());
+    verify(mockEmailService, never()).sendEventInvites(any(), any());
+  }
+
+  /**
+   * Stubs the collection-group query of a user's memberships to answer with {@code memberships}.
+   *
+   * @return The query mock, which returns itself for every refinement
+   */
+  private Query stubMemberships(List<QueryDocumentSnapshot> memberships) {
+    CollectionGroup mockGroup = mock(CollectionGroup.class, RETURNS_SELF);
+    QuerySnapshot snapshot = mock(QuerySnapshot.class);
+    lenient().when(snapshot.getDocuments()).thenReturn(memberships);
+    lenient().when(snapshot.size()).thenReturn(memberships.size());
+    when(mockDb.collectionGroup("members")).thenReturn(mockGroup);
+    when(mockGroup.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+    return mockGroup;
+  }
+
+  /** Stubs the subcollection {@code name} of {@code eventRef} to hold {@code docs}. */
+  private static void stubCollection(
+      DocumentReference eventRef, String name, List<QueryDocumentSnapshot> docs) {
+    CollectionReference mockCollection = mock(CollectionReference.class);
+    QuerySnapshot snapshot = mock(QuerySnapshot.class);
+    lenient().when(snapshot.getDocuments()).thenReturn(docs);
+    when(eventRef.collection(name)).thenReturn(mockCollection);
+    when(mockCollection.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
   }
 
   /**
    * Tests that the getEventsForEmail method returns events where the user is either the organizer
-   * or a participant. Verifies that two events are returned and that both roles are captured in the
-   * result.
+   * or a participant, whether the event lists its participants or keeps them in members documents.
+   * Verifies that all three events are returned, that the events of memberships are read in one
+   * batch get, and that they carry the user's own membership.
    *
    * @throws Exception if query execution fails
    */
@@ -123,7 +223,6 @@ class EventServiceTest {
     // Mocks
     CollectionReference mockCollection = mock(CollectionReference.class);
     Query mockQuery = mock(Query.class);
-    ApiFuture<QuerySnapshot> mockFuture = mock(ApiFuture.class);
     QuerySnapshot mockSnapshot = mock(QuerySnapshot.class);
 
     QueryDocumentSnapshot mockOrganizerDoc = mock(QueryDocumentSnapshot.class);
@@ -142,8 +241,7 @@ class EventServiceTest {
     // Chain mocks
     when(mockDb.collection("events")).thenReturn(mockCollection);
     when(mockCollection.where(any(Filter.class))).thenReturn(mockQuery);
-    when(mockQuery.get()).thenReturn(mockFuture);
-    when(mockFuture.get()).thenReturn(mockSnapshot);
+    when(mockQuery.get()).thenReturn(ApiFutures.immediateFuture(mockSnapshot));
     when(mockSnapshot.getDocuments()).thenReturn(List.of(mockOrganizerDoc, mockParticipantDoc));
 
     when(mockOrganizerDoc.toObject(Event.class)).thenReturn(organizerEvent);
@@ -152,69 +250,205 @@ class EventServiceTest {
     when(mockParticipantDoc.toObject(Event.class)).thenReturn(participantEvent);
     when(mockParticipantDoc.getId()).thenReturn("participant-id");
 
+    // An event created with members documents, found through the user's membership
+    Member member = new Member();
+    member.setEmail(email);
+    member.setEventId("member-id");
+    member.setNecessity(5);
+    member.setStatus("accepted");
+    QueryDocumentSnapshot mockMembership = mock(QueryDocumentSnapshot.class);
+    when(mockMembership.getString("eventId")).thenReturn("member-id");
+    when(mockMembership.getId()).thenReturn(email);
+    when(mockMembership.toObject(Member.class)).thenReturn(member);
+    stubMemberships(List.of(mockMembership));
+
+    Event memberEvent = new Event();
+    memberEvent.setTitle("Member Event");
+    memberEvent.setMembersTracked(true);
+    DocumentReference memberEventRef = mock(DocumentReference.class);
+    DocumentSnapshot memberEventDoc = mock(DocumentSnapshot.class);
+    when(mockCollection.document("member-id")).thenReturn(memberEventRef);
+    when(mockDb.getAll(memberEventRef))
+        .thenReturn(ApiFutures.immediateFuture(List.of(memberEventDoc)));
+    when(memberEventDoc.getId()).thenReturn("member-id");
+    when(memberEventDoc.exists()).thenReturn(true);
+    when(memberEventDoc.toObject(Event.class)).thenReturn(memberEvent);
+
     // Act
     List<Event> events = eventService.getEventsForEmail(email);
 
     // Assert
-    assertEquals(2, events.size());
+    assertEquals(3, events.size());
     assertTrue(events.stream().anyMatch(e -> e.getTitle().equals("Organizer Event")));
     assertTrue(events.stream().anyMatch(e -> e.getTitle().equals("Participant Event")));
+    assertEquals(List.of(email), memberEvent.getParticipantEmails());
+    assertEquals(List.of(email), memberEvent.getConfirmedParticipants());
+    assertEquals(Map.of(email, 5), memberEvent.getParticipantNecessity());
+    assertEquals("member-id", events.get(2).getId());
+  }
+
+  /**
+   * Tests that listEventsForEmailAsync runs one ordered, limited query, returns a cursor only when
+   * another page follows, and resumes after that cursor's position on the next call.
+   */
+  @Test
+  void testListEventsForEmail_pagesWithCursor() throws Exception {
+    CollectionReference mockCollection = mock(CollectionReference.class);
+    Query mockQuery = mock(Query.class, RETURNS_SELF);
+    QuerySnapshot firstPage = mock(QuerySnapshot.class);
+    QuerySnapshot lastPage = mock(QuerySnapshot.class);
+    DocumentReference cursorDoc = mock(DocumentReference.class);
+
+    List<QueryDocumentSnapshot> docs = new ArrayList<>();
+    for (String day : List.of("2025-05-03", "2025-05-02", "2025-05-01")) {
+      Event event = new Event();
+      event.setLastAvailableDay(day);
+      QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+      lenient().when(doc.toObject(Event.class)).thenReturn(event);
+      lenient().when(doc.getId()).thenReturn("event-" + day);
+      docs.add(doc);
+    }
+
+    when(mockDb.collection("events")).thenReturn(mockCollection);
+    when(mockCollection.where(any(Filter.class))).thenReturn(mockQuery);
+    when(mockCollection.document("event-2025-05-02")).thenReturn(cursorDoc);
+    when(mockQuery.get())
+        .thenReturn(ApiFutures.immediateFuture(firstPage))
+        .thenReturn(ApiFutures.immediateFuture(lastPage));
+    when(firstPage.getDocuments()).thenReturn(docs);
+    when(lastPage.getDocuments()).thenReturn(docs.subList(2, 3));
+    Query memberships = stubMemberships(List.of());
+
+    EventPage page = eventService.listEventsForEmailAsync("a@x.com", 2, null, null).get();
+
+    assertEquals(2, page.getEvents().size());
+    assertEquals("event-2025-05-02", page.getEvents().get(1).getId());
+    assertNotNull(page.getNextCursor());
+    verify(mockQuery).orderBy("lastAvailableDay", Query.Direction.DESCENDING);
+    verify(mockQuery).limit(3);
+
+    EventPage next =
+        eventService.listEventsForEmailAsync("a@x.com", 2, page.getNextCursor(), null).get();
+
+    verify(mockQuery).startAfter("2025-05-02", cursorDoc);
+    verify(memberships).startAfter("2025-05-02", "event-2025-05-02");
+    assertEquals(1, next.getEvents().size());
+    assertNull(next.getNextCursor());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> eventService.listEventsForEmailAsync("a@x.com", 2, "not a cursor!", null));
   }
 
   /**
-   * Tests that deleteEventById successfully removes the event document, all associated slots, and
-   * updates the organizer and participant user records. Verifies that deletes and transaction
-   * commit occur without throwing.
+   * Tests that deleteEventById deletes the event document in a transaction, and only then deletes
+   * its slots, submissions, imports, members and heatmap days and updates the participants' user
+   * records. With more members than one batch holds, verifies the cleanup is split into batches
+   * within the write limit and that members who rejected the invitation are left alone.
    *
-   * @throws Exception if transaction fails
+   * @throws Exception if the delete fails
    */
   @Test
   void testDeleteEventById_success() throws Exception {
     String eventId = "event-123";
-    String organizerEmail = "organizer@example.com";
-    List<String> participants = List.of("a@example.com", "b@example.com");
-
-    Event mockEvent = new Event();
-    mockEvent.setId(eventId);
-    mockEvent.setOrganizerEmail(organizerEmail);
-    mockEvent.setParticipantEmails(participants);
 
     // Slot structure
     DocumentReference mockEventDoc = mock(DocumentReference.class);
     CollectionReference mockSlotsCollection = mock(CollectionReference.class);
-    ApiFuture<QuerySnapshot> mockSlotsFuture = mock(ApiFuture.class);
     QuerySnapshot mockSlotsSnapshot = mock(QuerySnapshot.class);
     QueryDocumentSnapshot mockSlotDoc1 = mock(QueryDocumentSnapshot.class);
     QueryDocumentSnapshot mockSlotDoc2 = mock(QueryDocumentSnapshot.class);
     DocumentReference mockSlotRef1 = mock(DocumentReference.class);
     DocumentReference mockSlotRef2 = mock(DocumentReference.class);
 
-    // Event snapshot
-    DocumentSnapshot mockEventSnapshot = mock(DocumentSnapshot.class);
-    ApiFuture<DocumentSnapshot> mockEventSnapshotFuture = mock(ApiFuture.class);
-
     // Mock structure
     when(mockDb.collection("events")).thenReturn(mockEventsCollection);
     when(mockEventsCollection.document(eventId)).thenReturn(mockEventDoc);
     when(mockEventDoc.collection("slots")).thenReturn(mockSlotsCollection);
-    when(mockSlotsCollection.get()).thenReturn(mockSlotsFuture);
-    when(mockSlotsFuture.get()).thenReturn(mockSlotsSnapshot);
+    when(mockSlotsCollection.get()).thenReturn(ApiFutures.immediateFuture(mockSlotsSnapshot));
     when(mockSlotsSnapshot.getDocuments()).thenReturn(List.of(mockSlotDoc1, mockSlotDoc2));
     when(mockSlotDoc1.getReference()).thenReturn(mockSlotRef1);
     when(mockSlotDoc2.getReference()).thenReturn(mockSlotRef2);
-
-    // Mock transaction
-    @SuppressWarnings("unchecked")
-    ApiFuture<Void> mockTransactionFuture = mock(ApiFuture.class);
-    when(mockTransactionFuture.get()).thenReturn(null);
-    when(mockDb.runTransaction(any()))
-        .thenReturn((ApiFuture<Object>) (ApiFuture<?>) mockTransactionFuture);
+    QueryDocumentSnapshot mockSubmission = mock(QueryDocumentSnapshot.class);
+    DocumentReference mockSubmissionRef = mock(DocumentReference.class);
+    when(mockSubmission.getReference()).thenReturn(mockSubmissionRef);
+    stubCollection(mockEventDoc, "submissions", List.of(mockSubmission));
+    QueryDocumentSnapshot mockImport = mock(QueryDocumentSnapshot.class);
+    DocumentReference mockImportRef = mock(DocumentReference.class);
+    when(mockImport.getReference()).thenReturn(mockImportRef);
+    stubCollection(mockEventDoc, "imports", List.of(mockImport));
+    QueryDocumentSnapshot mockHeatmapDay = mock(QueryDocumentSnapshot.class);
+    DocumentReference mockHeatmapDayRef = mock(DocumentReference.class);
+    when(mockHeatmapDay.getReference()).thenReturn(mockHeatmapDayRef);
+    stubCollection(mockEventDoc, "heatmap", List.of(mockHeatmapDay));
+
+    // 600 members, the last of whom rejected the invitation
+    List<QueryDocumentSnapshot> members = new ArrayList<>();
+    for (int i = 0; i < 600; i++) {
+      QueryDocumentSnapshot member = mock(QueryDocumentSnapshot.class);
+      lenient().when(member.getId()).thenReturn("p" + i + "@example.com");
+      when(member.getString("status")).thenReturn(i == 599 ? "rejected" : "accepted");
+      when(member.getReference()).thenReturn(mock(DocumentReference.class));
+      members.add(member);
+    }
+    stubCollection(mockEventDoc, "members", members);
+    CollectionReference mockUsers = mock(CollectionReference.class);
+    when(mockDb.collection("users")).thenReturn(mockUsers);
+    Map<String, DocumentReference> userRefs = new HashMap<>();
+    when(mockUsers.document(anyString()))
+        .thenAnswer(
+            inv ->
+                userRefs.computeIfAbsent(inv.getArgument(0), id -> mock(DocumentReference.class)));
+
+    // Mock transaction, which answers with the deleted event
+    DocumentSnapshot mockEventSnapshot = mock(DocumentSnapshot.class);
+    when(mockEventSnapshot.getBoolean("membersTracked")).thenReturn(true);
+    when(mockDb.runTransaction(any())).thenReturn(ApiFutures.immediateFuture(mockEventSnapshot));
+    WriteBatch batch = mock(WriteBatch.class, RETURNS_SELF);
+    when(mockDb.batch()).thenReturn(batch);
+    when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
 
     // Act & Assert
     assertDoesNotThrow(() -> eventService.deleteEventById(eventId));
-    verify(mockSlotRef1).delete();
-    verify(mockSlotRef2).delete();
-    verify(mockDb).runTransaction(any());
+    InOrder inOrder = inOrder(mockDb, mockSlotsCollection);
+    inOrder.verify(mockDb).runTransaction(any());
+    inOrder.verify(mockSlotsCollection).get();
+    verify(batch).delete(mockSlotRef1);
+    verify(batch).delete(mockSlotRef2);
+    verify(batch).delete(mockSubmissionRef);
+    verify(batch).delete(mockImportRef);
+    verify(batch).delete(mockHeatmapDayRef);
+    verify(batch, times(605)).delete(any(DocumentReference.class));
+    verify(batch)
+        .update(
+            userRefs.get("p0@example.com"),
+            FieldPath.of("eventsParticipating"),
+            FieldValue.arrayRemove(eventId),
+            FieldPath.of("commitments", eventId),
+            FieldValue.delete());
+    assertEquals(599, userRefs.size());
+    assertFalse(userRefs.containsKey("p599@example.com"));
+    // 1204 writes, in batches of at most 500
+    verify(mockDb, times(3)).batch();
+    verify(batch, times(3)).commit();
+  }
+
+  /**
+   * Tests that when the event cannot be deleted, its subcollections are left untouched, so an event
+   * is never left without its members.
+   */
+  @Test
+  void testDeleteEventById_notFoundLeavesSubcollections() {
+    DocumentReference mockEventDoc = mock(DocumentReference.class);
+    when(mockDb.collection("events")).thenReturn(mockEventsCollection);
+    when(mockEventsCollection.document("missing")).thenReturn(mockEventDoc);
+    when(mockDb.runTransaction(any()))
+        .thenReturn(
+            ApiFutures.immediateFailedFuture(
+                new IllegalArgumentException("Event not found: missing")));
+
+    assertThrows(IllegalArgumentException.class, () -> eventService.deleteEventById("missing"));
+    verify(mockEventDoc, never()).collection(anyString());
+    verify(mockDb, never()).batch();
   }
 
   /**
@@ -229,7 +463,6 @@ class EventServiceTest {
 
     // Arrange
     DocumentReference mockDocRef = mock(DocumentReference.class);
-    ApiFuture<DocumentSnapshot> mockFuture = mock(ApiFuture.class);
     DocumentSnapshot mockSnapshot = mock(DocumentSnapshot.class);
 
     Event mockEvent = new Event();
@@ -238,8 +471,8 @@ class EventServiceTest {
     // Set up mocks
     when(mockDb.collection("events")).thenReturn(mockEventsCollection);
     when(mockEventsCollection.document(eventId)).thenReturn(mockDocRef);
-    when(mockDocRef.get()).thenReturn(mockFuture);
-    when(mockFuture.get()).thenReturn(mockSnapshot);
+    when(mockDocRef.get()).thenReturn(ApiFutures.immediateFuture(mockSnapshot));
+    stubCollection(mockDocRef, "members", List.of());
     when(mockSnapshot.exists()).thenReturn(true);
     when(mockSnapshot.toObject(Event.class)).thenReturn(mockEvent);
     when(mockSnapshot.getId()).thenReturn(eventId);
@@ -252,4 +485,406 @@ class EventServiceTest {
     assertEquals("Sample Event", result.getTitle());
     assertEquals(eventId, result.getId());
   }
+
+  /**
+   * Tests that loadEventByIdAsync completes exceptionally with an IllegalArgumentException when the
+   * event document does not exist, and that the synchronous wrapper rethrows it unwrapped.
+   */
+  @Test
+  void testLoadEventByIdAsync_missingEventFails() {
+    DocumentReference mockDocRef = mock(DocumentReference.class);
+    DocumentSnapshot mockSnapshot = mock(DocumentSnapshot.class);
+
+    when(mockDb.collection("events")).thenReturn(mockEventsCollection);
+    when(mockEventsCollection.document("missing")).thenReturn(mockDocRef);
+    when(mockDocRef.get()).thenReturn(ApiFutures.immediateFuture(mockSnapshot));
+    stubCollection(mockDocRef, "members", List.of());
+    when(mockSnapshot.exists()).thenReturn(false);
+
+    CompletionException ex =
+        assertThrows(
+            CompletionException.class, () -> eventService.loadEventByIdAsync("missing").join());
+    assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+    assertThrows(IllegalArgumentException.class, () -> eventService.loadEventById("missing"));
+  }
+
+  /**
+   * Tests that loadEventIfModifiedAsync tags the event with its update time and skips deserializing
+   * it when If-None-Match already names that version.
+   */
+  @Test
+  void testLoadEventIfModified_matchingEtagSkipsDeserialization() throws Exception {
+    DocumentReference mockDocRef = mock(DocumentReference.class);
+    DocumentSnapshot mockSnapshot = mock(DocumentSnapshot.class);
+
+    when(mockDb.collection("events")).thenReturn(mockEventsCollection);
+    when(mockEventsCollection.document("event-etag")).thenReturn(mockDocRef);
+    when(mockDocRef.get()).thenReturn(ApiFutures.immediateFuture(mockSnapshot));
+    stubCollection(mockDocRef, "members", List.of());
+    when(mockSnapshot.exists()).thenReturn(true);
+    when(mockSnapshot.getUpdateTime())
+        .thenReturn(Timestamp.ofTimeSecondsAndNanos(1_700_000_000, 42));
+
+    Versioned<Event> cached =
+        eventService.loadEventIfModifiedAsync("event-etag", "\"other\", \"1700000000.42\"").get();
+
+    assertTrue(cached.notModified());
+    assertEquals("\"1700000000.42\"", cached.etag());
+    verify(mockSnapshot, never()).toObject(Event.class);
+
+    when(mockSnapshot.toObject(Event.class)).thenReturn(new Event());
+    Versioned<Event> changed =
+        eventService.loadEventIfModifiedAsync("event-etag", "\"1600000000.0\"").get();
+    assertFalse(changed.notModified());
+  }
+
+  /**
+   * Tests that createEventAsync does not send any invitations until the event is committed, and
+   * sends them once it is.
+   */
+  @Test
+  void testCreateEventAsync_sendsInvitesAfterCommit() {
+    Event event = new Event();
+    event.setTitle("Async Event");
+    event.setOrganizerEmail("org@example.com");
+    event.setParticipantEmails(List.of("a@example.com"));
+
+    SettableApiFuture<List<WriteResult>> commit = SettableApiFuture.create();
+    stubCreateWrites(commit);
+
+    CompletableFuture<String> result = eventService.createEventAsync(event);
+    assertFalse(result.isDone());
+    verify(mockEmailService, never()).sendEventInvites(any(), any());
+
+    commit.set(List.of());
+    assertEquals("test-event-id", result.join());
+    verify(mockEmailService).sendEventInvites(List.of("a@example.com"), "Async Event");
+  }
+
+  /** A WriteBatch stand-in that records every write it is given and how often it is committed. */
+  private static final class RecordingBatch {
+    final List<Object[]> writes = new ArrayList<>();
+    final AtomicInteger commits = new AtomicInteger();
+    final WriteBatch mock =
+        mock(
+            WriteBatch.class,
+            invocation -> {
+              if (invocation.getMethod().getName().equals("commit")) {
+                commits.incrementAndGet();
+                return ApiFutures.immediateFuture(List.of());
+              }
+              synchronized (writes) {
+                writes.add(invocation.getArguments());
+              }
+              return invocation.getMock();
+            });
+  }
+
+  /**
+   * Fires hundreds of simultaneous accept/reject responses at one event that lists its participants
+   * and checks that none of them opens a transaction: each is a single batch commit of commuting
+   * field transforms, so there is nothing for concurrent responses to conflict on. Each makes one
+   * masked batch get of the event and the respondent's member document, to see where the membership
+   * is kept and whether the heatmap needs adjusting.
+   */
+  @Test
+  void testRecordInvitationResponse_concurrentResponsesUseFieldTransforms() throws Exception {
+    int responses = 300;
+    DocumentReference eventRef = mock(DocumentReference.class);
+    CollectionReference mockUsers = mock(CollectionReference.class);
+    Map<String, DocumentReference> userRefs = new HashMap<>();
+    for (int i = 0; i < responses; i++) {
+      userRefs.put("user" + i + "@example.com", mock(DocumentReference.class));
+    }
+    Queue<RecordingBatch> batches = new ConcurrentLinkedQueue<>();
+
+    when(mockDb.collection("events")).thenReturn(mockEventsCollection);
+    when(mockEventsCollection.document("busy-event")).thenReturn(eventRef);
+    when(mockDb.collection("users")).thenReturn(mockUsers);
+    when(mockUsers.document(anyString())).thenAnswer(inv -> userRefs.get(inv.getArgument(0)));
+    DocumentSnapshot untracked = mock(DocumentSnapshot.class);
+    when(untracked.exists()).thenReturn(true);
+    DocumentSnapshot noMember = mock(DocumentSnapshot.class);
+    CollectionReference mockMembers = mock(CollectionReference.class);
+    CollectionReference mockSubmissions = mock(CollectionReference.class);
+    when(eventRef.collection("members")).thenReturn(mockMembers);
+    when(mockMembers.document(anyString())).thenReturn(mock(DocumentReference.class));
+    when(eventRef.collection("submissions")).thenReturn(mockSubmissions);
+    when(mockSubmissions.document(anyString())).thenReturn(mock(DocumentReference.class));
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(untracked, noMember)));
+    when(mockDb.batch())
+        .thenAnswer(
+            inv -> {
+              RecordingBatch batch = new RecordingBatch();
+              batches.add(batch);
+              return batch.mock;
+            });
+
+    ExecutorService pool = Executors.newFixedThreadPool(64);
+    CountDownLatch start = new CountDownLatch(1);
+    List<CompletableFuture<Void>> results = new ArrayList<>();
+    for (int i = 0; i < responses; i++) {
+      String email = "user" + i + "@example.com";
+      boolean accept = i % 2 == 0;
+      results.add(
+          CompletableFuture.runAsync(
+              () -> {
+                try {
+                  start.await();
+                  eventService.recordInvitationResponse("busy-event", email, accept);
+                } catch (Exception e) {
+                  throw new CompletionException(e);
+                }
+              },
+              pool));
+    }
+    start.countDown();
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+    pool.shutdown();
+
+    verify(mockDb, never()).runTransaction(any());
+    verify(eventRef, never()).get();
+    verify(mockDb, times(responses)).getAll(any(DocumentReference[].class), any(FieldMask.class));
+    assertEquals(responses, batches.size());
+
+    List<List<Object>> expectedEventWrites = new ArrayList<>();
+    for (int i = 0; i < responses; i++) {
+      String email = "user" + i + "@example.com";
+      if (i % 2 == 0) {
+        expectedEventWrites.add(
+            List.of(
+                eventRef,
+                FieldPath.of("confirmedParticipants"),
+                FieldValue.arrayUnion(email),
+                FieldPath.of("rejectedParticipants"),
+                FieldValue.arrayRemove(email)));
+      } else {
+        expectedEventWrites.add(
+            List.of(
+                eventRef,
+                FieldPath.of("participantEmails"),
+                FieldValue.arrayRemove(email),
+                FieldPath.of("participantNecessity", email),
+                FieldValue.delete(),
+                FieldPath.of("rejectedParticipants"),
+                FieldValue.arrayUnion(email),
+                FieldPath.of("confirmedParticipants"),
+                FieldValue.arrayRemove(email)));
+      }
+    }
+
+    List<List<Object>> actualEventWrites = new ArrayList<>();
+    int userIndexWrites = 0;
+    for (RecordingBatch batch : batches) {
+      assertEquals(1, batch.commits.get(), "each response commits exactly one batch");
+      for (Object[] write : batch.writes) {
+        if (write[0] == eventRef) {
+          actualEventWrites.add(Arrays.asList(write));
+        } else {
+          userIndexWrites++;
+        }
+      }
+    }
+    assertEquals(responses, userIndexWrites, "every response updates the user's indexes");
+    assertEquals(expectedEventWrites.size(), actualEventWrites.size());
+    assertTrue(actualEventWrites.containsAll(expectedEventWrites));
+  }
+
+  /**
+   * Tests that a response to an event that keeps its membership in members documents updates only
+   * the respondent's member document and user document, leaving the event document alone.
+   */
+  @Test
+  void testRecordInvitationResponse_trackedEventWritesOnlyMemberDoc() throws Exception {
+    DocumentReference memberRef = mock(DocumentReference.class);
+    CollectionReference mockMembers = mock(CollectionReference.class);
+    CollectionReference mockUsers = mock(CollectionReference.class);
+    DocumentSnapshot event = mock(DocumentSnapshot.class);
+    DocumentSnapshot member = mock(DocumentSnapshot.class);
+    WriteBatch batch = mock(WriteBatch.class, RETURNS_SELF);
+
+    when(mockDb.collection("events")).thenReturn(mockEventsCollection);
+    when(mockEventsCollection.document("tracked")).thenReturn(mockEventDoc);
+    when(mockEventDoc.collection("members")).thenReturn(mockMembers);
+    when(mockMembers.document("a@example.com")).thenReturn(memberRef);
+    CollectionReference mockSubmissions = mock(CollectionReference.class);
+    when(mockEventDoc.collection("submissions")).thenReturn(mockSubmissions);
+    when(mockSubmissions.document("a@example.com")).thenReturn(mock(DocumentReference.class));
+    when(mockDb.collection("users")).thenReturn(mockUsers);
+    when(mockUsers.document("a@example.com")).thenReturn(mockUserDoc);
+    when(event.exists()).thenReturn(true);
+    when(event.getBoolean("membersTracked")).thenReturn(true);
+    when(member.exists()).thenReturn(true);
+    when(member.get("necessity")).thenReturn(3L);
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(event, member)));
+    when(mockDb.batch()).thenReturn(batch);
+    when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+    eventService.recordInvitationResponse("tracked", "a@example.com", true);
+    eventService.recordInvitationResponse("tracked", "a@example.com", false);
+
+    verify(batch).update(memberRef, "status", "accepted");
+    verify(batch).update(memberRef, "status", "rejected", "necessity", FieldValue.delete());
+    verify(batch, times(2)).set(eq(mockUserDoc), anyMap(), eq(SetOptions.merge()));
+    assertTrue(
+        mockingDetails(batch).getInvocations().stream()
+            .noneMatch(inv -> Arrays.asList(inv.getArguments()).contains(mockEventDoc)),
+        "the event document is not written");
+    verify(mockDb, never()).runTransaction(any());
+  }
+
+  /**
+   * Tests that responding to a missing event surfaces as an IllegalArgumentException, and that a
+   * participant who is not a member of an event that keeps members documents cannot respond to it.
+   */
+  @Test
+  void testRecordInvitationResponse_missingEventFails() {
+    DocumentSnapshot missing = mock(DocumentSnapshot.class);
+    DocumentSnapshot tracked = mock(DocumentSnapshot.class);
+    CollectionReference mockMembers = mock(CollectionReference.class);
+    when(tracked.exists()).thenReturn(true);
+    when(tracked.getBoolean("membersTracked")).thenReturn(true);
+
+    when(mockDb.collection("events")).thenReturn(mockEventsCollection);
+    when(mockEventsCollection.document(anyString())).thenReturn(mockEventDoc);
+    when(mockEventDoc.collection("members")).thenReturn(mockMembers);
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(missing, missing)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(tracked, missing)));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> eventService.recordInvitationResponse("gone", "a@example.com", true));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> eventService.recordInvitationResponse("tracked", "stranger@example.com", true));
+    verify(mockDb, never()).batch();
+  }
+
+  /**
+   * Builds an event document mock whose update() calls are recorded and answered by {@code
+   * outcome}, which receives the 1-based attempt number.
+   */
+  private DocumentReference patchableEventDoc(
+      DocumentSnapshot snapshot,
+      List<Object[]> updates,
+      IntFunction<ApiFuture<WriteResult>> outcome) {
+    AtomicInteger attempts = new AtomicInteger();
+    DocumentReference ref =
+        mock(
+            DocumentReference.class,
+            invocation -> {
+              if (invocation.getMethod().getName().equals("update")) {
+                updates.add(invocation.getArguments());
+                return outcome.apply(attempts.incrementAndGet());
+              }
+              return RETURNS_DEFAULTS.answer(invocation);
+            });
+    doReturn(ApiFutures.immediateFuture(snapshot)).when(ref).get();
+    when(mockDb.collection("events")).thenReturn(mockEventsCollection);
+    when(mockEventsCollection.document("event-p")).thenReturn(ref);
+    return ref;
+  }
+
+  /**
+   * Tests that a merge patch writes only the field paths that differ from the stored event, turns
+   * nulls into field deletes, and guards the single update with the snapshot's update time.
+   */
+  @Test
+  void testPatchEvent_writesOnlyChangedPaths() throws Exception {
+    Timestamp readAt = Timestamp.ofTimeSecondsAndNanos(1_700_000_000, 5);
+    DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+    when(snapshot.exists()).thenReturn(true);
+    when(snapshot.getUpdateTime()).thenReturn(readAt);
+    when(snapshot.getData())
+        .thenReturn(
+            Map.of(
+                "title",
+                "Old",
+                "durationMinutes",
+                60L,
+                "participantNecessity",
+                Map.of("a@x.com", 5L, "b@x.com", 3L),
+                "submittedPreferences",
+                Map.of("a@x.com", Map.of("09:00-10:00@2025-05-01", 3L))));
+    List<Object[]> updates = new ArrayList<>();
+    patchableEventDoc(snapshot, updates, attempt -> ApiFutures.immediateFuture(null));
+
+    Map<String, Object> necessity = new HashMap<>();
+    necessity.put("a@x.com", 5); // unchanged
+    necessity.put("b@x.com", null); // removed
+    necessity.put("c@x.com", 1); // added
+    Map<String, Object> patch = new HashMap<>();
+    patch.put("title", "New");
+    patch.put("durationMinutes", 60); // unchanged
+    patch.put("participantNecessity", necessity);
+
+    eventService.patchEvent("event-p", patch);
+
+    assertEquals(1, updates.size());
+    List<Object> args = Arrays.asList(updates.get(0));
+    assertEquals(Precondition.updatedAt(readAt), args.get(0));
+    Map<Object, Object> written = new HashMap<>();
+    for (int i = 1; i < args.size(); i += 2) {
+      written.put(args.get(i), args.get(i + 1));
+    }
+    assertEquals(
+        Map.of(
+            FieldPath.of("title"),
+            "New",
+            FieldPath.of("participantNecessity", "b@x.com"),
+            FieldValue.delete(),
+            FieldPath.of("participantNecessity", "c@x.com"),
+            1),
+        written);
+    verify(mockDb, never()).runTransaction(any());
+  }
+
+  /**
+   * Tests that a patch whose update-time precondition fails because of a concurrent write is
+   * re-read and re-applied instead of overwriting the concurrent change.
+   */
+  @Test
+  void testPatchEvent_retriesWhenPreconditionFails() throws Exception {
+    DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+    when(snapshot.exists()).thenReturn(true);
+    when(snapshot.getUpdateTime()).thenReturn(Timestamp.ofTimeSecondsAndNanos(1, 0));
+    when(snapshot.getData()).thenReturn(Map.of("title", "Old"));
+    List<Object[]> updates = new ArrayList<>();
+    DocumentReference ref =
+        patchableEventDoc(
+            snapshot,
+            updates,
+            attempt ->
+                attempt == 1
+                    ? ApiFutures.immediateFailedFuture(
+                        new FailedPreconditionException(
+                            "stale",
+                            null,
+                            GrpcStatusCode.of(Status.Code.FAILED_PRECONDITION),
+                            false))
+                    : ApiFutures.immediateFuture(null));
+
+    eventService.patchEvent("event-p", Map.of("title", "New"));
+
+    assertEquals(2, updates.size());
+    verify(ref, times(2)).get();
+  }
+
+  /**
+   * Tests that patches touching derived or membership fields are rejected before any Firestore call
+   * is made.
+   */
+  @Test
+  void testPatchEvent_rejectsUnpatchableFields() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> eventService.patchEventAsync("event-p", Map.of("optimalSlots", List.of())));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> eventService.patchEventAsync("event-p", Map.of("durationMinutes", 52)));
+    verify(mockDb, never()).collection(any());
+  }
 }
@@ -0,0 +1,293 @@
+package com.browncs._final.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.browncs._final.model.Event;
+import com.browncs._final.model.Slot;
+import com.browncs._final.model.SlotBlock;
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Unit tests for EventStreamService. Firestore snapshot listeners are captured from the mocks and
+ * fired by hand; viewers are emitters that record what they are sent.
+ */
+public class EventStreamServiceTest {
+
+  private Firestore mockDb;
+  private DocumentReference eventRef;
+  private CollectionReference slotsCol;
+  private ListenerRegistration slotRegistration;
+  private ListenerRegistration eventRegistration;
+  private EventStreamService service;
+
+  /** An emitter that records the name, id and data of every event sent to it. */
+  private static class RecordingEmitter extends SseEmitter {
+    private static final Pattern NAME = Pattern.compile("event:(\\S+)");
+    private static final Pattern ID = Pattern.compile("id:(\\S+)");
+
+    final List<String> names = new ArrayList<>();
+    final List<String> ids = new ArrayList<>();
+    final List<Object> data = new ArrayList<>();
+    Runnable completion;
+
+    @Override
+    public void send(SseEventBuilder builder) {
+      StringBuilder text = new StringBuilder();
+      for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+        if (part.getData() instanceof String s) {
+          text.append(s);
+        } else {
+          data.add(part.getData());
+        }
+      }
+      Matcher name = NAME.matcher(text);
+      if (name.find()) {
+        names.add(name.group(1));
+        Matcher id = ID.matcher(text);
+        ids.add(id.find() ? id.group(1) : null);
+      }
+    }
+
+    @Override
+    public void onCompletion(Runnable callback) {
+      completion = callback;
+    }
+
+    Object last() {
+      return data.get(data.size() - 1);
+    }
+  }
+
+  @BeforeEach
+  void setUp() {
+    mockDb = mock(Firestore.class);
+    CollectionReference eventsCol = mock(CollectionReference.class);
+    eventRef = mock(DocumentReference.class);
+    slotsCol = mock(CollectionReference.class);
+    slotRegistration = mock(ListenerRegistration.class);
+    eventRegistration = mock(ListenerRegistration.class);
+    when(mockDb.collection("events")).thenReturn(eventsCol);
+    when(eventsCol.document("event1")).thenReturn(eventRef);
+    when(eventRef.collection("slots")).thenReturn(slotsCol);
+    when(slotsCol.addSnapshotListener(any())).thenReturn(slotRegistration);
+    when(eventRef.addSnapshotListener(any())).thenReturn(eventRegistration);
+    service = newService(10, 10);
+  }
+
+  @AfterEach
+  void tearDown() {
+    service.shutdown();
+  }
+
+  private EventStreamService newService(int maxConnections, int maxPerEvent) {
+    return new EventStreamService(
+        mockDb, new SimpleMeterRegistry(), maxConnections, maxPerEvent, 4, Duration.ofHours(1));
+  }
+
+  @SuppressWarnings("unchecked")
+  private EventListener<QuerySnapshot> slotListener() {
+    ArgumentCaptor<EventListener<QuerySnapshot>> captor =
+        ArgumentCaptor.forClass(EventListener.class);
+    verify(slotsCol).addSnapshotListener(captor.capture());
+    return captor.getValue();
+  }
+
+  @SuppressWarnings("unchecked")
+  private EventListener<DocumentSnapshot> eventListener() {
+    ArgumentCaptor<EventListener<DocumentSnapshot>> captor =
+        ArgumentCaptor.forClass(EventListener.class);
+    verify(eventRef).addSnapshotListener(captor.capture());
+    return captor.getValue();
+  }
+
+  /** Builds a slot query snapshot whose changes set the given weights on the given slot IDs. */
+  private QuerySnapshot slotChanges(DocumentChange.Type type, String... slotIdsAndWeights) {
+    List<DocumentChange> changes = new ArrayList<>();
+    for (int i = 0; i < slotIdsAndWeights.length; i += 2) {
+      String slotId = slotIdsAndWeights[i];
+      Slot slot = new Slot();
+      slot.setId(slotId);
+      slot.setParticipantWeights(
+          Map.of("alice@example.com", Integer.parseInt(slotIdsAndWeights[i + 1])));
+      QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+      when(doc.getId()).thenReturn(slotId);
+      when(doc.toObject(Slot.class)).thenReturn(slot);
+      DocumentChange change = mock(DocumentChange.class);
+      when(change.getType()).thenReturn(type);
+      when(change.getDocument()).thenReturn(doc);
+      changes.add(change);
+    }
+    QuerySnapshot snapshot = mock(QuerySnapshot.class);
+    when(snapshot.getDocumentChanges()).thenReturn(changes);
+    return snapshot;
+  }
+
+  private DocumentSnapshot eventWithOptimalSlots(List<SlotBlock> blocks) {
+    Event event = new Event();
+    event.setOptimalSlots(blocks);
+    DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+    when(snapshot.exists()).thenReturn(true);
+    when(snapshot.toObject(Event.class)).thenReturn(event);
+    return snapshot;
+  }
+
+  private SlotBlock block(String... slotIds) {
+    SlotBlock block = new SlotBlock();
+    block.setSlotIds(List.of(slotIds));
+    block.setTotalScore(1.0);
+    return block;
+  }
+
+  /**
+   * Tests that all viewers of an event share one pair of Firestore listeners, that each gets one
+   * snapshot once both listeners have reported, and that the listeners are removed when the last
+   * viewer leaves.
+   */
+  @Test
+  void testSubscribe_viewersShareOneListenerPerEvent() {
+    RecordingEmitter first = new RecordingEmitter();
+    RecordingEmitter second = new RecordingEmitter();
+    service.subscribe("event1", null, first);
+    service.subscribe("event1", null, second);
+
+    verify(slotsCol, times(1)).addSnapshotListener(any());
+    verify(eventRef, times(1)).addSnapshotListener(any());
+    assertEquals(1, service.activeChannels());
+
+    slotListener().onEvent(slotChanges(DocumentChange.Type.ADDED, "2025-04-01T10:00", "1"), null);
+    assertTrue(first.names.isEmpty(), "No snapshot until the event document has loaded");
+    eventListener().onEvent(eventWithOptimalSlots(null), null);
+
+    assertEquals(List.of("snapshot"), first.names);
+    assertEquals(List.of("snapshot"), second.names);
+
+    first.completion.run();
+    verify(slotRegistration, never()).remove();
+    second.completion.run();
+    verify(slotRegistration).remove();
+    verify(eventRegistration).remove();
+    assertEquals(0, service.activeChannels());
+  }
+
+  /**
+   * Tests that after the snapshot only changed slot cells are pushed, unchanged rewrites are
+   * ignored, and optimal slots are pushed only when they change.
+   */
+  @Test
+  void testListeners_pushOnlyChanges() {
+    RecordingEmitter viewer = new RecordingEmitter();
+    service.subscribe("event1", null, viewer);
+    slotListener()
+        .onEvent(
+            slotChanges(
+                DocumentChange.Type.ADDED, "2025-04-01T10:00", "1", "2025-04-01T10:15", "2"),
+            null);
+    eventListener().onEvent(eventWithOptimalSlots(null), null);
+
+    slotListener()
+        .onEvent(
+            slotChanges(
+                DocumentChange.Type.MODIFIED, "2025-04-01T10:00", "1", "2025-04-01T10:15", "3"),
+            null);
+    @SuppressWarnings("unchecked")
+    Map<String, List<?>> delta = (Map<String, List<?>>) viewer.last();
+    assertEquals(1, delta.get("changed").size());
+    assertEquals("2025-04-01T10:15", ((Slot) delta.get("changed").get(0)).getId());
+
+    List<SlotBlock> ranking = List.of(block("2025-04-01T10:15"));
+    eventListener().onEvent(eventWithOptimalSlots(ranking), null);
+    eventListener().onEvent(eventWithOptimalSlots(ranking), null); // unrelated event edit
+
+    assertEquals(List.of("snapshot", "slots", "optimalSlots"), viewer.names);
+    assertEquals(ranking, viewer.last());
+  }
+
+  /**
+   * Tests that a viewer reconnecting with a recent resume token receives only the events it missed,
+   * and that a token older than the replay buffer falls back to a full snapshot.
+   */
+  @Test
+  void testSubscribe_resumesFromReplayBuffer() {
+    RecordingEmitter viewer = new RecordingEmitter();
+    service.subscribe("event1", null, viewer);
+    slotListener().onEvent(slotChanges(DocumentChange.Type.ADDED, "2025-04-01T10:00", "0"), null);
+    eventListener().onEvent(eventWithOptimalSlots(null), null);
+    for (int weight = 1; weight <= 6; weight++) {
+      slotListener()
+          .onEvent(
+              slotChanges(DocumentChange.Type.MODIFIED, "2025-04-01T10:00", "" + weight), null);
+    }
+    String afterFourth = viewer.ids.get(4);
+    String afterFirst = viewer.ids.get(1);
+
+    RecordingEmitter resumed = new RecordingEmitter();
+    service.subscribe("event1", afterFourth, resumed);
+    assertEquals(List.of("slots", "slots"), resumed.names);
+    assertEquals(viewer.ids.subList(5, 7), resumed.ids);
+
+    RecordingEmitter stale = new RecordingEmitter();
+    service.subscribe("event1", afterFirst, stale); // buffer holds the last 4 only
+    assertEquals(List.of("snapshot"), stale.names);
+
+    RecordingEmitter foreign = new RecordingEmitter();
+    service.subscribe("event1", "deadbeef:3", foreign);
+    assertEquals(List.of("snapshot"), foreign.names);
+  }
+
+  /** Tests that connections beyond the per-event or global limit are rejected. */
+  @Test
+  void testSubscribe_enforcesConnectionLimits() {
+    service.shutdown();
+    service = newService(3, 2);
+    service.subscribe("event1", null, new RecordingEmitter());
+    service.subscribe("event1", null, new RecordingEmitter());
+
+    assertThrows(
+        RejectedExecutionException.class,
+        () -> service.subscribe("event1", null, new RecordingEmitter()));
+
+    CollectionReference eventsCol = mockDb.collection("events");
+    DocumentReference otherRef = mock(DocumentReference.class);
+    CollectionReference otherSlots = mock(CollectionReference.class);
+    when(eventsCol.document("event2")).thenReturn(otherRef);
+    when(otherRef.collection("slots")).thenReturn(otherSlots);
+    service.subscribe("event2", null, new RecordingEmitter());
+
+    assertThrows(
+        RejectedExecutionException.class,
+        () -> service.subscribe("event2", null, new RecordingEmitter()));
+  }
+
+  /** Tests that deleting the event notifies viewers, ends their streams and drops the listeners. */
+  @Test
+  void testEventListener_deletedEventClosesStream() {
+    RecordingEmitter viewer = new RecordingEmitter();
+    service.subscribe("event1", null, viewer);
+    slotListener().onEvent(slotChanges(DocumentChange.Type.ADDED), null);
+    eventListener().onEvent(eventWithOptimalSlots(null), null);
+
+    DocumentSnapshot deleted = mock(DocumentSnapshot.class);
+    when(deleted.exists()).thenReturn(false);
+    eventListener().onEvent(deleted, null);
+
+    assertEquals(List.of("snapshot", "deleted"), viewer.names);
+    verify(slotRegistration).remove();
+    assertEquals(0, service.activeChannels());
+  }
+}
@@ -0,0 +1,55 @@
+package com.browncs._final.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.browncs._final.model.Event;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LastAvailableDayMigrationTest {
+
+  private static QueryDocumentSnapshot eventDoc(List<String> days, String lastDay) {
+    Event event = new Event();
+    event.setAvailableDays(days);
+    event.setLastAvailableDay(lastDay);
+    QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+    when(doc.toObject(Event.class)).thenReturn(event);
+    when(doc.getReference()).thenReturn(mock(DocumentReference.class));
+    return doc;
+  }
+
+  /**
+   * Tests that only events with available days but no lastAvailableDay are updated, with the latest
+   * of their days, and that a short page ends the scan.
+   */
+  @Test
+  void testMigrate_storesMissingLastAvailableDay() throws Exception {
+    Firestore db = mock(Firestore.class);
+    CollectionReference events = mock(CollectionReference.class);
+    Query query = mock(Query.class, RETURNS_SELF);
+    QuerySnapshot snapshot = mock(QuerySnapshot.class);
+    when(db.collection("events")).thenReturn(events);
+    when(events.select("availableDays", "lastAvailableDay")).thenReturn(query);
+    when(query.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+    QueryDocumentSnapshot missing = eventDoc(List.of("2025-05-06", "2025-05-09"), null);
+    QueryDocumentSnapshot stored = eventDoc(List.of("2025-05-06"), "2025-05-06");
+    QueryDocumentSnapshot noDays = eventDoc(null, null);
+    when(snapshot.getDocuments()).thenReturn(List.of(missing, stored, noDays));
+    WriteBatch batch = mock(WriteBatch.class, RETURNS_SELF);
+    when(db.batch()).thenReturn(batch);
+    when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+    int updated =
+        new LastAvailableDayMigration(db, new FirestoreMetrics(new SimpleMeterRegistry()))
+            .migrate();
+
+    assertEquals(1, updated);
+    verify(batch).update(missing.getReference(), "lastAvailableDay", "2025-05-09");
+    verify(batch, times(1)).update(any(DocumentReference.class), anyString(), any());
+    verify(query, never()).startAfter(any(DocumentSnapshot.class));
+  }
+}
@@ -0,0 +1,108 @@
+package com.browncs._final.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.browncs._final.model.PreferenceRequest;
+import com.browncs._final.model.Recurrence;
+import com.browncs._final.model.Slot;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for Occurrences, on a Monday and Wednesday template repeating every other week. */
+public class OccurrencesTest {
+
+  private static final List<String> TEMPLATE = List.of("2025-05-07", "2025-05-05");
+
+  private static Occurrences biweeklyUntil(String until) {
+    Recurrence recurrence = new Recurrence();
+    recurrence.setIntervalWeeks(2);
+    recurrence.setUntil(until);
+    return Occurrences.of(recurrence, TEMPLATE);
+  }
+
+  /**
+   * Tests that the occurrences end with the last one starting by the until date, and that the next
+   * occurrence moves on the day after one ends.
+   */
+  @Test
+  void testOccurrences_countLastDayAndNext() {
+    Occurrences occurrences = biweeklyUntil("2025-06-20"); // 05-05, 05-19, 06-02, 06-16
+
+    assertEquals(4, occurrences.count());
+    assertEquals("2025-06-18", occurrences.lastDay());
+    assertEquals(0, occurrences.next(LocalDate.of(2025, 4, 1).toEpochDay()));
+    assertEquals(0, occurrences.next(LocalDate.of(2025, 5, 7).toEpochDay()));
+    assertEquals(1, occurrences.next(LocalDate.of(2025, 5, 8).toEpochDay()));
+    assertEquals(3, occurrences.next(LocalDate.of(2026, 1, 1).toEpochDay()));
+  }
+
+  /** Tests that expanding moves the template slots to an occurrence's dates with their weights. */
+  @Test
+  void testExpand_movesTemplateSlotsAndKeepsWeights() {
+    Slot slot = new Slot();
+    slot.setId("2025-05-07T09:00");
+    slot.setDate("2025-05-07");
+    slot.setStartTime("09:00");
+    slot.setParticipantWeights(Map.of("a@example.com", 3));
+
+    List<Slot> expanded = biweeklyUntil("2025-06-20").expand(List.of(slot), 2);
+
+    assertEquals(1, expanded.size());
+    assertEquals("2025-06-04T09:00", expanded.get(0).getId());
+    assertEquals("2025-06-04", expanded.get(0).getDate());
+    assertEquals("09:00", expanded.get(0).getStartTime());
+    assertEquals(Map.of("a@example.com", 3), expanded.get(0).getParticipantWeights());
+    assertThrows(
+        IllegalArgumentException.class, () -> biweeklyUntil("2025-06-20").expand(List.of(), 4));
+  }
+
+  /**
+   * Tests that submissions for any occurrence land on the template, with the latest occurrence
+   * winning, and that days outside every occurrence are rejected or, for deletions, dropped.
+   */
+  @Test
+  void testToTemplate_movesSubmissionsOntoTheTemplateWeek() {
+    Occurrences occurrences = biweeklyUntil("2025-06-20");
+
+    assertEquals("09:00-10:00@2025-05-07", occurrences.toTemplate("09:00-10:00@2025-06-04"));
+    assertEquals("09:00-10:00@2025-05-05", occurrences.toTemplate("09:00-10:00@2025-05-05"));
+    assertThrows(
+        IllegalArgumentException.class, () -> occurrences.toTemplate("09:00-10:00@2025-05-12"));
+    assertThrows(
+        IllegalArgumentException.class, () -> occurrences.toTemplate("09:00-10:00@2025-06-30"));
+
+    PreferenceRequest request = new PreferenceRequest();
+    request.setUserEmail("a@example.com");
+    request.setRankings(Map.of("09:00-10:00@2025-05-19", 4, "09:00-10:00@2025-05-05", 1));
+    request.setDeletedTimespanIds(List.of("10:00-11:00@2025-06-02", "10:00-11:00@2025-05-12"));
+    PreferenceRequest template = occurrences.toTemplate(request);
+
+    assertEquals("a@example.com", template.getUserEmail());
+    assertEquals(Map.of("09:00-10:00@2025-05-05", 4), template.getRankings());
+    assertEquals(List.of("10:00-11:00@2025-05-05"), template.getDeletedTimespanIds());
+  }
+
+  /** Tests that invalid recurrences are rejected. */
+  @Test
+  void testOf_rejectsInvalidRecurrences() {
+    Recurrence both = new Recurrence();
+    both.setCount(3);
+    both.setUntil("2025-06-20");
+    Recurrence neither = new Recurrence();
+    Recurrence none = new Recurrence();
+    none.setCount(0);
+    Recurrence weekly = new Recurrence();
+    weekly.setCount(3);
+
+    assertThrows(IllegalArgumentException.class, () -> Occurrences.of(both, TEMPLATE));
+    assertThrows(IllegalArgumentException.class, () -> Occurrences.of(neither, TEMPLATE));
+    assertThrows(IllegalArgumentException.class, () -> Occurrences.of(none, TEMPLATE));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> Occurrences.of(weekly, List.of("2025-05-05", "2025-05-12")));
+    assertThrows(IllegalArgumentException.class, () -> biweeklyUntil("2025-05-01"));
+    assertEquals("2025-05-21", Occurrences.of(weekly, TEMPLATE).lastDay());
+  }
+}
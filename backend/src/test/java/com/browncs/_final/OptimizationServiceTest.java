@@ -1,18 +1,34 @@
 package com.browncs._final.service;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import com.browncs._final.model.Event;
+import com.browncs._final.model.OptimizationResult;
 import com.browncs._final.model.Slot;
 import com.browncs._final.model.SlotBlock;
-import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.FailedPreconditionException;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import com.google.firebase.cloud.FirestoreClient;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
@@ -28,20 +44,19 @@ public class OptimizationServiceTest {
   @BeforeEach
   public void setUp() {
     mockDb = mock(Firestore.class);
-    optimizationService = new OptimizationService();
+    optimizationService = new OptimizationService(new FirestoreMetrics(new SimpleMeterRegistry()));
   }
 
   /**
    * Helper method that mocks Firestore slot retrieval for a given event ID using a provided list of
    * Slot objects. It sets up the Firestore mock chain: events → document → collection → get() →
-   * snapshot → documents.
+   * snapshot → documents, and an empty members subcollection.
    */
-  private void setupFirestoreMock(List<Slot> slots, String eventId)
+  private DocumentReference setupFirestoreMock(List<Slot> slots, String eventId)
       throws ExecutionException, InterruptedException {
     CollectionReference mockEventsCol = mock(CollectionReference.class);
     DocumentReference mockEventDoc = mock(DocumentReference.class);
     CollectionReference mockSlotCol = mock(CollectionReference.class);
-    ApiFuture<QuerySnapshot> mockFuture = mock(ApiFuture.class);
     QuerySnapshot mockSnapshot = mock(QuerySnapshot.class);
 
     List<QueryDocumentSnapshot> docMocks = new ArrayList<>();
@@ -55,9 +70,191 @@ public class OptimizationServiceTest {
     when(mockDb.collection("events")).thenReturn(mockEventsCol);
     when(mockEventsCol.document(eventId)).thenReturn(mockEventDoc);
     when(mockEventDoc.collection("slots")).thenReturn(mockSlotCol);
-    when(mockSlotCol.get()).thenReturn(mockFuture);
-    when(mockFuture.get()).thenReturn(mockSnapshot);
+    when(mockSlotCol.get()).thenReturn(ApiFutures.immediateFuture(mockSnapshot));
     when(mockSnapshot.getDocuments()).thenReturn(docMocks);
+
+    // Events listing their participants keep no members documents
+    CollectionReference mockMemberCol = mock(CollectionReference.class);
+    QuerySnapshot noMembers = mock(QuerySnapshot.class);
+    when(mockEventDoc.collection("members")).thenReturn(mockMemberCol);
+    when(mockMemberCol.get()).thenReturn(ApiFutures.immediateFuture(noMembers));
+    return mockEventDoc;
+  }
+
+  /** Builds two consecutive slots and an event whose best block is both of them. */
+  private Event twoSlotEvent(List<Slot> slots) {
+    Event event = new Event();
+    event.setDurationMinutes(30);
+    event.setParticipantNecessity(Map.of("alice@example.com", 5));
+
+    Slot slot1 = new Slot();
+    slot1.setId("2025-04-01T10:00");
+    slot1.setParticipantWeights(Map.of("alice@example.com", 2));
+    Slot slot2 = new Slot();
+    slot2.setId("2025-04-01T10:15");
+    slot2.setParticipantWeights(Map.of("alice@example.com", 3));
+    slots.add(slot1);
+    slots.add(slot2);
+    return event;
+  }
+
+  /** Stubs the event document read to return {@code event} with a fixed update time. */
+  private void stubEventRead(DocumentReference eventDoc, Event event) {
+    DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+    when(snapshot.exists()).thenReturn(true);
+    when(snapshot.toObject(Event.class)).thenReturn(event);
+    when(snapshot.getUpdateTime()).thenReturn(Timestamp.ofTimeSecondsAndNanos(1_700_000_000, 0));
+    when(eventDoc.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+  }
+
+  /** Stubs batches to commit successfully, returning the batch that is handed out. */
+  private WriteBatch stubBatch() {
+    WriteBatch batch = mock(WriteBatch.class, RETURNS_SELF);
+    when(mockDb.batch()).thenReturn(batch);
+    when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+    return batch;
+  }
+
+  /**
+   * Tests that optimizeAndSave scores outside any transaction and commits only the optimalSlots
+   * field, guarded by the update time of the event snapshot that was scored.
+   */
+  @Test
+  public void testOptimizeAndSave_commitsWithUpdateTimePrecondition() throws Exception {
+    List<Slot> slots = new ArrayList<>();
+    Event event = twoSlotEvent(slots);
+    DocumentReference eventDoc = setupFirestoreMock(slots, "eventC");
+    stubEventRead(eventDoc, event);
+    WriteBatch batch = stubBatch();
+
+    try (MockedStatic<FirestoreClient> firestoreClientMock =
+        Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+
+      List<SlotBlock> blocks = optimizationService.optimizeAndSave("eventC");
+
+      assertEquals(1, blocks.size());
+      verify(batch)
+          .update(
+              eventDoc,
+              Precondition.updatedAt(Timestamp.ofTimeSecondsAndNanos(1_700_000_000, 0)),
+              "optimalSlots",
+              blocks);
+      verify(batch, times(1)).commit();
+      verify(mockDb, never()).runTransaction(any());
+    }
+  }
+
+  /**
+   * Tests that an optimization records Firestore latency per operation and the size of the problem
+   * it scored.
+   */
+  @Test
+  public void testOptimizeAndSave_recordsMetrics() throws Exception {
+    List<Slot> slots = new ArrayList<>();
+    Event event = twoSlotEvent(slots);
+    DocumentReference eventDoc = setupFirestoreMock(slots, "eventM");
+    stubEventRead(eventDoc, event);
+    WriteBatch batch = stubBatch();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    OptimizationService service = new OptimizationService(new FirestoreMetrics(registry));
+
+    try (MockedStatic<FirestoreClient> firestoreClientMock =
+        Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+
+      service.optimizeAndSave("eventM");
+
+      for (String operation : List.of("event.get", "slots.list", "event.optimal.commit")) {
+        assertEquals(
+            1,
+            registry
+                .get("firestore.operation")
+                .tag("operation", operation)
+                .tag("outcome", "success")
+                .timer()
+                .count(),
+            operation);
+      }
+      assertEquals(2, registry.get("optimize.slots").summary().totalAmount());
+      assertEquals(1, registry.get("optimize.participants").summary().totalAmount());
+      assertEquals(1, registry.get("optimize.windows").summary().totalAmount());
+      assertEquals(1, registry.get("optimize.scoring").timer().count());
+    }
+  }
+
+  /**
+   * Tests that a commit rejected because the event changed is retried after re-reading the event,
+   * and that the slots are not reloaded when the scoring inputs are unchanged.
+   */
+  @Test
+  public void testOptimizeAndSave_retriesLostCommitWithoutRescoring() throws Exception {
+    List<Slot> slots = new ArrayList<>();
+    Event event = twoSlotEvent(slots);
+    DocumentReference eventDoc = setupFirestoreMock(slots, "eventR");
+    stubEventRead(eventDoc, event);
+    WriteBatch batch = stubBatch();
+    when(batch.commit())
+        .thenReturn(
+            ApiFutures.immediateFailedFuture(
+                new FailedPreconditionException(
+                    "stale", null, GrpcStatusCode.of(Status.Code.FAILED_PRECONDITION), false)))
+        .thenReturn(ApiFutures.immediateFuture(List.of()));
+
+    try (MockedStatic<FirestoreClient> firestoreClientMock =
+        Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+
+      List<SlotBlock> blocks = optimizationService.optimizeAndSave("eventR");
+
+      assertEquals(7.5, blocks.get(0).getTotalScore(), 0.001);
+      verify(eventDoc, times(2)).get();
+      verify(batch, times(2)).commit();
+      verify(eventDoc.collection("slots"), times(1)).get();
+    }
+  }
+
+  /**
+   * Tests that concurrent optimize calls for one event join a single run: the event and slots are
+   * read once, optimalSlots is written once, and every caller receives the same blocks.
+   */
+  @Test
+  public void testOptimizeAndSave_concurrentCallsCoalesce() throws Exception {
+    List<Slot> slots = new ArrayList<>();
+    Event event = twoSlotEvent(slots);
+    DocumentReference eventDoc = setupFirestoreMock(slots, "eventS");
+    DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+    when(snapshot.exists()).thenReturn(true);
+    when(snapshot.toObject(Event.class)).thenReturn(event);
+    when(snapshot.getUpdateTime()).thenReturn(Timestamp.ofTimeSecondsAndNanos(1_700_000_000, 0));
+    SettableApiFuture<DocumentSnapshot> eventRead = SettableApiFuture.create();
+    when(eventDoc.get()).thenReturn(eventRead);
+    WriteBatch batch = stubBatch();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    OptimizationService service = new OptimizationService(new FirestoreMetrics(registry));
+
+    try (MockedStatic<FirestoreClient> firestoreClientMock =
+        Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+
+      List<CompletableFuture<List<SlotBlock>>> calls = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        calls.add(service.optimizeAndSaveAsync("eventS"));
+      }
+      eventRead.set(snapshot);
+
+      List<SlotBlock> first = calls.get(0).get();
+      for (CompletableFuture<List<SlotBlock>> call : calls) {
+        assertSame(first, call.get());
+      }
+      verify(eventDoc, times(1)).get();
+      verify(eventDoc.collection("slots"), times(1)).get();
+      verify(batch, times(1)).commit();
+      assertEquals(
+          1, registry.get("singleflight.calls").tag("result", "executed").counter().count());
+      assertEquals(
+          19, registry.get("singleflight.calls").tag("result", "coalesced").counter().count());
+    }
   }
 
   /**
@@ -90,7 +287,8 @@ public class OptimizationServiceTest {
         Mockito.mockStatic(FirestoreClient.class)) {
       firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
 
-      OptimizationService service = new OptimizationService();
+      OptimizationService service =
+          new OptimizationService(new FirestoreMetrics(new SimpleMeterRegistry()));
       List<SlotBlock> blocks = service.computeOptimalSlots("event123", event);
 
       assertEquals(2, blocks.size(), "Expected two valid slot blocks");
@@ -126,7 +324,8 @@ public class OptimizationServiceTest {
         Mockito.mockStatic(FirestoreClient.class)) {
       firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
 
-      OptimizationService service = new OptimizationService();
+      OptimizationService service =
+          new OptimizationService(new FirestoreMetrics(new SimpleMeterRegistry()));
       List<SlotBlock> blocks = service.computeOptimalSlots("eventY", event);
 
       assertTrue(blocks.isEmpty(), "No valid blocks should be returned");
@@ -159,7 +358,8 @@ public class OptimizationServiceTest {
         Mockito.mockStatic(FirestoreClient.class)) {
       firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
 
-      OptimizationService service = new OptimizationService();
+      OptimizationService service =
+          new OptimizationService(new FirestoreMetrics(new SimpleMeterRegistry()));
       List<SlotBlock> blocks = service.computeOptimalSlots("eventX", event);
 
       assertEquals(1, blocks.size());
@@ -167,4 +367,539 @@ public class OptimizationServiceTest {
       assertEquals(7.5, blocks.get(0).getTotalScore(), 0.001); // 3.0 + 4.5
     }
   }
+
+  /**
+   * Tests that a meeting is rounded up to whole slots of the event's own length: a 25-minute
+   * meeting on 5-minute slots takes five slots, and the gap between days is never bridged.
+   */
+  @Test
+  public void testRankBlocks_usesEventSlotLength() {
+    Event event = new Event();
+    event.setSlotMinutes(5);
+    event.setDurationMinutes(23);
+    event.setParticipantNecessity(Map.of());
+
+    List<Slot> slots = new ArrayList<>();
+    for (String day : List.of("2025-04-01", "2025-04-02")) {
+      for (int minute = 0; minute < 30; minute += 5) {
+        Slot slot = new Slot();
+        slot.setId(String.format("%sT23:%02d", day, minute + 30));
+        slot.setParticipantWeights(Map.of("alice@example.com", minute == 25 ? 4 : 1));
+        slots.add(slot);
+      }
+    }
+
+    List<SlotBlock> blocks = BlockRanker.rankBlocks(slots, event);
+
+    assertEquals(4, blocks.size());
+    assertEquals(
+        List.of(
+            "2025-04-01T23:35",
+            "2025-04-01T23:40",
+            "2025-04-01T23:45",
+            "2025-04-01T23:50",
+            "2025-04-01T23:55"),
+        blocks.get(0).getSlotIds());
+    assertEquals(8.0, blocks.get(0).getTotalScore(), 0.001);
+    assertEquals("2025-04-02T23:35", blocks.get(1).getSlotIds().get(0));
+  }
+
+  /**
+   * Tests that pruning by hourly bounds returns exactly the blocks, scores and tie order that
+   * scoring every block would, across slot lengths, durations and sparse availability.
+   */
+  @Test
+  public void testRankBlocks_coarseToFineMatchesExhaustiveScoring() {
+    Random random = new Random(7);
+    String[] emails = {"a@x.com", "b@x.com", "c@x.com", "d@x.com"};
+    for (int trial = 0; trial < 200; trial++) {
+      int slotMinutes = new int[] {5, 10, 15, 30}[random.nextInt(4)];
+      Event event = new Event();
+      event.setSlotMinutes(slotMinutes);
+      event.setDurationMinutes(5 * (1 + random.nextInt(36)));
+      Map<String, Integer> necessity = new HashMap<>();
+      for (String email : emails) {
+        necessity.put(email, new int[] {1, 3, 5}[random.nextInt(3)]);
+      }
+      event.setParticipantNecessity(necessity);
+
+      List<Slot> slots = new ArrayList<>();
+      for (int day = 1; day <= 1 + random.nextInt(4); day++) {
+        for (int minute = 8 * 60; minute < 14 * 60; minute += slotMinutes) {
+          if (random.nextInt(20) == 0) continue; // a missing slot breaks runs
+          Map<String, Integer> weights = new HashMap<>();
+          for (String email : emails) {
+            if (random.nextInt(3) == 0) weights.put(email, 1 + random.nextInt(3));
+          }
+          Slot slot = new Slot();
+          slot.setId(String.format("2025-04-%02dT%02d:%02d", day, minute / 60, minute % 60));
+          slot.setParticipantWeights(weights);
+          slots.add(slot);
+        }
+      }
+
+      List<SlotBlock> expected = exhaustiveTopBlocks(slots, event, slotMinutes);
+      List<SlotBlock> actual = BlockRanker.rankBlocks(slots, event);
+      assertEquals(expected, actual, "trial " + trial);
+    }
+  }
+
+  /** Builds a slot every 15 minutes from 10:00 on 2025-04-01 with the same weights. */
+  private static List<Slot> hourOfSlots(Map<String, Integer> weights) {
+    List<Slot> slots = new ArrayList<>();
+    for (String time : List.of("10:00", "10:15", "10:30", "10:45")) {
+      Slot slot = new Slot();
+      slot.setId("2025-04-01T" + time);
+      slot.setParticipantWeights(weights);
+      slots.add(slot);
+    }
+    return slots;
+  }
+
+  /**
+   * Tests that a participant committed elsewhere does not count towards a block, and that a
+   * required participant's commitment rules out every block overlapping it.
+   */
+  @Test
+  public void testRankBlocks_avoidsCommitments() {
+    Event event = new Event();
+    event.setDurationMinutes(30);
+    event.setParticipantNecessity(Map.of("alice@example.com", 5, "bob@example.com", 3));
+    List<Slot> slots = hourOfSlots(Map.of("alice@example.com", 1, "bob@example.com", 4));
+    long tenThirty = SlotIdCodec.parseSlotId("2025-04-01T10:30");
+
+    // Bob is busy from 10:30, so the earliest block keeps his weight and wins
+    Commitments bobBusy =
+        Commitments.of(Map.of("bob@example.com", List.of(new long[] {tenThirty, tenThirty + 60})));
+    List<SlotBlock> blocks = BlockRanker.rankBlocks(slots, event, bobBusy);
+    assertEquals(List.of("2025-04-01T10:00", "2025-04-01T10:15"), blocks.get(0).getSlotIds());
+    assertEquals(7.0, blocks.get(0).getTotalScore(), 0.001);
+    assertEquals(5.0, blocks.get(1).getTotalScore(), 0.001);
+    assertEquals(3.0, blocks.get(2).getTotalScore(), 0.001);
+
+    // Alice is required and busy until 10:30, so only the block from 10:30 is left
+    Commitments aliceBusy =
+        Commitments.of(
+            Map.of("alice@example.com", List.of(new long[] {tenThirty - 30, tenThirty})));
+    blocks = BlockRanker.rankBlocks(slots, event, aliceBusy);
+    assertEquals(1, blocks.size());
+    assertEquals(List.of("2025-04-01T10:30", "2025-04-01T10:45"), blocks.get(0).getSlotIds());
+  }
+
+  /** Tests that an event without necessity levels ranks around commitments as all preferred. */
+  @Test
+  public void testRankBlocks_commitmentsWithoutNecessity() {
+    Event event = new Event();
+    event.setDurationMinutes(30);
+    List<Slot> slots = hourOfSlots(Map.of("alice@example.com", 1, "bob@example.com", 4));
+    long tenThirty = SlotIdCodec.parseSlotId("2025-04-01T10:30");
+
+    Commitments bobBusy =
+        Commitments.of(Map.of("bob@example.com", List.of(new long[] {tenThirty, tenThirty + 60})));
+    List<SlotBlock> blocks = BlockRanker.rankBlocks(slots, event, bobBusy);
+    assertEquals(List.of("2025-04-01T10:00", "2025-04-01T10:15"), blocks.get(0).getSlotIds());
+    assertEquals(10.0, blocks.get(0).getTotalScore(), 0.001);
+    assertEquals(6.0, blocks.get(1).getTotalScore(), 0.001);
+    assertEquals(2.0, blocks.get(2).getTotalScore(), 0.001);
+  }
+
+  /**
+   * Tests that commitments merge overlapping intervals, treat intervals as half-open, only count
+   * confirmed entries with a block for events other than the one being optimized, and list the
+   * entries that have expired, confirmed or not.
+   */
+  @Test
+  public void testCommitments_fromUsersAndOverlaps() {
+    Commitments merged =
+        Commitments.of(
+            Map.of(
+                "alice@example.com",
+                List.of(new long[] {100, 160}, new long[] {40, 60}, new long[] {120, 200})));
+    assertTrue(merged.overlaps("alice@example.com", 59, 61));
+    assertTrue(merged.overlaps("alice@example.com", 170, 180));
+    assertFalse(merged.overlaps("alice@example.com", 60, 100));
+    assertFalse(merged.overlaps("alice@example.com", 200, 260));
+    assertFalse(merged.overlaps("bob@example.com", 0, 1_000));
+
+    DocumentSnapshot alice = mock(DocumentSnapshot.class);
+    when(alice.exists()).thenReturn(true);
+    when(alice.getId()).thenReturn("alice@example.com");
+    when(alice.get("commitments"))
+        .thenReturn(
+            Map.of(
+                "other",
+                Map.of("start", "2025-04-01T10:00", "end", "2025-04-01T11:00", "confirmed", true),
+                "self",
+                Map.of("start", "2025-04-01T12:00", "end", "2025-04-01T13:00", "confirmed", true),
+                "unconfirmed",
+                Map.of("start", "2025-04-01T14:00", "end", "2025-04-01T15:00"),
+                "unoptimized",
+                Map.of("confirmed", true),
+                "corrupt",
+                Map.of("start", "10:00", "end", "11:00", "confirmed", true),
+                "ended",
+                Map.of("start", "2025-03-01T10:00", "end", "2025-03-01T11:00", "confirmed", true),
+                "endedUnconfirmed",
+                Map.of("start", "2025-03-02T10:00", "end", "2025-03-02T11:00")));
+    DocumentSnapshot missing = mock(DocumentSnapshot.class);
+
+    long tenAm = SlotIdCodec.parseSlotId("2025-04-01T10:00");
+    Commitments busy =
+        Commitments.fromUsers(
+            List.of(alice, missing), "self", SlotIdCodec.parseSlotId("2025-03-31T00:00"));
+    assertEquals(Set.of("alice@example.com"), busy.users());
+    assertTrue(busy.overlaps("alice@example.com", tenAm + 45, tenAm + 60));
+    assertFalse(busy.overlaps("alice@example.com", tenAm + 60, tenAm + 24 * 60));
+    assertFalse(busy.overlaps("alice@example.com", tenAm - 31 * 24 * 60, tenAm - 30 * 24 * 60));
+    assertEquals(
+        Set.of("ended", "endedUnconfirmed"), Set.copyOf(busy.expired("alice@example.com")));
+    assertEquals(List.of(), busy.expired("bob@example.com"));
+  }
+
+  /**
+   * Tests that optimizing reads participants' commitments in one masked batch get, commits the
+   * optimal slots alone, and then writes the top block to each participant's entry, marking
+   * confirmed participants and removing their entries for events that have ended.
+   */
+  @Test
+  public void testOptimizeAndSave_readsAndWritesCommitments() throws Exception {
+    List<Slot> slots = hourOfSlots(Map.of("alice@example.com", 1, "bob@example.com", 1));
+    Event event = new Event();
+    event.setDurationMinutes(30);
+    event.setParticipantEmails(List.of("bob@example.com", "alice@example.com"));
+    event.setConfirmedParticipants(List.of("alice@example.com"));
+    event.setParticipantNecessity(Map.of("alice@example.com", 5, "bob@example.com", 1));
+    DocumentReference eventDoc = setupFirestoreMock(slots, "eventB");
+    when(eventDoc.getId()).thenReturn("eventB");
+    stubEventRead(eventDoc, event);
+    WriteBatch batch = stubBatch();
+
+    CollectionReference users = mock(CollectionReference.class);
+    DocumentReference aliceRef = mock(DocumentReference.class);
+    DocumentReference bobRef = mock(DocumentReference.class);
+    when(mockDb.collection("users")).thenReturn(users);
+    when(users.document("alice@example.com")).thenReturn(aliceRef);
+    when(users.document("bob@example.com")).thenReturn(bobRef);
+    DocumentSnapshot alice = mock(DocumentSnapshot.class);
+    when(alice.exists()).thenReturn(true);
+    when(alice.getId()).thenReturn("alice@example.com");
+    when(alice.get("commitments"))
+        .thenReturn(
+            Map.of(
+                "eventA",
+                Map.of("start", "2025-04-01T09:30", "end", "2025-04-01T10:15", "confirmed", true),
+                "ended",
+                Map.of("start", "2025-03-01T09:30", "end", "2025-03-01T10:15", "confirmed", true)));
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(alice, mock(DocumentSnapshot.class))));
+    optimizationService.setClock(
+        Clock.fixed(Instant.parse("2025-04-01T08:00:00Z"), ZoneOffset.UTC));
+
+    try (MockedStatic<FirestoreClient> firestoreClientMock =
+        Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+
+      List<SlotBlock> blocks = optimizationService.optimizeAndSave("eventB");
+
+      // Alice is busy until 10:15, so the best block starts at 10:15
+      assertEquals(List.of("2025-04-01T10:15", "2025-04-01T10:30"), blocks.get(0).getSlotIds());
+      verify(mockDb, times(1)).getAll(any(DocumentReference[].class), any(FieldMask.class));
+      verify(batch)
+          .set(
+              aliceRef,
+              Map.of(
+                  "commitments",
+                  Map.of(
+                      "eventB",
+                      Map.of(
+                          "start",
+                          "2025-04-01T10:15",
+                          "end",
+                          "2025-04-01T10:45",
+                          "confirmed",
+                          true),
+                      "ended",
+                      FieldValue.delete())),
+              SetOptions.merge());
+      verify(batch)
+          .set(
+              bobRef,
+              Map.of(
+                  "commitments",
+                  Map.of("eventB", Map.of("start", "2025-04-01T10:15", "end", "2025-04-01T10:45"))),
+              SetOptions.merge());
+      InOrder inOrder = inOrder(batch);
+      inOrder
+          .verify(batch)
+          .update(eq(eventDoc), any(Precondition.class), eq("optimalSlots"), any());
+      inOrder.verify(batch).commit();
+      inOrder.verify(batch).set(eq(aliceRef), anyMap(), eq(SetOptions.merge()));
+      inOrder.verify(batch).commit();
+    }
+  }
+
+  /**
+   * Tests that optimizing again when every participant's entry already holds the top block and none
+   * has expired entries writes only the optimal slots.
+   */
+  @Test
+  public void testOptimizeAndSave_unchangedCommitmentsWriteOnlyEvent() throws Exception {
+    List<Slot> slots = hourOfSlots(Map.of("alice@example.com", 1, "bob@example.com", 1));
+    Event event = new Event();
+    event.setDurationMinutes(30);
+    event.setParticipantEmails(List.of("bob@example.com", "alice@example.com"));
+    event.setConfirmedParticipants(List.of("alice@example.com"));
+    event.setParticipantNecessity(Map.of("alice@example.com", 5, "bob@example.com", 1));
+    DocumentReference eventDoc = setupFirestoreMock(slots, "eventB");
+    when(eventDoc.getId()).thenReturn("eventB");
+    stubEventRead(eventDoc, event);
+    WriteBatch batch = stubBatch();
+
+    CollectionReference users = mock(CollectionReference.class);
+    when(mockDb.collection("users")).thenReturn(users);
+    when(users.document(anyString())).thenReturn(mock(DocumentReference.class));
+    DocumentSnapshot alice = mock(DocumentSnapshot.class);
+    when(alice.exists()).thenReturn(true);
+    when(alice.getId()).thenReturn("alice@example.com");
+    when(alice.get("commitments"))
+        .thenReturn(
+            Map.of(
+                "eventB",
+                Map.of("start", "2025-04-01T10:00", "end", "2025-04-01T10:30", "confirmed", true)));
+    DocumentSnapshot bob = mock(DocumentSnapshot.class);
+    when(bob.exists()).thenReturn(true);
+    when(bob.getId()).thenReturn("bob@example.com");
+    when(bob.get("commitments"))
+        .thenReturn(
+            Map.of("eventB", Map.of("start", "2025-04-01T10:00", "end", "2025-04-01T10:30")));
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(bob, alice)));
+
+    try (MockedStatic<FirestoreClient> firestoreClientMock =
+        Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+
+      List<SlotBlock> blocks = optimizationService.optimizeAndSave("eventB");
+
+      assertEquals(List.of("2025-04-01T10:00", "2025-04-01T10:15"), blocks.get(0).getSlotIds());
+      verify(batch, never()).set(any(DocumentReference.class), anyMap(), any(SetOptions.class));
+      verify(batch, times(1)).commit();
+    }
+  }
+
+  /** Builds 15-minute slots from 10:00 to 12:45 where the 11:00 hour is the most popular. */
+  private static List<Slot> threeHoursOfSlots() {
+    List<Slot> slots = new ArrayList<>();
+    for (int minute = 10 * 60; minute < 13 * 60; minute += 15) {
+      Slot slot = new Slot();
+      slot.setId("2025-04-01T" + SlotIdCodec.formatTime(minute));
+      slot.setParticipantWeights(Map.of("alice@example.com", minute / 60 == 11 ? 5 : 1));
+      slots.add(slot);
+    }
+    return slots;
+  }
+
+  /**
+   * Tests that ranking past its deadline still refines the most promising hour and reports the
+   * result as approximate, and that progress reports lead up to the exact result.
+   */
+  @Test
+  public void testRankBlocks_deadlineGivesApproximateResult() {
+    Event event = new Event();
+    event.setDurationMinutes(30);
+    event.setParticipantNecessity(Map.of("alice@example.com", 5));
+    List<Slot> slots = threeHoursOfSlots();
+
+    List<List<SlotBlock>> progress = new ArrayList<>();
+    OptimizationResult exact =
+        BlockRanker.rankBlocks(
+            slots, event, Commitments.NONE, BlockRanker.NO_DEADLINE, progress::add);
+    assertTrue(exact.isExact());
+    assertEquals(BlockRanker.rankBlocks(slots, event), exact.getBlocks());
+    assertEquals(exact.getBlocks(), progress.get(progress.size() - 1));
+
+    OptimizationResult approximate =
+        BlockRanker.rankBlocks(slots, event, Commitments.NONE, System.nanoTime() - 1, null);
+    assertFalse(approximate.isExact());
+    assertEquals(4, approximate.getBlocks().size());
+    assertEquals(exact.getBlocks().subList(0, 3), approximate.getBlocks().subList(0, 3));
+  }
+
+  /**
+   * Tests that ranking past its deadline scores only the day with the most responses, leaving the
+   * other day's better-scoring but sparser slots out.
+   */
+  @Test
+  public void testRankBlocks_deadlineScoresBusiestDayOnly() {
+    Event event = new Event();
+    event.setDurationMinutes(30);
+    event.setParticipantNecessity(Map.of());
+    List<Slot> slots = new ArrayList<>();
+    for (String day : List.of("2025-04-01", "2025-04-02")) {
+      for (String time : List.of("10:00", "10:15")) {
+        Slot slot = new Slot();
+        slot.setId(day + "T" + time);
+        slot.setParticipantWeights(
+            day.equals("2025-04-01")
+                ? Map.of("alice@example.com", 5)
+                : Map.of("alice@example.com", 1, "bob@example.com", 1));
+        slots.add(slot);
+      }
+    }
+
+    OptimizationResult result =
+        BlockRanker.rankBlocks(slots, event, Commitments.NONE, System.nanoTime() - 1, null);
+
+    assertFalse(result.isExact());
+    assertEquals(1, result.getBlocks().size());
+    assertEquals(
+        List.of("2025-04-02T10:00", "2025-04-02T10:15"), result.getBlocks().get(0).getSlotIds());
+    assertEquals(
+        "2025-04-01T10:00", BlockRanker.rankBlocks(slots, event).get(0).getSlotIds().get(0));
+  }
+
+  /**
+   * Tests that a budgeted optimization saves and returns its best blocks so far once the budget has
+   * run out, reporting progress along the way.
+   */
+  @Test
+  public void testOptimizeAndSave_budgetExhaustedSavesBestSoFar() throws Exception {
+    List<Slot> slots = threeHoursOfSlots();
+    Event event = new Event();
+    event.setDurationMinutes(30);
+    event.setParticipantNecessity(Map.of("alice@example.com", 5));
+    DocumentReference eventDoc = setupFirestoreMock(slots, "eventT");
+    stubEventRead(eventDoc, event);
+    WriteBatch batch = stubBatch();
+
+    try (MockedStatic<FirestoreClient> firestoreClientMock =
+        Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+
+      List<List<SlotBlock>> progress = new ArrayList<>();
+      OptimizationResult result =
+          optimizationService
+              .optimizeAndSaveAsync("eventT", Duration.ofNanos(1), progress::add)
+              .get();
+
+      assertFalse(result.isExact());
+      assertEquals(List.of(result.getBlocks()), progress);
+      assertEquals(
+          List.of("2025-04-01T11:00", "2025-04-01T11:15"), result.getBlocks().get(0).getSlotIds());
+      verify(batch)
+          .update(
+              eventDoc,
+              Precondition.updatedAt(Timestamp.ofTimeSecondsAndNanos(1_700_000_000, 0)),
+              "optimalSlots",
+              result.getBlocks());
+
+      assertTrue(optimizationService.optimizeAndSaveAsync("eventT", null).get().isExact());
+    }
+  }
+
+  /**
+   * Tests that a budgeted optimization that runs out of budget returns its blocks without waiting
+   * for the commit, and counts the commit if it then fails.
+   */
+  @Test
+  public void testOptimizeAndSave_budgetExhaustedDefersCommit() throws Exception {
+    List<Slot> slots = new ArrayList<>();
+    Event event = twoSlotEvent(slots);
+    DocumentReference eventDoc = setupFirestoreMock(slots, "eventD");
+    stubEventRead(eventDoc, event);
+    WriteBatch batch = stubBatch();
+    SettableApiFuture<List<WriteResult>> commit = SettableApiFuture.create();
+    when(batch.commit()).thenReturn(commit);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    OptimizationService service = new OptimizationService(new FirestoreMetrics(registry));
+
+    try (MockedStatic<FirestoreClient> firestoreClientMock =
+        Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+
+      OptimizationResult result =
+          service.optimizeAndSaveAsync("eventD", Duration.ofNanos(1)).get(5, TimeUnit.SECONDS);
+
+      assertEquals(7.5, result.getBlocks().get(0).getTotalScore(), 0.001);
+      verify(batch, times(1)).commit();
+      commit.setException(new IllegalStateException("unavailable"));
+      assertEquals(1, registry.get("optimize.deferred.failed").counter().count());
+    }
+  }
+
+  /**
+   * Tests that streaming optimizations of one event and budget join the run in flight like other
+   * calls, and that every stream receives its progress.
+   */
+  @Test
+  public void testOptimizeAndSave_streamsJoinRunInFlight() throws Exception {
+    List<Slot> slots = new ArrayList<>();
+    Event event = twoSlotEvent(slots);
+    DocumentReference eventDoc = setupFirestoreMock(slots, "eventF");
+    DocumentSnapshot snapshot = mock(DocumentSnapshot.class);
+    when(snapshot.exists()).thenReturn(true);
+    when(snapshot.toObject(Event.class)).thenReturn(event);
+    when(snapshot.getUpdateTime()).thenReturn(Timestamp.ofTimeSecondsAndNanos(1_700_000_000, 0));
+    SettableApiFuture<DocumentSnapshot> eventRead = SettableApiFuture.create();
+    when(eventDoc.get()).thenReturn(eventRead);
+    WriteBatch batch = stubBatch();
+
+    try (MockedStatic<FirestoreClient> firestoreClientMock =
+        Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreClientMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+
+      Duration budget = Duration.ofMinutes(1);
+      List<List<SlotBlock>> first = new ArrayList<>();
+      List<List<SlotBlock>> second = new ArrayList<>();
+      CompletableFuture<OptimizationResult> a =
+          optimizationService.optimizeAndSaveAsync("eventF", budget, first::add);
+      CompletableFuture<OptimizationResult> b =
+          optimizationService.optimizeAndSaveAsync("eventF", budget, second::add);
+      CompletableFuture<OptimizationResult> c =
+          optimizationService.optimizeAndSaveAsync("eventF", budget);
+      eventRead.set(snapshot);
+
+      assertSame(a.get(), b.get());
+      assertSame(a.get(), c.get());
+      assertEquals(List.of(a.get().getBlocks()), first);
+      assertEquals(first, second);
+      verify(eventDoc, times(1)).get();
+      verify(batch, times(1)).commit();
+    }
+  }
+
+  /** Reference ranking: scores every valid block directly and stably sorts by score. */
+  private static List<SlotBlock> exhaustiveTopBlocks(
+      List<Slot> slots, Event event, int slotMinutes) {
+    int blockSize = (event.getDurationMinutes() + slotMinutes - 1) / slotMinutes;
+    List<SlotBlock> all = new ArrayList<>();
+    for (int i = 0; i + blockSize <= slots.size(); i++) {
+      List<Slot> block = slots.subList(i, i + blockSize);
+      boolean consecutive = true;
+      double score = 0;
+      for (int j = 0; j < block.size(); j++) {
+        LocalDateTime time = LocalDateTime.parse(block.get(j).getId());
+        if (j > 0
+            && !LocalDateTime.parse(block.get(j - 1).getId())
+                .plusMinutes(slotMinutes)
+                .equals(time)) {
+          consecutive = false;
+        }
+        for (Map.Entry<String, Integer> weight : block.get(j).getParticipantWeights().entrySet()) {
+          int importance = event.getParticipantNecessity().get(weight.getKey());
+          score += weight.getValue() * (importance == 5 ? 1.5 : importance == 3 ? 0.5 : 1.0);
+        }
+      }
+      if (consecutive) {
+        SlotBlock slotBlock = new SlotBlock();
+        slotBlock.setSlotIds(block.stream().map(Slot::getId).toList());
+        slotBlock.setTotalScore(score);
+        all.add(slotBlock);
+      }
+    }
+    return all.stream()
+        .sorted((a, b) -> Double.compare(b.getTotalScore(), a.getTotalScore()))
+        .limit(5)
+        .toList();
+  }
 }
@@ -0,0 +1,237 @@
+package com.browncs._final.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.browncs._final.model.ImportProgress;
+import com.browncs._final.model.Member;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ParticipantImportServiceTest {
+
+  @Mock private Firestore mockDb;
+  @Mock private EmailService mockEmailService;
+  @Mock private CollectionReference mockEventsCollection;
+  @Mock private DocumentReference mockEventDoc;
+  @Mock private CollectionReference mockImports;
+  @Mock private DocumentReference mockProgressDoc;
+  @Mock private CollectionReference mockMembers;
+  @Mock private CollectionReference mockUsers;
+  @Mock private DocumentSnapshot mockEventSnapshot;
+  @Mock private DocumentSnapshot mockProgressSnapshot;
+
+  private final Map<String, DocumentReference> memberRefs = new HashMap<>();
+  private final Set<String> existingMembers = new HashSet<>();
+  private final List<List<String>> memberReads = new ArrayList<>();
+  private WriteBatch batch;
+
+  private ParticipantImportService importService;
+
+  @BeforeEach
+  void setUp() {
+    when(mockDb.collection("events")).thenReturn(mockEventsCollection);
+    when(mockEventsCollection.document("event-1")).thenReturn(mockEventDoc);
+    lenient().when(mockEventDoc.getId()).thenReturn("event-1");
+    when(mockEventDoc.collection("imports")).thenReturn(mockImports);
+    when(mockImports.document(anyString())).thenReturn(mockProgressDoc);
+    lenient().when(mockProgressDoc.getId()).thenReturn("import-1");
+    lenient().when(mockEventDoc.collection("members")).thenReturn(mockMembers);
+    lenient()
+        .when(mockMembers.document(anyString()))
+        .thenAnswer(
+            inv -> memberRefs.computeIfAbsent(inv.getArgument(0), email -> memberRef(email)));
+    lenient().when(mockDb.collection("users")).thenReturn(mockUsers);
+    lenient()
+        .when(mockUsers.document(anyString()))
+        .thenAnswer(inv -> mock(DocumentReference.class));
+
+    when(mockEventSnapshot.exists()).thenReturn(true);
+    when(mockEventSnapshot.getBoolean("membersTracked")).thenReturn(true);
+    lenient().when(mockEventSnapshot.getString("title")).thenReturn("Big Event");
+    lenient().when(mockEventSnapshot.getString("lastAvailableDay")).thenReturn("2025-05-02");
+
+    // The first read is the event and the import; the rest are chunks of members
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenAnswer(
+            inv -> {
+              DocumentReference[] refs = inv.getArgument(0);
+              if (refs[0] == mockEventDoc) {
+                return ApiFutures.immediateFuture(List.of(mockEventSnapshot, mockProgressSnapshot));
+              }
+              List<String> emails = new ArrayList<>();
+              List<DocumentSnapshot> docs = new ArrayList<>();
+              for (DocumentReference ref : refs) {
+                String email = ref.getId();
+                DocumentSnapshot doc = mock(DocumentSnapshot.class);
+                lenient().when(doc.getId()).thenReturn(email);
+                when(doc.exists()).thenReturn(existingMembers.contains(email));
+                emails.add(email);
+                docs.add(doc);
+              }
+              memberReads.add(emails);
+              return ApiFutures.immediateFuture(docs);
+            });
+
+    batch = mock(WriteBatch.class, RETURNS_SELF);
+    lenient().when(mockDb.batch()).thenReturn(batch);
+    lenient().when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+    importService =
+        new ParticipantImportService(
+            mockDb,
+            mockEmailService,
+            Runnable::run,
+            new FirestoreMetrics(new SimpleMeterRegistry()));
+  }
+
+  private static DocumentReference memberRef(String email) {
+    DocumentReference ref = mock(DocumentReference.class);
+    lenient().when(ref.getId()).thenReturn(email);
+    return ref;
+  }
+
+  private static InputStream body(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Tests a CSV import: the header line is ignored, existing members, repeated and invalid invitees
+   * are skipped, and the new members are written, counted, and invited in one bulk send once their
+   * chunk has committed.
+   */
+  @Test
+  void testImportParticipants_csvSkipsExistingDuplicateAndInvalid() throws Exception {
+    when(mockProgressSnapshot.exists()).thenReturn(false);
+    existingMembers.add("old@x.com");
+
+    ImportProgress progress =
+        importService.importParticipants(
+            "event-1",
+            "import-1",
+            body("email,necessity\na@x.com,5\nold@x.com\nnot-an-email\n\"b@x.com\",\na@x.com,1\n"),
+            "text/csv");
+
+    assertEquals("done", progress.getStatus());
+    assertEquals(5, progress.getCommitted());
+    assertEquals(2, progress.getAdded());
+    assertEquals(3, progress.getSkipped());
+
+    ArgumentCaptor<Member> member = ArgumentCaptor.forClass(Member.class);
+    verify(batch).set(eq(memberRefs.get("a@x.com")), member.capture());
+    assertEquals(5, member.getValue().getNecessity());
+    assertEquals("invited", member.getValue().getStatus());
+    assertEquals("2025-05-02", member.getValue().getLastAvailableDay());
+    verify(batch).set(eq(memberRefs.get("b@x.com")), any(Member.class));
+    verify(batch, never()).set(eq(memberRefs.get("old@x.com")), any(Member.class));
+    verify(batch).update(mockEventDoc, "membersUpdatedAt", FieldValue.serverTimestamp());
+    verify(mockEmailService).sendEventInvites(List.of("a@x.com", "b@x.com"), "Big Event");
+  }
+
+  /**
+   * Tests that a long list is written in chunks that each fit one batch along with the progress and
+   * event documents, and that each chunk's invitations go out as soon as it has committed.
+   */
+  @Test
+  void testImportParticipants_writesChunksWithinBatchLimit() throws Exception {
+    when(mockProgressSnapshot.exists()).thenReturn(false);
+    List<String> emails =
+        IntStream.range(0, 300).mapToObj(i -> "p" + i + "@x.com").collect(Collectors.toList());
+
+    ImportProgress progress =
+        importService.importParticipants(
+            "event-1", null, body(String.join("\n", emails)), "text/csv");
+
+    assertEquals(300, progress.getAdded());
+    assertEquals(List.of(249, 51), memberReads.stream().map(List::size).toList());
+    // Two chunks, then the batch that finishes the import
+    verify(batch, times(3)).commit();
+    verify(batch, times(3)).set(eq(mockProgressDoc), anyMap(), eq(SetOptions.merge()));
+    verify(batch, times(2)).update(mockEventDoc, "membersUpdatedAt", FieldValue.serverTimestamp());
+    InOrder inOrder = inOrder(batch, mockEmailService);
+    inOrder.verify(batch).commit();
+    inOrder.verify(mockEmailService).sendEventInvites(emails.subList(0, 249), "Big Event");
+    inOrder.verify(batch).commit();
+    inOrder.verify(mockEmailService).sendEventInvites(emails.subList(249, 300), "Big Event");
+  }
+
+  /**
+   * Tests that resending a JSON list with the ID of an import that failed part way skips the
+   * invitees it already committed and carries its counts on.
+   */
+  @Test
+  void testImportParticipants_jsonResumesAfterCommittedInvitees() throws Exception {
+    ImportProgress earlier = new ImportProgress();
+    earlier.setImportId("import-1");
+    earlier.setEventId("event-1");
+    earlier.setStatus("running");
+    earlier.setCommitted(1);
+    earlier.setAdded(1);
+    when(mockProgressSnapshot.exists()).thenReturn(true);
+    when(mockProgressSnapshot.toObject(ImportProgress.class)).thenReturn(earlier);
+
+    ImportProgress progress =
+        importService.importParticipants(
+            "event-1",
+            "import-1",
+            body("[\"a@x.com\", {\"email\": \"b@x.com\", \"necessity\": 3}]"),
+            "application/json");
+
+    assertEquals(List.of(List.of("b@x.com")), memberReads);
+    assertEquals(2, progress.getCommitted());
+    assertEquals(2, progress.getAdded());
+    assertEquals("done", progress.getStatus());
+    ArgumentCaptor<Member> member = ArgumentCaptor.forClass(Member.class);
+    verify(batch).set(eq(memberRefs.get("b@x.com")), member.capture());
+    assertEquals(3, member.getValue().getNecessity());
+    verify(mockEmailService).sendEventInvites(List.of("b@x.com"), "Big Event");
+  }
+
+  /**
+   * Tests that when the batch finishing an import fails, the committed chunk's members have still
+   * been invited, so resuming the import, which skips them, does not lose their invitations.
+   */
+  @Test
+  void testImportParticipants_invitesCommittedChunkBeforeLaterFailure() {
+    when(mockProgressSnapshot.exists()).thenReturn(false);
+    when(batch.commit())
+        .thenReturn(ApiFutures.immediateFuture(List.of()))
+        .thenReturn(ApiFutures.immediateFailedFuture(new IllegalStateException("unavailable")));
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            importService.importParticipants(
+                "event-1", "import-1", body("a@x.com\nb@x.com\n"), "text/csv"));
+    verify(mockEmailService).sendEventInvites(List.of("a@x.com", "b@x.com"), "Big Event");
+  }
+
+  /** Tests that an event keeping its membership in the event document rejects imports. */
+  @Test
+  void testImportParticipants_legacyEventRejected() {
+    when(mockEventSnapshot.getBoolean("membersTracked")).thenReturn(null);
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> importService.importParticipants("event-1", null, body("[]"), "application/json"));
+    verify(mockDb, never()).batch();
+  }
+}
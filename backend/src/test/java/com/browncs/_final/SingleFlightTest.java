@@ -0,0 +1,85 @@
+package com.browncs._final.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for SingleFlight request coalescing. */
+public class SingleFlightTest {
+
+  private SimpleMeterRegistry registry;
+  private SingleFlight<String, String> flight;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    flight = new SingleFlight<>("test", registry);
+  }
+
+  private double count(String result) {
+    return registry.get("singleflight.calls").tag("result", result).counter().count();
+  }
+
+  /** Tests that calls for a key in flight join it, while other keys run independently. */
+  @Test
+  void testExecute_joinsCallInFlightForSameKey() throws Exception {
+    AtomicInteger started = new AtomicInteger();
+    CompletableFuture<String> pending = new CompletableFuture<>();
+
+    CompletableFuture<String> a =
+        flight.execute(
+            "event1",
+            () -> {
+              started.incrementAndGet();
+              return pending;
+            });
+    CompletableFuture<String> b =
+        flight.execute("event1", () -> CompletableFuture.completedFuture("unused"));
+    CompletableFuture<String> c =
+        flight.execute("event2", () -> CompletableFuture.completedFuture("other"));
+
+    assertFalse(a.isDone());
+    pending.complete("result");
+    assertEquals("result", a.get());
+    assertEquals("result", b.get());
+    assertEquals("other", c.get());
+    assertEquals(1, started.get());
+    assertEquals(2, count("executed"));
+    assertEquals(1, count("coalesced"));
+  }
+
+  /** Tests that a completed call releases its key, so the next caller starts a fresh one. */
+  @Test
+  void testExecute_releasesKeyOnCompletion() throws Exception {
+    assertEquals(
+        "first", flight.execute("k", () -> CompletableFuture.completedFuture("first")).get());
+    assertEquals(0, flight.inFlight());
+    assertEquals(
+        "second", flight.execute("k", () -> CompletableFuture.completedFuture("second")).get());
+    assertEquals(2, count("executed"));
+  }
+
+  /**
+   * Tests that a failure is delivered unwrapped to every joined caller, and that one caller
+   * cancelling its future does not cancel the shared computation.
+   */
+  @Test
+  void testExecute_sharesFailureAndIsolatesCancellation() {
+    CompletableFuture<String> pending = new CompletableFuture<>();
+    CompletableFuture<String> a = flight.execute("k", () -> pending);
+    CompletableFuture<String> b = flight.execute("k", () -> pending);
+
+    a.cancel(true);
+    assertFalse(pending.isCancelled());
+
+    pending.completeExceptionally(new IllegalArgumentException("Event not found: k"));
+    ExecutionException e = assertThrows(ExecutionException.class, b::get);
+    assertInstanceOf(IllegalArgumentException.class, e.getCause());
+    assertEquals(0, flight.inFlight());
+  }
+}
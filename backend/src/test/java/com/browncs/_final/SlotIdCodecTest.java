@@ -0,0 +1,116 @@
+package com.browncs._final.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for SlotIdCodec, checked against java.time across the calendar. */
+public class SlotIdCodecTest {
+
+  private static final DateTimeFormatter SLOT_ID =
+      DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm");
+  private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+  /** Tests that slot IDs round-trip and agree with java.time on every day of several years. */
+  @Test
+  void testSlotId_matchesJavaTimeAcrossLeapYearsAndCenturies() {
+    for (LocalDate date = LocalDate.of(1899, 12, 1);
+        date.isBefore(LocalDate.of(1901, 3, 1));
+        date = date.plusDays(1)) {
+      assertRoundTrips(date.atTime(23, 45));
+    }
+    for (LocalDate date = LocalDate.of(1999, 12, 1);
+        date.isBefore(LocalDate.of(2029, 1, 1));
+        date = date.plusDays(1)) {
+      assertRoundTrips(date.atTime(9, 15));
+    }
+    assertRoundTrips(LocalDateTime.of(0, 1, 1, 0, 0));
+    assertRoundTrips(LocalDateTime.of(9999, 12, 31, 23, 59));
+  }
+
+  private static void assertRoundTrips(LocalDateTime time) {
+    String id = time.format(SLOT_ID);
+    long minute = ChronoUnit.MINUTES.between(EPOCH, time);
+    assertEquals(minute, SlotIdCodec.parseSlotId(id), id);
+    assertEquals(id, SlotIdCodec.formatSlotId(minute));
+  }
+
+  /** Tests that consecutive slots across midnight and month ends are 15 minutes apart. */
+  @Test
+  void testParseSlotId_consecutiveSlotsAreFifteenMinutesApart() {
+    assertEquals(
+        15,
+        SlotIdCodec.parseSlotId("2024-03-01T00:00") - SlotIdCodec.parseSlotId("2024-02-29T23:45"));
+  }
+
+  /** Tests that a timespan's start and end are decoded on its date. */
+  @Test
+  void testParseTimespan_decodesStartAndEnd() {
+    long timespan = SlotIdCodec.parseTimespan("17:00-18:30@2025-04-29");
+
+    assertEquals("2025-04-29T17:00", SlotIdCodec.formatSlotId(SlotIdCodec.timespanStart(timespan)));
+    assertEquals("2025-04-29T18:30", SlotIdCodec.formatSlotId(SlotIdCodec.timespanEnd(timespan)));
+
+    long wholeDay = SlotIdCodec.parseTimespan("00:00-23:59@2025-04-29");
+    assertEquals(
+        23 * 60 + 59, SlotIdCodec.timespanEnd(wholeDay) - SlotIdCodec.timespanStart(wholeDay));
+  }
+
+  /** Tests that times and dates parse and format as event fields store them. */
+  @Test
+  void testTimeAndDate_matchEventFields() {
+    assertEquals(9 * 60, SlotIdCodec.parseTime("09:00"));
+    assertEquals("21:45", SlotIdCodec.formatTime(21 * 60 + 45));
+    assertEquals(LocalDate.of(2025, 4, 29).toEpochDay(), SlotIdCodec.parseDate("2025-04-29"));
+    assertEquals("2025-04-29", SlotIdCodec.formatDate(LocalDate.of(2025, 4, 29).toEpochDay()));
+    assertThrows(IllegalArgumentException.class, () -> SlotIdCodec.formatTime(24 * 60));
+  }
+
+  /** Tests that anything other than the exact formats, or an impossible date, is rejected. */
+  @Test
+  void testParse_rejectsMalformedInput() {
+    for (String id :
+        new String[] {
+          "2025-04-29 17:00",
+          "2025-04-29T17:00:00",
+          "2025-4-29T17:00",
+          "2025-04-29T7:00",
+          "2025-04-29T24:00",
+          "2025-04-29T17:60",
+          "2025-13-01T17:00",
+          "2025-00-01T17:00",
+          "2025-02-29T17:00",
+          "2100-02-29T17:00",
+          "2025-04-31T17:00",
+          "2025-04-29T1a:00",
+          "-025-04-29T17:00",
+          "",
+        }) {
+      assertThrows(IllegalArgumentException.class, () -> SlotIdCodec.parseSlotId(id), id);
+    }
+    assertEquals(
+        LocalDate.of(2000, 2, 29).atStartOfDay(),
+        EPOCH.plusMinutes(SlotIdCodec.parseSlotId("2000-02-29T00:00")));
+
+    for (String id :
+        new String[] {
+          "18:30-17:00@2025-04-29",
+          "17:00-17:00@2025-04-29",
+          "17:00-24:00@2025-04-29",
+          "17:00_18:30@2025-04-29",
+          "17:00-18:30#2025-04-29",
+          "17:00-18:30@2025-04-29T",
+          "17:00-18:30@2025-02-30",
+        }) {
+      assertThrows(IllegalArgumentException.class, () -> SlotIdCodec.parseTimespan(id), id);
+    }
+    assertThrows(IllegalArgumentException.class, () -> SlotIdCodec.parseTime("9:00"));
+    assertThrows(IllegalArgumentException.class, () -> SlotIdCodec.parseDate("2025-04-29T"));
+    assertEquals(LocalTime.of(23, 59).toSecondOfDay() / 60, SlotIdCodec.parseTime("23:59"));
+  }
+}
@@ -1,15 +1,32 @@
 package com.browncs._final.service;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import com.browncs._final.model.Event;
+import com.browncs._final.model.HeatmapCell;
 import com.browncs._final.model.PreferenceRequest;
 import com.browncs._final.model.Slot;
-import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.AlreadyExistsException;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.firebase.cloud.FirestoreClient;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
@@ -23,10 +40,44 @@ public class SlotServiceTest {
 
   private final Firestore mockDb = mock(Firestore.class);
 
+  /**
+   * Helper that mocks {@code db.batch()} with a fresh batch per call, recording each one. A batch
+   * commit acknowledges one write per queued mutation, like Firestore does. Commits complete
+   * immediately unless {@code commits} is given, in which case each commit returns the next of its
+   * futures.
+   */
+  private List<WriteBatch> stubBatches(Firestore db, SettableApiFuture<?>... commits) {
+    List<WriteBatch> batches = new ArrayList<>();
+    when(db.batch())
+        .thenAnswer(
+            invocation -> {
+              WriteBatch batch = mock(WriteBatch.class, RETURNS_SELF);
+              int index = batches.size();
+              batches.add(batch);
+              when(batch.commit())
+                  .thenAnswer(
+                      commit -> {
+                        int mutations = mockingDetails(batch).getInvocations().size() - 1;
+                        List<WriteResult> results =
+                            Collections.nCopies(mutations, mock(WriteResult.class));
+                        if (index >= commits.length) {
+                          return ApiFutures.immediateFuture(results);
+                        }
+                        @SuppressWarnings("unchecked")
+                        SettableApiFuture<List<WriteResult>> pending =
+                            (SettableApiFuture<List<WriteResult>>) commits[index];
+                        return ApiFutures.transform(
+                            pending, ignored -> results, MoreExecutors.directExecutor());
+                      });
+              return batch;
+            });
+    return batches;
+  }
+
   /**
    * Tests that the generateSlots method correctly creates 15-minute slot intervals for a single day
    * based on the provided start and end time. Verifies that exactly 4 slots are created for a
-   * 1-hour window (09:00–10:00), and that each slot is saved.
+   * 1-hour window (09:00–10:00) in one batch that also bumps the preferences version.
    */
   @Test
   void testGenerateSlots_createsCorrectSlotIds() {
@@ -34,17 +85,19 @@ public class SlotServiceTest {
     CollectionReference mockEventsCol = mock(CollectionReference.class);
     DocumentReference mockEventDoc = mock(DocumentReference.class);
     CollectionReference mockSlotsCol = mock(CollectionReference.class);
-    DocumentReference mockSlotDoc = mock(DocumentReference.class); // used for all .set() calls
+    DocumentReference mockSlotDoc = mock(DocumentReference.class); // used for all slots
 
     when(mockDb.collection("events")).thenReturn(mockEventsCol);
     when(mockEventsCol.document("event123")).thenReturn(mockEventDoc);
     when(mockEventDoc.collection("slots")).thenReturn(mockSlotsCol);
     when(mockSlotsCol.document(anyString())).thenReturn(mockSlotDoc);
+    List<WriteBatch> batches = stubBatches(mockDb);
 
-    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
+    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class);
+        RpcBudget.Scope scope = RpcBudget.bind(new RpcBudget())) {
       firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
 
-      SlotService slotService = new SlotService();
+      SlotService slotService = new SlotService(new FirestoreMetrics(new SimpleMeterRegistry()));
 
       Event event = new Event();
       event.setAvailableDays(List.of("2025-05-15"));
@@ -55,53 +108,552 @@ public class SlotServiceTest {
 
       // verifies that 4 slots will be created here!
       verify(mockSlotsCol, times(4)).document(anyString());
-      verify(mockSlotDoc, times(4)).set(any(Slot.class));
+      assertEquals(1, batches.size());
+      verify(batches.get(0), times(4)).set(eq(mockSlotDoc), any(Slot.class));
+      verify(batches.get(0))
+          .update(mockEventDoc, "preferencesUpdatedAt", FieldValue.serverTimestamp());
+      assertEquals(5, RpcBudget.current().writes());
+      assertEquals(1, RpcBudget.current().roundTrips());
+    }
+  }
+
+  /** Tests that an event with 5-minute slots gets twelve slots per hour, named by their start. */
+  @Test
+  void testGenerateSlots_usesEventSlotLength() {
+    CollectionReference mockEventsCol = mock(CollectionReference.class);
+    DocumentReference mockEventDoc = mock(DocumentReference.class);
+    CollectionReference mockSlotsCol = mock(CollectionReference.class);
+    when(mockDb.collection("events")).thenReturn(mockEventsCol);
+    when(mockEventsCol.document("event5")).thenReturn(mockEventDoc);
+    when(mockEventDoc.collection("slots")).thenReturn(mockSlotsCol);
+    when(mockSlotsCol.document(anyString())).thenReturn(mock(DocumentReference.class));
+    List<WriteBatch> batches = stubBatches(mockDb);
+
+    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+      SlotService slotService = new SlotService(new FirestoreMetrics(new SimpleMeterRegistry()));
+
+      Event event = new Event();
+      event.setSlotMinutes(5);
+      event.setAvailableDays(List.of("2025-05-15"));
+      event.setStartTime("09:00");
+      event.setEndTime("10:00");
+
+      assertDoesNotThrow(() -> slotService.generateSlots("event5", event));
+
+      verify(mockSlotsCol, times(12)).document(anyString());
+      verify(mockSlotsCol).document("2025-05-15T09:55");
+      verify(batches.get(0), times(12)).set(any(), any(Slot.class));
+    }
+  }
+
+  /**
+   * Tests that generating slots for a two-week, twelve-hour event stays within a constant number of
+   * round trips: 672 slot writes plus the version bump fit in two batch commits. The first commit
+   * completes on another thread, which must still charge the second commit to the same budget and
+   * trace it under the same {@code slots.generate} span.
+   */
+  @Test
+  void testGenerateSlots_largeEventCommitsInTwoBatches() throws Exception {
+    CollectionReference mockEventsCol = mock(CollectionReference.class);
+    DocumentReference mockEventDoc = mock(DocumentReference.class);
+    CollectionReference mockSlotsCol = mock(CollectionReference.class);
+    when(mockDb.collection("events")).thenReturn(mockEventsCol);
+    when(mockEventsCol.document("eventBig")).thenReturn(mockEventDoc);
+    when(mockEventDoc.collection("slots")).thenReturn(mockSlotsCol);
+    when(mockSlotsCol.document(anyString())).thenReturn(mock(DocumentReference.class));
+    SettableApiFuture<List<WriteResult>> firstCommit = SettableApiFuture.create();
+    List<WriteBatch> batches = stubBatches(mockDb, firstCommit);
+
+    List<String> days = new ArrayList<>();
+    for (int day = 1; day <= 14; day++) {
+      days.add(String.format("2025-06-%02d", day));
+    }
+    Event event = new Event();
+    event.setAvailableDays(days);
+    event.setStartTime("09:00");
+    event.setEndTime("21:00");
+
+    RpcBudget budget = new RpcBudget();
+    List<Observation.Context> finished = new CopyOnWriteArrayList<>();
+    ObservationRegistry observations = ObservationRegistry.create();
+    observations
+        .observationConfig()
+        .observationHandler(
+            new ObservationHandler<>() {
+              @Override
+              public void onStop(Observation.Context context) {
+                finished.add(context);
+              }
+
+              @Override
+              public boolean supportsContext(Observation.Context context) {
+                return true;
+              }
+            });
+    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+      SlotService slotService =
+          new SlotService(new FirestoreMetrics(new SimpleMeterRegistry(), observations));
+
+      CompletableFuture<Void> result;
+      try (RpcBudget.Scope scope = RpcBudget.bind(budget)) {
+        result = slotService.generateSlotsAsync("eventBig", event);
+      }
+      Thread completer = new Thread(() -> firstCommit.set(List.of()));
+      completer.start();
+      completer.join();
+      result.get();
+    }
+
+    assertEquals(2, batches.size());
+    verify(batches.get(0), times(SlotService.MAX_BATCH_WRITES)).set(any(), any(Slot.class));
+    assertEquals(2, budget.roundTrips());
+    assertEquals(14 * 48 + 1, budget.writes());
+
+    Observation.Context generate = finished.get(finished.size() - 1);
+    assertEquals("slots.generate", generate.getName());
+    assertEquals("eventBig", generate.getHighCardinalityKeyValue("event.id").getValue());
+    assertEquals("672", generate.getHighCardinalityKeyValue("slot.count").getValue());
+    List<Observation.Context> commits = finished.subList(0, finished.size() - 1);
+    assertEquals(2, commits.size());
+    for (Observation.Context commit : commits) {
+      assertEquals("firestore.operation", commit.getName());
+      assertSame(generate, commit.getParentObservation().getContextView());
     }
   }
 
   /**
-   * Tests that the submitPreferences method correctly handles both deletions and additions of slot
-   * preferences for a user. Verifies that the proper participantWeights are updated (or removed) in
-   * the relevant slot documents, and that the event's submittedPreferences field is updated
-   * accordingly.
+   * Tests that the submitPreferences method diffs a participant's new rankings against their
+   * previous submission: slots they no longer cover are cleared, new and changed weights are
+   * written, and unchanged slots are left alone. The event's submittedPreferences field and the
+   * heatmap aggregates are updated in the same batch, guarded by the update time of the event the
+   * diff was made against, and everything needed is read with one masked batch get of the event and
+   * the participant's member and submission documents.
    */
   @Test
-  void testSubmitPreferences_addsAndDeletesCorrectly() {
+  void testSubmitPreferences_writesOnlyChangedSlotsAndHeatmap()
+      throws ExecutionException, InterruptedException {
     CollectionReference mockEventsCol = mock(CollectionReference.class);
     DocumentReference mockEventDoc = mock(DocumentReference.class);
     CollectionReference mockSlots = mock(CollectionReference.class);
     DocumentReference mockSlot1 = mock(DocumentReference.class);
     DocumentReference mockSlot2 = mock(DocumentReference.class);
+    DocumentReference mockSlot3 = mock(DocumentReference.class);
+    CollectionReference mockHeatmap = mock(CollectionReference.class);
+    DocumentReference mockHeatmapDay = mock(DocumentReference.class);
 
     when(mockDb.collection("events")).thenReturn(mockEventsCol);
     when(mockEventsCol.document("eventABC")).thenReturn(mockEventDoc);
     when(mockEventDoc.collection("slots")).thenReturn(mockSlots);
     when(mockSlots.document("2025-05-15T17:00")).thenReturn(mockSlot1);
     when(mockSlots.document("2025-05-15T17:15")).thenReturn(mockSlot2);
+    when(mockSlots.document("2025-05-15T17:30")).thenReturn(mockSlot3);
+    when(mockEventDoc.collection("heatmap")).thenReturn(mockHeatmap);
+    when(mockHeatmap.document("2025-05-15")).thenReturn(mockHeatmapDay);
+    CollectionReference mockMembers = mock(CollectionReference.class);
+    when(mockEventDoc.collection("members")).thenReturn(mockMembers);
+    when(mockMembers.document("a@example.com")).thenReturn(mock(DocumentReference.class));
+    CollectionReference mockSubmissions = mock(CollectionReference.class);
+    when(mockEventDoc.collection("submissions")).thenReturn(mockSubmissions);
+    when(mockSubmissions.document("a@example.com")).thenReturn(mock(DocumentReference.class));
+    DocumentSnapshot noSubmission = mock(DocumentSnapshot.class);
 
-    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
+    // A required participant who had marked 17:00-17:30 with weight 2; no slotMinutes, so 15
+    FieldPath submittedPath = FieldPath.of("submittedPreferences", "a@example.com");
+    DocumentSnapshot submitted = mock(DocumentSnapshot.class);
+    when(submitted.exists()).thenReturn(true);
+    when(submitted.getLong("slotMinutes")).thenReturn(null);
+    when(submitted.getBoolean("heatmapTracked")).thenReturn(true);
+    when(submitted.get(submittedPath)).thenReturn(Map.of("17:00-17:30@2025-05-15", 2L));
+    when(submitted.getBoolean("membersTracked")).thenReturn(true);
+    Timestamp submittedAt = Timestamp.ofTimeSecondsAndNanos(1, 0);
+    when(submitted.getUpdateTime()).thenReturn(submittedAt);
+    DocumentSnapshot member = mock(DocumentSnapshot.class);
+    when(member.get("necessity")).thenReturn(5L);
+    DocumentSnapshot resubmitted = mock(DocumentSnapshot.class);
+    when(resubmitted.exists()).thenReturn(true);
+    when(resubmitted.getBoolean("heatmapTracked")).thenReturn(true);
+    when(resubmitted.get(submittedPath)).thenReturn(Map.of("17:15-17:45@2025-05-15", 3L));
+    when(resubmitted.getUpdateTime()).thenReturn(Timestamp.ofTimeSecondsAndNanos(2, 0));
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(submitted, member, noSubmission)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(resubmitted, member, noSubmission)));
+    List<WriteBatch> batches = stubBatches(mockDb);
+
+    RpcBudget budget = new RpcBudget();
+    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class);
+        RpcBudget.Scope scope = RpcBudget.bind(budget)) {
       firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
 
-      SlotService slotService = new SlotService();
+      SlotService slotService = new SlotService(new FirestoreMetrics(new SimpleMeterRegistry()));
 
       PreferenceRequest req = new PreferenceRequest();
       req.setUserEmail("a@example.com");
       req.setDeletedTimespanIds(List.of("17:00-17:30@2025-05-15"));
-      req.setRankings(Map.of("17:00-17:30@2025-05-15", 2));
+      req.setRankings(Map.of("17:15-17:45@2025-05-15", 3));
 
       slotService.submitPreferences("eventABC", req);
 
-      verify(mockSlot1)
-          .update(FieldPath.of("participantWeights", "a@example.com"), FieldValue.delete());
-      verify(mockSlot2)
-          .update(FieldPath.of("participantWeights", "a@example.com"), FieldValue.delete());
-      verify(mockSlot1).update(FieldPath.of("participantWeights", "a@example.com"), 2);
-      verify(mockSlot2).update(FieldPath.of("participantWeights", "a@example.com"), 2);
-      verify(mockEventDoc)
-          .update(FieldPath.of("submittedPreferences", "a@example.com"), req.getRankings());
+      assertEquals(1, batches.size());
+      WriteBatch batch = batches.get(0);
+      FieldPath weight = FieldPath.of("participantWeights", "a@example.com");
+      verify(batch).update(mockSlot1, weight, FieldValue.delete());
+      verify(batch).update(mockSlot2, weight, 3);
+      verify(batch).update(mockSlot3, weight, 3);
+      verify(batch, never()).update(mockSlot2, weight, FieldValue.delete());
+      verify(batch)
+          .update(
+              mockEventDoc,
+              Precondition.updatedAt(submittedAt),
+              submittedPath,
+              req.getRankings(),
+              "preferencesUpdatedAt",
+              FieldValue.serverTimestamp());
+      verify(batch)
+          .set(
+              mockHeatmapDay,
+              Map.of(
+                  "17:00",
+                  FieldValue.increment(-(1 + Heatmap.REQUIRED + 2 * Heatmap.WEIGHT)),
+                  "17:15",
+                  FieldValue.increment(Heatmap.WEIGHT),
+                  "17:30",
+                  FieldValue.increment(1 + Heatmap.REQUIRED + 3 * Heatmap.WEIGHT)),
+              SetOptions.merge());
+      assertEquals(5, budget.writes());
+      assertEquals(3, budget.reads()); // the event, member and submission, in one batch get
+      assertEquals(2, budget.roundTrips());
+
+      // Submitting the same rankings again only records the submission
+      req.setDeletedTimespanIds(List.of());
+      slotService.submitPreferences("eventABC", req);
+      assertEquals(2, batches.size());
+      assertEquals(6, budget.writes());
+      verify(batches.get(1), never()).update(any(DocumentReference.class), eq(weight), any());
+      verify(batches.get(1), never()).set(any(DocumentReference.class), anyMap(), any());
+    }
+  }
+
+  /**
+   * Tests that importing a calendar reads the event's grid, then submits the free slots as ranked
+   * timespans through the same writes as a painted submission.
+   */
+  @Test
+  void testImportCalendar_submitsFreeSlots() throws Exception {
+    CollectionReference mockEventsCol = mock(CollectionReference.class);
+    DocumentReference mockEventDoc = mock(DocumentReference.class);
+    CollectionReference mockSlots = mock(CollectionReference.class);
+    CollectionReference mockMembers = mock(CollectionReference.class);
+    CollectionReference mockSubmissions = mock(CollectionReference.class);
+    when(mockDb.collection("events")).thenReturn(mockEventsCol);
+    when(mockEventsCol.document("eventICS")).thenReturn(mockEventDoc);
+    when(mockEventDoc.collection("slots")).thenReturn(mockSlots);
+    when(mockSlots.document(anyString())).thenAnswer(inv -> mock(DocumentReference.class));
+    when(mockEventDoc.collection("members")).thenReturn(mockMembers);
+    when(mockMembers.document("a@example.com")).thenReturn(mock(DocumentReference.class));
+    when(mockEventDoc.collection("submissions")).thenReturn(mockSubmissions);
+    when(mockSubmissions.document("a@example.com")).thenReturn(mock(DocumentReference.class));
+
+    Event grid = new Event();
+    grid.setAvailableDays(List.of("2025-05-15"));
+    grid.setStartTime("09:00");
+    grid.setEndTime("10:00");
+    grid.setSlotMinutes(30);
+    DocumentSnapshot gridDoc = mock(DocumentSnapshot.class);
+    when(gridDoc.exists()).thenReturn(true);
+    when(gridDoc.toObject(Event.class)).thenReturn(grid);
+    when(mockEventDoc.get(any(FieldMask.class))).thenReturn(ApiFutures.immediateFuture(gridDoc));
+    DocumentSnapshot event = mock(DocumentSnapshot.class);
+    when(event.exists()).thenReturn(true);
+    when(event.getLong("slotMinutes")).thenReturn(30L);
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenReturn(
+            ApiFutures.immediateFuture(
+                List.of(event, mock(DocumentSnapshot.class), mock(DocumentSnapshot.class))));
+    List<WriteBatch> batches = stubBatches(mockDb);
+
+    String ics =
+        String.join(
+            "\r\n",
+            "BEGIN:VCALENDAR",
+            "BEGIN:VEVENT",
+            "DTSTART:20250515T091500",
+            "DTEND:20250515T093000",
+            "END:VEVENT",
+            "END:VCALENDAR");
+    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+      SlotService slotService = new SlotService(new FirestoreMetrics(new SimpleMeterRegistry()));
+
+      Map<String, Integer> rankings =
+          slotService.importCalendar(
+              "eventICS",
+              "a@example.com",
+              new ByteArrayInputStream(ics.getBytes(StandardCharsets.UTF_8)),
+              ZoneOffset.UTC);
+
+      assertEquals(Map.of("09:30-10:00@2025-05-15", 3), rankings);
+      assertEquals(1, batches.size());
+      verify(batches.get(0))
+          .update(
+              mockEventDoc,
+              FieldPath.of("submittedPreferences", "a@example.com"),
+              rankings,
+              "preferencesUpdatedAt",
+              FieldValue.serverTimestamp());
+      verify(batches.get(0))
+          .update(
+              any(DocumentReference.class),
+              eq(FieldPath.of("participantWeights", "a@example.com")),
+              eq(3));
+    }
+  }
+
+  /**
+   * Tests that an event keeping submission documents stores the rankings in the participant's
+   * submission and marks their member as responded, leaving the event document with only the new
+   * preferences version, and that the participant's rankings are read back from the submission.
+   */
+  @Test
+  void testSubmitPreferences_storesRankingsInSubmissionDocument() throws Exception {
+    CollectionReference mockEventsCol = mock(CollectionReference.class);
+    DocumentReference mockEventDoc = mock(DocumentReference.class);
+    CollectionReference mockSlots = mock(CollectionReference.class);
+    CollectionReference mockMembers = mock(CollectionReference.class);
+    DocumentReference memberRef = mock(DocumentReference.class);
+    CollectionReference mockSubmissions = mock(CollectionReference.class);
+    DocumentReference submissionRef = mock(DocumentReference.class);
+
+    when(mockDb.collection("events")).thenReturn(mockEventsCol);
+    when(mockEventsCol.document("eventS")).thenReturn(mockEventDoc);
+    when(mockEventDoc.collection("slots")).thenReturn(mockSlots);
+    when(mockSlots.document(anyString())).thenAnswer(inv -> mock(DocumentReference.class));
+    when(mockEventDoc.collection("members")).thenReturn(mockMembers);
+    when(mockMembers.document("a@example.com")).thenReturn(memberRef);
+    when(mockEventDoc.collection("submissions")).thenReturn(mockSubmissions);
+    when(mockSubmissions.document("a@example.com")).thenReturn(submissionRef);
+
+    DocumentSnapshot event = mock(DocumentSnapshot.class);
+    when(event.exists()).thenReturn(true);
+    when(event.getBoolean("submissionsTracked")).thenReturn(true);
+    when(event.getBoolean("membersTracked")).thenReturn(true);
+    DocumentSnapshot member = mock(DocumentSnapshot.class);
+    when(member.exists()).thenReturn(true);
+    DocumentSnapshot submission = mock(DocumentSnapshot.class);
+    when(submission.exists()).thenReturn(true);
+    when(submission.get("rankings")).thenReturn(Map.of("17:00-17:30@2025-05-15", 2L));
+    Timestamp submittedAt = Timestamp.ofTimeSecondsAndNanos(1, 0);
+    when(submission.getUpdateTime()).thenReturn(submittedAt);
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(event, member, submission)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(event, submission)));
+    List<WriteBatch> batches = stubBatches(mockDb);
+
+    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+      SlotService slotService = new SlotService(new FirestoreMetrics(new SimpleMeterRegistry()));
+
+      PreferenceRequest req = new PreferenceRequest();
+      req.setUserEmail("a@example.com");
+      req.setDeletedTimespanIds(List.of());
+      req.setRankings(Map.of("17:00-17:30@2025-05-15", 4));
+      slotService.submitPreferences("eventS", req);
+
+      WriteBatch batch = batches.get(0);
+      verify(batch)
+          .update(
+              submissionRef,
+              Submissions.document(req.getRankings()),
+              Precondition.updatedAt(submittedAt));
+      verify(batch).update(memberRef, "responded", true);
+      verify(batch).update(mockEventDoc, "preferencesUpdatedAt", FieldValue.serverTimestamp());
+      verify(batch, never())
+          .update(
+              eq(mockEventDoc), eq(FieldPath.of("submittedPreferences", "a@example.com")), any());
+
+      assertEquals(
+          Map.of("17:00-17:30@2025-05-15", 2),
+          slotService.getSubmissionAsync("eventS", "a@example.com").get());
+    }
+  }
+
+  /**
+   * Tests that a ranked timespan that does not start and end on the event's slot grid is rejected
+   * without writing anything, rather than being split into slots that do not exist.
+   */
+  @Test
+  void testSubmitPreferences_rejectsTimespanOffSlotGrid() {
+    CollectionReference mockEventsCol = mock(CollectionReference.class);
+    DocumentReference mockEventDoc = mock(DocumentReference.class);
+    when(mockDb.collection("events")).thenReturn(mockEventsCol);
+    when(mockEventsCol.document("eventG")).thenReturn(mockEventDoc);
+    when(mockEventDoc.collection(anyString())).thenReturn(mock(CollectionReference.class));
+
+    DocumentSnapshot event = mock(DocumentSnapshot.class);
+    when(event.exists()).thenReturn(true);
+    when(event.getLong("slotMinutes")).thenReturn(30L);
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenReturn(
+            ApiFutures.immediateFuture(
+                List.of(event, mock(DocumentSnapshot.class), mock(DocumentSnapshot.class))));
+
+    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+      SlotService slotService = new SlotService(new FirestoreMetrics(new SimpleMeterRegistry()));
+
+      PreferenceRequest req = new PreferenceRequest();
+      req.setUserEmail("a@example.com");
+      req.setDeletedTimespanIds(List.of());
+      req.setRankings(Map.of("09:15-10:00@2025-05-15", 3));
+
+      assertThrows(
+          IllegalArgumentException.class, () -> slotService.submitPreferences("eventG", req));
+      verify(mockDb, never()).batch();
+    }
+  }
+
+  /**
+   * Tests that when a participant's first submission races with another of theirs, the one whose
+   * submission document was created first wins, and the other reads it back and diffs its heatmap
+   * increments against it rather than against no submission.
+   */
+  @Test
+  void testSubmitPreferences_retriesWhenSubmissionChanged() throws Exception {
+    CollectionReference mockEventsCol = mock(CollectionReference.class);
+    DocumentReference mockEventDoc = mock(DocumentReference.class);
+    CollectionReference mockSlots = mock(CollectionReference.class);
+    CollectionReference mockMembers = mock(CollectionReference.class);
+    CollectionReference mockSubmissions = mock(CollectionReference.class);
+    DocumentReference submissionRef = mock(DocumentReference.class);
+    CollectionReference mockHeatmap = mock(CollectionReference.class);
+    DocumentReference mockHeatmapDay = mock(DocumentReference.class);
+
+    when(mockDb.collection("events")).thenReturn(mockEventsCol);
+    when(mockEventsCol.document("eventR")).thenReturn(mockEventDoc);
+    when(mockEventDoc.collection("slots")).thenReturn(mockSlots);
+    when(mockSlots.document(anyString())).thenAnswer(inv -> mock(DocumentReference.class));
+    when(mockEventDoc.collection("members")).thenReturn(mockMembers);
+    when(mockMembers.document("a@example.com")).thenReturn(mock(DocumentReference.class));
+    when(mockEventDoc.collection("submissions")).thenReturn(mockSubmissions);
+    when(mockSubmissions.document("a@example.com")).thenReturn(submissionRef);
+    when(mockEventDoc.collection("heatmap")).thenReturn(mockHeatmap);
+    when(mockHeatmap.document("2025-05-15")).thenReturn(mockHeatmapDay);
+
+    DocumentSnapshot event = mock(DocumentSnapshot.class);
+    when(event.exists()).thenReturn(true);
+    when(event.getBoolean("submissionsTracked")).thenReturn(true);
+    when(event.getBoolean("heatmapTracked")).thenReturn(true);
+    DocumentSnapshot noSubmission = mock(DocumentSnapshot.class);
+    DocumentSnapshot submission = mock(DocumentSnapshot.class);
+    when(submission.exists()).thenReturn(true);
+    when(submission.get("rankings")).thenReturn(Map.of("17:00-17:15@2025-05-15", 2L));
+    Timestamp submittedAt = Timestamp.ofTimeSecondsAndNanos(1, 0);
+    when(submission.getUpdateTime()).thenReturn(submittedAt);
+    DocumentSnapshot member = mock(DocumentSnapshot.class);
+    when(mockDb.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(event, member, noSubmission)))
+        .thenReturn(ApiFutures.immediateFuture(List.of(event, member, submission)));
+    // The first commit loses the race to create the submission
+    SettableApiFuture<List<WriteResult>> lost = SettableApiFuture.create();
+    lost.setException(
+        new AlreadyExistsException(
+            "exists", null, GrpcStatusCode.of(Status.Code.ALREADY_EXISTS), false));
+    List<WriteBatch> batches = stubBatches(mockDb, lost);
+
+    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+      SlotService slotService = new SlotService(new FirestoreMetrics(new SimpleMeterRegistry()));
+
+      PreferenceRequest req = new PreferenceRequest();
+      req.setUserEmail("a@example.com");
+      req.setDeletedTimespanIds(List.of());
+      req.setRankings(Map.of("17:00-17:15@2025-05-15", 4));
+      slotService.submitPreferences("eventR", req);
+
+      assertEquals(2, batches.size());
+      Map<String, Object> document = Submissions.document(req.getRankings());
+      verify(batches.get(0)).create(submissionRef, document);
+      verify(batches.get(0))
+          .set(
+              mockHeatmapDay,
+              Map.of("17:00", FieldValue.increment(1 + 4 * Heatmap.WEIGHT)),
+              SetOptions.merge());
+      verify(batches.get(1)).update(submissionRef, document, Precondition.updatedAt(submittedAt));
+      verify(batches.get(1))
+          .set(
+              mockHeatmapDay,
+              Map.of("17:00", FieldValue.increment(2 * Heatmap.WEIGHT)),
+              SetOptions.merge());
     }
   }
 
+  /**
+   * Tests that the heatmap unpacks the aggregates of a maintained event from its day documents, and
+   * that an event created before they were maintained has them computed from its slots.
+   */
+  @Test
+  void testGetHeatmap_readsAggregatesOrFallsBackToSlots() throws Exception {
+    CollectionReference mockEventsCol = mock(CollectionReference.class);
+    DocumentReference tracked = mock(DocumentReference.class);
+    DocumentReference legacy = mock(DocumentReference.class);
+    when(mockDb.collection("events")).thenReturn(mockEventsCol);
+    when(mockEventsCol.document("tracked")).thenReturn(tracked);
+    when(mockEventsCol.document("legacy")).thenReturn(legacy);
+
+    DocumentSnapshot trackedEvent = mock(DocumentSnapshot.class);
+    when(trackedEvent.exists()).thenReturn(true);
+    when(trackedEvent.getBoolean("heatmapTracked")).thenReturn(true);
+    when(tracked.get(any(FieldMask.class))).thenReturn(ApiFutures.immediateFuture(trackedEvent));
+    QueryDocumentSnapshot day = mock(QueryDocumentSnapshot.class);
+    when(day.getId()).thenReturn("2025-05-15");
+    Map<String, Object> packed = new HashMap<>();
+    packed.put("17:15", 2 + Heatmap.REQUIRED + 7 * Heatmap.WEIGHT);
+    packed.put("17:00", 1 + 2 * Heatmap.WEIGHT);
+    packed.put("17:30", 0L); // everyone cleared it
+    when(day.getData()).thenReturn(packed);
+    stubCollection(tracked, "heatmap", List.of(day));
+
+    DocumentSnapshot legacyEvent = mock(DocumentSnapshot.class);
+    when(legacyEvent.exists()).thenReturn(true);
+    when(legacyEvent.get("participantNecessity")).thenReturn(Map.of("b@example.com", 5L));
+    when(legacy.get(any(FieldMask.class))).thenReturn(ApiFutures.immediateFuture(legacyEvent));
+    stubCollection(legacy, "heatmap", List.of());
+    Slot slot = new Slot();
+    slot.setId("2025-05-15T17:00");
+    slot.setParticipantWeights(Map.of("a@example.com", 2, "b@example.com", 3));
+    QueryDocumentSnapshot slotDoc = mock(QueryDocumentSnapshot.class);
+    when(slotDoc.toObject(Slot.class)).thenReturn(slot);
+    when(slotDoc.getId()).thenReturn(slot.getId());
+    stubCollection(legacy, "slots", List.of(slotDoc));
+
+    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+      SlotService slotService = new SlotService(new FirestoreMetrics(new SimpleMeterRegistry()));
+
+      assertEquals(
+          List.of(
+              new HeatmapCell("2025-05-15T17:00", 1, 2, 0),
+              new HeatmapCell("2025-05-15T17:15", 2, 7, 1)),
+          slotService.getHeatmapAsync("tracked").get());
+      verify(tracked, never()).collection("slots");
+
+      assertEquals(
+          List.of(new HeatmapCell("2025-05-15T17:00", 2, 5, 1)),
+          slotService.getHeatmapAsync("legacy").get());
+    }
+  }
+
+  /** Stubs a subcollection of {@code parent} to list {@code docs}. */
+  private static void stubCollection(
+      DocumentReference parent, String name, List<QueryDocumentSnapshot> docs) {
+    CollectionReference collection = mock(CollectionReference.class);
+    QuerySnapshot snapshot = mock(QuerySnapshot.class);
+    when(parent.collection(name)).thenReturn(collection);
+    when(collection.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+    when(snapshot.getDocuments()).thenReturn(docs);
+  }
+
   /**
    * Tests that the getPreferences method correctly retrieves and sorts all slot documents for a
    * given event. Verifies that slot IDs are ordered chronologically based on their timestamps, and
@@ -112,7 +664,6 @@ public class SlotServiceTest {
     CollectionReference mockEventsCol = mock(CollectionReference.class);
     DocumentReference mockEventDoc = mock(DocumentReference.class);
     CollectionReference mockSlotsCol = mock(CollectionReference.class);
-    ApiFuture<QuerySnapshot> mockFuture = mock(ApiFuture.class);
     QuerySnapshot mockSnapshot = mock(QuerySnapshot.class);
     QueryDocumentSnapshot doc1 = mock(QueryDocumentSnapshot.class);
     QueryDocumentSnapshot doc2 = mock(QueryDocumentSnapshot.class);
@@ -130,14 +681,13 @@ public class SlotServiceTest {
     when(mockDb.collection("events")).thenReturn(mockEventsCol);
     when(mockEventsCol.document("eventXYZ")).thenReturn(mockEventDoc);
     when(mockEventDoc.collection("slots")).thenReturn(mockSlotsCol);
-    when(mockSlotsCol.get()).thenReturn(mockFuture);
-    when(mockFuture.get()).thenReturn(mockSnapshot);
+    when(mockSlotsCol.get()).thenReturn(ApiFutures.immediateFuture(mockSnapshot));
     when(mockSnapshot.getDocuments()).thenReturn(List.of(doc1, doc2));
 
     try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
       firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
 
-      SlotService slotService = new SlotService();
+      SlotService slotService = new SlotService(new FirestoreMetrics(new SimpleMeterRegistry()));
       List<Slot> results = slotService.getPreferences("eventXYZ");
 
       assertEquals(2, results.size());
@@ -145,4 +695,56 @@ public class SlotServiceTest {
       assertEquals("2025-05-15T10:00", results.get(1).getId());
     }
   }
+
+  /**
+   * Helper that mocks the masked read of an event's preferences version and the slot query used by
+   * the conditional get-preferences.
+   */
+  private CollectionReference setupVersionedPreferences(String eventId, Timestamp version) {
+    CollectionReference mockEventsCol = mock(CollectionReference.class);
+    DocumentReference mockEventDoc = mock(DocumentReference.class);
+    CollectionReference mockSlotsCol = mock(CollectionReference.class);
+    DocumentSnapshot versionDoc = mock(DocumentSnapshot.class);
+    QuerySnapshot mockSnapshot = mock(QuerySnapshot.class);
+
+    when(mockDb.collection("events")).thenReturn(mockEventsCol);
+    when(mockEventsCol.document(eventId)).thenReturn(mockEventDoc);
+    when(mockEventDoc.collection("slots")).thenReturn(mockSlotsCol);
+    when(mockEventDoc.get(any(FieldMask.class))).thenReturn(ApiFutures.immediateFuture(versionDoc));
+    when(versionDoc.exists()).thenReturn(true);
+    when(versionDoc.getTimestamp("preferencesUpdatedAt")).thenReturn(version);
+    when(mockSlotsCol.get()).thenReturn(ApiFutures.immediateFuture(mockSnapshot));
+    when(mockSnapshot.getDocuments()).thenReturn(List.of());
+    return mockSlotsCol;
+  }
+
+  /**
+   * Tests that get-preferences is tagged with the event's preferences version and that a matching
+   * If-None-Match skips reading the slot subcollection entirely.
+   */
+  @Test
+  void testGetPreferencesIfModified_matchingEtagSkipsSlotRead()
+      throws ExecutionException, InterruptedException {
+    Timestamp version = Timestamp.ofTimeSecondsAndNanos(1_700_000_000, 5);
+    CollectionReference slots = setupVersionedPreferences("eventV", version);
+
+    try (MockedStatic<FirestoreClient> firestoreMock = Mockito.mockStatic(FirestoreClient.class)) {
+      firestoreMock.when(FirestoreClient::getFirestore).thenReturn(mockDb);
+      SlotService slotService = new SlotService(new FirestoreMetrics(new SimpleMeterRegistry()));
+
+      Versioned<List<Slot>> fresh = slotService.getPreferencesIfModifiedAsync("eventV", null).get();
+      assertEquals("\"p1700000000.5\"", fresh.etag());
+      assertFalse(fresh.notModified());
+
+      Versioned<List<Slot>> cached =
+          slotService.getPreferencesIfModifiedAsync("eventV", "W/\"p1700000000.5\"").get();
+      assertTrue(cached.notModified());
+      verify(slots, times(1)).get();
+
+      Versioned<List<Slot>> stale =
+          slotService.getPreferencesIfModifiedAsync("eventV", "\"p1600000000.0\"").get();
+      assertFalse(stale.notModified());
+      verify(slots, times(2)).get();
+    }
+  }
 }
@@ -1,5 +1,6 @@
 import { useNavigate } from "react-router-dom";
 import { useUser } from "@clerk/clerk-react";
+import { hasResponded } from "../../hooks/useSubmission";
 import "../../styles/main.css";
 
 /**
@@ -23,7 +24,7 @@ export default function ParticipantEventCard(props: OrganizerEventCardProps) {
   const { event, respondToInvitation } = props;
 
   const email = user?.primaryEmailAddress?.emailAddress;
-  const hasSubmittedAvailability = !!event.submittedPreferences?.[email];
+  const hasSubmittedAvailability = hasResponded(event, email);
   const hasAccepted = event.confirmedParticipants?.includes(email);
   const hasRejected = event.rejectedParticipants?.includes(email);
 
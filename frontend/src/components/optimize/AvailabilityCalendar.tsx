@@ -17,6 +17,7 @@ interface TimeSlot {
  * Props for AvailabilityCalendar.
  * - `startDate`, `endDate`: Date range to display
  * - `startTime`, `endTime`: Time bounds for each day (24-hour format)
+ * - `slotMinutes`: Length of the event's slots, one row each
  * - `participants`: List of participants and their response status
  * - `preferencesData`: Submitted preferences per time slot
  */
@@ -25,6 +26,7 @@ interface AvailabilityCalendarProps {
   endDate: Date;
   startTime: number;
   endTime: number;
+  slotMinutes: number;
   participants: { id: number; name: string; responded: boolean }[];
   preferencesData: TimeSlot[];
 }
@@ -39,6 +41,7 @@ export default function AvailabilityCalendar({
   endDate,
   startTime,
   endTime,
+  slotMinutes,
   participants,
   preferencesData,
 }: AvailabilityCalendarProps) {
@@ -59,11 +62,11 @@ export default function AvailabilityCalendar({
     return dateArray;
   };
 
-  // Generate array of time slots (15-minute increments)
+  // Generate array of time slots, one per slot of the event
   const getTimeSlots = () => {
     const slots = [];
     for (let hour = startTime; hour <= endTime; hour++) {
-      for (let minute = 0; minute < 60; minute += 15) {
+      for (let minute = 0; minute < 60; minute += slotMinutes) {
         slots.push({ hour, minute });
       }
     }
@@ -1,5 +1,6 @@
 import React, { useState, useEffect } from "react";
 import { useEventById } from "../../hooks/useEventByID";
+import { hasResponded } from "../../hooks/useSubmission";
 import "../../styles/main.css";
 import AvailabilityCalendar from "./AvailabilityCalendar";
 
@@ -56,7 +57,7 @@ const OptimizeCalendarSection: React.FC<{ eventId: string }> = ({
   const participants = event.participantEmails.map((email, index) => ({
     id: index + 1,
     name: email,
-    responded: Boolean(event.submittedPreferences?.[email]),
+    responded: hasResponded(event, email),
   }));
 
   // Parse date range
@@ -75,6 +76,7 @@ const OptimizeCalendarSection: React.FC<{ eventId: string }> = ({
         endDate={endDate}
         startTime={startTime}
         endTime={endTime}
+        slotMinutes={event.slotMinutes ?? 15}
         participants={participants}
         preferencesData={preferences}
       />
@@ -1,7 +1,14 @@
 import { useUser } from "@clerk/clerk-react";
-import { useEffect, useState } from "react";
+import { useCallback, useEffect, useState } from "react";
 import { EventData } from "../types/EventData";
 
+// Number of events requested per page of the listing
+const PAGE_SIZE = 20;
+
+interface EventPage {
+  events: EventData[];
+  nextCursor: string | null;
+}
 
 /**
  * useDashboardEvents is a custom React hook that retrieves and organizes
@@ -9,6 +16,9 @@ import { EventData } from "../types/EventData";
  * - events the user is organizing
  * - events the user is participating in
  *
+ * Events are fetched a page at a time, most recent first; loadMore appends
+ * the next page while hasMore is true.
+ *
  * It also exposes error state and setters for manual updates.
  */
 export function useDashboardEvents() {
@@ -18,18 +28,22 @@ export function useDashboardEvents() {
   const [organizerEvents, setOrganizerEvents] = useState<EventData[]>([]);
   const [participantEvents, setParticipantEvents] = useState<EventData[]>([]);
   const [error, setError] = useState<Error | null>(null); // <- add error state
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [loadingMore, setLoadingMore] = useState(false);
 
   /**
-     * Fetches events associated with the current user's email from the backend.
-     * Organizes them into two groups: organized vs. participated events.
+     * Fetches one page of events associated with the current user's email from
+     * the backend, starting after the given cursor, and adds them to the two
+     * groups: organized vs. participated events.
      */
-  useEffect(() => {
-    async function fetchEvents() {
+  const fetchPage = useCallback(
+    async (cursor: string | null) => {
       if (!email) return;
 
       try {
-        const encodedEmail = encodeURIComponent(email);
-        const res = await fetch(`http://localhost:8080/api/events?email=${encodedEmail}`);
+        const params = new URLSearchParams({ email, limit: String(PAGE_SIZE) });
+        if (cursor) params.set("cursor", cursor);
+        const res = await fetch(`http://localhost:8080/api/events?${params}`);
 
         if (!res.ok) {
           const text = await res.text();
@@ -39,27 +53,43 @@ export function useDashboardEvents() {
           return;
         }
 
-        const events: EventData[] = await res.json();
+        const page: EventPage = await res.json();
         const normalizedEmail = email.toLowerCase();
 
-        const organizer = events.filter(
+        const organizer = page.events.filter(
           (e) => e.organizerEmail.toLowerCase() === normalizedEmail
         );
-        const participant = events.filter(
+        const participant = page.events.filter(
           (e) => e.organizerEmail.toLowerCase() !== normalizedEmail
         );
 
-        setOrganizerEvents(organizer);
-        setParticipantEvents(participant);
+        // The first page replaces what is shown; later pages are appended
+        setOrganizerEvents((prev) => (cursor ? prev.concat(organizer) : organizer));
+        setParticipantEvents((prev) => (cursor ? prev.concat(participant) : participant));
+        setNextCursor(page.nextCursor);
         setError(null); // clear previous errors if successful
       } catch (err) {
         console.error("Failed to fetch events:", err);
         setError(err instanceof Error ? err : new Error("Unknown error"));
       }
-    }
+    },
+    [email]
+  );
 
-    fetchEvents();
-  }, [email]);
+  useEffect(() => {
+    fetchPage(null);
+  }, [fetchPage]);
+
+  /** Fetches the page after the ones already shown, if there is one. */
+  const loadMore = useCallback(async () => {
+    if (!nextCursor || loadingMore) return;
+    setLoadingMore(true);
+    try {
+      await fetchPage(nextCursor);
+    } finally {
+      setLoadingMore(false);
+    }
+  }, [fetchPage, nextCursor, loadingMore]);
 
   return {
     organizerEvents,
@@ -68,6 +98,8 @@ export function useDashboardEvents() {
     setParticipantEvents,
     email,
     error, // <- return the error
+    hasMore: nextCursor !== null,
+    loadingMore,
+    loadMore,
   };
 }
-
@@ -19,6 +19,8 @@ export interface EventData {
   durationMinutes: number;
   optimalSlots?: SlotBlock[];
   participantNecessity: Record<string, number>;
+  // Participants who have submitted; older events carry submittedPreferences instead
+  respondedParticipants?: string[];
   submittedPreferences?: {
     [email: string]: {
       [timespan: string]: number;
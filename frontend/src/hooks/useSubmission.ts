@@ -0,0 +1,50 @@
+import { useEffect, useState } from "react";
+
+/**
+ * useSubmission fetches the rankings a participant last submitted for an event,
+ * timespan ID → preference, e.g. { "10:00-10:30@2025-05-01": 3 }. The rankings are
+ * empty if they have not submitted. Only the participant's own rankings are fetched,
+ * not the whole event.
+ */
+export function useSubmission(eventId: string | undefined, email: string | undefined) {
+  const [rankings, setRankings] = useState<Record<string, number> | null>(null);
+  const [loading, setLoading] = useState(true);
+  const [error, setError] = useState<string | null>(null);
+
+  useEffect(() => {
+    if (!eventId || !email) return;
+
+    const load = async () => {
+      try {
+        const res = await fetch(
+          `http://localhost:8080/api/events/${eventId}/submissions/${encodeURIComponent(email)}`
+        );
+        if (!res.ok) throw new Error("Submission not found");
+        setRankings(await res.json());
+        setError(null);
+      } catch (err) {
+        console.log("Failed to load submission", err);
+        setError("Failed to load submission");
+        setRankings(null);
+      } finally {
+        setLoading(false);
+      }
+    };
+
+    load();
+  }, [eventId, email]);
+
+  return { rankings, loading, error };
+}
+
+/**
+ * Whether a participant has submitted preferences. Newer events list respondents
+ * in respondedParticipants; older ones still carry every submission.
+ */
+export function hasResponded(
+  event: { respondedParticipants?: string[]; submittedPreferences?: Record<string, unknown> },
+  email: string | undefined
+) {
+  if (!email) return false;
+  return !!event.respondedParticipants?.includes(email) || !!event.submittedPreferences?.[email];
+}
@@ -22,6 +22,9 @@ export default function Dashboard() {
     setParticipantEvents,
     email,
     error,
+    hasMore,
+    loadingMore,
+    loadMore,
   } = useDashboardEvents();
 
 
@@ -106,6 +109,17 @@ export default function Dashboard() {
           respondToInvitation={respondToInvitation}
         />
       </section>
+
+      {hasMore && (
+        <button
+          onClick={loadMore}
+          disabled={loadingMore}
+          className="mt-6"
+          aria-label="Load more of your events"
+        >
+          {loadingMore ? "Loading..." : "Load more events"}
+        </button>
+      )}
     </div>
   );
 }
@@ -1,6 +1,7 @@
 import React, { useEffect, useState } from 'react';
 import { useParams } from 'react-router-dom';
 import { useEventById } from '../hooks/useEventByID';
+import { hasResponded } from '../hooks/useSubmission';
 import OptimizeParticipantList from '../components/optimize/OptimizeParticipantList';
 import OptimizeCalendarSection from '../components/optimize/OptimizeCalendarSection';
 import OptimizeAlgorithm from '../components/optimize/OptimizeAlgorithm';
@@ -33,7 +34,7 @@ const OptimizePage: React.FC = () => {
     if (event) {
       const participantList = event.participantEmails.map((email: string) => ({
         name: email,
-        hasSubmitted: !!event.submittedPreferences?.[email],
+        hasSubmitted: hasResponded(event, email),
       }));
       setParticipants(participantList);
     }
@@ -4,6 +4,7 @@ import { useUser } from "@clerk/clerk-react";
 import "../styles/main.css";
 import { useNavigate } from "react-router-dom";
 import { useEventById } from "../hooks/useEventByID";
+import { useSubmission } from "../hooks/useSubmission";
 
 /**
  * A single time range entry associated with a preference level.
@@ -23,6 +24,10 @@ export default function ParticipantViewPage() {
   const navigate = useNavigate();
   const { eventId } = useParams();
   const { event, loading, error } = useEventById(eventId);
+  const { rankings: submittedPrefs } = useSubmission(
+    eventId,
+    user?.primaryEmailAddress?.emailAddress
+  );
 
   const [availability, setAvailability] = useState<Record<string, TimeRange[]>>({});
   const [currentDay, setCurrentDay] = useState<string>("");
@@ -34,8 +39,6 @@ export default function ParticipantViewPage() {
 
   useEffect(() => {
     if (event && user?.primaryEmailAddress?.emailAddress) {
-      const submittedPrefs =
-        event.submittedPreferences?.[user.primaryEmailAddress.emailAddress];
       if (submittedPrefs) {
         const newAvailability: Record<string, TimeRange[]> = {};
 
@@ -57,7 +60,7 @@ export default function ParticipantViewPage() {
         setCurrentDay(event.availableDays[0]);
       }
     }
-  }, [event, user]);
+  }, [event, user, submittedPrefs]);
 
   if (loading) return <p>Loading...</p>;
   if (!event || error) return <p>Failed to load event.</p>;
@@ -67,10 +70,13 @@ export default function ParticipantViewPage() {
   const isInRange = (start: string, end: string) =>
     event.startTime <= start && end <= event.endTime && start < end;
 
-  // Checks if user input is a multiple of 15
-  const isMultipleOf15 = (time: string) => {
+  // Length of the event's slots; submitted times must fall on their boundaries
+  const slotMinutes = event.slotMinutes ?? 15;
+
+  // Checks if user input is on a slot boundary
+  const isOnSlotGrid = (time: string) => {
     const [hours, minutes] = time.split(":").map(Number);
-    return minutes % 15 === 0;
+    return minutes % slotMinutes === 0;
   };
 
   // Checks if there is an overlap in times selected by user
@@ -88,8 +94,8 @@ export default function ParticipantViewPage() {
       );
       return;
     }
-    if (!isMultipleOf15(startTime) || !isMultipleOf15(endTime)) {
-      setErrorMessage("Times must be on 15-minute intervals (e.g., 10:00, 10:15).");
+    if (!isOnSlotGrid(startTime) || !isOnSlotGrid(endTime)) {
+      setErrorMessage(`Times must be on ${slotMinutes}-minute intervals (e.g., 10:00).`);
       return;
     }
     if (isOverlapping(currentDay, startTime, endTime)) {
@@ -193,7 +199,7 @@ export default function ParticipantViewPage() {
       <p className="text-gray-600 mb-6 text-sm">
         Use the form below to enter when you're available on each of the days selected by the event organizer.
         Time ranges must be within <strong>{event.startTime}</strong> to <strong>{event.endTime}</strong> and in
-        <strong> 15-minute increments</strong> (e.g., 10:00–10:30).
+        <strong> {slotMinutes}-minute increments</strong> (e.g., 10:00–11:00).
         <br />
         You can also set a preference level:
         <strong className="ml-1">Preferred</strong>, <strong>Available</strong>, or <strong>Only if necessary</strong>.
@@ -216,7 +222,7 @@ export default function ParticipantViewPage() {
       </div>
 
       <p className="mb-2 text-sm text-gray-600">
-        Please enter time ranges between <strong>{event.startTime}</strong> and <strong>{event.endTime}</strong> (on 15-minute intervals)
+        Please enter time ranges between <strong>{event.startTime}</strong> and <strong>{event.endTime}</strong> (on {slotMinutes}-minute intervals)
       </p>
 
       <div className="flex gap-4 mb-2 items-center flex-wrap">
@@ -2,6 +2,7 @@ import { useEffect, useState } from "react";
 import { useNavigate } from "react-router-dom";
 import { useUser } from "@clerk/clerk-react";
 import { useEventById } from "../hooks/useEventByID";
+import { useSubmission } from "../hooks/useSubmission";
 import { useParams } from "react-router-dom";
 
 /**
@@ -25,13 +26,16 @@ export default function PostParticipantViewPage() {
   const navigate = useNavigate();
   const { eventId } = useParams();
   const { event, loading, error } = useEventById(eventId);
+  const { rankings: submittedPrefs } = useSubmission(
+    eventId,
+    user?.primaryEmailAddress?.emailAddress
+  );
   const [userPreferences, setUserPreferences] = useState<TimeRange[]>([]);
 
   // On load, extract and parse the current user's submitted preferences into TimeRange
   useEffect(() => {
     const email = user?.primaryEmailAddress?.emailAddress;
     if (event && email) {
-      const submittedPrefs = event.submittedPreferences?.[email];
       if (submittedPrefs) {
         const formattedPrefs: TimeRange[] = Object.entries(submittedPrefs).map(
           ([timespanID, preference]) => {
@@ -43,7 +47,7 @@ export default function PostParticipantViewPage() {
         setUserPreferences(formattedPrefs);
       }
     }
-  }, [event, user]);
+  }, [event, user, submittedPrefs]);
 
   if (loading) return <p>Loading...</p>;
   if (!event || error) return <p>Failed to load event.</p>;
@@ -11,9 +11,13 @@ export interface EventData {
     rejectedParticipants: string[]
     confirmedParticipants?: string[]
     durationMinutes: number;
+    // Length of the event's slots; events created before it was chosen use 15
+    slotMinutes?: number;
     optimalSlots?: SlotBlock[];
     participantNecessity: Record<string, number>;
     // other fields like dates, times, etc...
+    // Participants who have submitted; older events carry submittedPreferences instead
+    respondedParticipants?: string[];
     submittedPreferences?: {
       [email: string]: {
         [timespan: string]: number;